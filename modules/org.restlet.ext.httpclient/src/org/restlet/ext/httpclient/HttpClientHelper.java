@@ -58,11 +58,14 @@ import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
 import org.restlet.Client;
 import org.restlet.Request;
 import org.restlet.data.Protocol;
 import org.restlet.engine.Engine;
 import org.restlet.engine.adapter.ClientCall;
+import org.restlet.engine.connector.ConnectorMetrics;
 import org.restlet.engine.ssl.DefaultSslContextFactory;
 import org.restlet.engine.ssl.SslContextFactory;
 import org.restlet.engine.ssl.SslUtils;
@@ -345,6 +348,47 @@ public class HttpClientHelper extends
         return new ThreadSafeClientConnManager(params, schemeRegistry);
     }
 
+    /**
+     * Creates the runtime metrics, sampling the connection manager for the open
+     * and idle connections. The idle connections and the calls waiting for a
+     * connection, reported as queued workers, are only available with a
+     * pooling connection manager.
+     * 
+     * @return The new runtime metrics.
+     */
+    @Override
+    protected ConnectorMetrics createMetrics() {
+        return new ConnectorMetrics() {
+            @Override
+            public int getIdleConnections() {
+                PoolStats stats = getPoolStats();
+                return (stats == null) ? -1 : stats.getAvailable();
+            }
+
+            @Override
+            public int getOpenConnections() {
+                int result = -1;
+                PoolStats stats = getPoolStats();
+
+                if (stats != null) {
+                    result = stats.getLeased() + stats.getAvailable();
+                } else if ((getHttpClient() != null)
+                        && (getHttpClient().getConnectionManager() instanceof ThreadSafeClientConnManager)) {
+                    result = ((ThreadSafeClientConnManager) getHttpClient()
+                            .getConnectionManager()).getConnectionsInPool();
+                }
+
+                return result;
+            }
+
+            @Override
+            public int getWorkersQueued() {
+                PoolStats stats = getPoolStats();
+                return (stats == null) ? -1 : stats.getPending();
+            }
+        };
+    }
+
     /**
      * Returns the class name of the hostname verifier to use instead of HTTP
      * Client default behavior. The given class name must implement
@@ -414,6 +458,25 @@ public class HttpClientHelper extends
                 "maxTotalConnections", "20"));
     }
 
+    /**
+     * Returns the statistics of the connection pool if the connection manager
+     * is a pooling one.
+     * 
+     * @return The statistics of the connection pool or null.
+     */
+    @SuppressWarnings("rawtypes")
+    private PoolStats getPoolStats() {
+        PoolStats result = null;
+
+        if ((getHttpClient() != null)
+                && (getHttpClient().getConnectionManager() instanceof ConnPoolControl)) {
+            result = ((ConnPoolControl) getHttpClient().getConnectionManager())
+                    .getTotalStats();
+        }
+
+        return result;
+    }
+
     /**
      * Returns the host name of the HTTP proxy, if specified.
      * 
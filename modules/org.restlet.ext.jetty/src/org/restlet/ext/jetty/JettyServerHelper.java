@@ -37,22 +37,30 @@ import java.io.IOException;
 import java.net.Socket;
 import java.util.Arrays;
 import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 
 import org.eclipse.jetty.io.ArrayByteBufferPool;
 import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.server.AbstractConnector;
 import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.HttpChannel;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.LowResourceMonitor;
 import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.ExecutorThreadPool;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.eclipse.jetty.util.thread.ThreadPool;
 import org.restlet.Server;
+import org.restlet.engine.connector.ConnectorMetrics;
+import org.restlet.engine.log.LoggingThreadFactory;
 import org.restlet.ext.jetty.internal.JettyServerCall;
 
 /**
@@ -98,6 +106,14 @@ import org.restlet.ext.jetty.internal.JettyServerCall;
  * the service to shutdown</td>
  * </tr>
  * <tr>
+ * <td>threadPool.virtualThreads</td>
+ * <td>boolean</td>
+ * <td>false</td>
+ * <td>Thread pool creating virtual threads when supported by the Java runtime
+ * (Java SE 21 and above); the max threads parameter then limits the number of
+ * concurrent virtual threads and can be raised to several thousands</td>
+ * </tr>
+ * <tr>
  * <td>connector.acceptors</td>
  * <td>int</td>
  * <td>-1</td>
@@ -325,6 +341,19 @@ public abstract class JettyServerHelper extends
         connector.setSoLingerTime(getConnectorSoLingerTime());
         connector.setStopTimeout(getConnectorStopTimeout());
 
+        // Count the connections and the bytes exchanged
+        connector.addBean(new Connection.Listener() {
+            public void onClosed(Connection connection) {
+                getMetrics().onBytesRead(connection.getBytesIn());
+                getMetrics().onBytesWritten(connection.getBytesOut());
+                getMetrics().onConnectionClosed();
+            }
+
+            public void onOpened(Connection connection) {
+                getMetrics().onConnectionOpened();
+            }
+        });
+
         return connector;
     }
 
@@ -359,6 +388,61 @@ public abstract class JettyServerHelper extends
         return null;
     }
 
+    /**
+     * Creates the runtime metrics, sampling the Jetty connector for the open
+     * connections and the Jetty thread pool for the active and queued workers.
+     * The bytes exchanged on a connection are counted when it is closed, if
+     * reported by the Jetty connection.
+     * 
+     * @return The new runtime metrics.
+     */
+    @Override
+    protected ConnectorMetrics createMetrics() {
+        return new ConnectorMetrics() {
+            @Override
+            public int getOpenConnections() {
+                int result = -1;
+                org.eclipse.jetty.server.Server server = wrappedServer;
+
+                if ((server != null) && (server.getConnectors().length > 0)
+                        && (server.getConnectors()[0] instanceof AbstractConnector)) {
+                    result = ((AbstractConnector) server.getConnectors()[0])
+                            .getConnectedEndPoints().size();
+                }
+
+                return result;
+            }
+
+            @Override
+            public int getWorkersActive() {
+                int result = -1;
+                org.eclipse.jetty.server.Server server = wrappedServer;
+
+                if (server != null) {
+                    ThreadPool threadPool = server.getThreadPool();
+                    result = threadPool.getThreads()
+                            - threadPool.getIdleThreads();
+                }
+
+                return result;
+            }
+
+            @Override
+            public int getWorkersQueued() {
+                int result = -1;
+                org.eclipse.jetty.server.Server server = wrappedServer;
+
+                if ((server != null)
+                        && (server.getThreadPool() instanceof QueuedThreadPool)) {
+                    result = ((QueuedThreadPool) server.getThreadPool())
+                            .getQueueSize();
+                }
+
+                return result;
+            }
+        };
+    }
+
     /**
      * Creates a Jetty server.
      * 
@@ -389,13 +473,35 @@ public abstract class JettyServerHelper extends
      * @return A Jetty thread pool.
      */
     private ThreadPool createThreadPool() {
-        final QueuedThreadPool threadPool = new QueuedThreadPool();
-        threadPool.setMinThreads(getThreadPoolMinThreads());
-        threadPool.setMaxThreads(getThreadPoolMaxThreads());
-        threadPool.setThreadsPriority(getThreadPoolThreadsPriority());
-        threadPool.setIdleTimeout(getThreadPoolIdleTimeout());
-        threadPool.setStopTimeout(getThreadPoolStopTimeout());
-        return threadPool;
+        ThreadPool result = null;
+
+        if (getThreadPoolVirtualThreads()) {
+            final LoggingThreadFactory threadFactory = new LoggingThreadFactory(
+                    getLogger(), true, true);
+
+            if (threadFactory.isVirtual()) {
+                // Blocked virtual threads don't hold OS threads, so the pool
+                // only limits the number of concurrent tasks
+                final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                        getThreadPoolMaxThreads(), getThreadPoolMaxThreads(),
+                        getThreadPoolIdleTimeout(), TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<Runnable>(), threadFactory);
+                executor.allowCoreThreadTimeOut(true);
+                result = new ExecutorThreadPool(executor);
+            }
+        }
+
+        if (result == null) {
+            final QueuedThreadPool threadPool = new QueuedThreadPool();
+            threadPool.setMinThreads(getThreadPoolMinThreads());
+            threadPool.setMaxThreads(getThreadPoolMaxThreads());
+            threadPool.setThreadsPriority(getThreadPoolThreadsPriority());
+            threadPool.setIdleTimeout(getThreadPoolIdleTimeout());
+            threadPool.setStopTimeout(getThreadPoolStopTimeout());
+            result = threadPool;
+        }
+
+        return result;
     }
 
     /**
@@ -681,6 +787,17 @@ public abstract class JettyServerHelper extends
                 String.valueOf(Thread.NORM_PRIORITY)));
     }
 
+    /**
+     * Thread pool creating virtual threads when supported by the Java runtime.
+     * Defaults to false.
+     * 
+     * @return Thread pool creating virtual threads.
+     */
+    public boolean getThreadPoolVirtualThreads() {
+        return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
+                "threadPool.virtualThreads", "false"));
+    }
+
     /**
      * Returns the wrapped Jetty server.
      * 
@@ -54,7 +54,9 @@ import org.restlet.data.Status;
 import org.restlet.engine.Engine;
 import org.restlet.engine.connector.ConnectorHelper;
 import org.restlet.engine.log.LoggingThreadFactory;
+import org.restlet.engine.util.CallTimings;
 import org.restlet.ext.nio.internal.controller.ConnectionController;
+import org.restlet.ext.nio.internal.util.AdmissionController;
 
 /**
  * Base connector helper. Here is the list of parameters that are supported.
@@ -121,7 +123,9 @@ import org.restlet.ext.nio.internal.controller.ConnectionController;
  * <td>int</td>
  * <td>60 000</td>
  * <td>Maximum time for an idle IO connection or request to wait for an
- * operation before being closed. For an unlimited wait, use '0' as value.</td>
+ * operation before being closed. For an unlimited wait, use '0' as value.
+ * Connections sending a non-blocking entity that waits for new content, such
+ * as an event stream, aren't closed.</td>
  * </tr>
  * <tr>
  * <td>maxThreadIdleTimeMs</td>
@@ -136,6 +140,15 @@ import org.restlet.ext.nio.internal.controller.ConnectionController;
  * <td>Indicates if all messages should be printed on the standard console.</td>
  * </tr>
  * <tr>
+ * <td>wireCaptureSize</td>
+ * <td>int</td>
+ * <td>0</td>
+ * <td>Size in bytes of the ring buffer capturing the last bytes exchanged on
+ * each connection, along with its state transitions. The capture is logged when
+ * a connection fails and can be dumped with a {@link WireCaptureRestlet}. The
+ * default value disables the capture.</td>
+ * </tr>
+ * <tr>
  * <td>workerThreads</td>
  * <td>boolean</td>
  * <td>true</td>
@@ -165,6 +178,15 @@ import org.restlet.ext.nio.internal.controller.ConnectionController;
  * use direct buffers.</td>
  * </tr>
  * <tr>
+ * <td>maxPooledBuffers</td>
+ * <td>int</td>
+ * <td>128</td>
+ * <td>Maximum number of byte buffers of a given size kept in the pools shared
+ * by the connections, such as the SSL packet buffers. The buffers released
+ * once a pool is full are dropped, so that the memory allocated during a
+ * connection spike can be reclaimed.</td>
+ * </tr>
+ * <tr>
  * <td>throttleTimeMs</td>
  * <td>int</td>
  * <td>0</td>
@@ -177,6 +199,16 @@ import org.restlet.ext.nio.internal.controller.ConnectionController;
  * <td>TCP</td>
  * <td>Indicates the transport protocol such as TCP or UDP.</td>
  * </tr>
+ * <tr>
+ * <td>virtualThreads</td>
+ * <td>boolean</td>
+ * <td>false</td>
+ * <td>Indicates if the worker service should create virtual threads instead of
+ * platform threads, when supported by the Java runtime (Java SE 21 and above).
+ * As blocked virtual threads don't hold an OS thread, the "maxThreads"
+ * parameter can then be raised to several thousands to serve slow blocking
+ * calls concurrently.</td>
+ * </tr>
  * </table>
  * 
  * @author Jerome Louvel
@@ -184,6 +216,9 @@ import org.restlet.ext.nio.internal.controller.ConnectionController;
 public abstract class BaseHelper<T extends Connector> extends
         ConnectorHelper<T> {
 
+    /** The admission controller of the worker service. */
+    private volatile AdmissionController admissionController;
+
     /** Indicates if it is helping a client connector. */
     protected final boolean clientSide;
 
@@ -244,6 +279,16 @@ public abstract class BaseHelper<T extends Connector> extends
         return result;
     }
 
+    /**
+     * Creates the admission controller of the worker service. Returns null by
+     * default.
+     * 
+     * @return The admission controller or null.
+     */
+    protected AdmissionController createAdmissionController() {
+        return null;
+    }
+
     /**
      * Creates a new controller.
      * 
@@ -291,7 +336,8 @@ public abstract class BaseHelper<T extends Connector> extends
 
         ThreadPoolExecutor result = new ThreadPoolExecutor(minThreads,
                 maxThreads, getMaxThreadIdleTimeMs(), TimeUnit.MILLISECONDS,
-                queue, new LoggingThreadFactory(getLogger(), true));
+                queue, new LoggingThreadFactory(getLogger(), true,
+                        isVirtualThreads()));
         result.setRejectedExecutionHandler(new RejectedExecutionHandler() {
             public void rejectedExecution(Runnable r,
                     ThreadPoolExecutor executor) {
@@ -377,6 +423,10 @@ public abstract class BaseHelper<T extends Connector> extends
             if (!getController().isOverloaded() && (getWorkerService() != null)
                     && !getWorkerService().isShutdown()
                     && getController().isRunning()) {
+                if (getAdmissionController() != null) {
+                    task = getAdmissionController().track(task);
+                }
+
                 getWorkerService().execute(task);
             }
         } catch (Exception e) {
@@ -388,6 +438,15 @@ public abstract class BaseHelper<T extends Connector> extends
         }
     }
 
+    /**
+     * Returns the admission controller of the worker service, if any.
+     * 
+     * @return The admission controller of the worker service or null.
+     */
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
     /**
      * Returns the controller task.
      * 
@@ -448,6 +507,17 @@ public abstract class BaseHelper<T extends Connector> extends
                 "maxIoIdleTimeMs", "60000"));
     }
 
+    /**
+     * Returns the maximum number of byte buffers of a given size kept in the
+     * pools shared by the connections.
+     * 
+     * @return The maximum number of pooled byte buffers of a given size.
+     */
+    public int getMaxPooledBuffers() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "maxPooledBuffers", "128"));
+    }
+
     /**
      * Returns the maximum number of calls that can be queued if there aren't
      * any worker thread available to service them. If the value is '0', then no
@@ -558,6 +628,18 @@ public abstract class BaseHelper<T extends Connector> extends
         return getHelpedParameters().getFirstValue("transport", "TCP");
     }
 
+    /**
+     * Returns the size in bytes of the ring buffer capturing the last bytes
+     * exchanged on each connection.
+     * 
+     * @return The size in bytes of the wire capture ring buffer or 0 if
+     *         disabled.
+     */
+    public int getWireCaptureSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "wireCaptureSize", "0"));
+    }
+
     /**
      * Returns the connection handler service.
      * 
@@ -588,8 +670,20 @@ public abstract class BaseHelper<T extends Connector> extends
             if (synchronous || !hasWorkerThreads()) {
                 doHandleInbound(response);
             } else {
+                final long queuedTime = System.nanoTime();
+
                 execute(new Runnable() {
                     public void run() {
+                        long queueWaitTime = System.nanoTime() - queuedTime;
+                        getMetrics().getQueueWaitTime().record(queueWaitTime);
+                        Request request = response.getRequest();
+
+                        if (isServerSide() && (request != null)
+                                && (request.getTimings() != null)) {
+                            request.getTimings().add(CallTimings.STAGE_QUEUE,
+                                    queueWaitTime);
+                        }
+
                         try {
                             doHandleInbound(response);
                         } finally {
@@ -704,6 +798,17 @@ public abstract class BaseHelper<T extends Connector> extends
                 "tracing", "false"));
     }
 
+    /**
+     * Indicates if the worker service should create virtual threads when
+     * supported by the Java runtime.
+     * 
+     * @return True if the worker service should create virtual threads.
+     */
+    public boolean isVirtualThreads() {
+        return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
+                "virtualThreads", "false"));
+    }
+
     /**
      * Indicates if the worker service is busy. This state is detected by
      * checking if the number of active task running is superior or equal to the
@@ -759,6 +864,7 @@ public abstract class BaseHelper<T extends Connector> extends
 
         if (hasWorkerThreads()) {
             this.workerService = createWorkerService();
+            this.admissionController = createAdmissionController();
         }
 
         this.controllerService.submit(this.controller);
@@ -798,6 +904,19 @@ public abstract class BaseHelper<T extends Connector> extends
                             + " current size, "
                             + getWorkerService().getLargestPoolSize()
                             + " largest size");
+
+            if (getAdmissionController() != null) {
+                getLogger()
+                        .fine("Worker service admission: "
+                                + (getAdmissionController()
+                                        .getAverageQueueWaitNanos() / 1000000)
+                                + " ms average queue wait, "
+                                + (getAdmissionController()
+                                        .getAverageServiceNanos() / 1000000)
+                                + " ms average service time, "
+                                + getAdmissionController().getShedCount()
+                                + " shed.");
+            }
         }
     }
 
@@ -440,11 +440,17 @@ public abstract class ClientConnectionHelper extends ConnectionHelper<Client> {
                 CountDownLatch latch = new CountDownLatch(1);
                 request.getAttributes().put(CONNECTOR_LATCH, latch);
 
-                // Add the message to the outbound queue for processing
-                addOutboundMessage(response);
+                long startTime = getMetrics().onRequestStarted();
 
-                // Await on the latch
-                latch.await();
+                try {
+                    // Add the message to the outbound queue for processing
+                    addOutboundMessage(response);
+
+                    // Await on the latch
+                    latch.await();
+                } finally {
+                    getMetrics().onRequestCompleted(startTime);
+                }
             } else {
                 // Add the message to the outbound queue for processing
                 addOutboundMessage(response);
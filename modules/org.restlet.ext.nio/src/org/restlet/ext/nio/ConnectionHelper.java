@@ -39,15 +39,23 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.nio.channels.SocketChannel;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 
 import org.restlet.Application;
 import org.restlet.Connector;
 import org.restlet.Context;
 import org.restlet.Response;
+import org.restlet.engine.connector.ConnectorMetrics;
+import org.restlet.ext.nio.internal.buffer.BufferPool;
 import org.restlet.ext.nio.internal.connection.Connection;
 import org.restlet.ext.nio.internal.connection.ConnectionPool;
 import org.restlet.ext.nio.internal.controller.ConnectionController;
+import org.restlet.ext.nio.internal.state.ConnectionState;
 import org.restlet.ext.nio.internal.way.InboundWay;
 import org.restlet.ext.nio.internal.way.OutboundWay;
 import org.restlet.routing.VirtualHost;
@@ -70,6 +78,14 @@ import org.restlet.routing.VirtualHost;
  * <td>Maximum number of concurrent connections per host (IP address).</td>
  * </tr>
  * <tr>
+ * <td>gatheringWrites</td>
+ * <td>boolean</td>
+ * <td>true</td>
+ * <td>Indicates if in-memory entities (string, byte array or buffering
+ * representations) should be written along with the message head using a
+ * single gathering write, without being copied into the IO buffer.</td>
+ * </tr>
+ * <tr>
  * <td>initialConnections</td>
  * <td>int</td>
  * <td>100</td>
@@ -162,12 +178,28 @@ import org.restlet.routing.VirtualHost;
  */
 public abstract class ConnectionHelper<T extends Connector> extends
         BaseHelper<T> {
+
+    /**
+     * The name of the connector context attribute referencing the helper when
+     * the wire capture is enabled.
+     */
+    public static final String WIRE_CAPTURE_HELPER = "org.restlet.ext.nio.wireCaptureHelper";
+
+    /** The pools of byte buffers shared by connections, by buffer size. */
+    private final ConcurrentMap<Integer, BufferPool> bufferPools;
+
     /** The connection pool. */
     private volatile ConnectionPool<T> connectionPool;
 
     /** The set of active connections. */
     private final List<Connection<T>> connections;
 
+    /** The number of completed SSL handshakes. */
+    private final AtomicLong sslHandshakeCount;
+
+    /** The number of completed SSL handshakes that resumed a session. */
+    private final AtomicLong sslResumptionCount;
+
     /**
      * Constructor.
      * 
@@ -178,8 +210,11 @@ public abstract class ConnectionHelper<T extends Connector> extends
      */
     public ConnectionHelper(T connector, boolean clientSide) {
         super(connector, clientSide);
+        this.bufferPools = new ConcurrentHashMap<Integer, BufferPool>();
         this.connections = new CopyOnWriteArrayList<Connection<T>>();
         this.connectionPool = null;
+        this.sslHandshakeCount = new AtomicLong();
+        this.sslResumptionCount = new AtomicLong();
     }
 
     /**
@@ -247,6 +282,7 @@ public abstract class ConnectionHelper<T extends Connector> extends
             result = createConnection(socketChannel, controller, socketAddress);
         }
 
+        getMetrics().onConnectionOpened();
         return result;
     }
 
@@ -285,6 +321,48 @@ public abstract class ConnectionHelper<T extends Connector> extends
             SocketChannel socketChannel, ConnectionController controller,
             InetSocketAddress socketAddress) throws IOException;
 
+    /**
+     * Creates the runtime metrics, sampling the connections for the open and
+     * idle ones, and the worker service for the active and queued workers.
+     * 
+     * @return The new runtime metrics.
+     */
+    @Override
+    protected ConnectorMetrics createMetrics() {
+        return new ConnectorMetrics() {
+            @Override
+            public int getIdleConnections() {
+                int result = 0;
+
+                for (Connection<T> connection : getConnections()) {
+                    if ((connection.getState() == ConnectionState.OPEN)
+                            && connection.isEmpty()) {
+                        result++;
+                    }
+                }
+
+                return result;
+            }
+
+            @Override
+            public int getOpenConnections() {
+                return getConnections().size();
+            }
+
+            @Override
+            public int getWorkersActive() {
+                ThreadPoolExecutor workers = getWorkerService();
+                return (workers == null) ? 0 : workers.getActiveCount();
+            }
+
+            @Override
+            public int getWorkersQueued() {
+                ThreadPoolExecutor workers = getWorkerService();
+                return (workers == null) ? 0 : workers.getQueue().size();
+            }
+        };
+    }
+
     /**
      * Creates the connection pool.
      */
@@ -338,6 +416,30 @@ public abstract class ConnectionHelper<T extends Connector> extends
         }
     }
 
+    /**
+     * Returns the pool of byte buffers of the given size shared by all the
+     * connections, creating it if needed.
+     * 
+     * @param bufferSize
+     *            The size of the pooled byte buffers.
+     * @return The pool of byte buffers of the given size.
+     */
+    public BufferPool getBufferPool(int bufferSize) {
+        BufferPool result = this.bufferPools.get(bufferSize);
+
+        if (result == null) {
+            BufferPool pool = new BufferPool(bufferSize, isDirectBuffers(),
+                    getMaxPooledBuffers());
+            result = this.bufferPools.putIfAbsent(bufferSize, pool);
+
+            if (result == null) {
+                result = pool;
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns the connection pool.
      * 
@@ -431,6 +533,25 @@ public abstract class ConnectionHelper<T extends Connector> extends
 
     }
 
+    /**
+     * Returns the number of completed SSL handshakes, including resumed ones.
+     * 
+     * @return The number of completed SSL handshakes.
+     */
+    public long getSslHandshakeCount() {
+        return this.sslHandshakeCount.get();
+    }
+
+    /**
+     * Returns the number of completed SSL handshakes that resumed a cached
+     * session instead of negotiating a new one.
+     * 
+     * @return The number of completed SSL handshakes that resumed a session.
+     */
+    public long getSslResumptionCount() {
+        return this.sslResumptionCount.get();
+    }
+
     /**
      * Returns the type of service to set in IP packets.
      * 
@@ -442,6 +563,17 @@ public abstract class ConnectionHelper<T extends Connector> extends
 
     }
 
+    /**
+     * Indicates if in-memory entities should be written along with the message
+     * head using a single gathering write.
+     * 
+     * @return True if gathering writes should be used.
+     */
+    public boolean isGatheringWrites() {
+        return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
+                "gatheringWrites", "true"));
+    }
+
     /**
      * Indicates if persistent connections should be used if possible.
      * 
@@ -528,4 +660,34 @@ public abstract class ConnectionHelper<T extends Connector> extends
         return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
                 "socketReuseAddress", "true"));
     }
+
+    /**
+     * Called back by SSL connections when a handshake is finished.
+     * 
+     * @param resumed
+     *            True if a cached SSL session was resumed.
+     */
+    public void onSslHandshakeFinished(boolean resumed) {
+        long handshakes = this.sslHandshakeCount.incrementAndGet();
+        long resumptions = resumed ? this.sslResumptionCount.incrementAndGet()
+                : this.sslResumptionCount.get();
+
+        if (getLogger().isLoggable(Level.FINE)) {
+            getLogger().fine(
+                    "SSL handshake finished (" + (resumed ? "resumed" : "full")
+                            + "). Total handshakes: " + handshakes
+                            + ", resumptions: " + resumptions);
+        }
+    }
+
+    @Override
+    public void start() throws Exception {
+        if ((getWireCaptureSize() > 0) && (getHelped().getContext() != null)) {
+            // Let the wire captures be dumped from the connector's context
+            getHelped().getContext().getAttributes()
+                    .put(WIRE_CAPTURE_HELPER, this);
+        }
+
+        super.start();
+    }
 }
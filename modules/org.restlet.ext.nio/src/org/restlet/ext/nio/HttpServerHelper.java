@@ -40,15 +40,63 @@ import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Server;
 import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.util.StringUtils;
 import org.restlet.ext.nio.internal.connection.Connection;
 import org.restlet.ext.nio.internal.request.HttpInboundRequest;
+import org.restlet.ext.nio.internal.way.Http2ServerInboundWay;
+import org.restlet.ext.nio.internal.way.Http2ServerOutboundWay;
 import org.restlet.ext.nio.internal.way.HttpServerInboundWay;
 import org.restlet.ext.nio.internal.way.HttpServerOutboundWay;
 import org.restlet.ext.nio.internal.way.InboundWay;
 import org.restlet.ext.nio.internal.way.OutboundWay;
 
 /**
- * HTTP server helper based on NIO blocking sockets.
+ * HTTP server helper based on NIO blocking sockets. Here is the list of
+ * additional parameters that are supported. They should be set in the Server's
+ * context before it is started:
+ * <table>
+ * <tr>
+ * <th>Parameter name</th>
+ * <th>Value type</th>
+ * <th>Default value</th>
+ * <th>Description</th>
+ * </tr>
+ * <tr>
+ * <td>http2</td>
+ * <td>boolean</td>
+ * <td>false</td>
+ * <td>Indicates if cleartext HTTP/2 (h2c) connections are accepted, either
+ * started with the HTTP/2 connection preface or upgraded from an HTTP/1.1
+ * request without entity via the "Upgrade: h2c" header. Concurrent requests
+ * are then multiplexed on a single connection with compressed headers. Only
+ * used by the HTTP protocol.</td>
+ * </tr>
+ * <tr>
+ * <td>http2MaxConcurrentStreams</td>
+ * <td>int</td>
+ * <td>100</td>
+ * <td>Maximum number of concurrent requests (streams) per HTTP/2 connection.
+ * Additional streams are refused.</td>
+ * </tr>
+ * <tr>
+ * <td>webSocketMaxMessageSize</td>
+ * <td>int</td>
+ * <td>1048576</td>
+ * <td>Maximum size in bytes of a message received on a WebSocket connection,
+ * including all its fragments. Larger messages close the WebSocket with a 1009
+ * (Message Too Big) status code.</td>
+ * </tr>
+ * <tr>
+ * <td>webSocketMaxPendingSize</td>
+ * <td>int</td>
+ * <td>4194304</td>
+ * <td>Maximum size in bytes of the messages waiting to be sent on a WebSocket
+ * connection, for example because the client reads slowly. Sending more
+ * messages fails with an IOException until the queued ones are written.</td>
+ * </tr>
+ * </table>
  * 
  * @author Jerome Louvel
  */
@@ -88,7 +136,11 @@ public class HttpServerHelper extends ServerConnectionHelper {
                 .getInboundWay();
         Response nextResponse = inboundWay.getMessages().peek();
 
-        if (nextResponse != null) {
+        if ((inboundWay instanceof Http2ServerInboundWay)
+                && (((Http2ServerInboundWay) inboundWay).getSession() != null)) {
+            // HTTP/2 responses can be sent in any order
+            result = true;
+        } else if (nextResponse != null) {
             if (nextResponse.getRequest() == response.getRequest()) {
                 result = true;
             } else {
@@ -116,13 +168,27 @@ public class HttpServerHelper extends ServerConnectionHelper {
     @Override
     public InboundWay createInboundWay(Connection<Server> connection,
             int bufferSize) {
-        return new HttpServerInboundWay(connection, bufferSize);
+        return isHttp2() ? new Http2ServerInboundWay(connection, bufferSize,
+                getHttp2MaxConcurrentStreams()) : new HttpServerInboundWay(
+                connection, bufferSize);
     }
 
     @Override
     public OutboundWay createOutboundWay(Connection<Server> connection,
             int bufferSize) {
-        return new HttpServerOutboundWay(connection, bufferSize);
+        return isHttp2() ? new Http2ServerOutboundWay(connection, bufferSize)
+                : new HttpServerOutboundWay(connection, bufferSize);
+    }
+
+    @Override
+    protected byte[] createShedResponse() {
+        Status status = Status.SERVER_ERROR_SERVICE_UNAVAILABLE;
+        return StringUtils.getLatin1Bytes("HTTP/1.1 " + status.getCode() + " "
+                + status.getReasonPhrase() + "\r\n"
+                + HeaderConstants.HEADER_RETRY_AFTER + ": "
+                + getRetryAfterSec() + "\r\n"
+                + HeaderConstants.HEADER_CONTENT_LENGTH + ": 0\r\n"
+                + HeaderConstants.HEADER_CONNECTION + ": close\r\n\r\n");
     }
 
     @Override
@@ -132,4 +198,48 @@ public class HttpServerHelper extends ServerConnectionHelper {
                 resourceUri, protocol);
     }
 
+    /**
+     * Returns the maximum number of concurrent streams per HTTP/2 connection.
+     * 
+     * @return The maximum number of concurrent streams per HTTP/2 connection.
+     */
+    public int getHttp2MaxConcurrentStreams() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "http2MaxConcurrentStreams", "100"));
+    }
+
+    /**
+     * Returns the maximum size of a message received on a WebSocket
+     * connection.
+     * 
+     * @return The maximum size of a message received on a WebSocket
+     *         connection.
+     */
+    public int getWebSocketMaxMessageSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "webSocketMaxMessageSize", "1048576"));
+    }
+
+    /**
+     * Returns the maximum size of the messages waiting to be sent on a
+     * WebSocket connection.
+     * 
+     * @return The maximum size of the messages waiting to be sent on a
+     *         WebSocket connection.
+     */
+    public int getWebSocketMaxPendingSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "webSocketMaxPendingSize", "4194304"));
+    }
+
+    /**
+     * Indicates if cleartext HTTP/2 connections are accepted.
+     * 
+     * @return True if cleartext HTTP/2 connections are accepted.
+     */
+    public boolean isHttp2() {
+        return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
+                "http2", "false"));
+    }
+
 }
@@ -38,7 +38,6 @@ import java.net.InetSocketAddress;
 import java.nio.channels.SocketChannel;
 
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLEngine;
 
 import org.restlet.Client;
 import org.restlet.data.Protocol;
@@ -97,18 +96,8 @@ public class HttpsClientHelper extends ClientConnectionHelper {
     public Connection<Client> createConnection(SocketChannel socketChannel,
             ConnectionController controller, InetSocketAddress socketAddress)
             throws IOException {
-        // Create the SSL engine
-        SSLEngine engine;
-
-        if (socketAddress != null) {
-            engine = getSslContext().createSSLEngine(
-                    socketAddress.getHostName(), socketAddress.getPort());
-        } else {
-            engine = getSslContext().createSSLEngine();
-        }
-
         return new SslConnection<Client>(this, socketChannel, controller,
-                socketAddress, engine);
+                socketAddress, getSslContext());
     }
 
     @Override
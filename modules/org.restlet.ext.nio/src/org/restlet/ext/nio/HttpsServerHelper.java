@@ -38,7 +38,7 @@ import java.net.InetSocketAddress;
 import java.nio.channels.SocketChannel;
 
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSessionContext;
 
 import org.restlet.Request;
 import org.restlet.Server;
@@ -73,9 +73,28 @@ import org.restlet.ext.nio.internal.way.OutboundWay;
  * parameter, or an instance as an attribute for a more complete and flexible
  * SSL context setting.</td>
  * </tr>
+ * <tr>
+ * <td>sslSessionCacheSize</td>
+ * <td>int</td>
+ * <td>-1</td>
+ * <td>Maximum number of SSL sessions cached for resumption by returning
+ * clients, or 0 for no limit. A negative value keeps the default of the SSL
+ * context.</td>
+ * </tr>
+ * <tr>
+ * <td>sslSessionTimeoutSec</td>
+ * <td>int</td>
+ * <td>-1</td>
+ * <td>Time in seconds before a cached SSL session expires and can't be resumed
+ * anymore, or 0 for no limit. A negative value keeps the default of the SSL
+ * context.</td>
+ * </tr>
  * </table>
  * For the default SSL parameters see the Javadocs of the
- * {@link DefaultSslContextFactory} class.
+ * {@link DefaultSslContextFactory} class. Resuming cached sessions saves the
+ * costly key exchange of full handshakes. The number of handshakes and
+ * resumptions is reported by {@link #getSslHandshakeCount()} and
+ * {@link #getSslResumptionCount()}.
  * 
  * @author Jerome Louvel
  */
@@ -98,18 +117,8 @@ public class HttpsServerHelper extends HttpServerHelper {
     public Connection<Server> createConnection(SocketChannel socketChannel,
             ConnectionController controller, InetSocketAddress socketAddress)
             throws IOException {
-        // Create the SSL engine
-        SSLEngine engine;
-
-        if (socketAddress != null) {
-            engine = getSslContext().createSSLEngine(
-                    socketAddress.getHostName(), socketAddress.getPort());
-        } else {
-            engine = getSslContext().createSSLEngine();
-        }
-
         return new SslConnection<Server>(this, socketChannel, controller,
-                socketAddress, engine);
+                socketAddress, getSslContext());
     }
 
     @Override
@@ -140,6 +149,28 @@ public class HttpsServerHelper extends HttpServerHelper {
         return sslContext;
     }
 
+    /**
+     * Returns the maximum number of SSL sessions cached for resumption, 0 for
+     * no limit or a negative value to keep the SSL context default.
+     * 
+     * @return The maximum number of SSL sessions cached for resumption.
+     */
+    public int getSslSessionCacheSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "sslSessionCacheSize", "-1"));
+    }
+
+    /**
+     * Returns the time in seconds before a cached SSL session expires, 0 for
+     * no limit or a negative value to keep the SSL context default.
+     * 
+     * @return The time in seconds before a cached SSL session expires.
+     */
+    public int getSslSessionTimeoutSec() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "sslSessionTimeoutSec", "-1"));
+    }
+
     /**
      * Sets the SSL context.
      * 
@@ -154,6 +185,21 @@ public class HttpsServerHelper extends HttpServerHelper {
     public synchronized void start() throws Exception {
         SslContextFactory factory = SslUtils.getSslContextFactory(this);
         setSslContext(factory.createSslContext());
+
+        // Configure the cache of SSL sessions available for resumption
+        SSLSessionContext sessionContext = getSslContext()
+                .getServerSessionContext();
+
+        if (sessionContext != null) {
+            if (getSslSessionCacheSize() >= 0) {
+                sessionContext.setSessionCacheSize(getSslSessionCacheSize());
+            }
+
+            if (getSslSessionTimeoutSec() >= 0) {
+                sessionContext.setSessionTimeout(getSslSessionTimeoutSec());
+            }
+        }
+
         super.start();
     }
 
@@ -37,18 +37,36 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 
 import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Server;
 import org.restlet.data.Status;
+import org.restlet.engine.log.LoggingThreadFactory;
+import org.restlet.engine.util.CallTimings;
+import org.restlet.ext.nio.internal.buffer.Buffer;
+import org.restlet.ext.nio.internal.channel.WritableSocketChannel;
 import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.controller.Acceptor;
 import org.restlet.ext.nio.internal.controller.ConnectionController;
 import org.restlet.ext.nio.internal.controller.ServerConnectionController;
 import org.restlet.ext.nio.internal.request.InboundRequest;
+import org.restlet.ext.nio.internal.util.AdmissionController;
 
 /**
  * Base server helper based on NIO non blocking sockets. Here is the list of
@@ -62,6 +80,63 @@ import org.restlet.ext.nio.internal.request.InboundRequest;
  * <th>Description</th>
  * </tr>
  * <tr>
+ * <td>acceptBacklog</td>
+ * <td>int</td>
+ * <td>0</td>
+ * <td>Maximum number of pending connections queued by the operating system on
+ * each server socket before being accepted. For the system default, use '0'
+ * as value.</td>
+ * </tr>
+ * <tr>
+ * <td>acceptBatchSize</td>
+ * <td>int</td>
+ * <td>1</td>
+ * <td>Maximum number of new connections accepted or registered by the
+ * controller per iteration of its loop. Raising it accepts connection bursts
+ * faster, while keeping it low prevents a connection storm from delaying the
+ * IO processing of established connections.</td>
+ * </tr>
+ * <tr>
+ * <td>acceptorThreads</td>
+ * <td>int</td>
+ * <td>0</td>
+ * <td>Number of dedicated threads accepting new connections and configuring
+ * their sockets before handing them to the controller. When greater than 1
+ * and the SO_REUSEPORT socket option is supported (Linux with Java SE 9 and
+ * above), each thread listens on its own server socket bound to the same port
+ * so that the operating system balances the incoming connections between
+ * them. Otherwise, the threads share a single server socket. For accepting
+ * connections on the controller thread, use '0' as value.</td>
+ * </tr>
+ * <tr>
+ * <td>maxQueueWaitTimeMs</td>
+ * <td>int</td>
+ * <td>0</td>
+ * <td>Maximum time that a new request is expected to wait for a worker thread
+ * before being rejected with a "503 Service Unavailable" status. The expected
+ * time is estimated from the observed queue wait and service times. Rejected
+ * requests are answered directly by the controller thread, using a pre-encoded
+ * response when the protocol and the connection allow it. For no limit, use
+ * '0' as value.</td>
+ * </tr>
+ * <tr>
+ * <td>retryAfterSec</td>
+ * <td>int</td>
+ * <td>1</td>
+ * <td>Delay in seconds suggested to clients via the "Retry-After" header when
+ * a request is rejected due to the "maxQueueWaitTimeMs" parameter.</td>
+ * </tr>
+ * <tr>
+ * <td>timings</td>
+ * <td>boolean</td>
+ * <td>false</td>
+ * <td>Indicates if the time spent by calls in each processing stage, from the
+ * parsing of the request head to the writing of the response, is measured.
+ * The timings are returned in a "Server-Timing" response header, added to the
+ * access log entries and recorded in the metrics of the connector. See
+ * {@link CallTimings}.</td>
+ * </tr>
+ * <tr>
  * <td>useForwardedForHeader</td>
  * <td>boolean</td>
  * <td>false</td>
@@ -84,9 +159,49 @@ import org.restlet.ext.nio.internal.request.InboundRequest;
  */
 public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
 
+    /**
+     * Returns the SO_REUSEPORT socket option if supported by the Java runtime
+     * and the operating system, using reflection as it was introduced in Java
+     * SE 9.
+     * 
+     * @return The SO_REUSEPORT socket option or null.
+     */
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> getReusePortOption() {
+        SocketOption<Boolean> result = null;
+
+        if (System.getProperty("os.name", "").toLowerCase().contains("linux")) {
+            try {
+                result = (SocketOption<Boolean>) Class
+                        .forName("java.net.StandardSocketOptions")
+                        .getField("SO_REUSEPORT").get(null);
+            } catch (Exception e) {
+                // SO_REUSEPORT isn't supported
+                result = null;
+            }
+        }
+
+        return result;
+    }
+
+    /** The service running the acceptor threads. */
+    private volatile ExecutorService acceptorService;
+
+    /** The queued responses claimed by their connection, to be skipped. */
+    private final Set<Response> claimedResponses;
+
+    /** The first queued response of each request, guarded by itself. */
+    private final Map<Request, Response> queuedResponses;
+
     /** The server socket channel. */
     private volatile ServerSocketChannel serverSocketChannel;
 
+    /** The server socket channels, bound to the same port. */
+    private volatile List<ServerSocketChannel> serverSocketChannels;
+
+    /** The pre-encoded response sent when rejecting requests. */
+    private volatile byte[] shedResponse;
+
     /**
      * Constructor.
      * 
@@ -95,11 +210,26 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
      */
     public ServerConnectionHelper(Server server) {
         super(server, false);
+        this.claimedResponses = new HashSet<Response>();
+        this.queuedResponses = new HashMap<Request, Response>();
 
         // Clear the ephemeral port
         getAttributes().put("ephemeralPort", -1);
     }
 
+    /**
+     * Adds a response to the outbound queue, indexing it by request so that
+     * its connection can claim it via {@link #pollOutboundMessage(Request)}.
+     * 
+     * @param response
+     *            The response to add.
+     */
+    @Override
+    public void addOutboundMessage(Response response) {
+        index(response);
+        super.addOutboundMessage(response);
+    }
+
     /**
      * Indicates if the connection can handle the given response at this point
      * in time.
@@ -115,6 +245,12 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
     protected abstract boolean canHandle(Connection<Server> connection,
             Response response) throws IOException;
 
+    @Override
+    protected AdmissionController createAdmissionController() {
+        return (getMaxQueueWaitTimeMs() > 0) ? new AdmissionController(
+                getMaxQueueWaitTimeMs()) : null;
+    }
+
     @Override
     public Connection<Server> createConnection(SocketChannel socketChannel,
             ConnectionController controller, InetSocketAddress socketAddress)
@@ -152,6 +288,24 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
      */
     protected ServerSocketChannel createServerSocketChannel()
             throws IOException {
+        return createServerSocketChannel(createSocketAddress(), null);
+    }
+
+    /**
+     * Create a server socket channel and bind it to the given address,
+     * optionally enabling the SO_REUSEPORT socket option so that several
+     * channels can be bound to the same port.
+     * 
+     * @param socketAddress
+     *            The socket address to bind.
+     * @param reusePort
+     *            The SO_REUSEPORT socket option to enable or null.
+     * @return Bound server socket channel.
+     * @throws IOException
+     */
+    protected ServerSocketChannel createServerSocketChannel(
+            SocketAddress socketAddress, SocketOption<Boolean> reusePort)
+            throws IOException {
         ServerSocketChannel result = ServerSocketChannel.open();
 
         // Configure the server socket
@@ -159,12 +313,88 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
         socket.setReceiveBufferSize(getSocketReceiveBufferSize());
         socket.setReuseAddress(isSocketReuseAddress());
         socket.setSoTimeout(getMaxIoIdleTimeMs());
-        socket.bind(createSocketAddress());
 
-        result.configureBlocking(false);
+        if (reusePort != null) {
+            result.setOption(reusePort, Boolean.TRUE);
+        }
+
+        socket.bind(socketAddress, getAcceptBacklog());
+
+        // Acceptor threads block on the channel
+        result.configureBlocking(getAcceptorThreads() > 0);
         return result;
     }
 
+    /**
+     * Creates the server socket channels. A single channel is created unless
+     * several acceptor threads are requested and the SO_REUSEPORT socket option
+     * is supported, in which case each acceptor thread gets its own channel
+     * bound to the same port.
+     * 
+     * @return The bound server socket channels.
+     * @throws IOException
+     */
+    protected List<ServerSocketChannel> createServerSocketChannels()
+            throws IOException {
+        List<ServerSocketChannel> result = new ArrayList<ServerSocketChannel>();
+        SocketOption<Boolean> reusePort = (getAcceptorThreads() > 1) ? getReusePortOption()
+                : null;
+
+        if (reusePort != null) {
+            ServerSocketChannel probe = ServerSocketChannel.open();
+
+            try {
+                if (!probe.supportedOptions().contains(reusePort)) {
+                    reusePort = null;
+                }
+            } finally {
+                probe.close();
+            }
+        }
+
+        if (reusePort == null) {
+            result.add(createServerSocketChannel());
+        } else {
+            SocketAddress socketAddress = createSocketAddress();
+
+            try {
+                for (int i = 0; i < getAcceptorThreads(); i++) {
+                    ServerSocketChannel channel = createServerSocketChannel(
+                            socketAddress, reusePort);
+                    result.add(channel);
+
+                    if (i == 0) {
+                        // Bind the other channels to the same ephemeral port
+                        socketAddress = channel.socket()
+                                .getLocalSocketAddress();
+                    }
+                }
+            } catch (IOException ioe) {
+                for (ServerSocketChannel channel : result) {
+                    channel.close();
+                }
+
+                throw ioe;
+            }
+
+            getLogger().fine(
+                    result.size()
+                            + " server sockets bound with SO_REUSEPORT");
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates the pre-encoded response sent when rejecting requests. Returns
+     * null by default, in which case a regular response is sent.
+     * 
+     * @return The pre-encoded response or null.
+     */
+    protected byte[] createShedResponse() {
+        return null;
+    }
+
     /**
      * Creates a socket address to listen on.
      * 
@@ -204,7 +434,22 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
 
     @Override
     public void doHandleOutbound(Response response) {
+        boolean claimed = false;
+
         if (response != null) {
+            Request request = response.getRequest();
+
+            synchronized (this.queuedResponses) {
+                claimed = this.claimedResponses.remove(response);
+
+                if (!claimed
+                        && (this.queuedResponses.get(request) == response)) {
+                    this.queuedResponses.remove(request);
+                }
+            }
+        }
+
+        if ((response != null) && !claimed) {
             getLogger().finer("Handling response...");
             InboundRequest request = (InboundRequest) response.getRequest();
             Connection<Server> connection = request.getConnection();
@@ -216,6 +461,7 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
                         connection.getOutboundWay().handle(response);
                     } else {
                         // Put the response at the end of the queue
+                        index(response);
                         getOutboundMessages().add(response);
                         getController().wakeup();
                     }
@@ -232,13 +478,69 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
         }
     }
 
+    /**
+     * Returns the maximum number of pending connections queued by the
+     * operating system on each server socket. For the system default, use '0'
+     * as value.
+     * 
+     * @return The maximum number of pending connections.
+     */
+    public int getAcceptBacklog() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "acceptBacklog", "0"));
+    }
+
+    /**
+     * Returns the maximum number of new connections accepted or registered by
+     * the controller per iteration of its loop.
+     * 
+     * @return The maximum number of new connections per controller iteration.
+     */
+    public int getAcceptBatchSize() {
+        return Math.max(1, Integer.parseInt(getHelpedParameters()
+                .getFirstValue("acceptBatchSize", "1")));
+    }
+
+    /**
+     * Returns the number of dedicated threads accepting new connections, '0'
+     * when they are accepted by the controller thread.
+     * 
+     * @return The number of acceptor threads.
+     */
+    public int getAcceptorThreads() {
+        return Math.max(0, Integer.parseInt(getHelpedParameters()
+                .getFirstValue("acceptorThreads", "0")));
+    }
+
     @Override
     public ServerConnectionController getController() {
         return (ServerConnectionController) super.getController();
     }
 
     /**
-     * Returns the server socket channel.
+     * Returns the maximum time that a new request is expected to wait for a
+     * worker thread before being rejected. For no limit, use '0' as value.
+     * 
+     * @return The maximum queue wait time.
+     */
+    public int getMaxQueueWaitTimeMs() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "maxQueueWaitTimeMs", "0"));
+    }
+
+    /**
+     * Returns the delay in seconds suggested to clients when a request is
+     * rejected.
+     * 
+     * @return The delay in seconds suggested to clients.
+     */
+    public int getRetryAfterSec() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "retryAfterSec", "1"));
+    }
+
+    /**
+     * Returns the server socket channel, the first one if several are bound.
      * 
      * @return The server socket channel.
      */
@@ -246,9 +548,31 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
         return serverSocketChannel;
     }
 
+    /**
+     * Returns the server socket channels, bound to the same port.
+     * 
+     * @return The server socket channels.
+     */
+    public List<ServerSocketChannel> getServerSocketChannels() {
+        return (serverSocketChannels == null) ? Collections
+                .<ServerSocketChannel> emptyList() : serverSocketChannels;
+    }
+
+    /**
+     * Returns the number of requests rejected due to the worker service
+     * saturation.
+     * 
+     * @return The number of requests rejected.
+     */
+    public long getShedCount() {
+        return (getAdmissionController() == null) ? 0L
+                : getAdmissionController().getShedCount();
+    }
+
     /**
      * Handles a call by invoking the helped Server's
-     * {@link Server#handle(Request, Response)} method.
+     * {@link Server#handle(Request, Response)} method, measuring it via
+     * {@link #handleMeasured(Request, Response)}.
      * 
      * @param request
      *            The request to handle.
@@ -258,12 +582,19 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
     @Override
     public void handle(Request request, Response response) {
         super.handle(request, response);
-        getHelped().handle(request, response);
+        handleMeasured(request, response);
     }
 
     @Override
     protected void handleInbound(Response response) {
-        handleInbound(response, false);
+        if ((response != null)
+                && (getAdmissionController() != null)
+                && (getController().isOverloaded() || !getAdmissionController()
+                        .isAdmissible(getWorkerService()))) {
+            shed(response);
+        } else {
+            handleInbound(response, false);
+        }
     }
 
     @Override
@@ -271,6 +602,21 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
         handleOutbound(response, true);
     }
 
+    /**
+     * Indexes a response added to the outbound queue by request, unless a
+     * previous response of the same request is already indexed.
+     * 
+     * @param response
+     *            The queued response.
+     */
+    private void index(Response response) {
+        synchronized (this.queuedResponses) {
+            if (!this.queuedResponses.containsKey(response.getRequest())) {
+                this.queuedResponses.put(response.getRequest(), response);
+            }
+        }
+    }
+
     @Override
     public boolean isControllerDaemon() {
         return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
@@ -294,6 +640,29 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
                 "reuseAddress", "true"));
     }
 
+    /**
+     * Claims the response of a given request waiting in the outbound queue,
+     * so that its connection can write it right away. The claimed response is
+     * skipped when later polled from the outbound queue.
+     * 
+     * @param request
+     *            The request answered.
+     * @return The claimed response or null.
+     */
+    public Response pollOutboundMessage(Request request) {
+        Response result = null;
+
+        synchronized (this.queuedResponses) {
+            result = this.queuedResponses.remove(request);
+
+            if (result != null) {
+                this.claimedResponses.add(result);
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Sets the ephemeral port in the attributes map if necessary.
      * 
@@ -318,13 +687,80 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
         setEphemeralPort(socket.getLocalPort());
     }
 
+    /**
+     * Rejects a request because the worker service is saturated, directly from
+     * the controller thread. If possible, the pre-encoded response is written
+     * on the socket and the connection closed. Bytes left by a partial write
+     * are drained by the outbound way before the connection is closed.
+     * Otherwise a regular "503 Service Unavailable" response is committed.
+     * 
+     * @param response
+     *            The response of the rejected request.
+     */
+    protected void shed(Response response) {
+        long shedCount = getAdmissionController().onShed();
+
+        if (getLogger().isLoggable(Level.FINE)) {
+            getLogger().fine(
+                    "Worker service saturated. Request rejected, "
+                            + shedCount + " so far.");
+        }
+
+        Connection<Server> connection = ((InboundRequest) response
+                .getRequest()).getConnection();
+        ByteBuffer bytes = null;
+        int written = 0;
+
+        if ((this.shedResponse != null)
+                && (connection.getWritableSelectionChannel() instanceof WritableSocketChannel)
+                && connection.getOutboundWay().isAvailable()
+                && connection.getOutboundWay().isEmpty()) {
+            bytes = ByteBuffer.wrap(this.shedResponse);
+
+            try {
+                written = connection.getWritableSelectionChannel()
+                        .write(bytes);
+            } catch (IOException ioe) {
+                getLogger().log(Level.FINE,
+                        "Unable to write the pre-encoded response", ioe);
+            }
+        }
+
+        if ((bytes != null) && !bytes.hasRemaining()) {
+            connection.close(false);
+            getController().wakeup();
+        } else if (written > 0) {
+            // The response can't be replaced anymore, finish writing it
+            Buffer buffer = connection.getOutboundWay().getBuffer();
+            buffer.getLock().lock();
+
+            try {
+                buffer.fill(bytes);
+                buffer.flip();
+            } finally {
+                buffer.getLock().unlock();
+            }
+
+            connection.close(true);
+            getController().wakeup();
+        } else {
+            response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+            response.setRetryAfter(new Date(System.currentTimeMillis()
+                    + getRetryAfterSec() * 1000L));
+            response.setCommitted(true);
+            addOutboundMessage(response);
+        }
+    }
+
     @Override
     public synchronized void start() throws Exception {
-        // Create the server socket channel
-        this.serverSocketChannel = createServerSocketChannel();
+        // Create the server socket channels
+        this.serverSocketChannels = createServerSocketChannels();
+        this.serverSocketChannel = this.serverSocketChannels.get(0);
 
         // Sets the ephemeral port is necessary
         setEphemeralPort(this.serverSocketChannel.socket());
+        this.shedResponse = createShedResponse();
 
         // Start the controller
         getLogger().info(
@@ -343,18 +779,41 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
                             ex);
             stop();
         }
+
+        // Start the acceptor threads, sharing the channels
+        if (getAcceptorThreads() > 0) {
+            this.acceptorService = Executors.newFixedThreadPool(
+                    getAcceptorThreads(), new LoggingThreadFactory(getLogger(),
+                            isControllerDaemon()));
+
+            for (int i = 0; i < getAcceptorThreads(); i++) {
+                this.acceptorService.submit(new Acceptor(this,
+                        this.serverSocketChannels.get(i
+                                % this.serverSocketChannels.size())));
+            }
+        }
     }
 
     @Override
     public synchronized void stop() throws Exception {
         getLogger().info("Stopping the internal " + getProtocols() + " server");
 
+        // Stop accepting connections
+        if (this.acceptorService != null) {
+            for (ServerSocketChannel channel : getServerSocketChannels()) {
+                channel.close();
+            }
+
+            this.acceptorService.shutdownNow();
+            this.acceptorService = null;
+        }
+
         // Stop the controller
         super.stop();
 
-        // Close the server socket channel
-        if (getServerSocketChannel() != null) {
-            getServerSocketChannel().close();
+        // Close the server socket channels
+        for (ServerSocketChannel channel : getServerSocketChannels()) {
+            channel.close();
         }
 
         // Clear the ephemeral port
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio;
+
+import org.restlet.Connector;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.ext.nio.internal.connection.Connection;
+
+/**
+ * Restlet dumping the wire captures of the active connections of a NIO
+ * connector, as plain text. The "wireCaptureSize" parameter must be set on the
+ * connector. The optional "address" query parameter restricts the dump to the
+ * connections whose socket address contains its value.<br>
+ * <br>
+ * Note that the captures contain the raw messages, including credentials, so
+ * this Restlet should be guarded like any other administrative resource.
+ * 
+ * @see BaseHelper
+ */
+public class WireCaptureRestlet extends Restlet {
+
+    /** The connector whose connections are dumped. */
+    private final Connector connector;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param connector
+     *            The connector whose connections are dumped.
+     */
+    public WireCaptureRestlet(Context context, Connector connector) {
+        super(context);
+        this.connector = connector;
+    }
+
+    /**
+     * Returns the connector whose connections are dumped.
+     * 
+     * @return The connector whose connections are dumped.
+     */
+    public Connector getConnector() {
+        return connector;
+    }
+
+    @Override
+    public void handle(Request request, Response response) {
+        super.handle(request, response);
+        ConnectionHelper<?> helper = (getConnector().getContext() == null) ? null
+                : (ConnectionHelper<?>) getConnector().getContext()
+                        .getAttributes()
+                        .get(ConnectionHelper.WIRE_CAPTURE_HELPER);
+
+        if (!Method.GET.equals(request.getMethod())) {
+            response.setStatus(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED);
+            response.getAllowedMethods().add(Method.GET);
+        } else if (helper == null) {
+            response.setStatus(Status.CLIENT_ERROR_NOT_FOUND,
+                    "The wire capture isn't enabled on this connector");
+        } else {
+            String address = request.getResourceRef().getQueryAsForm()
+                    .getFirstValue("address");
+            StringBuilder sb = new StringBuilder();
+
+            for (Connection<?> connection : helper.getConnections()) {
+                String socketAddress = String.valueOf(connection
+                        .getSocketAddress());
+
+                if ((connection.getWireCapture() != null)
+                        && ((address == null) || socketAddress
+                                .contains(address))) {
+                    sb.append("=== ").append(socketAddress).append('\n');
+                    sb.append(connection.getWireCapture().dump()).append('\n');
+                }
+            }
+
+            if ((address != null) && (sb.length() == 0)) {
+                response.setStatus(Status.CLIENT_ERROR_NOT_FOUND,
+                        "No active connection matches " + address);
+            } else {
+                response.setEntity(sb.toString(), MediaType.TEXT_PLAIN);
+            }
+        }
+    }
+
+}
@@ -35,8 +35,11 @@ package org.restlet.ext.nio.internal.buffer;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
 import org.restlet.Context;
@@ -71,12 +74,18 @@ public class Buffer {
         return result;
     }
 
-    /** The byte buffer. */
-    private final ByteBuffer bytes;
+    /** The byte buffer, possibly borrowed from a pool. */
+    private volatile ByteBuffer bytes;
 
     /** The index of the buffer's beginning while filling. */
     private volatile int fillBegin;
 
+    /** The lock guarding the access to the byte buffer. */
+    private final Lock lock;
+
+    /** The optional pool from which the byte buffer is borrowed. */
+    private final BufferPool pool;
+
     /** The byte buffer IO state. */
     private volatile BufferState state;
 
@@ -99,12 +108,41 @@ public class Buffer {
      *            The initial byte buffer state.
      */
     public Buffer(ByteBuffer byteBuffer, BufferState byteBufferState) {
+        this(byteBuffer, byteBufferState, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param byteBuffer
+     *            The byte buffer wrapped or null if it must be borrowed from
+     *            the pool.
+     * @param byteBufferState
+     *            The initial byte buffer state.
+     * @param pool
+     *            The optional pool from which the byte buffer is borrowed.
+     */
+    private Buffer(ByteBuffer byteBuffer, BufferState byteBufferState,
+            BufferPool pool) {
         super();
         this.fillBegin = 0;
         this.bytes = byteBuffer;
+        this.lock = new ReentrantLock();
+        this.pool = pool;
         this.state = byteBufferState;
     }
 
+    /**
+     * Constructor. The byte buffer is lazily borrowed from the given pool and
+     * can be given back with {@link #release()} once empty.
+     * 
+     * @param pool
+     *            The pool from which the byte buffer is borrowed.
+     */
+    public Buffer(BufferPool pool) {
+        this(null, BufferState.FILLING, pool);
+    }
+
     /**
      * Constructor. Allocates a new non-direct byte buffer.
      * 
@@ -190,7 +228,11 @@ public class Buffer {
      */
     public void clear() {
         this.fillBegin = 0;
-        this.bytes.clear();
+
+        if (this.bytes != null) {
+            this.bytes.clear();
+        }
+
         this.state = BufferState.FILLING;
     }
 
@@ -329,6 +371,23 @@ public class Buffer {
         return builderState;
     }
 
+    /**
+     * Drains the byte buffer followed by an additional byte buffer by
+     * attempting to write as much as possible on the given channel with a
+     * single gathering write operation.
+     * 
+     * @param gbc
+     *            The gathering byte channel to write to.
+     * @param nextBuffer
+     *            The additional byte buffer to write after this one.
+     * @return The number of bytes written.
+     * @throws IOException
+     */
+    public long drain(GatheringByteChannel gbc, ByteBuffer nextBuffer)
+            throws IOException {
+        return gbc.write(new ByteBuffer[] { getBytes(), nextBuffer });
+    }
+
     /**
      * Drains the byte buffer by attempting to write as much as possible on the
      * given channel.
@@ -432,22 +491,43 @@ public class Buffer {
     }
 
     /**
-     * Returns the byte buffer.
+     * Returns the byte buffer. If the buffer is pooled and was released, a
+     * byte buffer is borrowed again from the pool while holding the
+     * {@link #getLock()} lock, so that concurrent callers share the same one.
      * 
      * @return The byte buffer.
      */
     public ByteBuffer getBytes() {
-        return bytes;
+        ByteBuffer result = this.bytes;
+
+        if ((result == null) && (this.pool != null)) {
+            getLock().lock();
+
+            try {
+                if (this.bytes == null) {
+                    this.bytes = this.pool.checkout();
+                }
+
+                result = this.bytes;
+            } finally {
+                getLock().unlock();
+            }
+        }
+
+        return result;
     }
 
     /**
-     * Returns the lock on which multiple thread can synchronize to ensure safe
-     * access to the underlying byte buffer which isn't thread safe.
+     * Returns the lock that multiple threads must acquire to ensure safe access
+     * to the underlying byte buffer which isn't thread safe. Contrary to an
+     * object monitor, a thread waiting while holding this lock, for example a
+     * virtual thread blocked on a selection registration, doesn't pin its
+     * carrier thread.
      * 
-     * @return The lock on which multiple thread can synchronize.
+     * @return The lock that multiple threads must acquire.
      */
-    public Object getLock() {
-        return this.bytes;
+    public Lock getLock() {
+        return this.lock;
     }
 
     /**
@@ -485,7 +565,8 @@ public class Buffer {
      * @return True if the buffer is empty.
      */
     public boolean isEmpty() {
-        return isFilling() ? (capacity() == remaining()) : !hasRemaining();
+        return (this.bytes == null)
+                || (isFilling() ? (capacity() == remaining()) : !hasRemaining());
     }
 
     /**
@@ -500,8 +581,7 @@ public class Buffer {
 
     /**
      * Processes as a loop the IO event by draining or filling the IO buffer.
-     * Note that synchronization of the {@link #getLock()} object is
-     * automatically made.
+     * Note that the {@link #getLock()} lock is automatically acquired.
      * 
      * @param processor
      *            The IO processor to callback.
@@ -518,7 +598,9 @@ public class Buffer {
             Object... args) throws IOException {
         int result = 0;
 
-        synchronized (getLock()) {
+        getLock().lock();
+
+        try {
             int totalFilled = 0;
             int drained = 0;
             int filled = 0;
@@ -650,11 +732,37 @@ public class Buffer {
             }
 
             processor.postProcess(result);
+        } finally {
+            getLock().unlock();
         }
 
         return result;
     }
 
+    /**
+     * Gives the byte buffer back to its pool if it is empty, so that other
+     * connections can borrow it meanwhile. Does nothing if the buffer isn't
+     * pooled or still contains bytes. Note that the {@link #getLock()} lock is
+     * automatically acquired.
+     */
+    public void release() {
+        if (this.pool != null) {
+            getLock().lock();
+
+            try {
+                if ((this.bytes != null) && isEmpty()) {
+                    ByteBuffer released = this.bytes;
+                    this.bytes = null;
+                    this.fillBegin = 0;
+                    this.state = BufferState.FILLING;
+                    this.pool.checkin(released);
+                }
+            } finally {
+                getLock().unlock();
+            }
+        }
+    }
+
     /**
      * Returns the number of bytes that can be read or written in the byte
      * buffer.
@@ -677,7 +785,8 @@ public class Buffer {
 
     @Override
     public String toString() {
-        return getBytes().toString() + ", " + getState() + ", " + isEmpty();
+        return ((this.bytes == null) ? "Released buffer" : this.bytes
+                .toString()) + ", " + getState() + ", " + isEmpty();
     }
 
 }
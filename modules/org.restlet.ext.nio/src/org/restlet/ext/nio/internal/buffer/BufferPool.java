@@ -0,0 +1,183 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.engine.util.Pool;
+
+/**
+ * Pool of byte buffers of the same size, shared by several connections. Byte
+ * buffers are only borrowed while they hold data, for example SSL packets
+ * waiting to be unwrapped or sent, so that idle connections don't retain them.
+ * The number of pooled byte buffers is bounded, so that the buffers created
+ * during a spike of connections are dropped when checked in again.
+ */
+public class BufferPool extends Pool<ByteBuffer> {
+
+    /** The size of the pooled byte buffers. */
+    private final int bufferSize;
+
+    /** Indicates if direct NIO buffers should be created. */
+    private final boolean direct;
+
+    /** The maximum number of pooled byte buffers. */
+    private final int maxPooled;
+
+    /** The number of pooled byte buffers. */
+    private final AtomicInteger pooled;
+
+    /**
+     * Constructor. The number of pooled byte buffers isn't bounded.
+     * 
+     * @param bufferSize
+     *            The size of the pooled byte buffers.
+     * @param direct
+     *            Indicates if direct NIO buffers should be created.
+     */
+    public BufferPool(int bufferSize, boolean direct) {
+        this(bufferSize, direct, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param bufferSize
+     *            The size of the pooled byte buffers.
+     * @param direct
+     *            Indicates if direct NIO buffers should be created.
+     * @param maxPooled
+     *            The maximum number of pooled byte buffers.
+     */
+    public BufferPool(int bufferSize, boolean direct, int maxPooled) {
+        super();
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.maxPooled = maxPooled;
+        this.pooled = new AtomicInteger();
+    }
+
+    /**
+     * Checks in a byte buffer into the pool, unless the pool is full in which
+     * case the byte buffer is dropped.
+     * 
+     * @param byteBuffer
+     *            The byte buffer to check in.
+     */
+    @Override
+    public void checkin(ByteBuffer byteBuffer) {
+        if (byteBuffer != null) {
+            if (this.pooled.incrementAndGet() <= getMaxPooled()) {
+                super.checkin(byteBuffer);
+            } else {
+                this.pooled.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Checks out a byte buffer from the pool. Creates a new one if the pool is
+     * empty.
+     * 
+     * @return A byte buffer from the pool.
+     */
+    @Override
+    public ByteBuffer checkout() {
+        ByteBuffer result = getStore().poll();
+
+        if (result == null) {
+            result = createObject();
+        } else {
+            this.pooled.decrementAndGet();
+        }
+
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        while (getStore().poll() != null) {
+            this.pooled.decrementAndGet();
+        }
+    }
+
+    @Override
+    protected void clear(ByteBuffer byteBuffer) {
+        byteBuffer.clear();
+    }
+
+    @Override
+    protected ByteBuffer createObject() {
+        return isDirect() ? ByteBuffer.allocateDirect(getBufferSize())
+                : ByteBuffer.allocate(getBufferSize());
+    }
+
+    /**
+     * Returns the size of the pooled byte buffers.
+     * 
+     * @return The size of the pooled byte buffers.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns the maximum number of pooled byte buffers.
+     * 
+     * @return The maximum number of pooled byte buffers.
+     */
+    public int getMaxPooled() {
+        return maxPooled;
+    }
+
+    /**
+     * Returns the number of pooled byte buffers.
+     * 
+     * @return The number of pooled byte buffers.
+     */
+    public int getPooled() {
+        return this.pooled.get();
+    }
+
+    /**
+     * Indicates if direct NIO buffers should be created.
+     * 
+     * @return True if direct NIO buffers should be created.
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.channel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.restlet.engine.io.ReadableSelectionChannel;
+import org.restlet.ext.nio.internal.connection.WireCapture;
+
+// [excludes gwt]
+/**
+ * Filter byte channel that records a copy of all data read into a wire
+ * capture.
+ */
+public class ReadableCaptureChannel extends
+        WrapperSelectionChannel<ReadableSelectionChannel> implements
+        ReadableSelectionChannel {
+
+    /** The wire capture. */
+    private final WireCapture wireCapture;
+
+    /**
+     * Constructor.
+     * 
+     * @param wrappedChannel
+     *            The wrapped channel.
+     * @param wireCapture
+     *            The wire capture.
+     */
+    public ReadableCaptureChannel(ReadableSelectionChannel wrappedChannel,
+            WireCapture wireCapture) {
+        super(wrappedChannel);
+        this.wireCapture = wireCapture;
+    }
+
+    /**
+     * Reads some bytes and records the ones put into the destination buffer.
+     * 
+     * @param dst
+     *            The destination buffer.
+     * @return The number of bytes read, or -1 if the end of the channel has
+     *         been reached.
+     */
+    public int read(ByteBuffer dst) throws IOException {
+        int oldPos = dst.position();
+        int result = getWrappedChannel().read(dst);
+
+        // We can't rely on the result variable because during SSL handshake,
+        // bytes might be read but never put into the destination buffer
+        this.wireCapture.captureInbound(dst, oldPos, dst.position());
+        return result;
+    }
+
+}
@@ -40,6 +40,7 @@ import java.util.logging.Level;
 import org.restlet.Context;
 import org.restlet.engine.io.ReadableSelectionChannel;
 import org.restlet.engine.io.WakeupListener;
+import org.restlet.engine.util.StringUtils;
 import org.restlet.ext.nio.internal.buffer.Buffer;
 import org.restlet.ext.nio.internal.buffer.BufferState;
 import org.restlet.ext.nio.internal.state.ChunkState;
@@ -166,48 +167,45 @@ public class ReadableChunkedChannel extends ReadableBufferedChannel {
 
             switch (getChunkState()) {
             case SIZE:
-                // Some bytes are available, fill the line builder
-                setLineBuilderState(buffer.drain(getLineBuilder(),
-                        getLineBuilderState()));
+                int chunkSize = -1;
 
-                if (getLineBuilderState() == BufferState.DRAINING) {
-                    // The chunk size line was fully read into the line builder
-                    int length = getLineBuilder().length();
+                if (getLineBuilderState() == BufferState.IDLE) {
+                    // Fast path, parse a complete line in place
+                    chunkSize = parseChunkSize(buffer.getBytes());
+                }
 
-                    if (length == 0) {
-                        throw new IOException(
-                                "An empty chunk size line was detected");
-                    }
+                if (chunkSize == -1) {
+                    // Some bytes are available, fill the line builder
+                    setLineBuilderState(buffer.drain(getLineBuilder(),
+                            getLineBuilderState()));
 
-                    int index = getLineBuilder().indexOf(";");
-                    index = (index == -1) ? getLineBuilder().length() : index;
+                    if (getLineBuilderState() == BufferState.DRAINING) {
+                        // The chunk size line was fully read
+                        getLineBuilder().append("\r\n");
+                        chunkSize = parseChunkSize(ByteBuffer.wrap(StringUtils
+                                .getAsciiBytes(getLineBuilder().toString())));
+                        clearLineBuilder();
+                    }
+                }
 
-                    try {
-                        setRemainingChunkSize(Integer.parseInt(getLineBuilder()
-                                .substring(0, index).trim(), 16));
+                if (chunkSize == -1) {
+                    // Need to fill more content into the buffer.
+                    doLoop = false;
+                } else {
+                    setRemainingChunkSize(chunkSize);
 
-                        if (Context.getCurrentLogger().isLoggable(Level.FINER)) {
-                            Context.getCurrentLogger().log(
-                                    Level.FINER,
-                                    "New readable chunk detected. Size: "
-                                            + this.remainingChunkSize);
-                        }
-                    } catch (NumberFormatException ex) {
-                        throw new IOException("\"" + getLineBuilder()
-                                + "\" has an invalid chunk size");
-                    } finally {
-                        clearLineBuilder();
+                    if (Context.getCurrentLogger().isLoggable(Level.FINER)) {
+                        Context.getCurrentLogger().log(
+                                Level.FINER,
+                                "New readable chunk detected. Size: "
+                                        + chunkSize);
                     }
 
-                    if (getRemainingChunkSize() == 0) {
+                    if (chunkSize == 0) {
                         setChunkState(ChunkState.TRAILER);
                     } else {
                         setChunkState(ChunkState.DATA);
                     }
-                    break;
-                } else {
-                    // Need to fill more content into the buffer.
-                    doLoop = false;
                 }
 
                 break;
@@ -215,6 +213,7 @@ public class ReadableChunkedChannel extends ReadableBufferedChannel {
             case DATA:
                 int read = 0;
                 if (getRemainingChunkSize() > 0) {
+                    // Copy the available chunk data in bulk
                     read = super.onDrain(buffer, this.remainingChunkSize,
                             targetBuffer);
                     result += read;
@@ -231,13 +230,9 @@ public class ReadableChunkedChannel extends ReadableBufferedChannel {
 
                 if (getRemainingChunkSize() == 0) {
                     // Try to read the new line marking the end of the chunk.
-                    setLineBuilderState(buffer.drain(getLineBuilder(),
-                            getLineBuilderState()));
-
-                    if (getLineBuilderState() == BufferState.DRAINING) {
+                    if (readLine(buffer) != null) {
                         // Done, can read the next chunk
                         setChunkState(ChunkState.SIZE);
-                        clearLineBuilder();
                     } else {
                         // Need to fill more content into the buffer.
                         doLoop = false;
@@ -249,35 +244,135 @@ public class ReadableChunkedChannel extends ReadableBufferedChannel {
                 break;
 
             case TRAILER:
-                // TODO
-                setChunkState(ChunkState.END);
+                // Read the trailer fields until the empty line
+                String line = readLine(buffer);
+
+                if (line == null) {
+                    // Need to fill more content into the buffer.
+                    doLoop = false;
+                } else if (line.length() == 0) {
+                    setChunkState(ChunkState.END);
+                } else if (Context.getCurrentLogger().isLoggable(Level.FINE)) {
+                    Context.getCurrentLogger().log(Level.FINE,
+                            "Ignoring chunk trailer field: " + line);
+                }
+
                 break;
 
             case END:
-                // Try to read the new line marking the end of the chunk.
-                setLineBuilderState(buffer.drain(getLineBuilder(),
-                        getLineBuilderState()));
-
-                if (getLineBuilderState() == BufferState.DRAINING) {
-                    if (getLineBuilder().length() != 0) {
-                        Context.getCurrentLogger()
-                                .log(Level.FINE,
-                                        "The last readable chunk line had a non empty line");
-                    }
+                setEndReached(true);
+
+                if (result <= 0) {
+                    result = -1;
+                }
+
+                doLoop = false;
+                break;
+            }
+        }
 
-                    setEndReached(true);
+        return result;
+    }
+
+    /**
+     * Parses the chunk size directly from the bytes if the whole line is
+     * available, ignoring the optional chunk extensions.
+     * 
+     * @param bytes
+     *            The bytes, in draining mode.
+     * @return The chunk size or -1 if the line isn't complete yet.
+     * @throws IOException
+     */
+    private int parseChunkSize(ByteBuffer bytes) throws IOException {
+        int result = -1;
+        int start = bytes.position();
+        int end = -1;
+
+        for (int i = start; (end == -1) && (i < bytes.limit()); i++) {
+            if (bytes.get(i) == 10) {
+                end = i;
+            }
+        }
 
-                    if (result <= 0) {
-                        result = -1;
+        if (end != -1) {
+            if ((end == start) || (bytes.get(end - 1) != 13)) {
+                throw new IOException(
+                        "Missing carriage return character at the end of the chunk size line");
+            } else if (end - 1 == start) {
+                throw new IOException("An empty chunk size line was detected");
+            }
+
+            int chunkSize = 0;
+            int digits = 0;
+            boolean done = false;
+
+            for (int i = start; !done && (i < end - 1); i++) {
+                int b = bytes.get(i);
+                int digit = Character.digit(b, 16);
+
+                if (digit != -1) {
+                    if ((chunkSize & 0xF8000000) != 0) {
+                        throw new IOException("Chunk size too large");
                     }
 
-                    doLoop = false;
+                    chunkSize = (chunkSize << 4) + digit;
+                    digits++;
+                } else if (b == ';') {
+                    // Chunk extensions are ignored
+                    done = true;
+                } else if ((b == ' ') || (b == '\t')) {
+                    done = (digits > 0);
                 } else {
-                    // Need to fill more content into the buffer.
-                    doLoop = false;
+                    digits = 0;
+                    done = true;
+                }
+            }
+
+            if (digits == 0) {
+                byte[] line = new byte[end - 1 - start];
+
+                for (int i = 0; i < line.length; i++) {
+                    line[i] = bytes.get(start + i);
                 }
 
-                break;
+                throw new IOException("\"" + new String(line, "US-ASCII")
+                        + "\" has an invalid chunk size");
+            }
+
+            bytes.position(end + 1);
+            result = chunkSize;
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads a line, either directly from the IO bytes for an empty line or via
+     * the line builder.
+     * 
+     * @param buffer
+     *            The IO buffer to drain.
+     * @return The line read or null if the line isn't complete yet.
+     * @throws IOException
+     */
+    private String readLine(Buffer buffer) throws IOException {
+        String result = null;
+        ByteBuffer bytes = buffer.getBytes();
+
+        if ((getLineBuilderState() == BufferState.IDLE)
+                && (bytes.remaining() >= 2)
+                && (bytes.get(bytes.position()) == 13)
+                && (bytes.get(bytes.position() + 1) == 10)) {
+            // Fast path for the CRLF following the chunk data
+            bytes.position(bytes.position() + 2);
+            result = "";
+        } else {
+            setLineBuilderState(buffer.drain(getLineBuilder(),
+                    getLineBuilderState()));
+
+            if (getLineBuilderState() == BufferState.DRAINING) {
+                result = getLineBuilder().toString();
+                clearLineBuilder();
             }
         }
 
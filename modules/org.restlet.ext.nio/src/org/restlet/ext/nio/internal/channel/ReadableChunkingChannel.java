@@ -48,6 +48,9 @@ import org.restlet.engine.util.StringUtils;
 public class ReadableChunkingChannel extends
         WrapperChannel<ReadableByteChannel> implements ReadableByteChannel {
 
+    /** The last chunk, without trailer. */
+    private static final byte[] LAST_CHUNK = { '0', 13, 10, 13, 10 };
+
     /** The constant chunk part containing the size of the chunk data. */
     private final int chunkSizeLength;
 
@@ -101,7 +104,9 @@ public class ReadableChunkingChannel extends
 
     /**
      * Reads some bytes and put them into the destination buffer. The bytes come
-     * from the underlying channel.
+     * from the underlying channel. Successive reads are coalesced into a single
+     * chunk, bounded by the room left in the destination buffer, and the last
+     * chunk is written together with the last data when there is enough room.
      * 
      * @param dst
      *            The destination buffer.
@@ -110,91 +115,67 @@ public class ReadableChunkingChannel extends
      */
     public int read(ByteBuffer dst) throws IOException {
         int result = 0;
-        boolean tryAgain = true;
-
-        while (tryAgain) {
-            if (this.lastChunkWritten) {
-                result = -1;
-                tryAgain = false;
-            } else {
-                int chunkStart = dst.position();
-                int maxChunkDataSize = dst.remaining() - this.chunkSizeLength
-                        - 4;
-                int chunkDataSize = 0;
-
-                if (maxChunkDataSize > 0) {
-                    // Read the chunk data in the buffer
-                    dst.position(chunkStart + this.chunkSizeLength + 2);
-                    dst.limit(dst.position() + maxChunkDataSize);
-
-                    if (Context.getCurrentLogger().isLoggable(Level.FINER)) {
-                        Context.getCurrentLogger().finer(
-                                "Position in destination buffer before chunking | Limit | MaxChunkDataSize : "
-                                        + dst.position() + " | " + dst.limit()
-                                        + " | " + maxChunkDataSize);
-                    }
 
-                    chunkDataSize = getWrappedChannel().read(dst);
-                    dst.limit(dst.capacity());
-
-                    if (chunkDataSize == -1) {
-                        this.lastChunkWritten = true;
-                        tryAgain = false;
-                        dst.position(chunkStart);
-
-                        // Rewind and put the chunk size in the buffer
-                        result += fillChunkSizeString(0, dst);
-
-                        // End chunked entity
-                        dst.put((byte) 13);
-                        dst.put((byte) 10);
-                        result += 2;
-                    } else if (chunkDataSize > 0) {
-                        dst.put((byte) 13);
-                        dst.put((byte) 10);
-                        dst.position(chunkStart);
-
-                        // Put the chunk size line
-                        fillChunkSizeString(chunkDataSize, dst);
-
-                        // Restore buffer state
-                        if (Context.getCurrentLogger().isLoggable(Level.FINER)) {
-                            Context.getCurrentLogger()
-                                    .finer("Old chunking position in destination buffer | Limit | MaxChunkDataSize | ChunkDataSize : "
-                                            + dst.position()
-                                            + " | "
-                                            + dst.limit()
-                                            + " | "
-                                            + maxChunkDataSize
-                                            + " | "
-                                            + chunkDataSize);
-                        }
-
-                        dst.position(dst.position() + chunkDataSize + 2);
-
-                        if (Context.getCurrentLogger().isLoggable(Level.FINER)) {
-                            Context.getCurrentLogger()
-                                    .finer("New chunking position in destination buffer | Limit | MaxChunkDataSize | ChunkDataSize : "
-                                            + dst.position()
-                                            + " | "
-                                            + dst.limit()
-                                            + " | "
-                                            + maxChunkDataSize
-                                            + " | "
-                                            + chunkDataSize);
-                        }
-
-                        result += dst.position() - chunkStart;
-                    } else {
-                        // Nothing read on the wrapped channel. Try again later.
-                        dst.position(chunkStart);
+        if (this.lastChunkWritten) {
+            result = -1;
+        } else {
+            int chunkStart = dst.position();
+            int dataStart = chunkStart + this.chunkSizeLength + 2;
+            int maxChunkDataSize = dst.remaining() - this.chunkSizeLength - 4
+                    - LAST_CHUNK.length;
+
+            if (maxChunkDataSize > 0) {
+                // Read the chunk data in the buffer
+                int limit = dst.limit();
+                boolean endReached = false;
+                dst.position(dataStart);
+                dst.limit(dataStart + maxChunkDataSize);
+
+                try {
+                    int read = 0;
+
+                    while (!endReached && dst.hasRemaining()
+                            && ((read = getWrappedChannel().read(dst)) != 0)) {
+                        endReached = (read == -1);
                     }
+                } finally {
+                    dst.limit(limit);
+                }
+
+                int chunkDataSize = dst.position() - dataStart;
+
+                if (Context.getCurrentLogger().isLoggable(Level.FINER)) {
+                    Context.getCurrentLogger().finer(
+                            "Chunk start | MaxChunkDataSize | ChunkDataSize : "
+                                    + chunkStart + " | " + maxChunkDataSize
+                                    + " | " + chunkDataSize);
+                }
+
+                if (chunkDataSize > 0) {
+                    dst.put((byte) 13);
+                    dst.put((byte) 10);
+
+                    // Rewind and put the chunk size line
+                    int chunkEnd = dst.position();
+                    dst.position(chunkStart);
+                    fillChunkSizeString(chunkDataSize, dst);
+                    dst.position(chunkEnd);
                 } else {
-                    // Not enough space in the buffer to read a chunk. Try again
-                    // later.
-                    tryAgain = false;
+                    // Nothing read on the wrapped channel
+                    dst.position(chunkStart);
+                }
+
+                if (endReached) {
+                    // End chunked entity
+                    dst.put(LAST_CHUNK);
+                    this.lastChunkWritten = true;
                 }
+
+                result = dst.position() - chunkStart;
             }
+
+            // Otherwise not enough space in the buffer to read a chunk. Try
+            // again later.
         }
 
         return result;
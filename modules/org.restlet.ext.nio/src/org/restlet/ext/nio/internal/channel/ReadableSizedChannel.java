@@ -100,11 +100,18 @@ public class ReadableSizedChannel extends WrapperChannel<ReadableByteChannel>
         int result = 0;
 
         if (getAvailableSize() > 0) {
+            int limit = dst.limit();
+
             if (getAvailableSize() < dst.remaining()) {
                 dst.limit((int) (getAvailableSize() + dst.position()));
             }
 
-            result = getWrappedChannel().read(dst);
+            try {
+                result = getWrappedChannel().read(dst);
+            } finally {
+                // Leave the rest of the buffer available to the caller
+                dst.limit(limit);
+            }
         } else {
             result = -1;
         }
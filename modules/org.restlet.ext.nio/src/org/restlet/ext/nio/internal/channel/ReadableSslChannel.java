@@ -74,8 +74,8 @@ public class ReadableSslChannel extends ReadableBufferedChannel implements
      */
     public ReadableSslChannel(ReadableSelectionChannel source,
             SslConnection<?> connection, WakeupListener wakeupListener) {
-        super(null, new Buffer(connection.getPacketBufferSize(), connection
-                .getHelper().isDirectBuffers()), source, wakeupListener);
+        super(null, new Buffer(connection.getHelper().getBufferPool(
+                connection.getPacketBufferSize())), source, wakeupListener);
 
         if (Context.getCurrentLogger().isLoggable(Level.FINER)) {
             Context.getCurrentLogger().log(
@@ -124,6 +124,9 @@ public class ReadableSslChannel extends ReadableBufferedChannel implements
     @Override
     public void postProcess(int drained) throws IOException {
         getConnection().handleSslResult();
+
+        // Give the packet buffer back to the shared pool when empty
+        getBuffer().release();
     }
 
 }
@@ -68,7 +68,7 @@ public class WrapperChannel<T extends Channel> implements Channel {
      * 
      * @return The wrapped channel.
      */
-    protected T getWrappedChannel() {
+    public T getWrappedChannel() {
         return wrappedChannel;
     }
 
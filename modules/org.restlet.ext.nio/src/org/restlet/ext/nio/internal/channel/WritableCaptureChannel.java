@@ -0,0 +1,150 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.channel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+import org.restlet.ext.nio.internal.connection.WireCapture;
+
+// [excludes gwt]
+/**
+ * Filter byte channel that records a copy of all data written into a wire
+ * capture. Gathering writes are passed through when the wrapped channel
+ * supports them.
+ */
+public class WritableCaptureChannel extends
+        WrapperSelectionChannel<WritableSelectionChannel> implements
+        WritableSelectionChannel, GatheringByteChannel {
+
+    /** The source positions before a gathering write, reused across writes. */
+    private int[] positions;
+
+    /** The wire capture. */
+    private final WireCapture wireCapture;
+
+    /**
+     * Constructor.
+     * 
+     * @param wrappedChannel
+     *            The wrapped channel.
+     * @param wireCapture
+     *            The wire capture.
+     */
+    public WritableCaptureChannel(WritableSelectionChannel wrappedChannel,
+            WireCapture wireCapture) {
+        super(wrappedChannel);
+        this.positions = new int[4];
+        this.wireCapture = wireCapture;
+    }
+
+    /**
+     * Writes the bytes of the source buffer and records the ones written.
+     * 
+     * @param src
+     *            The source buffer.
+     * @return The number of bytes written.
+     */
+    public int write(ByteBuffer src) throws IOException {
+        int oldPos = src.position();
+        int result = getWrappedChannel().write(src);
+
+        // We can't rely on the result variable because during SSL handshake,
+        // bytes might be written but not from the source buffer
+        this.wireCapture.captureOutbound(src, oldPos, src.position());
+        return result;
+    }
+
+    /**
+     * Writes the bytes of the source buffers and records the ones written.
+     * 
+     * @param srcs
+     *            The source buffers.
+     * @return The number of bytes written.
+     */
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    /**
+     * Writes the bytes of a sequence of the source buffers and records the
+     * ones written.
+     * 
+     * @param srcs
+     *            The source buffers.
+     * @param offset
+     *            The offset of the first buffer to write.
+     * @param length
+     *            The number of buffers to write.
+     * @return The number of bytes written.
+     */
+    public long write(ByteBuffer[] srcs, int offset, int length)
+            throws IOException {
+        long result = 0;
+
+        if (getWrappedChannel() instanceof GatheringByteChannel) {
+            if (this.positions.length < length) {
+                this.positions = new int[length];
+            }
+
+            for (int i = 0; i < length; i++) {
+                this.positions[i] = srcs[offset + i].position();
+            }
+
+            result = ((GatheringByteChannel) getWrappedChannel()).write(srcs,
+                    offset, length);
+
+            for (int i = 0; i < length; i++) {
+                this.wireCapture.captureOutbound(srcs[offset + i],
+                        this.positions[i], srcs[offset + i].position());
+            }
+        } else {
+            int written = 0;
+
+            for (int i = 0; (written >= 0) && (i < length); i++) {
+                ByteBuffer src = srcs[offset + i];
+                written = (src.hasRemaining()) ? write(src) : 0;
+                result += Math.max(written, 0);
+
+                if (src.hasRemaining()) {
+                    written = -1;
+                }
+            }
+        }
+
+        return result;
+    }
+
+}
@@ -35,6 +35,7 @@ package org.restlet.ext.nio.internal.channel;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SocketChannel;
 
 import org.restlet.util.SelectionRegistration;
@@ -45,7 +46,7 @@ import org.restlet.util.SelectionRegistration;
  * partially read.
  */
 public class WritableSocketChannel extends WrapperSocketChannel implements
-        WritableSelectionChannel {
+        WritableSelectionChannel, GatheringByteChannel {
 
     /**
      * Constructor.
@@ -60,6 +61,37 @@ public class WritableSocketChannel extends WrapperSocketChannel implements
         super(wrappedChannel, registration);
     }
 
+    /**
+     * Writes a sequence of bytes from the given buffers to the wrapped socket
+     * channel, using a single gathering write operation.
+     * 
+     * @param srcs
+     *            The source byte buffers.
+     * @return The number of bytes written.
+     */
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    /**
+     * Writes a sequence of bytes from a subsequence of the given buffers to the
+     * wrapped socket channel, using a single gathering write operation. Note
+     * that contrary to {@link #write(ByteBuffer)}, it doesn't insist until all
+     * bytes are written.
+     * 
+     * @param srcs
+     *            The source byte buffers.
+     * @param offset
+     *            The offset within the buffer array of the first buffer.
+     * @param length
+     *            The maximum number of buffers to be accessed.
+     * @return The number of bytes written.
+     */
+    public long write(ByteBuffer[] srcs, int offset, int length)
+            throws IOException {
+        return getWrappedChannel().write(srcs, offset, length);
+    }
+
     /**
      * Writes the given bytes to the wrapped socket channel.
      * 
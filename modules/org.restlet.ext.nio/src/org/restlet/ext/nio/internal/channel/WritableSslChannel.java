@@ -72,8 +72,8 @@ public class WritableSslChannel extends WritableBufferedChannel implements
      */
     public WritableSslChannel(WritableSelectionChannel target,
             SslConnection<?> connection, WakeupListener wakeupListener) {
-        super(new Buffer(connection.getPacketBufferSize(), connection
-                .getHelper().isDirectBuffers()), target, wakeupListener);
+        super(new Buffer(connection.getHelper().getBufferPool(
+                connection.getPacketBufferSize())), target, wakeupListener);
         this.connection = connection;
     }
 
@@ -136,6 +136,9 @@ public class WritableSslChannel extends WritableBufferedChannel implements
     @Override
     public void postProcess(int drained) throws IOException {
         getConnection().handleSslResult();
+
+        // Give the packet buffer back to the shared pool when empty
+        getBuffer().release();
     }
 
     @Override
@@ -47,8 +47,10 @@ import org.restlet.Response;
 import org.restlet.data.Status;
 import org.restlet.engine.io.ReadableSelectionChannel;
 import org.restlet.ext.nio.ConnectionHelper;
+import org.restlet.ext.nio.internal.channel.ReadableCaptureChannel;
 import org.restlet.ext.nio.internal.channel.ReadableSocketChannel;
 import org.restlet.ext.nio.internal.channel.ReadableTraceChannel;
+import org.restlet.ext.nio.internal.channel.WritableCaptureChannel;
 import org.restlet.ext.nio.internal.channel.WritableSelectionChannel;
 import org.restlet.ext.nio.internal.channel.WritableSocketChannel;
 import org.restlet.ext.nio.internal.channel.WritableTraceChannel;
@@ -112,6 +114,9 @@ public class Connection<T extends Connector> implements SelectionListener {
     /** The state of the connection. */
     private volatile ConnectionState state;
 
+    /** The wire capture or null if disabled. */
+    private final WireCapture wireCapture;
+
     /** The writable selection channel. */
     private volatile WritableSelectionChannel writableSelectionChannel;
 
@@ -134,6 +139,8 @@ public class Connection<T extends Connector> implements SelectionListener {
         this.helper = helper;
         this.inboundWay = helper.createInboundWay(this, inboundBufferSize);
         this.outboundWay = helper.createOutboundWay(this, outboundBufferSize);
+        this.wireCapture = (helper.getWireCaptureSize() > 0) ? new WireCapture(
+                helper.getWireCaptureSize()) : null;
         init(socketChannel, controller, socketAddress);
     }
 
@@ -234,7 +241,9 @@ public class Connection<T extends Connector> implements SelectionListener {
             @Override
             public int read(ByteBuffer dst) throws IOException {
                 onActivity();
-                return super.read(dst);
+                int result = super.read(dst);
+                getHelper().getMetrics().onBytesRead(result);
+                return result;
             }
         };
     }
@@ -249,7 +258,18 @@ public class Connection<T extends Connector> implements SelectionListener {
             @Override
             public int write(ByteBuffer src) throws IOException {
                 onActivity();
-                return super.write(src);
+                int result = super.write(src);
+                getHelper().getMetrics().onBytesWritten(result);
+                return result;
+            }
+
+            @Override
+            public long write(ByteBuffer[] srcs, int offset, int length)
+                    throws IOException {
+                onActivity();
+                long result = super.write(srcs, offset, length);
+                getHelper().getMetrics().onBytesWritten(result);
+                return result;
             }
         };
     }
@@ -417,6 +437,15 @@ public class Connection<T extends Connector> implements SelectionListener {
         return state;
     }
 
+    /**
+     * Returns the wire capture.
+     * 
+     * @return The wire capture or null if disabled.
+     */
+    public WireCapture getWireCapture() {
+        return wireCapture;
+    }
+
     /**
      * Returns the underlying socket channel as a writable selection channel.
      * 
@@ -427,13 +456,15 @@ public class Connection<T extends Connector> implements SelectionListener {
     }
 
     /**
-     * Indicates if the connection has timed out.
+     * Indicates if the connection has timed out. A connection waiting for a
+     * non-blocking response entity to produce new content never times out.
      * 
      * @return True if the connection has timed out.
      */
     public boolean hasTimedOut() {
         return (getMaxIoIdleTimeMs() > 0)
-                && (System.currentTimeMillis() - getLastActivity()) >= getMaxIoIdleTimeMs();
+                && (System.currentTimeMillis() - getLastActivity()) >= getMaxIoIdleTimeMs()
+                && !getOutboundWay().isEntitySuspended();
     }
 
     /**
@@ -464,6 +495,16 @@ public class Connection<T extends Connector> implements SelectionListener {
             this.readableSelectionChannel = createReadableSelectionChannel();
             this.writableSelectionChannel = createWritableSelectionChannel();
 
+            if (getWireCapture() != null) {
+                getWireCapture().clear();
+                getWireCapture().captureEvent(
+                        "Connection with " + socketAddress);
+                this.readableSelectionChannel = new ReadableCaptureChannel(
+                        this.readableSelectionChannel, getWireCapture());
+                this.writableSelectionChannel = new WritableCaptureChannel(
+                        this.writableSelectionChannel, getWireCapture());
+            }
+
             if (getHelper().isTracing()) {
                 this.readableSelectionChannel = new ReadableTraceChannel(
                         this.readableSelectionChannel);
@@ -572,10 +613,24 @@ public class Connection<T extends Connector> implements SelectionListener {
         }
 
         status = new Status(status, throwable, message);
+
+        if (getWireCapture() != null) {
+            getWireCapture().captureEvent(
+                    "Error: " + message
+                            + ((throwable == null) ? "" : " " + throwable));
+        }
+
         getInboundWay().onError(status);
         getOutboundWay().onError(status);
         close(false);
 
+        if (getWireCapture() != null) {
+            getLogger().info(
+                    "Wire capture of the connection with "
+                            + getSocketAddress() + ":\n"
+                            + getWireCapture().dump());
+        }
+
         // Give the controller a hint to clean up the closed connection
         getHelper().getController().wakeup();
     }
@@ -613,14 +668,22 @@ public class Connection<T extends Connector> implements SelectionListener {
                 getLogger().warning(
                         "Connection with no registration selected: " + this);
             } else if (registration.isReadable()) {
-                synchronized (getInboundWay().getBuffer().getLock()) {
+                getInboundWay().getBuffer().getLock().lock();
+
+                try {
                     getInboundWay().getRegistration().onSelected(
                             registration.getReadyOperations());
+                } finally {
+                    getInboundWay().getBuffer().getLock().unlock();
                 }
             } else if (registration.isWritable()) {
-                synchronized (getOutboundWay().getBuffer().getLock()) {
+                getOutboundWay().getBuffer().getLock().lock();
+
+                try {
                     getOutboundWay().getRegistration().onSelected(
                             registration.getReadyOperations());
+                } finally {
+                    getOutboundWay().getBuffer().getLock().unlock();
                 }
             } else if (registration.isConnectable()) {
                 // Client-side asynchronous connection
@@ -647,7 +710,9 @@ public class Connection<T extends Connector> implements SelectionListener {
             do {
                 readyFound = false;
 
-                synchronized (getInboundWay().getBuffer().getLock()) {
+                getInboundWay().getBuffer().getLock().lock();
+
+                try {
                     if (getInboundWay().getIoState() == IoState.READY) {
                         readyFound = true;
 
@@ -659,9 +724,13 @@ public class Connection<T extends Connector> implements SelectionListener {
                         getInboundWay().onSelected(
                                 getInboundWay().getRegistration());
                     }
+                } finally {
+                    getInboundWay().getBuffer().getLock().unlock();
                 }
 
-                synchronized (getOutboundWay().getBuffer().getLock()) {
+                getOutboundWay().getBuffer().getLock().lock();
+
+                try {
                     if (getOutboundWay().getIoState() == IoState.READY) {
                         readyFound = true;
 
@@ -673,6 +742,8 @@ public class Connection<T extends Connector> implements SelectionListener {
                         getOutboundWay().onSelected(
                                 getOutboundWay().getRegistration());
                     }
+                } finally {
+                    getOutboundWay().getBuffer().getLock().unlock();
                 }
             } while (readyFound);
         } catch (Throwable t) {
@@ -772,6 +843,10 @@ public class Connection<T extends Connector> implements SelectionListener {
                                 + state);
             }
 
+            if (getWireCapture() != null) {
+                getWireCapture().captureEvent("Connection state: " + state);
+            }
+
             this.state = state;
         }
     }
@@ -38,10 +38,13 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.channels.SocketChannel;
 import java.security.cert.Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 
+import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLEngineResult.HandshakeStatus;
@@ -54,7 +57,10 @@ import org.restlet.Connector;
 import org.restlet.engine.io.ReadableSelectionChannel;
 import org.restlet.engine.ssl.SslUtils;
 import org.restlet.ext.nio.ConnectionHelper;
+import org.restlet.ext.nio.internal.buffer.Buffer;
+import org.restlet.ext.nio.internal.channel.BufferedSelectionChannel;
 import org.restlet.ext.nio.internal.channel.ReadableSslChannel;
+import org.restlet.ext.nio.internal.channel.WrapperChannel;
 import org.restlet.ext.nio.internal.channel.WritableSelectionChannel;
 import org.restlet.ext.nio.internal.channel.WritableSslChannel;
 import org.restlet.ext.nio.internal.controller.ConnectionController;
@@ -69,9 +75,42 @@ import org.restlet.ext.nio.internal.state.IoState;
  */
 public class SslConnection<T extends Connector> extends Connection<T> {
 
+    /**
+     * Creates a new SSL engine for the given peer address.
+     * 
+     * @param sslContext
+     *            The SSL context.
+     * @param socketAddress
+     *            The peer address or null.
+     * @return The new SSL engine.
+     */
+    private static SSLEngine createSslEngine(SSLContext sslContext,
+            InetSocketAddress socketAddress) {
+        SSLEngine result = null;
+
+        if (socketAddress != null) {
+            // Avoid a reverse DNS lookup for each new connection
+            result = sslContext.createSSLEngine(socketAddress.getHostString(),
+                    socketAddress.getPort());
+        } else {
+            result = sslContext.createSSLEngine();
+        }
+
+        return result;
+    }
+
+    /** The time when the current handshake began. */
+    private volatile long handshakeStartTime;
+
+    /** Indicates if the last SSL packet processed was incomplete. */
+    private volatile boolean packetStarved;
+
     /** The peer address. */
     private volatile InetSocketAddress peerAddress;
 
+    /** The SSL context creating a new engine on each connection reuse. */
+    private final SSLContext sslContext;
+
     /** The engine to use for wrapping and unwrapping. */
     private volatile SSLEngine sslEngine;
 
@@ -92,24 +131,81 @@ public class SslConnection<T extends Connector> extends Connection<T> {
      *            The IO controller.
      * @param socketAddress
      *            The associated IP address.
-     * 
-     * 
-     * 
+     * @param sslContext
+     *            The SSL context creating a new engine each time the
+     *            connection is reused.
      * @throws IOException
      */
     public SslConnection(ConnectionHelper<T> helper,
             SocketChannel socketChannel, ConnectionController controller,
-            InetSocketAddress socketAddress, SSLEngine sslEngine)
+            InetSocketAddress socketAddress, SSLContext sslContext)
             throws IOException {
+        this(helper, socketChannel, controller, socketAddress, sslContext,
+                createSslEngine(sslContext, socketAddress));
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param helper
+     *            The parent connector helper.
+     * @param socketChannel
+     *            The underlying NIO socket channel.
+     * @param controller
+     *            The IO controller.
+     * @param socketAddress
+     *            The associated IP address.
+     * @param sslContext
+     *            The SSL context creating a new engine each time the
+     *            connection is reused or null to keep the same engine.
+     * @param sslEngine
+     *            The initial SSL engine.
+     * @throws IOException
+     */
+    private SslConnection(ConnectionHelper<T> helper,
+            SocketChannel socketChannel, ConnectionController controller,
+            InetSocketAddress socketAddress, SSLContext sslContext,
+            SSLEngine sslEngine) throws IOException {
         super(helper, socketChannel, controller, socketAddress, sslEngine
                 .getSession().getApplicationBufferSize(), sslEngine
                 .getSession().getApplicationBufferSize());
+        this.sslContext = sslContext;
         this.sslEngine = sslEngine;
         this.sslEngineResult = null;
         getSslEngine().setUseClientMode(isClientSide());
         initSslEngine();
     }
 
+    /**
+     * Constructor.
+     * 
+     * @param helper
+     *            The parent connector helper.
+     * @param socketChannel
+     *            The underlying NIO socket channel.
+     * @param controller
+     *            The IO controller.
+     * @param socketAddress
+     *            The associated IP address.
+     * @param sslEngine
+     *            The SSL engine, kept when the connection is reused.
+     * @throws IOException
+     */
+    public SslConnection(ConnectionHelper<T> helper,
+            SocketChannel socketChannel, ConnectionController controller,
+            InetSocketAddress socketAddress, SSLEngine sslEngine)
+            throws IOException {
+        this(helper, socketChannel, controller, socketAddress, null, sslEngine);
+    }
+
+    @Override
+    public void clear() {
+        // Give the SSL packet buffers back to the shared pool
+        releaseBuffer(getReadableSelectionChannel());
+        releaseBuffer(getWritableSelectionChannel());
+        super.clear();
+    }
+
     @Override
     protected ReadableSelectionChannel createReadableSelectionChannel() {
         return new ReadableSslChannel(super.createReadableSelectionChannel(),
@@ -132,6 +228,29 @@ public class SslConnection<T extends Connector> extends Connection<T> {
                 .getApplicationBufferSize();
     }
 
+    /**
+     * Returns the packet buffer of the given SSL channel.
+     * 
+     * @param channel
+     *            The SSL channel, possibly wrapped.
+     * @return The packet buffer or null.
+     */
+    private Buffer getBuffer(Object channel) {
+        // Skip the tracing or capturing channels
+        while (!(channel instanceof BufferedSelectionChannel)
+                && (channel instanceof WrapperChannel)) {
+            channel = ((WrapperChannel<?>) channel).getWrappedChannel();
+        }
+
+        Buffer result = null;
+
+        if (channel instanceof BufferedSelectionChannel) {
+            result = ((BufferedSelectionChannel<?>) channel).getBuffer();
+        }
+
+        return result;
+    }
+
     @Override
     public int getInboundBufferSize() {
         return Math.max(super.getInboundBufferSize(), getSslSession()
@@ -374,6 +493,7 @@ public class SslConnection<T extends Connector> extends Connection<T> {
      * @throws SSLException
      */
     public void initSslEngine() throws SSLException {
+        this.handshakeStartTime = System.currentTimeMillis();
         getSslEngine().beginHandshake();
     }
 
@@ -393,58 +513,63 @@ public class SslConnection<T extends Connector> extends Connection<T> {
     private void onFinished() {
         isHandshaking = false;
 
+        // Only count the first completion of each started handshake
+        if (this.handshakeStartTime > 0) {
+            // A resumed session was created before the handshake began
+            SSLSession sslSession = getSslSession();
+            getHelper().onSslHandshakeFinished(
+                    (sslSession != null)
+                            && (sslSession.getCreationTime() < this.handshakeStartTime));
+            this.handshakeStartTime = 0;
+        }
+
         if (isClientSide()) {
             getInboundWay().setIoState(IoState.IDLE);
             getOutboundWay().setIoState(IoState.INTEREST);
         } else {
-            getInboundWay().setIoState(IoState.INTEREST);
+            // Application data received along with the last handshake
+            // message, as after a resumption, won't be selected again
+            Buffer buffer = getBuffer(getReadableSelectionChannel());
+            boolean buffered = !getInboundWay().getBuffer().isEmpty()
+                    || ((buffer != null) && !buffer.isEmpty());
+            getInboundWay().setIoState(
+                    buffered ? IoState.READY : IoState.INTEREST);
             getOutboundWay().setIoState(IoState.IDLE);
         }
     }
 
     /**
-     * Runs the pending lengthy task.
+     * Collects all the pending lengthy tasks and runs them as a single batch
+     * with the connector's worker service, or in the current thread if there
+     * is no worker service.
      */
     private void onNeedTask() {
-        // Delegate lengthy tasks to the connector's worker
-        // service before checking again
-        final Runnable task = getSslEngine().getDelegatedTask();
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Runnable task = getSslEngine().getDelegatedTask();
 
-        if (task != null) {
-            // Suspend IO processing until the task completes
+        while (task != null) {
+            tasks.add(task);
+            task = getSslEngine().getDelegatedTask();
+        }
+
+        if (!tasks.isEmpty()) {
+            // Suspend IO processing until the tasks complete
             getInboundWay().setIoState(IoState.IDLE);
             getOutboundWay().setIoState(IoState.IDLE);
 
-            // Runs the pending lengthy task.
-            getHelper().getWorkerService().execute(new Runnable() {
+            Runnable batch = new Runnable() {
                 public void run() {
-                    getLogger().log(Level.FINER, "Running delegated tasks...");
-                    task.run();
-
-                    // Check if a next task is pending
-                    Runnable nextTask = getSslEngine().getDelegatedTask();
-
-                    // Run any pending task sequentially
-                    while (nextTask != null) {
-                        nextTask.run();
-                        nextTask = getSslEngine().getDelegatedTask();
-                    }
-
-                    if (getLogger().isLoggable(Level.FINER)) {
-                        getLogger().log(Level.FINER,
-                                "Done running delegated tasks");
-                    }
-
-                    try {
-                        handleSslResult();
-                    } catch (IOException e) {
-                        getLogger().log(Level.INFO,
-                                "Unable to handle SSL handshake", e);
-                    }
-
-                    getHelper().getController().wakeup();
+                    runDelegatedTasks(tasks);
                 }
-            });
+            };
+
+            ExecutorService workerService = getHelper().getWorkerService();
+
+            if (workerService == null) {
+                batch.run();
+            } else {
+                workerService.execute(batch);
+            }
         }
     }
 
@@ -474,15 +599,86 @@ public class SslConnection<T extends Connector> extends Connection<T> {
         }
     }
 
+    /**
+     * Clears the packet buffer of the given SSL channel and gives it back to
+     * the shared pool.
+     * 
+     * @param channel
+     *            The SSL channel.
+     */
+    private void releaseBuffer(Object channel) {
+        Buffer buffer = getBuffer(channel);
+
+        if (buffer != null) {
+            buffer.getLock().lock();
+
+            try {
+                buffer.clear();
+                buffer.release();
+            } finally {
+                buffer.getLock().unlock();
+            }
+        }
+    }
+
     @Override
     public void reuse(SocketChannel socketChannel,
             ConnectionController controller, InetSocketAddress socketAddress)
             throws IOException {
         setPeerAddress(socketAddress);
+
+        if (this.sslContext != null) {
+            // An SSL engine can't be restarted once closed
+            setSslEngine(createSslEngine(this.sslContext, socketAddress));
+            getSslEngine().setUseClientMode(isClientSide());
+            setSslEngineResult(null);
+            this.isHandshaking = false;
+        }
+
         initSslEngine();
         super.reuse(socketChannel, controller, socketAddress);
     }
 
+    /**
+     * Runs a batch of delegated tasks, then any task that they made pending,
+     * before resuming the handshake.
+     * 
+     * @param tasks
+     *            The delegated tasks to run.
+     */
+    private void runDelegatedTasks(List<Runnable> tasks) {
+        if (getLogger().isLoggable(Level.FINER)) {
+            getLogger().log(Level.FINER,
+                    "Running " + tasks.size() + " delegated tasks...");
+        }
+
+        for (Runnable task : tasks) {
+            task.run();
+        }
+
+        // Run any task made pending sequentially
+        Runnable nextTask = getSslEngine().getDelegatedTask();
+
+        while (nextTask != null) {
+            nextTask.run();
+            nextTask = getSslEngine().getDelegatedTask();
+        }
+
+        if (getLogger().isLoggable(Level.FINER)) {
+            getLogger().log(Level.FINER, "Done running delegated tasks");
+        }
+
+        try {
+            // The previous NEED_TASK result is obsolete
+            setSslEngineResult(null);
+            handleSslResult();
+        } catch (IOException e) {
+            getLogger().log(Level.INFO, "Unable to handle SSL handshake", e);
+        }
+
+        getHelper().getController().wakeup();
+    }
+
     /**
      * Sets the peer address.
      * 
@@ -530,6 +726,8 @@ public class SslConnection<T extends Connector> extends Connection<T> {
 
             // Store the engine result
             setSslEngineResult(sslResult);
+            this.packetStarved = SSLEngineResult.Status.BUFFER_UNDERFLOW
+                    .equals(sslResult.getStatus());
         }
     }
 
@@ -546,4 +744,23 @@ public class SslConnection<T extends Connector> extends Connection<T> {
                 + getSslEngineResult();
     }
 
+    @Override
+    public boolean updateState() {
+        boolean result = super.updateState();
+
+        // Complete handshake packets left in the buffer, for example when
+        // delegated tasks completed during the inbound processing, won't be
+        // selected again
+        if (isSslHandshaking() && !this.packetStarved
+                && (getInboundWay().getIoState() == IoState.INTEREST)) {
+            Buffer buffer = getBuffer(getReadableSelectionChannel());
+
+            if ((buffer != null) && !buffer.isEmpty()) {
+                getInboundWay().setIoState(IoState.READY);
+            }
+        }
+
+        return result;
+    }
+
 }
@@ -0,0 +1,300 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.connection;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bounded ring buffer capturing the last bytes exchanged on a connection, along
+ * with its state transitions. The ring is allocated once and reused by pooled
+ * connections, so capturing doesn't allocate memory per read or write. When
+ * the ring is full, the oldest records are discarded.
+ * 
+ * Each record is made of a kind byte, an 8 bytes timestamp, a 4 bytes length
+ * and the recorded bytes.
+ */
+public class WireCapture {
+
+    /** The kind of records holding an event description. */
+    private static final byte EVENT = 'E';
+
+    /** The size of a record header. */
+    private static final int HEADER_SIZE = 13;
+
+    /** The kind of records holding inbound bytes. */
+    private static final byte INBOUND = 'I';
+
+    /** The kind of records holding outbound bytes. */
+    private static final byte OUTBOUND = 'O';
+
+    /** The ring of records. */
+    private final byte[] ring;
+
+    /** The index of the oldest record. */
+    private int start;
+
+    /** The time when the capture was started. */
+    private long startTime;
+
+    /** The number of bytes used in the ring. */
+    private int used;
+
+    /**
+     * Constructor.
+     * 
+     * @param size
+     *            The size of the ring, in bytes.
+     */
+    public WireCapture(int size) {
+        this.ring = new byte[Math.max(size, 2 * HEADER_SIZE)];
+        clear();
+    }
+
+    /**
+     * Appends a record.
+     * 
+     * @param kind
+     *            The kind of record.
+     * @param bytes
+     *            The bytes to record or null if the text should be recorded.
+     * @param from
+     *            The index of the first byte to record.
+     * @param to
+     *            The index after the last byte to record.
+     * @param text
+     *            The ASCII text to record if no bytes are given.
+     */
+    private synchronized void append(byte kind, ByteBuffer bytes, int from,
+            int to, CharSequence text) {
+        int length = (bytes == null) ? text.length() : to - from;
+        int recorded = Math.min(length, this.ring.length - HEADER_SIZE);
+        int skipped = length - recorded;
+
+        // Discard the oldest records
+        while (this.ring.length - this.used < HEADER_SIZE + recorded) {
+            int oldestSize = HEADER_SIZE + readInt(this.start + 9);
+            this.start = (this.start + oldestSize) % this.ring.length;
+            this.used -= oldestSize;
+        }
+
+        int index = (this.start + this.used) % this.ring.length;
+        this.ring[index] = kind;
+        writeLong(index + 1, System.currentTimeMillis() - this.startTime);
+        writeInt(index + 9, recorded);
+        index += HEADER_SIZE;
+
+        index %= this.ring.length;
+
+        // Only keep the last bytes of records larger than the ring
+        if ((bytes != null) && bytes.hasArray()) {
+            int offset = bytes.arrayOffset() + from + skipped;
+            int first = Math.min(recorded, this.ring.length - index);
+            System.arraycopy(bytes.array(), offset, this.ring, index, first);
+            System.arraycopy(bytes.array(), offset + first, this.ring, 0,
+                    recorded - first);
+        } else {
+            for (int i = skipped; i < length; i++) {
+                this.ring[index++ % this.ring.length] = (bytes == null) ? (byte) text
+                        .charAt(i) : bytes.get(from + i);
+            }
+        }
+
+        this.used += HEADER_SIZE + recorded;
+    }
+
+    /**
+     * Captures an event such as a state transition.
+     * 
+     * @param event
+     *            The ASCII description of the event.
+     */
+    public void captureEvent(CharSequence event) {
+        append(EVENT, null, 0, 0, event);
+    }
+
+    /**
+     * Captures inbound bytes.
+     * 
+     * @param bytes
+     *            The buffer holding the bytes read.
+     * @param from
+     *            The index of the first byte read.
+     * @param to
+     *            The index after the last byte read.
+     */
+    public void captureInbound(ByteBuffer bytes, int from, int to) {
+        if (to > from) {
+            append(INBOUND, bytes, from, to, null);
+        }
+    }
+
+    /**
+     * Captures outbound bytes.
+     * 
+     * @param bytes
+     *            The buffer holding the bytes written.
+     * @param from
+     *            The index of the first byte written.
+     * @param to
+     *            The index after the last byte written.
+     */
+    public void captureOutbound(ByteBuffer bytes, int from, int to) {
+        if (to > from) {
+            append(OUTBOUND, bytes, from, to, null);
+        }
+    }
+
+    /**
+     * Discards all records and restarts the capture clock.
+     */
+    public synchronized void clear() {
+        this.start = 0;
+        this.used = 0;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns a textual dump of the records, from the oldest to the newest.
+     * Control characters other than line feeds are escaped.
+     * 
+     * @return A textual dump of the records.
+     */
+    public synchronized String dump() {
+        StringBuilder sb = new StringBuilder();
+        int index = this.start;
+        int remaining = this.used;
+
+        while (remaining > 0) {
+            byte kind = this.ring[index % this.ring.length];
+            long time = readLong(index + 1);
+            int length = readInt(index + 9);
+            sb.append('[').append(time).append(" ms] ");
+
+            if (kind == EVENT) {
+                sb.append("* ");
+            } else {
+                sb.append((kind == INBOUND) ? "<< " : ">> ").append(length)
+                        .append(" bytes\n");
+            }
+
+            for (int i = 0; i < length; i++) {
+                int b = this.ring[(index + HEADER_SIZE + i) % this.ring.length] & 0xFF;
+
+                if (b == '\r') {
+                    sb.append("\\r");
+                } else if ((b == '\n') || ((b >= 32) && (b < 127))) {
+                    sb.append((char) b);
+                } else {
+                    sb.append(String.format("\\x%02x", b));
+                }
+            }
+
+            if ((sb.length() > 0) && (sb.charAt(sb.length() - 1) != '\n')) {
+                sb.append('\n');
+            }
+
+            index = (index + HEADER_SIZE + length) % this.ring.length;
+            remaining -= HEADER_SIZE + length;
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Reads an integer from the ring.
+     * 
+     * @param index
+     *            The index of the first byte, possibly beyond the ring end.
+     * @return The integer read.
+     */
+    private int readInt(int index) {
+        int result = 0;
+
+        for (int i = 0; i < 4; i++) {
+            result = (result << 8)
+                    | (this.ring[(index + i) % this.ring.length] & 0xFF);
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads a long from the ring.
+     * 
+     * @param index
+     *            The index of the first byte, possibly beyond the ring end.
+     * @return The long read.
+     */
+    private long readLong(int index) {
+        long result = 0;
+
+        for (int i = 0; i < 8; i++) {
+            result = (result << 8)
+                    | (this.ring[(index + i) % this.ring.length] & 0xFF);
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes an integer into the ring.
+     * 
+     * @param index
+     *            The index of the first byte, possibly beyond the ring end.
+     * @param value
+     *            The value to write.
+     */
+    private void writeInt(int index, int value) {
+        for (int i = 3; i >= 0; i--) {
+            this.ring[(index + i) % this.ring.length] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * Writes a long into the ring.
+     * 
+     * @param index
+     *            The index of the first byte, possibly beyond the ring end.
+     * @param value
+     *            The value to write.
+     */
+    private void writeLong(int index, long value) {
+        for (int i = 7; i >= 0; i--) {
+            this.ring[(index + i) % this.ring.length] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.controller;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Level;
+
+import org.restlet.ext.nio.ServerConnectionHelper;
+
+/**
+ * Accepts new connections on a blocking server socket channel from a dedicated
+ * thread. The accepted sockets are configured then handed to the controller
+ * which registers them, so that a connection storm doesn't queue behind the
+ * controller loop. Several acceptors can share the same channel or listen on
+ * their own channel bound with the SO_REUSEPORT socket option.
+ */
+public class Acceptor implements Runnable {
+
+    /** The parent server helper. */
+    private final ServerConnectionHelper helper;
+
+    /** The server socket channel to accept from. */
+    private final ServerSocketChannel serverSocketChannel;
+
+    /**
+     * Constructor.
+     *
+     * @param helper
+     *            The parent server helper.
+     * @param serverSocketChannel
+     *            The blocking server socket channel to accept from.
+     */
+    public Acceptor(ServerConnectionHelper helper,
+            ServerSocketChannel serverSocketChannel) {
+        this.helper = helper;
+        this.serverSocketChannel = serverSocketChannel;
+    }
+
+    /**
+     * Pauses the acceptor, for example while the controller is overloaded.
+     *
+     * @return False if the acceptor was interrupted.
+     */
+    private boolean pause() {
+        boolean result = true;
+
+        try {
+            Thread.sleep(Math.max(1, this.helper.getControllerSleepTimeMs()));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            result = false;
+        }
+
+        return result;
+    }
+
+    /**
+     * Accepts connections until the server socket channel is closed.
+     */
+    public void run() {
+        boolean running = true;
+
+        while (running && this.serverSocketChannel.isOpen()) {
+            if (this.helper.getController().isOverloaded()) {
+                // Leave the new connections in the backlog
+                running = pause();
+            } else {
+                SocketChannel socketChannel = null;
+
+                try {
+                    socketChannel = this.serverSocketChannel.accept();
+
+                    if (socketChannel != null) {
+                        socketChannel.configureBlocking(false);
+                        this.helper.configure(socketChannel.socket());
+                        this.helper.getController().onAccepted(socketChannel);
+                    }
+                } catch (ClosedChannelException cce) {
+                    this.helper.getLogger().log(Level.FINE,
+                            "The server socket was closed", cce);
+                    running = false;
+                } catch (IOException ioe) {
+                    this.helper.getLogger().log(Level.WARNING,
+                            "Unexpected error while accepting new connection",
+                            ioe);
+
+                    if (socketChannel != null) {
+                        try {
+                            socketChannel.close();
+                        } catch (IOException e) {
+                            // Ignore
+                        }
+                    }
+
+                    // Avoid spinning, for example when no more file
+                    // descriptors are available
+                    running = pause();
+                }
+            }
+        }
+    }
+
+}
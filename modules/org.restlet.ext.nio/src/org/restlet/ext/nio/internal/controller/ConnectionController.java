@@ -99,6 +99,7 @@ public class ConnectionController extends Controller implements Runnable,
         if (conn.getState() == ConnectionState.CLOSED) {
             // Detach the connection and collect it
             getHelper().getConnections().remove(conn);
+            getHelper().getMetrics().onConnectionClosed();
             getHelper().checkin(conn);
         } else if ((conn.getState() == ConnectionState.CLOSING)
                 && conn.isEmpty()) {
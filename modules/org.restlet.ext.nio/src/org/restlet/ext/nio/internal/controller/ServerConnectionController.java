@@ -39,7 +39,10 @@ import java.net.SocketException;
 import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -51,12 +54,16 @@ import org.restlet.ext.nio.internal.connection.Connection;
 
 /**
  * Controls the IO work of parent server helper and manages its connections.
- * Listens on a server socket channel for incoming connections.
+ * Listens on a server socket channel for incoming connections, unless they are
+ * accepted by dedicated {@link Acceptor} threads.
  * 
  * @author Jerome Louvel
  */
 public class ServerConnectionController extends ConnectionController {
 
+    /** The queue of sockets accepted by the acceptor threads. */
+    private final Queue<SocketChannel> acceptedChannels;
+
     /** The latch to countdown when the socket is ready to accept connections. */
     private final CountDownLatch latch;
 
@@ -68,9 +75,47 @@ public class ServerConnectionController extends ConnectionController {
      */
     public ServerConnectionController(ServerConnectionHelper helper) {
         super(helper);
+        this.acceptedChannels = new ConcurrentLinkedQueue<SocketChannel>();
         this.latch = new CountDownLatch(1);
     }
 
+    /**
+     * Creates a connection for a newly accepted socket, unless the maximum
+     * number of connections is reached.
+     * 
+     * @param socketChannel
+     *            The accepted and configured socket channel.
+     * @throws IOException
+     */
+    protected void accept(SocketChannel socketChannel) throws IOException {
+        int connectionsCount = getHelper().getConnections().size();
+
+        if ((getHelper().getMaxTotalConnections() == -1)
+                || (connectionsCount <= getHelper().getMaxTotalConnections())) {
+            Connection<Server> connection = getHelper().checkout(
+                    socketChannel,
+                    this,
+                    (InetSocketAddress) socketChannel.socket()
+                            .getRemoteSocketAddress());
+            connection.open();
+            getHelper().getConnections().add(connection);
+
+            if (getHelper().getLogger().isLoggable(Level.FINE)) {
+                getHelper().getLogger().fine(
+                        "Connection from \""
+                                + connection.getSocketAddress()
+                                + "\" accepted. New count: "
+                                + getHelper().getConnections().size());
+            }
+        } else {
+            // Rejection connection
+            socketChannel.close();
+            getHelper()
+                    .getLogger()
+                    .info("Maximum number of concurrent connections reached. New connection rejected.");
+        }
+    }
+
     /**
      * Awaits for the controller to be effectively started.
      * 
@@ -95,48 +140,36 @@ public class ServerConnectionController extends ConnectionController {
         return (ServerConnectionHelper) super.getHelper();
     }
 
+    /**
+     * Called back by an acceptor thread when a new socket has been accepted and
+     * configured. The socket is registered by the next iteration of the
+     * controller loop.
+     * 
+     * @param socketChannel
+     *            The accepted socket channel.
+     */
+    public void onAccepted(SocketChannel socketChannel) {
+        this.acceptedChannels.add(socketChannel);
+        wakeup();
+    }
+
     @Override
     protected void onSelected(SelectionKey key) throws IOException {
         if (!key.isAcceptable()) {
             super.onSelected(key);
-        } else if (!isOverloaded()) {
-            try {
-                // Accept the new connection
-                SocketChannel socketChannel = getHelper()
-                        .getServerSocketChannel().accept();
+        } else {
+            ServerSocketChannel serverSocketChannel = (ServerSocketChannel) key
+                    .channel();
+            SocketChannel socketChannel = null;
 
-                if (socketChannel != null) {
+            try {
+                // Accept a batch of new connections
+                for (int i = 0; (i < getHelper().getAcceptBatchSize())
+                        && !isOverloaded()
+                        && ((socketChannel = serverSocketChannel.accept()) != null); i++) {
                     socketChannel.configureBlocking(false);
                     getHelper().configure(socketChannel.socket());
-
-                    int connectionsCount = getHelper().getConnections().size();
-
-                    if ((getHelper().getMaxTotalConnections() == -1)
-                            || (connectionsCount <= getHelper()
-                                    .getMaxTotalConnections())) {
-                        Connection<Server> connection = getHelper().checkout(
-                                socketChannel,
-                                this,
-                                (InetSocketAddress) socketChannel.socket()
-                                        .getRemoteSocketAddress());
-                        connection.open();
-                        getHelper().getConnections().add(connection);
-
-                        if (getHelper().getLogger().isLoggable(Level.FINE)) {
-                            getHelper().getLogger().fine(
-                                    "Connection from \""
-                                            + connection.getSocketAddress()
-                                            + "\" accepted. New count: "
-                                            + getHelper().getConnections()
-                                                    .size());
-                        }
-                    } else {
-                        // Rejection connection
-                        socketChannel.close();
-                        getHelper()
-                                .getLogger()
-                                .info("Maximum number of concurrent connections reached. New connection rejected.");
-                    }
+                    accept(socketChannel);
                 }
             } catch (ClosedByInterruptException ex) {
                 getHelper().getLogger().log(Level.FINE,
@@ -155,20 +188,78 @@ public class ServerConnectionController extends ConnectionController {
         }
     }
 
+    /**
+     * Registers a batch of the sockets accepted by the acceptor threads. Wakes
+     * up the next selection if more sockets remain.
+     */
+    protected void registerAccepted() {
+        SocketChannel socketChannel = null;
+
+        for (int i = 0; (i < getHelper().getAcceptBatchSize())
+                && ((socketChannel = this.acceptedChannels.poll()) != null); i++) {
+            try {
+                accept(socketChannel);
+            } catch (IOException ioe) {
+                getHelper().getLogger().log(Level.WARNING,
+                        "Unable to register a new connection", ioe);
+
+                try {
+                    socketChannel.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+
+        if (!this.acceptedChannels.isEmpty()) {
+            wakeup();
+        }
+    }
+
     @Override
     protected void doInit() {
         super.doInit();
 
-        // Register interest in NIO accept events
-        try {
-            getHelper().getServerSocketChannel().register(getSelector(),
-                    SelectionKey.OP_ACCEPT);
-        } catch (IOException ioe) {
-            getHelper().getLogger().log(Level.WARNING,
-                    "Unexpected error while registering an NIO selection key",
-                    ioe);
+        // Register interest in NIO accept events unless acceptor threads are
+        // used
+        if (getHelper().getAcceptorThreads() == 0) {
+            try {
+                for (ServerSocketChannel serverSocketChannel : getHelper()
+                        .getServerSocketChannels()) {
+                    serverSocketChannel.register(getSelector(),
+                            SelectionKey.OP_ACCEPT);
+                }
+            } catch (IOException ioe) {
+                getHelper()
+                        .getLogger()
+                        .log(Level.WARNING,
+                                "Unexpected error while registering an NIO selection key",
+                                ioe);
+            }
         }
 
         this.latch.countDown();
     }
+
+    @Override
+    protected void doRelease() {
+        SocketChannel socketChannel = null;
+
+        // Close the sockets accepted but not registered yet
+        while ((socketChannel = this.acceptedChannels.poll()) != null) {
+            try {
+                socketChannel.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+
+        super.doRelease();
+    }
+
+    @Override
+    protected void doRun(long sleepTime) throws IOException {
+        registerAccepted();
+        super.doRun(sleepTime);
+    }
 }
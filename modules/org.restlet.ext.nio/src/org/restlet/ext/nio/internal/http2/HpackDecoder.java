@@ -0,0 +1,234 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.data.Header;
+
+/**
+ * HPACK decoder of header blocks, as defined in RFC 7541. An instance keeps
+ * the dynamic table of a connection and must decode all the header blocks
+ * received, in order.
+ */
+public class HpackDecoder {
+
+    /** The block being decoded. */
+    private volatile byte[] block;
+
+    /** The end of the block being decoded. */
+    private volatile int limit;
+
+    /** The maximum table size announced to the peer. */
+    private final int maxTableSize;
+
+    /** The position in the block being decoded. */
+    private volatile int position;
+
+    /** The indexing table. */
+    private final HpackTable table;
+
+    /**
+     * Constructor.
+     * 
+     * @param maxTableSize
+     *            The maximum table size announced to the peer.
+     */
+    public HpackDecoder(int maxTableSize) {
+        this.maxTableSize = maxTableSize;
+        this.table = new HpackTable(maxTableSize);
+    }
+
+    /**
+     * Decodes a complete header block.
+     * 
+     * @param block
+     *            The source array.
+     * @param offset
+     *            The offset of the header block.
+     * @param length
+     *            The length of the header block.
+     * @return The decoded headers, in order.
+     * @throws Http2Exception
+     *             If the block can't be decoded.
+     */
+    public List<Header> decode(byte[] block, int offset, int length)
+            throws Http2Exception {
+        List<Header> result = new ArrayList<Header>();
+        this.block = block;
+        this.position = offset;
+        this.limit = offset + length;
+
+        while (this.position < this.limit) {
+            int b = block[this.position] & 0xFF;
+
+            if ((b & 0x80) != 0) {
+                // Indexed header field
+                result.add(this.table.get(readInteger(7)));
+            } else if ((b & 0x40) != 0) {
+                // Literal header field with incremental indexing
+                Header header = readLiteral(6);
+                this.table.add(header.getName(), header.getValue());
+                result.add(header);
+            } else if ((b & 0x20) != 0) {
+                // Dynamic table size update
+                int size = readInteger(5);
+
+                if (size > this.maxTableSize) {
+                    throw new Http2Exception(Http2Exception.COMPRESSION_ERROR,
+                            "Dynamic table size update exceeding the limit");
+                }
+
+                this.table.setMaxSize(size);
+            } else {
+                // Literal header field without indexing or never indexed
+                result.add(readLiteral(4));
+            }
+        }
+
+        this.block = null;
+        return result;
+    }
+
+    /**
+     * Reads the next byte of the block.
+     * 
+     * @return The next byte.
+     * @throws Http2Exception
+     *             If the end of the block is reached.
+     */
+    private int readByte() throws Http2Exception {
+        if (this.position >= this.limit) {
+            throw new Http2Exception(Http2Exception.COMPRESSION_ERROR,
+                    "Truncated header block");
+        }
+
+        return this.block[this.position++] & 0xFF;
+    }
+
+    /**
+     * Reads an integer with a given prefix length.
+     * 
+     * @param prefixBits
+     *            The number of bits of the prefix.
+     * @return The integer read.
+     * @throws Http2Exception
+     *             If the integer is truncated or too large.
+     */
+    private int readInteger(int prefixBits) throws Http2Exception {
+        int mask = (1 << prefixBits) - 1;
+        long result = readByte() & mask;
+
+        if (result == mask) {
+            int shift = 0;
+            int b;
+
+            do {
+                b = readByte();
+                result += (long) (b & 0x7F) << shift;
+                shift += 7;
+
+                if (result > Integer.MAX_VALUE) {
+                    throw new Http2Exception(Http2Exception.COMPRESSION_ERROR,
+                            "Integer overflow in header block");
+                }
+            } while ((b & 0x80) != 0);
+        }
+
+        return (int) result;
+    }
+
+    /**
+     * Reads a literal header field, whose name can be indexed.
+     * 
+     * @param prefixBits
+     *            The number of bits of the name index prefix.
+     * @return The header read.
+     * @throws Http2Exception
+     *             If the field can't be read.
+     */
+    private Header readLiteral(int prefixBits) throws Http2Exception {
+        int nameIndex = readInteger(prefixBits);
+        String name = (nameIndex == 0) ? readString() : this.table.get(
+                nameIndex).getName();
+        return new Header(name, readString());
+    }
+
+    /**
+     * Reads a string literal, possibly Huffman encoded.
+     * 
+     * @return The string read.
+     * @throws Http2Exception
+     *             If the string can't be read.
+     */
+    private String readString() throws Http2Exception {
+        String result = null;
+
+        if (this.position >= this.limit) {
+            throw new Http2Exception(Http2Exception.COMPRESSION_ERROR,
+                    "Truncated header block");
+        }
+
+        boolean huffman = (this.block[this.position] & 0x80) != 0;
+        int length = readInteger(7);
+
+        if (length > this.limit - this.position) {
+            throw new Http2Exception(Http2Exception.COMPRESSION_ERROR,
+                    "Truncated string literal in header block");
+        }
+
+        byte[] bytes = null;
+
+        if (huffman) {
+            bytes = Huffman.decode(this.block, this.position, length);
+        } else {
+            bytes = new byte[length];
+            System.arraycopy(this.block, this.position, bytes, 0, length);
+        }
+
+        this.position += length;
+
+        try {
+            result = new String(bytes, "ISO-8859-1");
+        } catch (UnsupportedEncodingException e) {
+            throw new Http2Exception(Http2Exception.INTERNAL_ERROR,
+                    e.getMessage());
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.restlet.data.Header;
+import org.restlet.engine.util.StringUtils;
+
+/**
+ * HPACK encoder of header blocks, as defined in RFC 7541. An instance keeps
+ * the dynamic table of a connection and must encode all the header blocks
+ * sent, in order. Headers repeated across responses, such as the server name
+ * or the media type, are added to the dynamic table so that they are later
+ * sent as a single index byte.
+ */
+public class HpackEncoder {
+
+    /**
+     * The names of the headers never added to the dynamic table, because
+     * their values change for almost every message or are sensitive.
+     */
+    private static final Set<String> UNINDEXED_NAMES = new HashSet<String>(
+            Arrays.asList("age", "authorization", "content-length",
+                    "content-range", "date", "etag", "expires",
+                    "last-modified", "location", "proxy-authorization",
+                    "set-cookie"));
+
+    /** The names of the sensitive headers, which must never be indexed. */
+    private static final Set<String> SENSITIVE_NAMES = new HashSet<String>(
+            Arrays.asList("authorization", "proxy-authorization",
+                    "set-cookie"));
+
+    /**
+     * The lowest maximum table size set since the last block, or -1 if the
+     * size wasn't changed.
+     */
+    private volatile int minTableSize;
+
+    /** The indexing table. */
+    private final HpackTable table;
+
+    /**
+     * Constructor.
+     * 
+     * @param maxTableSize
+     *            The maximum table size.
+     */
+    public HpackEncoder(int maxTableSize) {
+        this.minTableSize = -1;
+        this.table = new HpackTable(maxTableSize);
+    }
+
+    /**
+     * Encodes a complete header block. Header names are converted to lower
+     * case.
+     * 
+     * @param headers
+     *            The headers to encode, in order.
+     * @return The header block.
+     */
+    public byte[] encode(List<Header> headers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+
+        // Signal a table size change at the beginning of the block
+        if (this.minTableSize != -1) {
+            if (this.minTableSize < this.table.getMaxSize()) {
+                writeInteger(0x20, 5, this.minTableSize, out);
+            }
+
+            writeInteger(0x20, 5, this.table.getMaxSize(), out);
+            this.minTableSize = -1;
+        }
+
+        for (Header header : headers) {
+            String name = header.getName().toLowerCase();
+            String value = (header.getValue() == null) ? "" : header
+                    .getValue();
+            int index = this.table.find(name, value);
+
+            if (index > 0) {
+                // Indexed header field
+                writeInteger(0x80, 7, index, out);
+            } else if (SENSITIVE_NAMES.contains(name)) {
+                // Literal header field never indexed
+                writeLiteral(0x10, 4, -index, name, value, out);
+            } else if (UNINDEXED_NAMES.contains(name)
+                    || (HpackTable.getEntrySize(name, value) > this.table
+                            .getMaxSize() / 4)) {
+                // Literal header field without indexing
+                writeLiteral(0x00, 4, -index, name, value, out);
+            } else {
+                // Literal header field with incremental indexing
+                writeLiteral(0x40, 6, -index, name, value, out);
+                this.table.add(name, value);
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Sets the maximum table size, typically after the peer changed its
+     * header table size setting.
+     * 
+     * @param maxTableSize
+     *            The maximum table size.
+     */
+    public void setMaxTableSize(int maxTableSize) {
+        if (maxTableSize != this.table.getMaxSize()) {
+            if ((this.minTableSize == -1)
+                    || (maxTableSize < this.minTableSize)) {
+                this.minTableSize = maxTableSize;
+            }
+
+            this.table.setMaxSize(maxTableSize);
+        }
+    }
+
+    /**
+     * Writes an integer with a given prefix.
+     * 
+     * @param pattern
+     *            The bits preceding the prefix in the first byte.
+     * @param prefixBits
+     *            The number of bits of the prefix.
+     * @param value
+     *            The value to write.
+     * @param out
+     *            The output stream to update.
+     */
+    private void writeInteger(int pattern, int prefixBits, int value,
+            ByteArrayOutputStream out) {
+        int mask = (1 << prefixBits) - 1;
+
+        if (value < mask) {
+            out.write(pattern | value);
+        } else {
+            out.write(pattern | mask);
+            value -= mask;
+
+            while (value >= 0x80) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+
+            out.write(value);
+        }
+    }
+
+    /**
+     * Writes a literal header field.
+     * 
+     * @param pattern
+     *            The bits preceding the name index in the first byte.
+     * @param prefixBits
+     *            The number of bits of the name index prefix.
+     * @param nameIndex
+     *            The name index or 0 for a literal name.
+     * @param name
+     *            The header name.
+     * @param value
+     *            The header value.
+     * @param out
+     *            The output stream to update.
+     */
+    private void writeLiteral(int pattern, int prefixBits, int nameIndex,
+            String name, String value, ByteArrayOutputStream out) {
+        writeInteger(pattern, prefixBits, nameIndex, out);
+
+        if (nameIndex == 0) {
+            writeString(name, out);
+        }
+
+        writeString(value, out);
+    }
+
+    /**
+     * Writes a string literal, Huffman encoded when shorter.
+     * 
+     * @param value
+     *            The string to write.
+     * @param out
+     *            The output stream to update.
+     */
+    private void writeString(String value, ByteArrayOutputStream out) {
+        byte[] bytes = StringUtils.getLatin1Bytes(value);
+        int encodedLength = Huffman.getEncodedLength(bytes);
+
+        if (encodedLength < bytes.length) {
+            writeInteger(0x80, 7, encodedLength, out);
+            Huffman.encode(bytes, out);
+        } else {
+            writeInteger(0x00, 7, bytes.length, out);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.restlet.data.Header;
+
+/**
+ * HPACK indexing table, made of the static table defined in appendix A of RFC
+ * 7541 followed by a dynamic table whose newest entries have the lowest
+ * indexes.
+ */
+public class HpackTable {
+
+    /** The static table entries, index 1 being the first. */
+    private static final String[][] STATIC_ENTRIES = {
+            { ":authority", "" }, { ":method", "GET" }, { ":method", "POST" },
+            { ":path", "/" }, { ":path", "/index.html" },
+            { ":scheme", "http" }, { ":scheme", "https" },
+            { ":status", "200" }, { ":status", "204" }, { ":status", "206" },
+            { ":status", "304" }, { ":status", "400" }, { ":status", "404" },
+            { ":status", "500" }, { "accept-charset", "" },
+            { "accept-encoding", "gzip, deflate" },
+            { "accept-language", "" }, { "accept-ranges", "" },
+            { "accept", "" }, { "access-control-allow-origin", "" },
+            { "age", "" }, { "allow", "" }, { "authorization", "" },
+            { "cache-control", "" }, { "content-disposition", "" },
+            { "content-encoding", "" }, { "content-language", "" },
+            { "content-length", "" }, { "content-location", "" },
+            { "content-range", "" }, { "content-type", "" },
+            { "cookie", "" }, { "date", "" }, { "etag", "" },
+            { "expect", "" }, { "expires", "" }, { "from", "" },
+            { "host", "" }, { "if-match", "" }, { "if-modified-since", "" },
+            { "if-none-match", "" }, { "if-range", "" },
+            { "if-unmodified-since", "" }, { "last-modified", "" },
+            { "link", "" }, { "location", "" }, { "max-forwards", "" },
+            { "proxy-authenticate", "" }, { "proxy-authorization", "" },
+            { "range", "" }, { "referer", "" }, { "refresh", "" },
+            { "retry-after", "" }, { "server", "" }, { "set-cookie", "" },
+            { "strict-transport-security", "" },
+            { "transfer-encoding", "" }, { "user-agent", "" },
+            { "vary", "" }, { "via", "" }, { "www-authenticate", "" } };
+
+    /** The number of static entries. */
+    public static final int STATIC_SIZE = STATIC_ENTRIES.length;
+
+    /** The static indexes of the name and value pairs. */
+    private static final Map<String, Integer> STATIC_FIELDS = new HashMap<String, Integer>();
+
+    /** The lowest static indexes of the names. */
+    private static final Map<String, Integer> STATIC_NAMES = new HashMap<String, Integer>();
+
+    static {
+        for (int i = STATIC_SIZE - 1; i >= 0; i--) {
+            STATIC_FIELDS.put(STATIC_ENTRIES[i][0] + '\n'
+                    + STATIC_ENTRIES[i][1], i + 1);
+            STATIC_NAMES.put(STATIC_ENTRIES[i][0], i + 1);
+        }
+    }
+
+    /**
+     * Returns the size of an entry as defined by HPACK.
+     * 
+     * @param name
+     *            The header name.
+     * @param value
+     *            The header value.
+     * @return The size of the entry.
+     */
+    public static int getEntrySize(String name, String value) {
+        return name.length() + value.length() + 32;
+    }
+
+    /** The dynamic entries, newest first. */
+    private final LinkedList<Header> entries;
+
+    /** The maximum size of the dynamic table. */
+    private volatile int maxSize;
+
+    /** The current size of the dynamic table. */
+    private volatile int size;
+
+    /**
+     * Constructor.
+     * 
+     * @param maxSize
+     *            The maximum size of the dynamic table.
+     */
+    public HpackTable(int maxSize) {
+        this.entries = new LinkedList<Header>();
+        this.maxSize = maxSize;
+        this.size = 0;
+    }
+
+    /**
+     * Adds an entry to the dynamic table, evicting the oldest entries if
+     * needed. An entry larger than the maximum size empties the table.
+     * 
+     * @param name
+     *            The header name.
+     * @param value
+     *            The header value.
+     */
+    public void add(String name, String value) {
+        int entrySize = getEntrySize(name, value);
+        evict(this.maxSize - entrySize);
+
+        if (entrySize <= this.maxSize) {
+            this.entries.addFirst(new Header(name, value));
+            this.size += entrySize;
+        }
+    }
+
+    /**
+     * Evicts the oldest entries until the table size doesn't exceed a limit.
+     * 
+     * @param limit
+     *            The size limit.
+     */
+    private void evict(int limit) {
+        while ((this.size > limit) && !this.entries.isEmpty()) {
+            Header removed = this.entries.removeLast();
+            this.size -= getEntrySize(removed.getName(), removed.getValue());
+        }
+    }
+
+    /**
+     * Finds the index of a header. Returns a positive index if both the name
+     * and the value match, a negative index if only the name matches or 0.
+     * 
+     * @param name
+     *            The header name.
+     * @param value
+     *            The header value.
+     * @return The matching index.
+     */
+    public int find(String name, String value) {
+        Integer index = STATIC_FIELDS.get(name + '\n' + value);
+        int result = (index == null) ? 0 : index.intValue();
+
+        if (result == 0) {
+            index = STATIC_NAMES.get(name);
+            result = (index == null) ? 0 : -index.intValue();
+            int i = STATIC_SIZE + 1;
+
+            for (Header entry : this.entries) {
+                if (entry.getName().equals(name)) {
+                    if (entry.getValue().equals(value)) {
+                        result = i;
+                        break;
+                    } else if (result == 0) {
+                        result = -i;
+                    }
+                }
+
+                i++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the entry at a given index.
+     * 
+     * @param index
+     *            The index, starting at 1.
+     * @return The matching entry.
+     * @throws Http2Exception
+     *             If the index is invalid.
+     */
+    public Header get(int index) throws Http2Exception {
+        Header result = null;
+
+        if ((index > 0) && (index <= STATIC_SIZE)) {
+            result = new Header(STATIC_ENTRIES[index - 1][0],
+                    STATIC_ENTRIES[index - 1][1]);
+        } else if ((index > STATIC_SIZE)
+                && (index <= STATIC_SIZE + this.entries.size())) {
+            result = this.entries.get(index - STATIC_SIZE - 1);
+        } else {
+            throw new Http2Exception(Http2Exception.COMPRESSION_ERROR,
+                    "Invalid header table index: " + index);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the maximum size of the dynamic table.
+     * 
+     * @return The maximum size of the dynamic table.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the current size of the dynamic table.
+     * 
+     * @return The current size of the dynamic table.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Sets the maximum size of the dynamic table, evicting the oldest entries
+     * if needed.
+     * 
+     * @param maxSize
+     *            The maximum size of the dynamic table.
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        evict(maxSize);
+    }
+
+}
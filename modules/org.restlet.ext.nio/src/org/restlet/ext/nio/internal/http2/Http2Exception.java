@@ -0,0 +1,139 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.io.IOException;
+
+/**
+ * HTTP/2 protocol error, either affecting the whole connection or a single
+ * stream.
+ */
+public class Http2Exception extends IOException {
+
+    /** Error code for the graceful shutdown of a connection or a stream. */
+    public static final int NO_ERROR = 0x0;
+
+    /** Error code for an unspecific protocol error. */
+    public static final int PROTOCOL_ERROR = 0x1;
+
+    /** Error code for an unexpected internal error. */
+    public static final int INTERNAL_ERROR = 0x2;
+
+    /** Error code for a violation of the flow-control protocol. */
+    public static final int FLOW_CONTROL_ERROR = 0x3;
+
+    /** Error code for a frame received on a half-closed stream. */
+    public static final int STREAM_CLOSED = 0x5;
+
+    /** Error code for a frame with an invalid size. */
+    public static final int FRAME_SIZE_ERROR = 0x6;
+
+    /** Error code for a stream refused before any processing. */
+    public static final int REFUSED_STREAM = 0x7;
+
+    /** Error code for a stream that is no longer needed. */
+    public static final int CANCEL = 0x8;
+
+    /** Error code for a header compression context that can't be maintained. */
+    public static final int COMPRESSION_ERROR = 0x9;
+
+    /** Error code for a peer exhibiting a behavior that might generate load. */
+    public static final int ENHANCE_YOUR_CALM = 0xb;
+
+    private static final long serialVersionUID = 1L;
+
+    /** The error code. */
+    private final int errorCode;
+
+    /** The identifier of the stream in error, 0 for the whole connection. */
+    private final int streamId;
+
+    /**
+     * Constructor for connection errors.
+     * 
+     * @param errorCode
+     *            The error code.
+     * @param message
+     *            The error message.
+     */
+    public Http2Exception(int errorCode, String message) {
+        this(errorCode, 0, message);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param errorCode
+     *            The error code.
+     * @param streamId
+     *            The identifier of the stream in error, 0 for the whole
+     *            connection.
+     * @param message
+     *            The error message.
+     */
+    public Http2Exception(int errorCode, int streamId, String message) {
+        super(message);
+        this.errorCode = errorCode;
+        this.streamId = streamId;
+    }
+
+    /**
+     * Returns the error code.
+     * 
+     * @return The error code.
+     */
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * Returns the identifier of the stream in error, 0 for the whole
+     * connection.
+     * 
+     * @return The identifier of the stream in error.
+     */
+    public int getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * Indicates if the error only affects a single stream.
+     * 
+     * @return True if the error only affects a single stream.
+     */
+    public boolean isStreamError() {
+        return streamId != 0;
+    }
+
+}
@@ -0,0 +1,740 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Server;
+import org.restlet.ext.nio.internal.connection.Connection;
+
+/**
+ * State of an HTTP/2 connection shared by its inbound and outbound ways:
+ * settings, flow-control windows, header compression contexts, active streams
+ * and frames waiting to be sent.
+ */
+public class Http2Session {
+
+    /** The client connection preface. */
+    public static final byte[] PREFACE = { 'P', 'R', 'I', ' ', '*', ' ', 'H',
+            'T', 'T', 'P', '/', '2', '.', '0', '\r', '\n', '\r', '\n', 'S',
+            'M', '\r', '\n', '\r', '\n' };
+
+    /** The default flow-control window size. */
+    public static final int DEFAULT_WINDOW_SIZE = 65535;
+
+    /** The default and maximum size of received frames payloads. */
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+
+    /** The size of the header compression tables. */
+    public static final int HEADER_TABLE_SIZE = 4096;
+
+    /** The size of a frame header. */
+    public static final int FRAME_HEADER_SIZE = 9;
+
+    /** The DATA frame type. */
+    public static final int TYPE_DATA = 0x0;
+
+    /** The HEADERS frame type. */
+    public static final int TYPE_HEADERS = 0x1;
+
+    /** The PRIORITY frame type. */
+    public static final int TYPE_PRIORITY = 0x2;
+
+    /** The RST_STREAM frame type. */
+    public static final int TYPE_RST_STREAM = 0x3;
+
+    /** The SETTINGS frame type. */
+    public static final int TYPE_SETTINGS = 0x4;
+
+    /** The PUSH_PROMISE frame type. */
+    public static final int TYPE_PUSH_PROMISE = 0x5;
+
+    /** The PING frame type. */
+    public static final int TYPE_PING = 0x6;
+
+    /** The GOAWAY frame type. */
+    public static final int TYPE_GOAWAY = 0x7;
+
+    /** The WINDOW_UPDATE frame type. */
+    public static final int TYPE_WINDOW_UPDATE = 0x8;
+
+    /** The CONTINUATION frame type. */
+    public static final int TYPE_CONTINUATION = 0x9;
+
+    /** The END_STREAM flag of DATA and HEADERS frames. */
+    public static final int FLAG_END_STREAM = 0x1;
+
+    /** The ACK flag of SETTINGS and PING frames. */
+    public static final int FLAG_ACK = 0x1;
+
+    /** The END_HEADERS flag of HEADERS and CONTINUATION frames. */
+    public static final int FLAG_END_HEADERS = 0x4;
+
+    /** The PADDED flag of DATA and HEADERS frames. */
+    public static final int FLAG_PADDED = 0x8;
+
+    /** The PRIORITY flag of HEADERS frames. */
+    public static final int FLAG_PRIORITY = 0x20;
+
+    /** The SETTINGS_HEADER_TABLE_SIZE identifier. */
+    public static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+
+    /** The SETTINGS_ENABLE_PUSH identifier. */
+    public static final int SETTINGS_ENABLE_PUSH = 0x2;
+
+    /** The SETTINGS_MAX_CONCURRENT_STREAMS identifier. */
+    public static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+
+    /** The SETTINGS_INITIAL_WINDOW_SIZE identifier. */
+    public static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+
+    /** The SETTINGS_MAX_FRAME_SIZE identifier. */
+    public static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+
+    /**
+     * Creates a frame ready to be written.
+     * 
+     * @param type
+     *            The frame type.
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     * @param payload
+     *            The payload array.
+     * @param offset
+     *            The offset of the payload.
+     * @param length
+     *            The length of the payload.
+     * @return The frame ready to be read.
+     */
+    public static ByteBuffer createFrame(int type, int flags, int streamId,
+            byte[] payload, int offset, int length) {
+        ByteBuffer result = ByteBuffer.allocate(FRAME_HEADER_SIZE + length);
+        putFrameHeader(result, 0, length, type, flags, streamId);
+        result.position(FRAME_HEADER_SIZE);
+        result.put(payload, offset, length);
+        result.flip();
+        return result;
+    }
+
+    /**
+     * Writes a frame header at a given index, without moving the buffer
+     * position.
+     * 
+     * @param buffer
+     *            The target buffer.
+     * @param index
+     *            The index of the frame header.
+     * @param length
+     *            The payload length.
+     * @param type
+     *            The frame type.
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     */
+    public static void putFrameHeader(ByteBuffer buffer, int index,
+            int length, int type, int flags, int streamId) {
+        buffer.put(index, (byte) (length >>> 16));
+        buffer.put(index + 1, (byte) (length >>> 8));
+        buffer.put(index + 2, (byte) length);
+        buffer.put(index + 3, (byte) type);
+        buffer.put(index + 4, (byte) flags);
+        buffer.putInt(index + 5, streamId & 0x7FFFFFFF);
+    }
+
+    /** The parent connection. */
+    private final Connection<Server> connection;
+
+    /** The decoder of the received header blocks. */
+    private final HpackDecoder decoder;
+
+    /** The encoder of the sent header blocks. */
+    private final HpackEncoder encoder;
+
+    /** Indicates if a GOAWAY frame was sent or received. */
+    private volatile boolean goingAway;
+
+    /** The highest identifier of the streams initiated by the client. */
+    private volatile int lastStreamId;
+
+    /** The maximum number of concurrent streams accepted. */
+    private final int maxConcurrentStreams;
+
+    /** The initial window size of the streams, as set by the peer. */
+    private volatile int peerInitialWindowSize;
+
+    /** The maximum frame payload size accepted by the peer. */
+    private volatile int peerMaxFrameSize;
+
+    /** The frames waiting to be sent. */
+    private final Queue<ByteBuffer> pendingFrames;
+
+    /** The responses waiting for their headers to be sent. */
+    private final Queue<Response> pendingResponses;
+
+    /** The connection-level bytes received but not yet acknowledged. */
+    private int receiveUnacknowledged;
+
+    /** The connection-level number of bytes that can be sent to the peer. */
+    private int sendWindow;
+
+    /** The active streams. */
+    private final Map<Integer, Http2Stream> streams;
+
+    /**
+     * Constructor. Queues the server connection preface, made of a SETTINGS
+     * frame, after the optional bytes given.
+     * 
+     * @param connection
+     *            The parent connection.
+     * @param maxConcurrentStreams
+     *            The maximum number of concurrent streams accepted.
+     * @param prefix
+     *            The bytes to send before the server preface, or null.
+     */
+    public Http2Session(Connection<Server> connection,
+            int maxConcurrentStreams, byte[] prefix) {
+        this.connection = connection;
+        this.decoder = new HpackDecoder(HEADER_TABLE_SIZE);
+        this.encoder = new HpackEncoder(HEADER_TABLE_SIZE);
+        this.goingAway = false;
+        this.lastStreamId = 0;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.peerInitialWindowSize = DEFAULT_WINDOW_SIZE;
+        this.peerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+        this.pendingFrames = new ConcurrentLinkedQueue<ByteBuffer>();
+        this.pendingResponses = new ConcurrentLinkedQueue<Response>();
+        this.receiveUnacknowledged = 0;
+        this.sendWindow = DEFAULT_WINDOW_SIZE;
+        this.streams = new ConcurrentHashMap<Integer, Http2Stream>();
+
+        if (prefix != null) {
+            this.pendingFrames.add(ByteBuffer.wrap(prefix));
+        }
+
+        ByteBuffer settings = ByteBuffer.allocate(12);
+        settings.putShort((short) SETTINGS_MAX_CONCURRENT_STREAMS);
+        settings.putInt(maxConcurrentStreams);
+        settings.putShort((short) SETTINGS_ENABLE_PUSH);
+        settings.putInt(0);
+        queueFrame(TYPE_SETTINGS, 0, 0, settings.array(), 0, 12);
+    }
+
+    /**
+     * Adds a new stream.
+     * 
+     * @param stream
+     *            The new stream.
+     */
+    public void addStream(Http2Stream stream) {
+        this.streams.put(stream.getId(), stream);
+    }
+
+    /**
+     * Applies the settings received from the peer.
+     * 
+     * @param payload
+     *            The payload array.
+     * @param offset
+     *            The offset of the settings.
+     * @param length
+     *            The length of the settings.
+     * @throws Http2Exception
+     *             If a setting is invalid.
+     */
+    public void applySettings(byte[] payload, int offset, int length)
+            throws Http2Exception {
+        if ((length % 6) != 0) {
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR,
+                    "Invalid SETTINGS frame length");
+        }
+
+        ByteBuffer settings = ByteBuffer.wrap(payload, offset, length);
+
+        while (settings.hasRemaining()) {
+            int id = settings.getShort() & 0xFFFF;
+            long value = settings.getInt() & 0xFFFFFFFFL;
+
+            if (id == SETTINGS_HEADER_TABLE_SIZE) {
+                this.encoder.setMaxTableSize((int) Math.min(value,
+                        HEADER_TABLE_SIZE));
+            } else if (id == SETTINGS_ENABLE_PUSH) {
+                if (value > 1) {
+                    throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                            "Invalid SETTINGS_ENABLE_PUSH value");
+                }
+            } else if (id == SETTINGS_INITIAL_WINDOW_SIZE) {
+                if (value > Integer.MAX_VALUE) {
+                    throw new Http2Exception(
+                            Http2Exception.FLOW_CONTROL_ERROR,
+                            "Invalid SETTINGS_INITIAL_WINDOW_SIZE value");
+                }
+
+                int delta = (int) value - this.peerInitialWindowSize;
+                this.peerInitialWindowSize = (int) value;
+
+                for (Http2Stream stream : this.streams.values()) {
+                    try {
+                        stream.increaseSendWindow(delta);
+                    } catch (Http2Exception e) {
+                        throw new Http2Exception(
+                                Http2Exception.FLOW_CONTROL_ERROR,
+                                e.getMessage());
+                    }
+                }
+            } else if (id == SETTINGS_MAX_FRAME_SIZE) {
+                if ((value < DEFAULT_MAX_FRAME_SIZE) || (value > 0xFFFFFF)) {
+                    throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                            "Invalid SETTINGS_MAX_FRAME_SIZE value");
+                }
+
+                this.peerMaxFrameSize = (int) value;
+            }
+
+            // Other settings don't affect a server without push
+        }
+    }
+
+    /**
+     * Consumes the connection-level window to send DATA frames.
+     * 
+     * @param length
+     *            The number of bytes sent.
+     */
+    public synchronized void consumeSendWindow(int length) {
+        this.sendWindow -= length;
+    }
+
+    /**
+     * Returns the parent connection.
+     * 
+     * @return The parent connection.
+     */
+    public Connection<Server> getConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns the decoder of the received header blocks.
+     * 
+     * @return The decoder of the received header blocks.
+     */
+    public HpackDecoder getDecoder() {
+        return decoder;
+    }
+
+    /**
+     * Returns the encoder of the sent header blocks.
+     * 
+     * @return The encoder of the sent header blocks.
+     */
+    public HpackEncoder getEncoder() {
+        return encoder;
+    }
+
+    /**
+     * Returns the highest identifier of the streams initiated by the client.
+     * 
+     * @return The highest identifier of the streams initiated by the client.
+     */
+    public int getLastStreamId() {
+        return lastStreamId;
+    }
+
+    /**
+     * Returns the maximum number of concurrent streams accepted.
+     * 
+     * @return The maximum number of concurrent streams accepted.
+     */
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    /**
+     * Returns the initial window size of the streams, as set by the peer.
+     * 
+     * @return The initial window size of the streams.
+     */
+    public int getPeerInitialWindowSize() {
+        return peerInitialWindowSize;
+    }
+
+    /**
+     * Returns the maximum frame payload size accepted by the peer.
+     * 
+     * @return The maximum frame payload size accepted by the peer.
+     */
+    public int getPeerMaxFrameSize() {
+        return peerMaxFrameSize;
+    }
+
+    /**
+     * Returns the frames waiting to be sent.
+     * 
+     * @return The frames waiting to be sent.
+     */
+    public Queue<ByteBuffer> getPendingFrames() {
+        return pendingFrames;
+    }
+
+    /**
+     * Returns the responses waiting for their headers to be sent.
+     * 
+     * @return The responses waiting for their headers to be sent.
+     */
+    public Queue<Response> getPendingResponses() {
+        return pendingResponses;
+    }
+
+    /**
+     * Returns the connection-level number of bytes that can be sent.
+     * 
+     * @return The connection-level number of bytes that can be sent.
+     */
+    public synchronized int getSendWindow() {
+        return sendWindow;
+    }
+
+    /**
+     * Returns the active stream with the given identifier.
+     * 
+     * @param id
+     *            The stream identifier.
+     * @return The active stream or null.
+     */
+    public Http2Stream getStream(int id) {
+        return this.streams.get(id);
+    }
+
+    /**
+     * Returns the active stream carrying the given request.
+     * 
+     * @param request
+     *            The request.
+     * @return The active stream or null.
+     */
+    public Http2Stream getStream(Request request) {
+        Http2Stream result = null;
+
+        for (Http2Stream stream : this.streams.values()) {
+            if (stream.getRequest() == request) {
+                result = stream;
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the active streams.
+     * 
+     * @return The active streams.
+     */
+    public Iterable<Http2Stream> getStreams() {
+        return this.streams.values();
+    }
+
+    /**
+     * Returns the number of active streams.
+     * 
+     * @return The number of active streams.
+     */
+    public int getStreamCount() {
+        return this.streams.size();
+    }
+
+    /**
+     * Sends a GOAWAY frame then closes the connection once the pending frames
+     * have been written.
+     * 
+     * @param errorCode
+     *            The error code.
+     * @param message
+     *            The debug message.
+     */
+    public void goAway(int errorCode, String message) {
+        if (!this.goingAway) {
+            this.goingAway = true;
+
+            if (getConnection().getLogger().isLoggable(Level.FINE)) {
+                getConnection().getLogger().fine(
+                        "Closing HTTP/2 connection with error code "
+                                + errorCode + ": " + message);
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(8);
+            payload.putInt(this.lastStreamId);
+            payload.putInt(errorCode);
+            queueFrame(TYPE_GOAWAY, 0, 0, payload.array(), 0, 8);
+        }
+
+        onClosed();
+        getConnection().close(true);
+    }
+
+    /**
+     * Indicates if there are frames ready to be written.
+     * 
+     * @return True if there are frames ready to be written.
+     */
+    public boolean hasOutput() {
+        boolean result = !this.pendingFrames.isEmpty()
+                || !this.pendingResponses.isEmpty();
+
+        if (!result) {
+            int window = getSendWindow();
+
+            for (Http2Stream stream : this.streams.values()) {
+                if (stream.isWritable(window)) {
+                    result = true;
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Increases the connection-level window to send DATA frames.
+     * 
+     * @param increment
+     *            The window increment.
+     * @throws Http2Exception
+     *             If the window overflows.
+     */
+    public synchronized void increaseSendWindow(int increment)
+            throws Http2Exception {
+        if ((long) this.sendWindow + increment > Integer.MAX_VALUE) {
+            throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR,
+                    "Connection flow-control window overflow");
+        }
+
+        this.sendWindow += increment;
+    }
+
+    /**
+     * Indicates if a GOAWAY frame was sent or received.
+     * 
+     * @return True if a GOAWAY frame was sent or received.
+     */
+    public boolean isGoingAway() {
+        return goingAway;
+    }
+
+    /**
+     * Resets all the active streams, typically when the connection is closed.
+     */
+    public void onClosed() {
+        for (Http2Stream stream : this.streams.values()) {
+            stream.onReset();
+        }
+
+        this.streams.clear();
+    }
+
+    /**
+     * Called back by a request entity when it consumed received bytes. Sends a
+     * stream-level WINDOW_UPDATE frame if enough bytes were consumed.
+     * 
+     * @param stream
+     *            The stream.
+     * @param length
+     *            The number of bytes consumed.
+     */
+    public void onDataConsumed(Http2Stream stream, int length) {
+        int increment = stream.onDataConsumed(length);
+
+        if (increment > 0) {
+            queueWindowUpdate(stream.getId(), increment);
+
+            // This method is called by the application threads
+            getConnection().getHelper().getController().wakeup();
+        }
+    }
+
+    /**
+     * Called back when a DATA frame is received. Sends a connection-level
+     * WINDOW_UPDATE frame once half of the window has been received, because
+     * stream-level flow control already bounds the buffered bytes.
+     * 
+     * @param length
+     *            The flow-controlled length of the frame.
+     */
+    public void onDataReceived(int length) {
+        int increment = 0;
+
+        synchronized (this) {
+            this.receiveUnacknowledged += length;
+
+            if (this.receiveUnacknowledged >= DEFAULT_WINDOW_SIZE / 2) {
+                increment = this.receiveUnacknowledged;
+                this.receiveUnacknowledged = 0;
+            }
+        }
+
+        if (increment > 0) {
+            queueWindowUpdate(0, increment);
+        }
+    }
+
+    /**
+     * Called back when a GOAWAY frame is received. The connection is closed
+     * once the active streams have been completed.
+     */
+    public void onGoAway() {
+        this.goingAway = true;
+
+        if (this.streams.isEmpty()) {
+            getConnection().close(true);
+        }
+    }
+
+    /**
+     * Queues a frame to be sent.
+     * 
+     * @param type
+     *            The frame type.
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     * @param payload
+     *            The payload array.
+     * @param offset
+     *            The offset of the payload.
+     * @param length
+     *            The length of the payload.
+     */
+    public void queueFrame(int type, int flags, int streamId, byte[] payload,
+            int offset, int length) {
+        this.pendingFrames.add(createFrame(type, flags, streamId, payload,
+                offset, length));
+    }
+
+    /**
+     * Queues a header block to be sent, split into a HEADERS frame followed by
+     * CONTINUATION frames if it exceeds the peer's maximum frame size.
+     * 
+     * @param streamId
+     *            The stream identifier.
+     * @param block
+     *            The encoded header block.
+     * @param endStream
+     *            Indicates if the END_STREAM flag must be set.
+     */
+    public void queueHeaders(int streamId, byte[] block, boolean endStream) {
+        int maxLength = getPeerMaxFrameSize();
+        int offset = 0;
+        int type = TYPE_HEADERS;
+        int flags = endStream ? FLAG_END_STREAM : 0;
+
+        do {
+            int length = Math.min(maxLength, block.length - offset);
+
+            if (offset + length == block.length) {
+                flags |= FLAG_END_HEADERS;
+            }
+
+            queueFrame(type, flags, streamId, block, offset, length);
+            offset += length;
+            type = TYPE_CONTINUATION;
+            flags = 0;
+        } while (offset < block.length);
+    }
+
+    /**
+     * Queues a RST_STREAM frame.
+     * 
+     * @param streamId
+     *            The stream identifier.
+     * @param errorCode
+     *            The error code.
+     */
+    public void queueRstStream(int streamId, int errorCode) {
+        byte[] payload = ByteBuffer.allocate(4).putInt(errorCode).array();
+        queueFrame(TYPE_RST_STREAM, 0, streamId, payload, 0, 4);
+    }
+
+    /**
+     * Queues a WINDOW_UPDATE frame.
+     * 
+     * @param streamId
+     *            The stream identifier or 0 for the connection.
+     * @param increment
+     *            The window increment.
+     */
+    public void queueWindowUpdate(int streamId, int increment) {
+        byte[] payload = ByteBuffer.allocate(4).putInt(increment).array();
+        queueFrame(TYPE_WINDOW_UPDATE, 0, streamId, payload, 0, 4);
+    }
+
+    /**
+     * Removes a completed or reset stream. Closes the connection if it is going
+     * away and no stream remains.
+     * 
+     * @param stream
+     *            The stream to remove.
+     */
+    public void removeStream(Http2Stream stream) {
+        this.streams.remove(stream.getId());
+
+        if (this.goingAway && this.streams.isEmpty()) {
+            getConnection().close(true);
+        }
+    }
+
+    /**
+     * Sets the highest identifier of the streams initiated by the client.
+     * 
+     * @param lastStreamId
+     *            The highest identifier of the streams initiated by the
+     *            client.
+     */
+    public void setLastStreamId(int lastStreamId) {
+        this.lastStreamId = lastStreamId;
+    }
+
+}
@@ -0,0 +1,506 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.util.WritingListener;
+
+/**
+ * HTTP/2 stream carrying a single request and its responses.
+ */
+public class Http2Stream {
+
+    /**
+     * Writing listener producing the request entity from the received DATA
+     * frames, without blocking the IO thread.
+     */
+    private class RequestEntityListener extends WritingListener {
+
+        @Override
+        protected void onWritable(ByteBuffer byteBuffer) throws IOException {
+            // Read the flag first so that no data queued before it is missed
+            boolean closed = isRemoteClosed();
+            ByteBuffer data = received.peek();
+            int consumed = 0;
+
+            while ((data != null) && byteBuffer.hasRemaining()) {
+                int length = Math.min(data.remaining(), byteBuffer.remaining());
+                int limit = data.limit();
+                data.limit(data.position() + length);
+                byteBuffer.put(data);
+                data.limit(limit);
+                consumed += length;
+
+                if (!data.hasRemaining()) {
+                    received.poll();
+                    data = received.peek();
+                }
+            }
+
+            if (consumed > 0) {
+                getSession().onDataConsumed(Http2Stream.this, consumed);
+            }
+
+            if (closed && received.isEmpty()) {
+                end();
+            }
+        }
+    }
+
+    /** The remaining bytes of an in-memory response entity. */
+    private volatile ByteBuffer entityBuffer;
+
+    /** The response entity channel. */
+    private volatile ReadableByteChannel entityChannel;
+
+    /**
+     * Indicates if a non-blocking response entity signaled new content since
+     * it was last read.
+     */
+    private volatile boolean entityReady;
+
+    /**
+     * Indicates if the response entity channel signals new content via its
+     * selection registration.
+     */
+    private volatile boolean entitySelectable;
+
+    /**
+     * Indicates if the last read of a non-blocking response entity returned no
+     * content.
+     */
+    private volatile boolean entityStarved;
+
+    /** The stream identifier. */
+    private final int id;
+
+    /** Indicates if the local endpoint has sent an END_STREAM flag. */
+    private volatile boolean localClosed;
+
+    /** The DATA frames payloads received but not consumed yet. */
+    private final Queue<ByteBuffer> received;
+
+    /** Indicates if the remote endpoint has sent an END_STREAM flag. */
+    private volatile boolean remoteClosed;
+
+    /** The request received. */
+    private final Request request;
+
+    /** The listener producing the request entity, if any. */
+    private final RequestEntityListener requestListener;
+
+    /** The final response being sent. */
+    private volatile Response response;
+
+    /** The parent session. */
+    private final Http2Session session;
+
+    /** The bytes consumed but not yet acknowledged by a WINDOW_UPDATE frame. */
+    private int unacknowledged;
+
+    /** The number of bytes that the peer is allowed to send. */
+    private int receiveWindow;
+
+    /** The number of bytes that can be sent to the peer. */
+    private int sendWindow;
+
+    /**
+     * Constructor.
+     * 
+     * @param session
+     *            The parent session.
+     * @param id
+     *            The stream identifier.
+     * @param request
+     *            The request received.
+     * @param requestEntity
+     *            Indicates if a request entity is expected.
+     */
+    public Http2Stream(Http2Session session, int id, Request request,
+            boolean requestEntity) {
+        this.session = session;
+        this.id = id;
+        this.request = request;
+        this.received = new ConcurrentLinkedQueue<ByteBuffer>();
+        this.requestListener = requestEntity ? new RequestEntityListener()
+                : null;
+        this.remoteClosed = !requestEntity;
+        this.localClosed = false;
+        this.receiveWindow = Http2Session.DEFAULT_WINDOW_SIZE;
+        this.sendWindow = session.getPeerInitialWindowSize();
+        this.unacknowledged = 0;
+    }
+
+    /**
+     * Consumes the window to send DATA frames.
+     * 
+     * @param length
+     *            The number of bytes sent.
+     */
+    public synchronized void consumeSendWindow(int length) {
+        this.sendWindow -= length;
+    }
+
+    /**
+     * Returns the remaining bytes of an in-memory response entity.
+     * 
+     * @return The remaining bytes of an in-memory response entity.
+     */
+    public ByteBuffer getEntityBuffer() {
+        return entityBuffer;
+    }
+
+    /**
+     * Returns the response entity channel.
+     * 
+     * @return The response entity channel.
+     */
+    public ReadableByteChannel getEntityChannel() {
+        return entityChannel;
+    }
+
+    /**
+     * Returns the stream identifier.
+     * 
+     * @return The stream identifier.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the request received.
+     * 
+     * @return The request received.
+     */
+    public Request getRequest() {
+        return request;
+    }
+
+    /**
+     * Returns the listener producing the request entity or null if no entity
+     * is expected.
+     * 
+     * @return The listener producing the request entity.
+     */
+    public WritingListener getRequestListener() {
+        return requestListener;
+    }
+
+    /**
+     * Returns the final response being sent.
+     * 
+     * @return The final response being sent.
+     */
+    public Response getResponse() {
+        return response;
+    }
+
+    /**
+     * Returns the number of bytes that can be sent to the peer.
+     * 
+     * @return The number of bytes that can be sent to the peer.
+     */
+    public synchronized int getSendWindow() {
+        return sendWindow;
+    }
+
+    /**
+     * Returns the parent session.
+     * 
+     * @return The parent session.
+     */
+    public Http2Session getSession() {
+        return session;
+    }
+
+    /**
+     * Increases the window to send DATA frames.
+     * 
+     * @param increment
+     *            The window increment, possibly negative after a settings
+     *            change.
+     * @throws Http2Exception
+     *             If the window overflows.
+     */
+    public synchronized void increaseSendWindow(int increment)
+            throws Http2Exception {
+        if ((long) this.sendWindow + increment > Integer.MAX_VALUE) {
+            throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR,
+                    this.id, "Stream flow-control window overflow");
+        }
+
+        this.sendWindow += increment;
+    }
+
+    /**
+     * Indicates if the response entity is waiting for a non-blocking producer
+     * to produce new content, or if this content was just signaled.
+     * 
+     * @return True if the response entity is waiting for new content.
+     */
+    public boolean isEntitySuspended() {
+        return (getEntityChannel() != null) && !isLocalClosed()
+                && this.entityStarved;
+    }
+
+    /**
+     * Indicates if the local endpoint has sent an END_STREAM flag.
+     * 
+     * @return True if the local endpoint has sent an END_STREAM flag.
+     */
+    public boolean isLocalClosed() {
+        return localClosed;
+    }
+
+    /**
+     * Indicates if the remote endpoint has sent an END_STREAM flag.
+     * 
+     * @return True if the remote endpoint has sent an END_STREAM flag.
+     */
+    public boolean isRemoteClosed() {
+        return remoteClosed;
+    }
+
+    /**
+     * Indicates if DATA frames can be written for the response entity.
+     * 
+     * @param connectionWindow
+     *            The connection-level send window.
+     * @return True if DATA frames can be written.
+     */
+    public boolean isWritable(int connectionWindow) {
+        boolean result = false;
+
+        if ((getResponse() != null) && !isLocalClosed()) {
+            if (getEntityBuffer() != null) {
+                // An empty buffer only needs the final frame
+                result = !getEntityBuffer().hasRemaining()
+                        || ((connectionWindow > 0) && (getSendWindow() > 0));
+            } else if (getEntityChannel() != null) {
+                result = (connectionWindow > 0) && (getSendWindow() > 0)
+                        && (!this.entityStarved || this.entityReady);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Called back by the IO thread when a DATA frame is received.
+     * 
+     * @param data
+     *            The frame payload, without padding.
+     * @param length
+     *            The flow-controlled length, including padding.
+     * @throws IOException
+     *             If the flow-control window is exceeded.
+     */
+    public void onData(ByteBuffer data, int length) throws IOException {
+        synchronized (this) {
+            this.receiveWindow -= length;
+
+            if (this.receiveWindow < 0) {
+                throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR,
+                        this.id, "Stream flow-control window exceeded");
+            }
+
+            // Padding is considered as consumed immediately
+            this.unacknowledged += length - data.remaining();
+        }
+
+        if (data.hasRemaining()) {
+            this.received.add(data);
+
+            if (this.requestListener != null) {
+                this.requestListener.resume();
+            }
+        }
+    }
+
+    /**
+     * Called back when the request entity consumed some received bytes.
+     * Returns the window increment to acknowledge, if large enough.
+     * 
+     * @param length
+     *            The number of bytes consumed.
+     * @return The window increment to send or 0.
+     */
+    public synchronized int onDataConsumed(int length) {
+        int result = 0;
+        this.unacknowledged += length;
+
+        if (!isRemoteClosed()
+                && (this.unacknowledged >= Http2Session.DEFAULT_WINDOW_SIZE / 2)) {
+            result = this.unacknowledged;
+            this.receiveWindow += result;
+            this.unacknowledged = 0;
+        }
+
+        return result;
+    }
+
+    /**
+     * Called back when a non-blocking response entity signals that new content
+     * can be read.
+     */
+    public void onEntityReady() {
+        this.entityReady = true;
+    }
+
+    /**
+     * Called back after a response entity read. A selectable entity that had
+     * no content ready isn't read again until it signals new content.
+     * 
+     * @param read
+     *            The number of bytes read.
+     */
+    public void onEntityRead(int read) {
+        this.entityStarved = (read == 0) && this.entitySelectable;
+    }
+
+    /**
+     * Called back before a response entity read. Resets the ready flag so that
+     * a concurrent signal is never missed.
+     */
+    public void onEntityReading() {
+        this.entityReady = false;
+    }
+
+    /**
+     * Called back when the remote endpoint has sent an END_STREAM flag.
+     * 
+     * @throws IOException
+     */
+    public void onRemoteClosed() throws IOException {
+        this.remoteClosed = true;
+
+        if (this.requestListener != null) {
+            this.requestListener.resume();
+        }
+    }
+
+    /**
+     * Called back when the stream is reset or the connection closed. Discards
+     * the received data and ends the request entity.
+     */
+    public void onReset() {
+        this.localClosed = true;
+        this.received.clear();
+
+        if (!this.remoteClosed) {
+            this.remoteClosed = true;
+
+            if (this.requestListener != null) {
+                try {
+                    this.requestListener.end();
+                } catch (IOException e) {
+                    // The consumer will be notified on its next read
+                }
+            }
+        }
+
+        if (this.entityChannel != null) {
+            try {
+                this.entityChannel.close();
+            } catch (IOException e) {
+                // Nothing more to do
+            }
+        }
+
+        if ((this.response != null) && this.response.isEntityAvailable()) {
+            // Let the producer know that no more content will be consumed
+            this.response.getEntity().release();
+        }
+    }
+
+    /**
+     * Sets the remaining bytes of an in-memory response entity.
+     * 
+     * @param entityBuffer
+     *            The remaining bytes of an in-memory response entity.
+     */
+    public void setEntityBuffer(ByteBuffer entityBuffer) {
+        this.entityBuffer = entityBuffer;
+    }
+
+    /**
+     * Sets the response entity channel.
+     * 
+     * @param entityChannel
+     *            The response entity channel.
+     * @param selectable
+     *            Indicates if the channel signals new content via its
+     *            selection registration.
+     */
+    public void setEntityChannel(ReadableByteChannel entityChannel,
+            boolean selectable) {
+        this.entityChannel = entityChannel;
+        this.entitySelectable = selectable;
+    }
+
+    /**
+     * Indicates if the local endpoint has sent an END_STREAM flag.
+     * 
+     * @param localClosed
+     *            True if the local endpoint has sent an END_STREAM flag.
+     */
+    public void setLocalClosed(boolean localClosed) {
+        this.localClosed = localClosed;
+    }
+
+    /**
+     * Sets the final response being sent.
+     * 
+     * @param response
+     *            The final response being sent.
+     */
+    public void setResponse(Response response) {
+        this.response = response;
+    }
+
+    @Override
+    public String toString() {
+        return "Stream " + this.id + (this.remoteClosed ? " remote-closed" : "")
+                + (this.localClosed ? " local-closed" : "");
+    }
+
+}
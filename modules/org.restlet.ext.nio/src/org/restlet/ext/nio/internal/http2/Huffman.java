@@ -0,0 +1,213 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Static Huffman code used by HPACK to compress header strings, as defined in
+ * appendix B of RFC 7541. Only the code lengths are stored, the canonical codes
+ * being derived from them when the class is loaded.
+ */
+public class Huffman {
+
+    /** The code lengths in bits, indexed by symbol. EOS is the last symbol. */
+    private static final int[] LENGTHS = {
+            13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28, 28,
+            28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28, 6, 10,
+            10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6, 5, 5, 5, 6, 6, 6,
+            6, 6, 6, 6, 7, 8, 15, 6, 12, 10, 13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+            7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+            15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5, 6, 7, 6, 5, 5, 6,
+            7, 7, 7, 7, 7, 15, 11, 14, 13, 28, 20, 22, 20, 20, 22, 22, 22, 23,
+            22, 23, 23, 23, 23, 23, 24, 23, 24, 24, 22, 23, 24, 23, 23, 23, 23,
+            21, 22, 23, 22, 23, 23, 24, 22, 21, 20, 22, 22, 23, 23, 21, 23, 22,
+            22, 24, 21, 22, 23, 23, 21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22,
+            22, 23, 22, 22, 23, 26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27,
+            27, 26, 24, 25, 19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28,
+            27, 27, 27, 20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24,
+            26, 23, 26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27,
+            26, 30
+    };
+
+    /** The codes, aligned on the right, indexed by symbol. */
+    private static final int[] CODES = new int[LENGTHS.length];
+
+    /** The decoding tree, two children per node. Leaves are negative. */
+    private static final int[] TREE = new int[LENGTHS.length * 4];
+
+    /** The end-of-string symbol, which must never be decoded. */
+    private static final int EOS = 256;
+
+    static {
+        // Assign the canonical codes by increasing length then symbol
+        int code = 0;
+        int previousLength = 0;
+        int nodeCount = 1;
+
+        for (int length = 1; length <= 30; length++) {
+            for (int symbol = 0; symbol < LENGTHS.length; symbol++) {
+                if (LENGTHS[symbol] == length) {
+                    if (previousLength > 0) {
+                        code = (code + 1) << (length - previousLength);
+                    }
+
+                    previousLength = length;
+                    CODES[symbol] = code;
+
+                    // Insert the code in the decoding tree
+                    int node = 0;
+
+                    for (int i = length - 1; i > 0; i--) {
+                        int child = 2 * node + ((code >>> i) & 1);
+
+                        if (TREE[child] == 0) {
+                            TREE[child] = nodeCount++;
+                        }
+
+                        node = TREE[child];
+                    }
+
+                    TREE[2 * node + (code & 1)] = -(symbol + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes a Huffman encoded string.
+     * 
+     * @param source
+     *            The source array.
+     * @param offset
+     *            The offset of the encoded bytes.
+     * @param length
+     *            The number of encoded bytes.
+     * @return The decoded bytes.
+     * @throws Http2Exception
+     *             If the encoded string is invalid.
+     */
+    public static byte[] decode(byte[] source, int offset, int length)
+            throws Http2Exception {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(
+                length + (length >> 1));
+        int node = 0;
+        int pendingBits = 0;
+        boolean pendingOnes = true;
+
+        for (int i = offset; i < offset + length; i++) {
+            int b = source[i] & 0xFF;
+
+            for (int bit = 7; bit >= 0; bit--) {
+                int value = (b >>> bit) & 1;
+                node = TREE[2 * node + value];
+                pendingBits++;
+                pendingOnes &= (value == 1);
+
+                if (node < 0) {
+                    int symbol = -node - 1;
+
+                    if (symbol == EOS) {
+                        throw new Http2Exception(
+                                Http2Exception.COMPRESSION_ERROR,
+                                "EOS symbol found in a Huffman encoded string");
+                    }
+
+                    result.write(symbol);
+                    node = 0;
+                    pendingBits = 0;
+                    pendingOnes = true;
+                }
+            }
+        }
+
+        // The padding must be the shortest prefix of EOS
+        if ((pendingBits > 7) || !pendingOnes) {
+            throw new Http2Exception(Http2Exception.COMPRESSION_ERROR,
+                    "Invalid padding of a Huffman encoded string");
+        }
+
+        return result.toByteArray();
+    }
+
+    /**
+     * Encodes a string.
+     * 
+     * @param source
+     *            The bytes to encode.
+     * @param out
+     *            The output stream to update.
+     */
+    public static void encode(byte[] source, ByteArrayOutputStream out) {
+        long current = 0;
+        int bits = 0;
+
+        for (int i = 0; i < source.length; i++) {
+            int symbol = source[i] & 0xFF;
+            current = (current << LENGTHS[symbol]) | CODES[symbol];
+            bits += LENGTHS[symbol];
+
+            while (bits >= 8) {
+                bits -= 8;
+                out.write((int) (current >>> bits));
+            }
+
+            current &= (1L << bits) - 1;
+        }
+
+        if (bits > 0) {
+            // Pad with the most significant bits of EOS
+            current = (current << (8 - bits)) | (0xFF >>> bits);
+            out.write((int) current);
+        }
+    }
+
+    /**
+     * Returns the length in bytes of an encoded string.
+     * 
+     * @param source
+     *            The bytes to encode.
+     * @return The length of the encoded bytes.
+     */
+    public static int getEncodedLength(byte[] source) {
+        long bits = 0;
+
+        for (int i = 0; i < source.length; i++) {
+            bits += LENGTHS[source[i] & 0xFF];
+        }
+
+        return (int) ((bits + 7) >> 3);
+    }
+
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.util;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controls the admission of new work into a worker service, based on the
+ * estimated time that it would wait in the queue rather than on the queue
+ * length only. The estimation relies on moving averages of the queue wait time
+ * and of the service time observed for the tasks tracked via
+ * {@link #track(Runnable)}.
+ */
+public class AdmissionController {
+
+    /** The weight of a new sample in the moving averages, in percent. */
+    private static final int SAMPLE_WEIGHT = 20;
+
+    /**
+     * Updates a moving average with a new sample. The first sample initializes
+     * the average. Concurrent updates might be lost, which is acceptable for an
+     * estimation.
+     * 
+     * @param average
+     *            The moving average to update.
+     * @param sample
+     *            The new sample.
+     */
+    private static void update(AtomicLong average, long sample) {
+        long current = average.get();
+        average.set((current == 0L) ? sample : current
+                + ((sample - current) * SAMPLE_WEIGHT) / 100);
+    }
+
+    /** The moving average of the time spent by tasks in the queue. */
+    private final AtomicLong averageQueueWaitNanos;
+
+    /** The moving average of the time spent to run tasks. */
+    private final AtomicLong averageServiceNanos;
+
+    /** The maximum queue wait time accepted for new work. */
+    private final long maxQueueWaitNanos;
+
+    /** The number of units of work rejected. */
+    private final AtomicLong shedCount;
+
+    /**
+     * Constructor.
+     * 
+     * @param maxQueueWaitTimeMs
+     *            The maximum queue wait time accepted for new work.
+     */
+    public AdmissionController(long maxQueueWaitTimeMs) {
+        this.averageQueueWaitNanos = new AtomicLong();
+        this.averageServiceNanos = new AtomicLong();
+        this.maxQueueWaitNanos = maxQueueWaitTimeMs * 1000000L;
+        this.shedCount = new AtomicLong();
+    }
+
+    /**
+     * Returns the moving average of the time spent by tasks in the queue.
+     * 
+     * @return The moving average of the queue wait time in nanoseconds.
+     */
+    public long getAverageQueueWaitNanos() {
+        return averageQueueWaitNanos.get();
+    }
+
+    /**
+     * Returns the moving average of the time spent to run tasks.
+     * 
+     * @return The moving average of the service time in nanoseconds.
+     */
+    public long getAverageServiceNanos() {
+        return averageServiceNanos.get();
+    }
+
+    /**
+     * Returns the estimated time that a new task would wait in the queue of
+     * the given worker service before running, or {@link Long#MAX_VALUE} if it
+     * would be rejected.
+     * 
+     * @param workerService
+     *            The worker service.
+     * @return The estimated queue wait time in nanoseconds.
+     */
+    public long getEstimatedQueueWaitNanos(ThreadPoolExecutor workerService) {
+        long result = 0L;
+        int active = workerService.getActiveCount();
+        int idle = Math.max(workerService.getPoolSize() - active, 0);
+
+        // Number of tasks, including the new one, that can't be immediately
+        // picked up by an idle worker thread
+        int waiting = workerService.getQueue().size() + 1 - idle;
+
+        if (waiting > 0) {
+            if (workerService.getQueue().remainingCapacity() == 0) {
+                // The pool can only grow or reject the new task
+                result = (workerService.getPoolSize() < workerService
+                        .getMaximumPoolSize()) ? 0L : Long.MAX_VALUE;
+            } else {
+                result = Math.max(getAverageQueueWaitNanos(), waiting
+                        * getAverageServiceNanos() / Math.max(active, 1));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the maximum queue wait time accepted for new work.
+     * 
+     * @return The maximum queue wait time in nanoseconds.
+     */
+    public long getMaxQueueWaitNanos() {
+        return maxQueueWaitNanos;
+    }
+
+    /**
+     * Returns the number of units of work rejected.
+     * 
+     * @return The number of units of work rejected.
+     */
+    public long getShedCount() {
+        return shedCount.get();
+    }
+
+    /**
+     * Indicates if new work can be admitted in the given worker service
+     * without exceeding the maximum queue wait time.
+     * 
+     * @param workerService
+     *            The worker service.
+     * @return True if new work can be admitted.
+     */
+    public boolean isAdmissible(ThreadPoolExecutor workerService) {
+        return (workerService != null)
+                && (getEstimatedQueueWaitNanos(workerService) <= getMaxQueueWaitNanos());
+    }
+
+    /**
+     * Callback method invoked when a unit of work has been rejected.
+     * 
+     * @return The updated number of units of work rejected.
+     */
+    public long onShed() {
+        return shedCount.incrementAndGet();
+    }
+
+    /**
+     * Wraps a task so that its queue wait time and its service time are
+     * measured.
+     * 
+     * @param task
+     *            The task to track.
+     * @return The wrapping task to submit to the worker service.
+     */
+    public Runnable track(final Runnable task) {
+        final long queuedTime = System.nanoTime();
+
+        return new Runnable() {
+            public void run() {
+                long startTime = System.nanoTime();
+                update(averageQueueWaitNanos, startTime - queuedTime);
+
+                try {
+                    task.run();
+                } finally {
+                    update(averageServiceNanos, System.nanoTime() - startTime);
+                }
+            }
+
+            @Override
+            public String toString() {
+                return task.toString();
+            }
+        };
+    }
+
+}
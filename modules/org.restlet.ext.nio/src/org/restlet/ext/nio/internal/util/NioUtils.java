@@ -43,9 +43,14 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.WritableByteChannel;
 
+import org.restlet.data.CharacterSet;
 import org.restlet.engine.io.IoUtils;
 import org.restlet.engine.io.SelectorFactory;
 import org.restlet.ext.nio.internal.channel.ChannelInputStream;
+import org.restlet.representation.BufferingRepresentation;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
 
 /**
  * Utility methods for NIO processing.
@@ -74,9 +79,16 @@ public class NioUtils {
         int result = (maxCopied == 0) ? maxBuffer : Math.min((int) maxCopied,
                 maxBuffer);
 
-        // Copy the byte to the target buffer
-        for (int i = 0; i < result; i++) {
-            targetBuffer.put(sourceBuffer.get());
+        if (result > 0) {
+            // Copy the bytes in bulk, temporarily limiting the source buffer
+            int sourceLimit = sourceBuffer.limit();
+            sourceBuffer.limit(sourceBuffer.position() + result);
+
+            try {
+                targetBuffer.put(sourceBuffer);
+            } finally {
+                sourceBuffer.limit(sourceLimit);
+            }
         }
 
         return result;
@@ -127,6 +139,48 @@ public class NioUtils {
         }
     }
 
+    /**
+     * Returns the content of an in-memory representation as a byte buffer that
+     * can be directly written to a channel, or null if the representation
+     * isn't held in memory. Supports {@link StringRepresentation},
+     * {@link ByteArrayRepresentation} and {@link BufferingRepresentation}
+     * instances. The returned buffer wraps the existing bytes when possible.
+     * 
+     * @param entity
+     *            The representation to inspect.
+     * @return The content as a byte buffer or null.
+     * @throws IOException
+     */
+    public static ByteBuffer getByteBuffer(Representation entity)
+            throws IOException {
+        ByteBuffer result = null;
+
+        if ((entity == null) || !entity.isAvailable()) {
+            result = null;
+        } else if (entity instanceof ByteArrayRepresentation) {
+            ByteArrayRepresentation bar = (ByteArrayRepresentation) entity;
+            result = ByteBuffer.wrap(bar.getByteArray(), bar.getOffset(),
+                    Math.min(bar.getLength(), bar.getByteArray().length
+                            - bar.getOffset()));
+        } else if (entity instanceof BufferingRepresentation) {
+            byte[] bytes = ((BufferingRepresentation) entity).getBuffer();
+
+            if (bytes != null) {
+                result = ByteBuffer.wrap(bytes);
+            }
+        } else if (entity instanceof StringRepresentation) {
+            String text = entity.getText();
+
+            if (text != null) {
+                CharacterSet charset = (entity.getCharacterSet() == null) ? CharacterSet.ISO_8859_1
+                        : entity.getCharacterSet();
+                result = ByteBuffer.wrap(text.getBytes(charset.getName()));
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Waits for the given channel to be ready for a specific operation.
      * 
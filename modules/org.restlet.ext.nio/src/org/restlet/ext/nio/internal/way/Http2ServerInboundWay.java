@@ -0,0 +1,859 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.way;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Server;
+import org.restlet.data.Header;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.engine.util.Base64;
+import org.restlet.engine.util.StringUtils;
+import org.restlet.ext.nio.internal.buffer.Buffer;
+import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.http2.Http2Exception;
+import org.restlet.ext.nio.internal.http2.Http2Session;
+import org.restlet.ext.nio.internal.http2.Http2Stream;
+import org.restlet.ext.nio.internal.request.InboundRequest;
+import org.restlet.ext.nio.internal.state.ConnectionState;
+import org.restlet.ext.nio.internal.state.MessageState;
+import org.restlet.representation.EmptyRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.representation.SelectableRepresentation;
+import org.restlet.util.Series;
+
+/**
+ * HTTP server inbound way also accepting cleartext HTTP/2 connections, either
+ * started with the client connection preface (prior knowledge) or upgraded
+ * from an HTTP/1.1 request without entity via the "Upgrade: h2c" header. In
+ * HTTP/2 mode, the received frames are parsed by the IO thread and each new
+ * stream is dispatched as a separate request, while request entities are
+ * produced without blocking from the DATA frames.
+ */
+public class Http2ServerInboundWay extends HttpServerInboundWay {
+
+    /** The maximum size of a header block. */
+    private static final int MAX_HEADER_BLOCK_SIZE = 256 * 1024;
+
+    /** The response switching an HTTP/1.1 connection to HTTP/2. */
+    private static final byte[] UPGRADE_RESPONSE = StringUtils
+            .getLatin1Bytes("HTTP/1.1 101 Switching Protocols\r\n"
+                    + HeaderConstants.HEADER_CONNECTION + ": Upgrade\r\n"
+                    + HeaderConstants.HEADER_UPGRADE + ": h2c\r\n\r\n");
+
+    /**
+     * Returns the HTTP/1.1 spelling of a lower case HTTP/2 header name, so
+     * that case sensitive lookups keep working.
+     * 
+     * @param name
+     *            The lower case header name.
+     * @return The header name with each word capitalized.
+     */
+    private static String getHeaderName(String name) {
+        char[] chars = name.toCharArray();
+        boolean wordStart = true;
+
+        for (int i = 0; i < chars.length; i++) {
+            if (wordStart) {
+                chars[i] = Character.toUpperCase(chars[i]);
+            }
+
+            wordStart = (chars[i] == '-');
+        }
+
+        return new String(chars);
+    }
+
+    /** The header block being received, waiting for CONTINUATION frames. */
+    private volatile ByteArrayOutputStream headerBlock;
+
+    /** Indicates if the header block being received ends its stream. */
+    private volatile boolean headerBlockEndStream;
+
+    /** The identifier of the stream of the header block being received. */
+    private volatile int headerBlockStreamId;
+
+    /** The frame header being received. */
+    private final byte[] frameHeader;
+
+    /** The number of frame header bytes received. */
+    private volatile int frameHeaderIndex;
+
+    /** The maximum number of concurrent streams per HTTP/2 connection. */
+    private final int maxConcurrentStreams;
+
+    /** The frame payload being received. */
+    private volatile byte[] payload;
+
+    /** The number of frame payload bytes received. */
+    private volatile int payloadIndex;
+
+    /** The number of client connection preface bytes received. */
+    private volatile int prefaceIndex;
+
+    /** The HTTP/2 session or null in HTTP/1.1 mode. */
+    private volatile Http2Session session;
+
+    /**
+     * Constructor.
+     * 
+     * @param connection
+     *            The parent connection.
+     * @param bufferSize
+     *            The byte buffer size.
+     * @param maxConcurrentStreams
+     *            The maximum number of concurrent streams per HTTP/2
+     *            connection.
+     */
+    public Http2ServerInboundWay(Connection<Server> connection,
+            int bufferSize, int maxConcurrentStreams) {
+        super(connection, bufferSize);
+        this.frameHeader = new byte[Http2Session.FRAME_HEADER_SIZE];
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        clearSession();
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        clearSession();
+    }
+
+    /**
+     * Clears the HTTP/2 session and the frame parsing state.
+     */
+    private void clearSession() {
+        this.frameHeaderIndex = 0;
+        this.headerBlock = null;
+        this.payload = null;
+        this.payloadIndex = 0;
+        this.prefaceIndex = 0;
+        this.session = null;
+    }
+
+    /**
+     * Parses the received frames and processes them.
+     * 
+     * @param buffer
+     *            The IO buffer to drain.
+     * @throws IOException
+     */
+    private void drainFrames(Buffer buffer) throws IOException {
+        ByteBuffer bytes = buffer.getBytes();
+
+        try {
+            while (bytes.hasRemaining()
+                    && (getConnection().getState() == ConnectionState.OPEN)) {
+                if (this.prefaceIndex < Http2Session.PREFACE.length) {
+                    if (bytes.get() != Http2Session.PREFACE[this.prefaceIndex++]) {
+                        throw new Http2Exception(
+                                Http2Exception.PROTOCOL_ERROR,
+                                "Invalid client connection preface");
+                    }
+                } else if (this.payload == null) {
+                    int length = Math.min(Http2Session.FRAME_HEADER_SIZE
+                            - this.frameHeaderIndex, bytes.remaining());
+                    bytes.get(this.frameHeader, this.frameHeaderIndex, length);
+                    this.frameHeaderIndex += length;
+
+                    if (this.frameHeaderIndex == Http2Session.FRAME_HEADER_SIZE) {
+                        int frameLength = ((this.frameHeader[0] & 0xFF) << 16)
+                                | ((this.frameHeader[1] & 0xFF) << 8)
+                                | (this.frameHeader[2] & 0xFF);
+
+                        if (frameLength > Http2Session.DEFAULT_MAX_FRAME_SIZE) {
+                            throw new Http2Exception(
+                                    Http2Exception.FRAME_SIZE_ERROR,
+                                    "Frame exceeding the maximum size");
+                        }
+
+                        this.frameHeaderIndex = 0;
+                        this.payload = new byte[frameLength];
+                        this.payloadIndex = 0;
+                    }
+                } else {
+                    int length = Math.min(this.payload.length
+                            - this.payloadIndex, bytes.remaining());
+                    bytes.get(this.payload, this.payloadIndex, length);
+                    this.payloadIndex += length;
+                }
+
+                if ((this.payload != null)
+                        && (this.payloadIndex == this.payload.length)) {
+                    byte[] framePayload = this.payload;
+                    this.payload = null;
+                    int streamId = ByteBuffer.wrap(this.frameHeader, 5, 4)
+                            .getInt() & 0x7FFFFFFF;
+
+                    try {
+                        onFrame(this.frameHeader[3] & 0xFF,
+                                this.frameHeader[4] & 0xFF, streamId,
+                                framePayload);
+                    } catch (Http2Exception e) {
+                        if (!e.isStreamError()) {
+                            throw e;
+                        }
+
+                        resetStream(e.getStreamId(), e.getErrorCode(),
+                                e.getMessage());
+                    }
+                }
+            }
+        } catch (Http2Exception e) {
+            getSession().goAway(e.getErrorCode(), e.getMessage());
+        }
+
+        if (getConnection().getState() != ConnectionState.OPEN) {
+            // Ignore the bytes received after an error
+            bytes.position(bytes.limit());
+        }
+    }
+
+    @Override
+    public int getLoadScore() {
+        return (getSession() == null) ? super.getLoadScore() : getSession()
+                .getStreamCount();
+    }
+
+    /**
+     * Returns the HTTP/2 session or null in HTTP/1.1 mode.
+     * 
+     * @return The HTTP/2 session or null in HTTP/1.1 mode.
+     */
+    public Http2Session getSession() {
+        return session;
+    }
+
+    /**
+     * Returns the decoded HTTP/2 settings if the current HTTP/1.1 request asks
+     * for an upgrade to cleartext HTTP/2 that can be accepted.
+     * 
+     * @return The decoded settings or null.
+     */
+    private byte[] getUpgradeSettings() {
+        byte[] result = null;
+        Series<Header> headers = getHeaders();
+        String upgrade = (headers == null) ? null : headers.getValues(
+                HeaderConstants.HEADER_UPGRADE);
+        String settings = (headers == null) ? null : headers.getFirstValue(
+                "HTTP2-Settings", true);
+
+        if ((upgrade != null) && (settings != null)
+                && upgrade.toLowerCase().matches("(.*[ ,])?h2c([ ,].*)?")
+                && getMessages().isEmpty()
+                && !HeaderUtils.isChunkedEncoding(headers)
+                && (HeaderUtils.getContentLength(headers) <= 0)) {
+            // The settings are encoded with the URL and filename safe
+            // alphabet, without padding
+            StringBuilder sb = new StringBuilder(settings.trim().replace('-',
+                    '+').replace('_', '/'));
+
+            while ((sb.length() % 4) != 0) {
+                sb.append('=');
+            }
+
+            try {
+                result = Base64.decode(sb.toString());
+            } catch (RuntimeException e) {
+                getLogger().log(Level.FINE,
+                        "Ignoring an invalid HTTP2-Settings header", e);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    protected boolean hasIoInterest() {
+        return (getSession() != null) || super.hasIoInterest();
+    }
+
+    /**
+     * Indicates if the buffered bytes start with the client connection
+     * preface, or with a part of it, at the beginning of a message.
+     * 
+     * @param buffer
+     *            The IO buffer to drain.
+     * @return True if the buffered bytes start with the connection preface.
+     */
+    private boolean isPrefaceStart(Buffer buffer) {
+        boolean result = (getMessageState() == MessageState.START)
+                && (getLineBuilder().length() == 0)
+                && getMessages().isEmpty() && buffer.hasRemaining();
+
+        if (result) {
+            ByteBuffer bytes = buffer.getBytes();
+            int length = Math.min(bytes.remaining(),
+                    Http2Session.PREFACE.length);
+
+            for (int i = 0; result && (i < length); i++) {
+                result = bytes.get(bytes.position() + i) == Http2Session.PREFACE[i];
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void onClosed() {
+        if (getSession() != null) {
+            getSession().onClosed();
+        }
+
+        super.onClosed();
+    }
+
+    /**
+     * Processes a DATA frame.
+     * 
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     * @param framePayload
+     *            The frame payload.
+     * @throws IOException
+     */
+    private void onDataFrame(int flags, int streamId, byte[] framePayload)
+            throws IOException {
+        if (streamId == 0) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                    "DATA frame without stream");
+        }
+
+        int offset = 0;
+        int length = framePayload.length;
+
+        if ((flags & Http2Session.FLAG_PADDED) != 0) {
+            offset = 1;
+            length -= (length == 0) ? 1 : 1 + (framePayload[0] & 0xFF);
+        }
+
+        if (length < 0) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                    "Invalid DATA frame padding");
+        }
+
+        getSession().onDataReceived(framePayload.length);
+        Http2Stream stream = getSession().getStream(streamId);
+
+        if (stream == null) {
+            if (streamId > getSession().getLastStreamId()) {
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                        "DATA frame on an idle stream");
+            }
+
+            // Frames of a reset stream can still be received
+        } else if (stream.isRemoteClosed()) {
+            throw new Http2Exception(Http2Exception.STREAM_CLOSED, streamId,
+                    "DATA frame on a half-closed stream");
+        } else {
+            stream.onData(ByteBuffer.wrap(framePayload, offset, length),
+                    framePayload.length);
+
+            if ((flags & Http2Session.FLAG_END_STREAM) != 0) {
+                stream.onRemoteClosed();
+            }
+        }
+    }
+
+    @Override
+    public int onDrain(Buffer buffer, int maxDrained, Object... args)
+            throws IOException {
+        int result = 0;
+        int beforeDrain = buffer.remaining();
+
+        if ((getSession() == null) && isPrefaceStart(buffer)) {
+            // Connection started with prior knowledge of HTTP/2, wait for
+            // the whole preface if needed
+            if (buffer.remaining() >= Http2Session.PREFACE.length) {
+                this.session = new Http2Session(getConnection(),
+                        this.maxConcurrentStreams, null);
+            }
+        } else if (getSession() == null) {
+            super.onDrain(buffer, maxDrained, args);
+        }
+
+        // An upgrade may have occurred while reading an HTTP/1.1 request
+        if (getSession() != null) {
+            drainFrames(buffer);
+        }
+
+        result = beforeDrain - buffer.remaining();
+        return result;
+    }
+
+    /**
+     * Processes a complete frame.
+     * 
+     * @param type
+     *            The frame type.
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     * @param framePayload
+     *            The frame payload.
+     * @throws IOException
+     */
+    private void onFrame(int type, int flags, int streamId, byte[] framePayload)
+            throws IOException {
+        if (getLogger().isLoggable(Level.FINER)) {
+            getLogger().finer(
+                    "HTTP/2 frame received. Type: " + type + ", flags: "
+                            + flags + ", stream: " + streamId + ", length: "
+                            + framePayload.length);
+        }
+
+        if ((this.headerBlock != null)
+                && ((type != Http2Session.TYPE_CONTINUATION) || (streamId != this.headerBlockStreamId))) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                    "CONTINUATION frame expected");
+        }
+
+        switch (type) {
+        case Http2Session.TYPE_DATA:
+            onDataFrame(flags, streamId, framePayload);
+            break;
+
+        case Http2Session.TYPE_HEADERS:
+            onHeadersFrame(flags, streamId, framePayload);
+            break;
+
+        case Http2Session.TYPE_PRIORITY:
+            // Prioritization isn't supported
+            if (streamId == 0) {
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                        "PRIORITY frame without stream");
+            } else if (framePayload.length != 5) {
+                throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR,
+                        streamId, "Invalid PRIORITY frame length");
+            }
+            break;
+
+        case Http2Session.TYPE_RST_STREAM:
+            if (streamId == 0) {
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                        "RST_STREAM frame without stream");
+            } else if (framePayload.length != 4) {
+                throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR,
+                        "Invalid RST_STREAM frame length");
+            } else if (streamId > getSession().getLastStreamId()) {
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                        "RST_STREAM frame on an idle stream");
+            }
+
+            Http2Stream stream = getSession().getStream(streamId);
+
+            if (stream != null) {
+                stream.onReset();
+                getSession().removeStream(stream);
+            }
+            break;
+
+        case Http2Session.TYPE_SETTINGS:
+            if (streamId != 0) {
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                        "SETTINGS frame with a stream");
+            } else if ((flags & Http2Session.FLAG_ACK) != 0) {
+                if (framePayload.length != 0) {
+                    throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR,
+                            "SETTINGS acknowledgment with a payload");
+                }
+            } else {
+                getSession().applySettings(framePayload, 0,
+                        framePayload.length);
+                getSession().queueFrame(Http2Session.TYPE_SETTINGS,
+                        Http2Session.FLAG_ACK, 0, framePayload, 0, 0);
+            }
+            break;
+
+        case Http2Session.TYPE_PUSH_PROMISE:
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                    "PUSH_PROMISE frame sent by a client");
+
+        case Http2Session.TYPE_PING:
+            if (streamId != 0) {
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                        "PING frame with a stream");
+            } else if (framePayload.length != 8) {
+                throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR,
+                        "Invalid PING frame length");
+            } else if ((flags & Http2Session.FLAG_ACK) == 0) {
+                getSession().queueFrame(Http2Session.TYPE_PING,
+                        Http2Session.FLAG_ACK, 0, framePayload, 0, 8);
+            }
+            break;
+
+        case Http2Session.TYPE_GOAWAY:
+            if (streamId != 0) {
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                        "GOAWAY frame with a stream");
+            }
+
+            getSession().onGoAway();
+            break;
+
+        case Http2Session.TYPE_WINDOW_UPDATE:
+            onWindowUpdateFrame(streamId, framePayload);
+            break;
+
+        case Http2Session.TYPE_CONTINUATION:
+            if (this.headerBlock == null) {
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                        "Unexpected CONTINUATION frame");
+            }
+
+            this.headerBlock.write(framePayload, 0, framePayload.length);
+
+            if ((flags & Http2Session.FLAG_END_HEADERS) != 0) {
+                onHeaderBlock();
+            } else if (this.headerBlock.size() > MAX_HEADER_BLOCK_SIZE) {
+                throw new Http2Exception(Http2Exception.ENHANCE_YOUR_CALM,
+                        "Header block too large");
+            }
+            break;
+
+        default:
+            // Unknown frame types must be ignored
+            break;
+        }
+    }
+
+    /**
+     * Processes a complete header block, either starting a new stream or
+     * carrying the trailers of an existing one.
+     * 
+     * @throws IOException
+     */
+    private void onHeaderBlock() throws IOException {
+        byte[] block = this.headerBlock.toByteArray();
+        int streamId = this.headerBlockStreamId;
+        boolean endStream = this.headerBlockEndStream;
+        this.headerBlock = null;
+
+        // Always decode the block to keep the compression context in sync
+        List<Header> fields = getSession().getDecoder().decode(block, 0,
+                block.length);
+        Http2Stream stream = getSession().getStream(streamId);
+
+        if (stream != null) {
+            // Trailers are ignored
+            if (stream.isRemoteClosed()) {
+                throw new Http2Exception(Http2Exception.STREAM_CLOSED,
+                        streamId, "HEADERS frame on a half-closed stream");
+            } else if (!endStream) {
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                        streamId, "Trailers without END_STREAM flag");
+            }
+
+            stream.onRemoteClosed();
+        } else if (streamId > getSession().getLastStreamId()) {
+            getSession().setLastStreamId(streamId);
+
+            if (getSession().isGoingAway()) {
+                getLogger().fine(
+                        "Ignoring a new stream on a connection going away");
+            } else if (getSession().getStreamCount() >= getSession()
+                    .getMaxConcurrentStreams()) {
+                throw new Http2Exception(Http2Exception.REFUSED_STREAM,
+                        streamId, "Too many concurrent streams");
+            } else {
+                onRequest(streamId, fields, endStream);
+            }
+        }
+
+        // Otherwise the stream was reset, ignore the frame
+    }
+
+    @Override
+    protected void onHeadersCompleted() throws IOException {
+        byte[] settings = (getSession() == null) ? getUpgradeSettings() : null;
+        Http2Session newSession = null;
+
+        if (settings != null) {
+            newSession = new Http2Session(getConnection(),
+                    this.maxConcurrentStreams, UPGRADE_RESPONSE);
+
+            try {
+                newSession.applySettings(settings, 0, settings.length);
+            } catch (Http2Exception e) {
+                getLogger().log(Level.FINE,
+                        "Ignoring an invalid HTTP2-Settings header", e);
+                newSession = null;
+            }
+        }
+
+        if (newSession == null) {
+            super.onHeadersCompleted();
+        } else {
+            // The request becomes the first stream, half-closed by the client
+            Response response = getMessage();
+            InboundRequest request = (InboundRequest) response.getRequest();
+            request.setHeaders(getHeaders());
+            response.getRequest().setEntity(createEntity(getHeaders()));
+            response.getServerInfo().setAddress(
+                    getConnection().getHelper().getHelped().getAddress());
+            response.getServerInfo().setPort(
+                    getConnection().getHelper().getHelped().getPort());
+
+            newSession.setLastStreamId(1);
+            newSession.addStream(new Http2Stream(newSession, 1, response
+                    .getRequest(), false));
+            this.session = newSession;
+
+            if (getLogger().isLoggable(Level.FINE)) {
+                getLogger().fine(
+                        "Connection upgraded to HTTP/2 with "
+                                + getConnection().getSocketAddress());
+            }
+
+            getHelper().getInboundMessages().add(response);
+            onMessageCompleted(false);
+        }
+    }
+
+    /**
+     * Processes a HEADERS frame.
+     * 
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     * @param framePayload
+     *            The frame payload.
+     * @throws IOException
+     */
+    private void onHeadersFrame(int flags, int streamId, byte[] framePayload)
+            throws IOException {
+        if ((streamId == 0) || ((streamId & 1) == 0)) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                    "HEADERS frame with an invalid stream");
+        }
+
+        int offset = 0;
+        int length = framePayload.length;
+
+        if ((flags & Http2Session.FLAG_PADDED) != 0) {
+            offset = 1;
+            length -= (length == 0) ? 1 : 1 + (framePayload[0] & 0xFF);
+        }
+
+        if ((flags & Http2Session.FLAG_PRIORITY) != 0) {
+            offset += 5;
+            length -= 5;
+        }
+
+        if (length < 0) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                    "Invalid HEADERS frame length");
+        }
+
+        this.headerBlock = new ByteArrayOutputStream(length);
+        this.headerBlock.write(framePayload, offset, length);
+        this.headerBlockStreamId = streamId;
+        this.headerBlockEndStream = (flags & Http2Session.FLAG_END_STREAM) != 0;
+
+        if ((flags & Http2Session.FLAG_END_HEADERS) != 0) {
+            onHeaderBlock();
+        }
+    }
+
+    /**
+     * Creates the request of a new stream and dispatches it.
+     * 
+     * @param streamId
+     *            The stream identifier.
+     * @param fields
+     *            The decoded header fields.
+     * @param endStream
+     *            Indicates if the request has no entity.
+     * @throws IOException
+     */
+    private void onRequest(int streamId, List<Header> fields, boolean endStream)
+            throws IOException {
+        String method = null;
+        String path = null;
+        String authority = null;
+        StringBuilder cookies = null;
+        boolean regularFound = false;
+        Series<Header> headers = new Series<Header>(Header.class);
+
+        for (Header field : fields) {
+            String name = field.getName();
+
+            if (name.startsWith(":")) {
+                if (regularFound) {
+                    throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                            streamId, "Pseudo-header after a regular header");
+                } else if (name.equals(":method")) {
+                    method = field.getValue();
+                } else if (name.equals(":path")) {
+                    path = field.getValue();
+                } else if (name.equals(":authority")) {
+                    authority = field.getValue();
+                } else if (!name.equals(":scheme")) {
+                    throw new Http2Exception(Http2Exception.PROTOCOL_ERROR,
+                            streamId, "Unknown pseudo-header " + name);
+                }
+            } else {
+                regularFound = true;
+
+                if (name.equals("cookie")) {
+                    // Split cookies must be concatenated again
+                    if (cookies == null) {
+                        cookies = new StringBuilder(field.getValue());
+                    } else {
+                        cookies.append("; ").append(field.getValue());
+                    }
+                } else {
+                    headers.add(getHeaderName(name), field.getValue());
+                }
+            }
+        }
+
+        if ((method == null) || (path == null)) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, streamId,
+                    "Missing request pseudo-header");
+        }
+
+        if (cookies != null) {
+            headers.add(HeaderConstants.HEADER_COOKIE, cookies.toString());
+        }
+
+        if ((authority != null)
+                && (headers.getFirst(HeaderConstants.HEADER_HOST, true) == null)) {
+            headers.add(HeaderConstants.HEADER_HOST, authority);
+        }
+
+        Request request = getHelper().createRequest(getConnection(), method,
+                path, "HTTP/2.0");
+        Response response = createResponse(request);
+        ((InboundRequest) request).setHeaders(headers);
+        Http2Stream stream = new Http2Stream(getSession(), streamId, request,
+                !endStream);
+
+        // The request entity is produced from the DATA frames
+        Representation entity = null;
+
+        if (endStream) {
+            entity = new EmptyRepresentation();
+        } else {
+            entity = new SelectableRepresentation(null,
+                    stream.getRequestListener(),
+                    HeaderUtils.getContentLength(headers));
+        }
+
+        try {
+            entity = HeaderUtils.extractEntityHeaders(headers, entity);
+        } catch (Throwable t) {
+            getLogger().log(Level.WARNING,
+                    "Error while parsing entity headers", t);
+        }
+
+        request.setEntity(entity);
+        response.getServerInfo().setAddress(
+                getConnection().getHelper().getHelped().getAddress());
+        response.getServerInfo().setPort(
+                getConnection().getHelper().getHelped().getPort());
+
+        getSession().addStream(stream);
+        getHelper().getInboundMessages().add(response);
+    }
+
+    /**
+     * Processes a WINDOW_UPDATE frame.
+     * 
+     * @param streamId
+     *            The stream identifier or 0 for the connection.
+     * @param framePayload
+     *            The frame payload.
+     * @throws Http2Exception
+     */
+    private void onWindowUpdateFrame(int streamId, byte[] framePayload)
+            throws Http2Exception {
+        if (framePayload.length != 4) {
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR,
+                    "Invalid WINDOW_UPDATE frame length");
+        }
+
+        int increment = ByteBuffer.wrap(framePayload).getInt() & 0x7FFFFFFF;
+
+        if (increment == 0) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, streamId,
+                    "Invalid WINDOW_UPDATE increment");
+        } else if (streamId == 0) {
+            getSession().increaseSendWindow(increment);
+        } else {
+            Http2Stream stream = getSession().getStream(streamId);
+
+            if (stream != null) {
+                stream.increaseSendWindow(increment);
+            }
+        }
+    }
+
+    /**
+     * Resets a stream after a stream error.
+     * 
+     * @param streamId
+     *            The stream identifier.
+     * @param errorCode
+     *            The error code.
+     * @param message
+     *            The error message.
+     */
+    private void resetStream(int streamId, int errorCode, String message) {
+        if (getLogger().isLoggable(Level.FINE)) {
+            getLogger().fine(
+                    "Resetting HTTP/2 stream " + streamId + ": " + message);
+        }
+
+        getSession().queueRstStream(streamId, errorCode);
+        Http2Stream stream = getSession().getStream(streamId);
+
+        if (stream != null) {
+            stream.onReset();
+            getSession().removeStream(stream);
+        }
+    }
+
+}
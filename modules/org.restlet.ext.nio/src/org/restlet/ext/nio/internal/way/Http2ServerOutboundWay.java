@@ -0,0 +1,429 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.way;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+
+import org.restlet.Response;
+import org.restlet.Server;
+import org.restlet.data.Header;
+import org.restlet.engine.connector.ConnectorHelper;
+import org.restlet.engine.io.SelectionChannel;
+import org.restlet.ext.nio.internal.buffer.Buffer;
+import org.restlet.ext.nio.internal.channel.ReadableSizedChannel;
+import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.http2.Http2Exception;
+import org.restlet.ext.nio.internal.http2.Http2Session;
+import org.restlet.ext.nio.internal.http2.Http2Stream;
+import org.restlet.ext.nio.internal.state.IoState;
+import org.restlet.ext.nio.internal.util.NioUtils;
+import org.restlet.representation.Representation;
+import org.restlet.service.ConnectorService;
+import org.restlet.util.SelectionListener;
+import org.restlet.util.SelectionRegistration;
+import org.restlet.util.Series;
+
+/**
+ * HTTP server outbound way also supporting cleartext HTTP/2 connections. In
+ * HTTP/2 mode, the responses are multiplexed on the connection: their headers
+ * are compressed with HPACK and their entities are sent as DATA frames within
+ * the flow-control windows, read directly into the IO buffer.
+ */
+public class Http2ServerOutboundWay extends HttpServerOutboundWay {
+
+    /** The lower case names of the headers specific to HTTP/1.1 connections. */
+    private static final Set<String> CONNECTION_HEADERS = new HashSet<String>(
+            Arrays.asList("connection", "keep-alive", "proxy-connection",
+                    "transfer-encoding", "upgrade"));
+
+    /**
+     * Constructor.
+     * 
+     * @param connection
+     *            The parent connection.
+     * @param bufferSize
+     *            The byte buffer size.
+     */
+    public Http2ServerOutboundWay(Connection<Server> connection, int bufferSize) {
+        super(connection, bufferSize);
+    }
+
+    /**
+     * Fills the IO buffer with pending frames, new response headers then DATA
+     * frames.
+     * 
+     * @param buffer
+     *            The IO buffer to fill.
+     * @return The number of bytes filled.
+     * @throws IOException
+     */
+    private int fillFrames(Buffer buffer) throws IOException {
+        ByteBuffer bytes = buffer.getBytes();
+        int beforeFill = bytes.remaining();
+        boolean progress = true;
+
+        while (progress && bytes.hasRemaining()) {
+            ByteBuffer frame = getSession().getPendingFrames().peek();
+            Response response = null;
+
+            if (frame != null) {
+                int length = Math.min(frame.remaining(), bytes.remaining());
+                int limit = frame.limit();
+                frame.limit(frame.position() + length);
+                bytes.put(frame);
+                frame.limit(limit);
+
+                if (!frame.hasRemaining()) {
+                    getSession().getPendingFrames().poll();
+                }
+            } else if ((response = getSession().getPendingResponses().poll()) != null) {
+                writeHeaders(response);
+            } else {
+                progress = (bytes.remaining() > Http2Session.FRAME_HEADER_SIZE)
+                        && writeData(bytes);
+            }
+        }
+
+        return beforeFill - bytes.remaining();
+    }
+
+    /**
+     * Returns the HTTP/2 session or null in HTTP/1.1 mode.
+     * 
+     * @return The HTTP/2 session or null in HTTP/1.1 mode.
+     */
+    private Http2Session getSession() {
+        return ((Http2ServerInboundWay) getConnection().getInboundWay())
+                .getSession();
+    }
+
+    @Override
+    public void handle(Response response) {
+        if (getSession() == null) {
+            super.handle(response);
+        } else {
+            getSession().getPendingResponses().add(response);
+        }
+    }
+
+    @Override
+    protected boolean hasIoInterest() {
+        return (getSession() == null) ? super.hasIoInterest() : getBuffer()
+                .canDrain() || getSession().hasOutput();
+    }
+
+    /**
+     * Returns false in HTTP/2 mode as the connection is shared by concurrent
+     * streams.
+     */
+    @Override
+    public boolean isAvailable() {
+        return (getSession() == null) && super.isAvailable();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return super.isEmpty()
+                && ((getSession() == null) || !getSession().hasOutput());
+    }
+
+    @Override
+    public boolean isEntitySuspended() {
+        boolean result = false;
+
+        if (getSession() == null) {
+            result = super.isEntitySuspended();
+        } else {
+            for (Http2Stream stream : getSession().getStreams()) {
+                result = result || stream.isEntitySuspended();
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public int onFill(Buffer buffer, Object... args) throws IOException {
+        return (getSession() == null) ? super.onFill(buffer, args)
+                : fillFrames(buffer);
+    }
+
+    @Override
+    protected void onPostProcessing() {
+        if (getSession() == null) {
+            super.onPostProcessing();
+        } else if (getBuffer().canDrain() || getSession().hasOutput()) {
+            setIoState(IoState.INTEREST);
+        } else {
+            setIoState(IoState.IDLE);
+        }
+    }
+
+    /**
+     * Called back when the END_STREAM flag has been written for a stream.
+     * Releases the response entity and resets the stream if the client is
+     * still sending the request entity.
+     * 
+     * @param stream
+     *            The completed stream.
+     * @param response
+     *            The final response sent.
+     */
+    private void onStreamCompleted(Http2Stream stream, Response response) {
+        Representation entity = response.getEntity();
+        stream.setLocalClosed(true);
+
+        if (entity != null) {
+            entity.release();
+        }
+
+        ConnectorService connectorService = ConnectorHelper
+                .getConnectorService();
+
+        if (connectorService != null) {
+            connectorService.afterSend(entity);
+        }
+
+        if (!stream.isRemoteClosed()) {
+            getSession().queueRstStream(stream.getId(),
+                    Http2Exception.NO_ERROR);
+        }
+
+        stream.onReset();
+        getSession().removeStream(stream);
+    }
+
+    /**
+     * Prepares the entity of a response to be written as DATA frames.
+     * 
+     * @param stream
+     *            The parent stream.
+     * @param entity
+     *            The entity to write.
+     * @throws IOException
+     */
+    private void prepareEntity(final Http2Stream stream, Representation entity)
+            throws IOException {
+        ByteBuffer entityBytes = NioUtils.getByteBuffer(entity);
+
+        if ((entityBytes != null)
+                && (entityBytes.remaining() == entity.getAvailableSize())) {
+            // Copy the in-memory bytes directly
+            stream.setEntityBuffer(entityBytes);
+        } else {
+            ReadableByteChannel rbc = entity.getChannel();
+            boolean selectable = (rbc instanceof SelectionChannel)
+                    && !((SelectionChannel) rbc).isBlocking();
+
+            if (selectable) {
+                // Be called back when new content is ready instead of polling
+                SelectionRegistration entityRegistration = ((SelectionChannel) rbc)
+                        .getRegistration();
+                entityRegistration.setReadInterest();
+                entityRegistration
+                        .setSelectionListener(new SelectionListener() {
+                            public void onSelected(
+                                    SelectionRegistration selectionRegistration)
+                                    throws IOException {
+                                stream.onEntityReady();
+                                getHelper().getController().wakeup();
+                            }
+                        });
+            }
+
+            if (entity.getAvailableSize() != Representation.UNKNOWN_SIZE) {
+                rbc = new ReadableSizedChannel(rbc, entity.getAvailableSize());
+            }
+
+            stream.setEntityChannel(rbc, selectable);
+        }
+    }
+
+    /**
+     * Writes a DATA frame for each stream whose response entity can be sent,
+     * so that concurrent responses share the connection fairly.
+     * 
+     * @param bytes
+     *            The byte buffer to fill.
+     * @return True if at least one frame was written.
+     * @throws IOException
+     */
+    private boolean writeData(ByteBuffer bytes) throws IOException {
+        boolean result = false;
+
+        for (Http2Stream stream : getSession().getStreams()) {
+            if ((bytes.remaining() > Http2Session.FRAME_HEADER_SIZE)
+                    && stream.isWritable(getSession().getSendWindow())) {
+                result |= writeDataFrame(bytes, stream);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes a DATA frame for a stream, reading the entity directly into the
+     * byte buffer after the reserved frame header.
+     * 
+     * @param bytes
+     *            The byte buffer to fill.
+     * @param stream
+     *            The stream to write.
+     * @return True if a frame was written.
+     * @throws IOException
+     */
+    private boolean writeDataFrame(ByteBuffer bytes, Http2Stream stream)
+            throws IOException {
+        boolean result = false;
+        int start = bytes.position();
+        int maxLength = Math.min(
+                Math.min(getSession().getSendWindow(), stream.getSendWindow()),
+                Math.min(getSession().getPeerMaxFrameSize(), bytes.remaining()
+                        - Http2Session.FRAME_HEADER_SIZE));
+        int length = 0;
+        boolean endStream = false;
+        bytes.position(start + Http2Session.FRAME_HEADER_SIZE);
+
+        if (stream.getEntityBuffer() != null) {
+            ByteBuffer entityBytes = stream.getEntityBuffer();
+            length = Math.max(0, Math.min(maxLength, entityBytes.remaining()));
+            int limit = entityBytes.limit();
+            entityBytes.limit(entityBytes.position() + length);
+            bytes.put(entityBytes);
+            entityBytes.limit(limit);
+            endStream = !entityBytes.hasRemaining();
+        } else if (maxLength > 0) {
+            int limit = bytes.limit();
+            bytes.limit(bytes.position() + maxLength);
+            stream.onEntityReading();
+
+            try {
+                length = stream.getEntityChannel().read(bytes);
+                stream.onEntityRead(length);
+                endStream = (length == -1);
+                length = Math.max(0, length);
+            } catch (IOException ioe) {
+                getLogger().log(Level.WARNING, "Unable to read the entity",
+                        ioe);
+                getSession().queueRstStream(stream.getId(),
+                        Http2Exception.INTERNAL_ERROR);
+                stream.onReset();
+                getSession().removeStream(stream);
+                length = 0;
+            } finally {
+                bytes.limit(limit);
+            }
+        }
+
+        if ((length > 0) || endStream) {
+            Http2Session.putFrameHeader(bytes, start, length,
+                    Http2Session.TYPE_DATA,
+                    endStream ? Http2Session.FLAG_END_STREAM : 0,
+                    stream.getId());
+            getSession().consumeSendWindow(length);
+            stream.consumeSendWindow(length);
+            result = true;
+
+            if (endStream) {
+                onStreamCompleted(stream, stream.getResponse());
+            }
+        } else {
+            bytes.position(start);
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes the headers of a response as HEADERS and CONTINUATION frames,
+     * then prepares its entity.
+     * 
+     * @param response
+     *            The response to write.
+     * @throws IOException
+     */
+    private void writeHeaders(Response response) throws IOException {
+        Http2Stream stream = getSession().getStream(response.getRequest());
+
+        if ((stream == null) || stream.isLocalClosed()) {
+            getLogger().fine("Ignoring a response for a reset HTTP/2 stream");
+
+            if (response.getEntity() != null) {
+                response.getEntity().release();
+            }
+        } else {
+            // Reuse the HTTP/1.1 logic to compute the headers
+            Series<Header> headers = new Series<Header>(Header.class);
+            setMessage(response);
+
+            try {
+                addHeaders(headers);
+            } finally {
+                setMessage(null);
+            }
+
+            List<Header> fields = new ArrayList<Header>(headers.size() + 1);
+            fields.add(new Header(":status", Integer.toString(response
+                    .getStatus().getCode())));
+
+            for (Header header : headers) {
+                if (!CONNECTION_HEADERS.contains(header.getName()
+                        .toLowerCase())) {
+                    fields.add(header);
+                }
+            }
+
+            boolean informational = response.getStatus().isInformational();
+            boolean endStream = !informational && !response.isEntityAvailable();
+            getSession().queueHeaders(stream.getId(),
+                    getSession().getEncoder().encode(fields), endStream);
+
+            if (endStream) {
+                onStreamCompleted(stream, response);
+            } else if (!informational) {
+                prepareEntity(stream, response.getEntity());
+                stream.setResponse(response);
+            }
+        }
+    }
+
+}
@@ -41,10 +41,14 @@ import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Server;
 import org.restlet.data.Status;
+import org.restlet.ext.nio.internal.buffer.Buffer;
 import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.websocket.WebSocketSession;
 
 /**
- * HTTP server inbound way.
+ * HTTP server inbound way. Once the connection has been upgraded to the
+ * WebSocket protocol, the received bytes are parsed as frames by the WebSocket
+ * session instead.
  * 
  * @author Jerome Louvel
  */
@@ -53,6 +57,9 @@ public class HttpServerInboundWay extends ServerInboundWay {
     /** The queue of messages. */
     private final Queue<Response> messages;
 
+    /** The WebSocket session once upgraded, or null. */
+    private volatile WebSocketSession webSocketSession;
+
     /**
      * Constructor.
      * 
@@ -64,12 +71,14 @@ public class HttpServerInboundWay extends ServerInboundWay {
     public HttpServerInboundWay(Connection<Server> connection, int bufferSize) {
         super(connection, bufferSize);
         this.messages = new ConcurrentLinkedQueue<Response>();
+        this.webSocketSession = null;
     }
 
     @Override
     public void clear() {
         super.clear();
         this.messages.clear();
+        this.webSocketSession = null;
     }
 
     @Override
@@ -91,14 +100,25 @@ public class HttpServerInboundWay extends ServerInboundWay {
         return messages;
     }
 
+    /**
+     * Returns the WebSocket session once upgraded, or null.
+     * 
+     * @return The WebSocket session once upgraded, or null.
+     */
+    public WebSocketSession getWebSocketSession() {
+        return webSocketSession;
+    }
+
     @Override
     protected boolean hasIoInterest() {
-        return super.hasIoInterest() || isAvailable();
+        return (getWebSocketSession() != null) || super.hasIoInterest()
+                || isAvailable();
     }
 
     @Override
     public boolean isAvailable() {
-        return super.isAvailable() && getMessages().isEmpty();
+        return (getWebSocketSession() == null) && super.isAvailable()
+                && getMessages().isEmpty();
     }
 
     @Override
@@ -106,6 +126,31 @@ public class HttpServerInboundWay extends ServerInboundWay {
         return super.isEmpty() && getMessages().isEmpty();
     }
 
+    @Override
+    public void onClosed() {
+        if (getWebSocketSession() != null) {
+            getWebSocketSession().onClosed();
+        }
+
+        super.onClosed();
+    }
+
+    @Override
+    public int onDrain(Buffer buffer, int maxDrained, Object... args)
+            throws IOException {
+        int result = 0;
+
+        if (getWebSocketSession() == null) {
+            result = super.onDrain(buffer, maxDrained, args);
+        } else {
+            int beforeDrain = buffer.remaining();
+            getWebSocketSession().drain(buffer.getBytes());
+            result = beforeDrain - buffer.remaining();
+        }
+
+        return result;
+    }
+
     @Override
     public void onError(Status status) {
         for (Response rsp : getMessages()) {
@@ -142,4 +187,14 @@ public class HttpServerInboundWay extends ServerInboundWay {
         super.onTimeOut();
     }
 
+    /**
+     * Sets the WebSocket session once upgraded.
+     * 
+     * @param webSocketSession
+     *            The WebSocket session.
+     */
+    public void setWebSocketSession(WebSocketSession webSocketSession) {
+        this.webSocketSession = webSocketSession;
+    }
+
 }
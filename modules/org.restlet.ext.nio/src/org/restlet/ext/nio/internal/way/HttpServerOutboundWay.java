@@ -34,17 +34,32 @@
 package org.restlet.ext.nio.internal.way;
 
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.restlet.Response;
 import org.restlet.Server;
+import org.restlet.data.Header;
 import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.ext.nio.HttpServerHelper;
+import org.restlet.ext.nio.internal.buffer.Buffer;
 import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.state.ConnectionState;
 import org.restlet.ext.nio.internal.state.IoState;
+import org.restlet.ext.nio.internal.websocket.WebSocketSession;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+import org.restlet.util.WebSocketListener;
 
 /**
- * HTTP server outbound way.
+ * HTTP server outbound way. When a 101 (Switching Protocols) response accepting
+ * a WebSocket handshake has been written, the connection is upgraded and the
+ * frames queued by the WebSocket session are written instead of messages.
  * 
  * @author Jerome Louvel
  */
@@ -53,6 +68,12 @@ public class HttpServerOutboundWay extends ServerOutboundWay {
     /** The queue of messages. */
     private final Queue<Response> messages;
 
+    /**
+     * The messages entirely filled into the IO buffer but not drained yet,
+     * with the time when their writing started.
+     */
+    private final Map<Response, Long> writtenMessages;
+
     /**
      * Constructor.
      * 
@@ -64,12 +85,93 @@ public class HttpServerOutboundWay extends ServerOutboundWay {
     public HttpServerOutboundWay(Connection<Server> connection, int bufferSize) {
         super(connection, bufferSize);
         this.messages = new ConcurrentLinkedQueue<Response>();
+        this.writtenMessages = new LinkedHashMap<Response, Long>();
+    }
+
+    @Override
+    protected void addEntityHeaders(Representation entity,
+            Series<Header> headers) {
+        // Upgrade responses have no entity, not even an empty one
+        if (!isWebSocketUpgrade(getMessage())) {
+            super.addEntityHeaders(entity, headers);
+        }
+    }
+
+    @Override
+    protected void addGeneralHeaders(Series<Header> headers) {
+        if (isWebSocketUpgrade(getMessage())) {
+            headers.add(HeaderConstants.HEADER_CONNECTION, "Upgrade");
+            headers.add(HeaderConstants.HEADER_UPGRADE, "websocket");
+            HeaderUtils.addGeneralHeaders(getActualMessage(), headers);
+        } else {
+            super.addGeneralHeaders(headers);
+        }
     }
 
     @Override
     public void clear() {
         super.clear();
         this.messages.clear();
+        this.writtenMessages.clear();
+    }
+
+    @Override
+    protected boolean coalesceNextMessage() throws IOException {
+        boolean result = false;
+
+        // Only coalesce final responses on persistent connections when the
+        // next response was already committed
+        if (isCoalescable()) {
+            if (getMessages().size() == 1) {
+                // The next response waits in the helper's queue until the
+                // current one is completed, claim it now
+                Response nextInbound = getNextInboundMessage();
+                Response nextMessage = (nextInbound == null) ? null
+                        : getHelper().pollOutboundMessage(
+                                nextInbound.getRequest());
+
+                if (nextMessage != null) {
+                    handle(nextMessage);
+                }
+            }
+
+            if ((getMessages().size() > 1)
+                    && (getConnection().getState() == ConnectionState.OPEN)) {
+                // The current message is completed once drained
+                deferCompletion();
+                startNextMessage(getMessages().peek());
+                setIoState(IoState.PROCESSING);
+                result = true;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Completes the messages written along with the current one, once they
+     * have been drained or when the current one is completed.
+     */
+    private void completeWrittenMessages() {
+        for (Iterator<Map.Entry<Response, Long>> iter = this.writtenMessages
+                .entrySet().iterator(); iter.hasNext();) {
+            Map.Entry<Response, Long> entry = iter.next();
+            Response message = entry.getKey();
+            iter.remove();
+            exhaustRequestEntity(message);
+            onMessageWritten(message, message, entry.getValue());
+            removeInboundMessage(message);
+        }
+    }
+
+    /**
+     * Defers the completion of the current message, entirely filled into the
+     * IO buffer, until it has been drained.
+     */
+    private void deferCompletion() {
+        Response message = getMessage();
+        getMessages().remove(message);
+        this.writtenMessages.put(message, getWriteStartTime());
     }
 
     @Override
@@ -86,41 +188,184 @@ public class HttpServerOutboundWay extends ServerOutboundWay {
         return messages;
     }
 
+    /**
+     * Returns the inbound message following the one currently answered, or
+     * null.
+     * 
+     * @return The next inbound message or null.
+     */
+    private Response getNextInboundMessage() {
+        Response result = null;
+        boolean found = false;
+
+        // Skip the messages written but not completed yet
+        for (Iterator<Response> iter = ((HttpServerInboundWay) getConnection()
+                .getInboundWay()).getMessages().iterator(); (result == null)
+                && iter.hasNext();) {
+            Response inboundMessage = iter.next();
+
+            if (found) {
+                result = inboundMessage;
+            } else {
+                found = (inboundMessage.getRequest() == getMessage()
+                        .getRequest());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the WebSocket session once upgraded, or null.
+     * 
+     * @return The WebSocket session once upgraded, or null.
+     */
+    private WebSocketSession getWebSocketSession() {
+        return ((HttpServerInboundWay) getConnection().getInboundWay())
+                .getWebSocketSession();
+    }
+
     @Override
     public void handle(Response response) {
         getMessages().add(response);
     }
 
+    @Override
+    protected boolean hasIoInterest() {
+        return (getWebSocketSession() == null) ? super.hasIoInterest()
+                : getBuffer().canDrain() || getWebSocketSession().hasOutput();
+    }
+
+    /**
+     * Returns false once upgraded to the WebSocket protocol as the connection
+     * can't be reused for other messages.
+     */
+    @Override
+    public boolean isAvailable() {
+        return (getWebSocketSession() == null) && super.isAvailable();
+    }
+
+    /**
+     * Indicates if the current message can be written along with the next one,
+     * which is the case for final responses on persistent connections.
+     * 
+     * @return True if the current message can be written with the next one.
+     */
+    private boolean isCoalescable() {
+        return getConnection().isPersistent()
+                && !getMessage().getStatus().isInformational()
+                && !isWebSocketUpgrade(getMessage())
+                && !HeaderUtils.isConnectionClose(getHeaders());
+    }
+
     @Override
     public boolean isEmpty() {
-        return super.isEmpty() && getMessages().isEmpty();
+        return super.isEmpty()
+                && getMessages().isEmpty()
+                && this.writtenMessages.isEmpty()
+                && ((getWebSocketSession() == null) || !getWebSocketSession()
+                        .hasOutput());
     }
 
+    /**
+     * Returns true once upgraded to the WebSocket protocol so that idle
+     * WebSocket connections aren't closed.
+     */
     @Override
-    public void onMessageCompleted(boolean endDetected) throws IOException {
-        getMessages().remove(getMessage());
+    public boolean isEntitySuspended() {
+        return (getWebSocketSession() != null) || super.isEntitySuspended();
+    }
 
-        if (!getMessage().getStatus().isInformational()) {
-            Queue<Response> inboundMessages = ((HttpServerInboundWay) getConnection()
-                    .getInboundWay()).getMessages();
+    /**
+     * Indicates if a response accepts a WebSocket handshake.
+     * 
+     * @param response
+     *            The response to test.
+     * @return True if the response accepts a WebSocket handshake.
+     */
+    private boolean isWebSocketUpgrade(Response response) {
+        return (response != null)
+                && Status.INFO_SWITCHING_PROTOCOL.equals(response.getStatus())
+                && (response.getAttributes().get(
+                        HeaderConstants.ATTRIBUTE_WEBSOCKET_LISTENER) instanceof WebSocketListener);
+    }
 
-            // Attempt to read additional inbound messages
-            Response inboundMessage = inboundMessages.peek();
+    @Override
+    public int onFill(Buffer buffer, Object... args) throws IOException {
+        int result = 0;
 
-            if (inboundMessage.getRequest() == getMessage().getRequest()) {
-                // As we are supporting provisional responses and
-                // asynchronous responses, it is possible that the final
-                // response object is not the original one blocked in the
-                // inbound queue
-                inboundMessages.remove(inboundMessage);
+        if (getWebSocketSession() == null) {
+            result = super.onFill(buffer, args);
+        } else {
+            int beforeFill = buffer.remaining();
+            getWebSocketSession().fill(buffer.getBytes());
+            result = beforeFill - buffer.remaining();
+        }
+
+        return result;
+    }
+
+    @Override
+    public void onMessageCompleted(boolean endDetected) throws IOException {
+        if (!this.writtenMessages.isEmpty() && !getBuffer().isEmpty()
+                && isCoalescable()) {
+            // Completed along with the previous messages once drained
+            deferCompletion();
+            startNextMessage(null);
+        } else {
+            // The previous messages were written before this one
+            completeWrittenMessages();
+            Response message = getMessage();
+            boolean upgrade = isWebSocketUpgrade(message);
+            getMessages().remove(message);
+            removeInboundMessage(message);
+            super.onMessageCompleted(endDetected);
+
+            if (upgrade) {
+                // Switch the connection to the WebSocket protocol
+                Series<Header> headers = message.getHeaders();
+                String subprotocol = (headers == null) ? null : headers
+                        .getFirstValue(
+                                HeaderConstants.HEADER_SEC_WEBSOCKET_PROTOCOL,
+                                true);
+                int maxMessageSize = (getHelper() instanceof HttpServerHelper) ? ((HttpServerHelper) getHelper())
+                        .getWebSocketMaxMessageSize() : 1048576;
+                int maxPendingSize = (getHelper() instanceof HttpServerHelper) ? ((HttpServerHelper) getHelper())
+                        .getWebSocketMaxPendingSize() : 4194304;
+                WebSocketSession session = new WebSocketSession(getConnection(),
+                        (WebSocketListener) message.getAttributes().get(
+                                HeaderConstants.ATTRIBUTE_WEBSOCKET_LISTENER),
+                        subprotocol, maxMessageSize, maxPendingSize);
+                ((HttpServerInboundWay) getConnection().getInboundWay())
+                        .setWebSocketSession(session);
+                session.open();
             }
         }
+    }
+
+    @Override
+    protected void onPostProcessing() {
+        if (!this.writtenMessages.isEmpty() && getBuffer().isEmpty()) {
+            completeWrittenMessages();
+        }
 
-        super.onMessageCompleted(endDetected);
+        if (getWebSocketSession() == null) {
+            super.onPostProcessing();
+        } else if (getBuffer().canDrain() || getWebSocketSession().hasOutput()) {
+            setIoState(IoState.INTEREST);
+        } else {
+            setIoState(IoState.IDLE);
+        }
     }
 
     @Override
     public void onError(Status status) {
+        for (Response rsp : this.writtenMessages.keySet()) {
+            getHelper().onOutboundError(status, rsp);
+        }
+
+        this.writtenMessages.clear();
+
         for (Response rsp : getMessages()) {
             if (rsp != getMessage()) {
                 getMessages().remove(rsp);
@@ -133,6 +378,13 @@ public class HttpServerOutboundWay extends ServerOutboundWay {
 
     @Override
     public void onTimeOut() {
+        for (Response rsp : this.writtenMessages.keySet()) {
+            getHelper().onOutboundError(Status.CONNECTOR_ERROR_COMMUNICATION,
+                    rsp);
+        }
+
+        this.writtenMessages.clear();
+
         for (Response rsp : getMessages()) {
             if (rsp != getMessage()) {
                 getMessages().remove(rsp);
@@ -144,6 +396,31 @@ public class HttpServerOutboundWay extends ServerOutboundWay {
         super.onTimeOut();
     }
 
+    /**
+     * Removes the inbound message answered by a final response, so that
+     * additional inbound messages can be read.
+     * 
+     * @param message
+     *            The response written.
+     */
+    private void removeInboundMessage(Response message) {
+        if (isWebSocketUpgrade(message)
+                || !message.getStatus().isInformational()) {
+            Queue<Response> inboundMessages = ((HttpServerInboundWay) getConnection()
+                    .getInboundWay()).getMessages();
+            Response inboundMessage = inboundMessages.peek();
+
+            if ((inboundMessage != null)
+                    && (inboundMessage.getRequest() == message.getRequest())) {
+                // As we are supporting provisional responses and
+                // asynchronous responses, it is possible that the final
+                // response object is not the original one blocked in the
+                // inbound queue
+                inboundMessages.remove(inboundMessage);
+            }
+        }
+    }
+
     @Override
     public void updateState() {
         // Update the IO state if necessary
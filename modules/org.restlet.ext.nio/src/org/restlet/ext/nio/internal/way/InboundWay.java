@@ -70,6 +70,9 @@ public abstract class InboundWay extends Way {
     /** The NIO selection registration of the entity. */
     private volatile SelectionRegistration entityRegistration;
 
+    /** The time when the start line of the current message was read. */
+    private volatile long headStartTime;
+
     /**
      * Constructor.
      * 
@@ -88,6 +91,7 @@ public abstract class InboundWay extends Way {
         super.clear();
         this.builderIndex = 0;
         this.entityRegistration = null;
+        this.headStartTime = 0;
     }
 
     /**
@@ -188,6 +192,16 @@ public abstract class InboundWay extends Way {
         return entityRegistration;
     }
 
+    /**
+     * Returns the time when the start line of the current message was read,
+     * as given by {@link System#nanoTime()}.
+     * 
+     * @return The time when the start line of the current message was read.
+     */
+    protected long getHeadStartTime() {
+        return headStartTime;
+    }
+
     @Override
     public int getInterestOperations() {
         int result = 0;
@@ -248,6 +262,7 @@ public abstract class InboundWay extends Way {
                                         + getConnection().getSocketAddress());
                     }
 
+                    this.headStartTime = System.nanoTime();
                     readStartLine();
                 }
             } else if (getMessageState() == MessageState.HEADERS) {
@@ -261,6 +276,8 @@ public abstract class InboundWay extends Way {
                     getHeaders().add(header);
                 } else {
                     // All headers received
+                    getHelper().getMetrics().getHeadParseTime()
+                            .record(System.nanoTime() - this.headStartTime);
                     onHeadersCompleted();
                 }
             }
@@ -287,8 +304,10 @@ public abstract class InboundWay extends Way {
                 getConnection().getReadableSelectionChannel());
 
         if (result == -1) {
-            // End of channel detected
-            getConnection().close(true);
+            // End of channel detected. Don't wait for a suspended entity
+            // whose end may never come, such as an event stream.
+            getConnection().close(
+                    !getConnection().getOutboundWay().isEntitySuspended());
         }
 
         return result;
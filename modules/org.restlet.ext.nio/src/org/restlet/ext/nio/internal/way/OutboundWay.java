@@ -34,7 +34,9 @@
 package org.restlet.ext.nio.internal.way;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
@@ -50,6 +52,8 @@ import org.restlet.engine.connector.ConnectorHelper;
 import org.restlet.engine.header.HeaderConstants;
 import org.restlet.engine.header.HeaderUtils;
 import org.restlet.engine.io.BlockableChannel;
+import org.restlet.engine.io.SelectionChannel;
+import org.restlet.engine.util.CallTimings;
 import org.restlet.engine.util.StringUtils;
 import org.restlet.ext.nio.internal.buffer.Buffer;
 import org.restlet.ext.nio.internal.channel.ReadableChunkingChannel;
@@ -57,8 +61,11 @@ import org.restlet.ext.nio.internal.channel.ReadableSizedChannel;
 import org.restlet.ext.nio.internal.connection.Connection;
 import org.restlet.ext.nio.internal.state.IoState;
 import org.restlet.ext.nio.internal.state.MessageState;
+import org.restlet.ext.nio.internal.util.NioUtils;
 import org.restlet.representation.Representation;
 import org.restlet.service.ConnectorService;
+import org.restlet.util.SelectionListener;
+import org.restlet.util.SelectionRegistration;
 import org.restlet.util.Series;
 
 /**
@@ -83,21 +90,42 @@ public abstract class OutboundWay extends Way {
                 + ((protocolVersion == null) ? "1.1" : protocolVersion);
     }
 
+    /**
+     * The in-memory entity bytes, written together with the buffered head via
+     * a gathering write.
+     */
+    private volatile ByteBuffer entityBuffer;
+
     /** The entity as a NIO readable byte channel. */
     private volatile ReadableByteChannel entityChannel;
 
     /** The type of the entity channel. */
     private volatile EntityType entityChannelType;
 
+    /**
+     * Indicates if a non-blocking entity signaled new content since it was
+     * last read.
+     */
+    private volatile boolean entityReady;
+
     /**
      * The entity's NIO selection key holding the link between the entity to be
      * written and the way.
      */
     private volatile SelectionKey entitySelectionKey;
 
+    /**
+     * Indicates if the last read of a non-blocking entity returned no content,
+     * in which case the way waits for the entity to signal new content.
+     */
+    private volatile boolean entityStarved;
+
     /** The header index. */
     private volatile int headerIndex;
 
+    /** The time when the writing of the current message started. */
+    private volatile long writeStartTime;
+
     /**
      * Constructor.
      * 
@@ -108,9 +136,13 @@ public abstract class OutboundWay extends Way {
      */
     public OutboundWay(Connection<?> connection, int bufferSize) {
         super(connection, bufferSize);
+        this.entityBuffer = null;
         this.entityChannel = null;
+        this.entityReady = false;
         this.entitySelectionKey = null;
+        this.entityStarved = false;
         this.headerIndex = 0;
+        this.writeStartTime = 0;
     }
 
     /**
@@ -154,11 +186,37 @@ public abstract class OutboundWay extends Way {
     @Override
     public void clear() {
         super.clear();
+        this.entityBuffer = null;
         this.entityChannel = null;
+        this.entityReady = false;
         this.entitySelectionKey = null;
+        this.entityStarved = false;
         this.headerIndex = 0;
     }
 
+    /**
+     * Attempts to continue with the next pending message once the current one
+     * has been entirely filled into the IO buffer but not drained yet, so that
+     * pipelined messages can be written with a single operation. Does nothing
+     * by default.
+     * 
+     * @return True if the next message is now the current one.
+     * @throws IOException
+     */
+    protected boolean coalesceNextMessage() throws IOException {
+        return false;
+    }
+
+    /**
+     * Returns the in-memory entity bytes remaining to be written via a
+     * gathering write.
+     * 
+     * @return The in-memory entity bytes remaining to be written.
+     */
+    protected ByteBuffer getEntityBuffer() {
+        return entityBuffer;
+    }
+
     /**
      * Returns the entity as a NIO readable byte channel.
      * 
@@ -220,6 +278,35 @@ public abstract class OutboundWay extends Way {
         return entitySelectionKey;
     }
 
+    /**
+     * Returns the bytes of an in-memory entity that can be written along with
+     * the head via a gathering write, or null if the entity isn't held in
+     * memory, if gathering writes are disabled or if the connection's channel
+     * doesn't support them.
+     * 
+     * @param entity
+     *            The entity to write.
+     * @return The entity bytes or null.
+     * @throws IOException
+     */
+    protected ByteBuffer getGatheringBuffer(Representation entity)
+            throws IOException {
+        ByteBuffer result = null;
+
+        if (getHelper().isGatheringWrites()
+                && (getConnection().getWritableSelectionChannel() instanceof GatheringByteChannel)) {
+            result = NioUtils.getByteBuffer(entity);
+
+            // The entity headers must match the actual bytes
+            if ((result != null)
+                    && (result.remaining() != entity.getAvailableSize())) {
+                result = null;
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns the header index.
      * 
@@ -229,6 +316,15 @@ public abstract class OutboundWay extends Way {
         return headerIndex;
     }
 
+    /**
+     * Returns the time when the writing of the current message started.
+     * 
+     * @return The time when the writing of the current message started, or 0.
+     */
+    protected long getWriteStartTime() {
+        return writeStartTime;
+    }
+
     @Override
     public int getInterestOperations() {
         int result = 0;
@@ -250,7 +346,52 @@ public abstract class OutboundWay extends Way {
     @Override
     protected boolean hasIoInterest() {
         return (getMessageState() == MessageState.START)
-                || getBuffer().canDrain();
+                || getBuffer().canDrain()
+                || (this.entityStarved && this.entityReady);
+    }
+
+    /**
+     * Indicates if the way is waiting for a non-blocking entity to produce new
+     * content, such as an event stream with no pending event, or if this
+     * content was just signaled. The connection isn't considered idle in this
+     * case.
+     *
+     * @return True if the way is waiting for a non-blocking entity.
+     */
+    public boolean isEntitySuspended() {
+        return this.entityStarved;
+    }
+
+    /**
+     * Releases the entity being sent, if any, so that its producer knows that
+     * no more content will be consumed.
+     */
+    @Override
+    public void onClosed() {
+        if ((getMessage() != null) && getActualMessage().isEntityAvailable()) {
+            try {
+                if (getEntityChannel() != null) {
+                    getEntityChannel().close();
+                }
+            } catch (IOException e) {
+                getLogger().log(Level.FINE,
+                        "Unable to close the entity channel", e);
+            }
+
+            getActualMessage().getEntity().release();
+        }
+
+        super.onClosed();
+    }
+
+    /**
+     * Callback invoked when a non-blocking entity signals that new content can
+     * be read. It can be called by any thread so it only updates the state and
+     * wakes up the controller, which will then register the write interest.
+     */
+    protected void onEntityReady() {
+        this.entityReady = true;
+        getHelper().getController().wakeup();
     }
 
     /**
@@ -274,37 +415,64 @@ public abstract class OutboundWay extends Way {
             }
 
             setMessageState(MessageState.BODY);
-            ReadableByteChannel rbc = getActualMessage().getEntity()
-                    .getChannel();
 
-            if (rbc instanceof FileChannel) {
-                setEntityChannelType(EntityType.TRANSFERABLE);
-            } else if (rbc instanceof BlockableChannel) {
-                BlockableChannel bc = (BlockableChannel) rbc;
+            ByteBuffer entityBytes = getGatheringBuffer(getActualMessage()
+                    .getEntity());
 
-                if (bc.isBlocking()) {
-                    setEntityChannelType(EntityType.BLOCKING);
+            if (entityBytes != null) {
+                // Write the in-memory entity along with the head in a
+                // single gathering write, without copying it
+                setEntityBuffer(entityBytes);
+            } else {
+                ReadableByteChannel rbc = getActualMessage().getEntity()
+                        .getChannel();
+
+                if (rbc instanceof FileChannel) {
+                    setEntityChannelType(EntityType.TRANSFERABLE);
+                } else if (rbc instanceof BlockableChannel) {
+                    BlockableChannel bc = (BlockableChannel) rbc;
+
+                    if (bc.isBlocking()) {
+                        setEntityChannelType(EntityType.BLOCKING);
+                    } else {
+                        setEntityChannelType(EntityType.NON_BLOCKING);
+
+                        if (rbc instanceof SelectionChannel) {
+                            // Be called back when new content is ready instead
+                            // of polling the entity
+                            SelectionRegistration entityRegistration = ((SelectionChannel) rbc)
+                                    .getRegistration();
+                            entityRegistration.setReadInterest();
+                            entityRegistration
+                                    .setSelectionListener(new SelectionListener() {
+                                        public void onSelected(
+                                                SelectionRegistration selectionRegistration)
+                                                throws IOException {
+                                            onEntityReady();
+                                        }
+                                    });
+                        }
+                    }
+                } else if (rbc instanceof SelectableChannel) {
+                    SelectableChannel sc = (SelectableChannel) rbc;
+
+                    if (sc.isBlocking()) {
+                        setEntityChannelType(EntityType.BLOCKING);
+                    } else {
+                        setEntityChannelType(EntityType.NON_BLOCKING);
+                    }
                 } else {
-                    setEntityChannelType(EntityType.NON_BLOCKING);
+                    setEntityChannelType(EntityType.BLOCKING);
                 }
-            } else if (rbc instanceof SelectableChannel) {
-                SelectableChannel sc = (SelectableChannel) rbc;
 
-                if (sc.isBlocking()) {
-                    setEntityChannelType(EntityType.BLOCKING);
+                if (getActualMessage().getEntity().getAvailableSize() == Representation.UNKNOWN_SIZE) {
+                    setEntityChannel(new ReadableChunkingChannel(rbc,
+                            getBuffer().capacity()));
                 } else {
-                    setEntityChannelType(EntityType.NON_BLOCKING);
+                    setEntityChannel(new ReadableSizedChannel(rbc,
+                            getActualMessage().getEntity()
+                                    .getAvailableSize()));
                 }
-            } else {
-                setEntityChannelType(EntityType.BLOCKING);
-            }
-
-            if (getActualMessage().getEntity().getAvailableSize() == Representation.UNKNOWN_SIZE) {
-                setEntityChannel(new ReadableChunkingChannel(rbc, getBuffer()
-                        .capacity()));
-            } else {
-                setEntityChannel(new ReadableSizedChannel(rbc,
-                        getActualMessage().getEntity().getAvailableSize()));
             }
 
         } else {
@@ -314,12 +482,48 @@ public abstract class OutboundWay extends Way {
 
     @Override
     public void onMessageCompleted(boolean endReached) throws IOException {
-        if (getActualMessage() != null) {
-            Representation messageEntity = getActualMessage().getEntity();
+        if ((getActualMessage() != null) && (getEntityChannel() != null)) {
+            getEntityChannel().close();
+        }
+
+        onMessageWritten(getMessage(), getActualMessage(), this.writeStartTime);
+        this.writeStartTime = 0;
+        super.onMessageCompleted(endReached);
+        setEntityBuffer(null);
+        this.entityStarved = false;
+        setHeaderIndex(0);
+
+        if (getLogger().isLoggable(Level.FINER)) {
+            getLogger().finer("Outbound message completed");
+        }
+    }
 
-            if (getEntityChannel() != null) {
-                getEntityChannel().close();
+    /**
+     * Callback method invoked when a message has been written. Records the
+     * write time, releases the entity and calls back the connector service.
+     * 
+     * @param message
+     *            The message written.
+     * @param actualMessage
+     *            The actual message written.
+     * @param startTime
+     *            The time when the writing started, or 0 if unknown.
+     */
+    protected void onMessageWritten(Response message, Message actualMessage,
+            long startTime) {
+        if (startTime != 0) {
+            long writeTime = System.nanoTime() - startTime;
+            getHelper().getMetrics().getResponseWriteTime().record(writeTime);
+
+            if (getHelper().isServerSide() && (message != null)
+                    && (message.getRequest().getTimings() != null)) {
+                message.getRequest().getTimings()
+                        .add(CallTimings.STAGE_WRITE, writeTime);
             }
+        }
+
+        if (actualMessage != null) {
+            Representation messageEntity = actualMessage.getEntity();
 
             // Release entity
             if (messageEntity != null) {
@@ -334,20 +538,27 @@ public abstract class OutboundWay extends Way {
                 connectorService.afterSend(messageEntity);
             }
         }
-
-        super.onMessageCompleted(endReached);
-        setHeaderIndex(0);
-
-        if (getLogger().isLoggable(Level.FINER)) {
-            getLogger().finer("Outbound message completed");
-        }
     }
 
     @Override
     public int onDrain(Buffer buffer, int maxDrained, Object... args)
             throws IOException {
-        int result = getBuffer().drain(
-                getConnection().getWritableSelectionChannel());
+        int result = 0;
+
+        if ((getEntityBuffer() != null) && getEntityBuffer().hasRemaining()) {
+            // Write the head and the in-memory entity at once
+            result = (int) getBuffer().drain(
+                    (GatheringByteChannel) getConnection()
+                            .getWritableSelectionChannel(), getEntityBuffer());
+
+            if (!getEntityBuffer().hasRemaining()) {
+                setEntityBuffer(null);
+                setMessageState(MessageState.END);
+            }
+        } else {
+            result = getBuffer().drain(
+                    getConnection().getWritableSelectionChannel());
+        }
 
         if (getLogger().isLoggable(Level.FINER)) {
             getLogger().log(Level.FINER, result + " bytes written");
@@ -385,14 +596,39 @@ public abstract class OutboundWay extends Way {
 
         // Write the message or part of it in the byte
         // buffer
-        if (getMessageState() == MessageState.BODY) {
+        if ((getMessageState() == MessageState.BODY)
+                && (getEntityBuffer() != null)) {
+            if (buffer.isEmpty()) {
+                // The head was written but not the whole entity, copy the
+                // remaining bytes as usual
+                buffer.fill(getEntityBuffer());
+
+                if (!getEntityBuffer().hasRemaining()) {
+                    setEntityBuffer(null);
+                    setMessageState(MessageState.END);
+                }
+            }
+
+            // Otherwise, let the head be drained along with the entity
+        } else if (getMessageState() == MessageState.BODY) {
             try {
+                // Reset before reading to never miss a concurrent signal
+                this.entityReady = false;
                 int filled = buffer.fill(getEntityChannel());
 
                 // Detect end of entity reached
                 if (filled == -1) {
                     setMessageState(MessageState.END);
+
+                    // Try to append the next pipelined message before the
+                    // buffer is drained
+                    if (buffer.hasRemaining() && coalesceNextMessage()) {
+                        return onFill(buffer, args);
+                    }
                 }
+
+                this.entityStarved = (filled == 0)
+                        && (getEntityChannelType() == EntityType.NON_BLOCKING);
             } catch (IOException ioe) {
                 if (getLogger().isLoggable(Level.WARNING)) {
                     getLogger().log(Level.WARNING, "Unable to read the entity",
@@ -401,7 +637,13 @@ public abstract class OutboundWay extends Way {
 
                 throw ioe;
             }
-        } else if (getMessageState() != MessageState.END) {
+        } else if (getMessageState() == MessageState.END) {
+            // The message is fully filled but not yet drained. Try to append
+            // the next pipelined message to drain them together.
+            if (buffer.hasRemaining() && coalesceNextMessage()) {
+                return onFill(buffer, args);
+            }
+        } else {
             // Write the start line or the headers,
             // relying on the line builder
             if (getLineBuilder().length() == 0) {
@@ -444,7 +686,11 @@ public abstract class OutboundWay extends Way {
 
     @Override
     protected void onPostProcessing() {
-        if ((getMessageState() != MessageState.IDLE) || getBuffer().canDrain()) {
+        if (this.entityStarved && !this.entityReady && !getBuffer().canDrain()) {
+            // Wait for the entity to signal new content without polling it
+            setIoState(IoState.IDLE);
+        } else if ((getMessageState() != MessageState.IDLE)
+                || getBuffer().canDrain()) {
             // Socket channel exhausted
             setIoState(IoState.INTEREST);
         } else {
@@ -477,6 +723,17 @@ public abstract class OutboundWay extends Way {
         return result;
     }
 
+    /**
+     * Sets the in-memory entity bytes remaining to be written via a gathering
+     * write.
+     * 
+     * @param entityBuffer
+     *            The in-memory entity bytes remaining to be written.
+     */
+    protected void setEntityBuffer(ByteBuffer entityBuffer) {
+        this.entityBuffer = entityBuffer;
+    }
+
     /**
      * Sets the entity as a NIO readable byte channel.
      * 
@@ -530,9 +787,39 @@ public abstract class OutboundWay extends Way {
                 && (entity.getAvailableSize() == Representation.UNKNOWN_SIZE);
     }
 
+    /**
+     * Starts filling the next message right after the current one, once the
+     * latter has been entirely filled into the IO buffer. The current message
+     * isn't completed, see {@link #onMessageWritten(Response, Message, long)}.
+     * 
+     * @param nextMessage
+     *            The next message or null to wait for one.
+     * @throws IOException
+     */
+    protected void startNextMessage(Response nextMessage) throws IOException {
+        if (getEntityChannel() != null) {
+            getEntityChannel().close();
+        }
+
+        setEntityBuffer(null);
+        this.entityStarved = false;
+        setHeaderIndex(0);
+        setHeaders(null);
+        setMessage(nextMessage);
+
+        if (nextMessage == null) {
+            setMessageState(MessageState.IDLE);
+            this.writeStartTime = 0;
+        } else {
+            setMessageState(MessageState.START);
+            this.writeStartTime = System.nanoTime();
+        }
+    }
+
     @Override
     public void updateState() {
         if ((getMessageState() == MessageState.IDLE) && (getMessage() != null)) {
+            this.writeStartTime = System.nanoTime();
             setMessageState(MessageState.START);
         }
 
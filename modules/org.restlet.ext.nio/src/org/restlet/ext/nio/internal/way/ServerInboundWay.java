@@ -40,6 +40,7 @@ import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Server;
 import org.restlet.engine.header.HeaderUtils;
+import org.restlet.engine.util.CallTimings;
 import org.restlet.ext.nio.ServerConnectionHelper;
 import org.restlet.ext.nio.internal.connection.Connection;
 import org.restlet.ext.nio.internal.request.InboundRequest;
@@ -104,6 +105,12 @@ public abstract class ServerInboundWay extends InboundWay {
         super.onHeadersCompleted();
         InboundRequest request = (InboundRequest) getMessage().getRequest();
 
+        if (getHelper().isTimed()) {
+            CallTimings timings = new CallTimings(getHeadStartTime());
+            timings.addElapsed(CallTimings.STAGE_PARSE, getHeadStartTime());
+            getMessage().getRequest().setTimings(timings);
+        }
+
         if (getHeaders() != null) {
             request.setHeaders(getHeaders());
         }
@@ -227,5 +234,12 @@ public abstract class ServerInboundWay extends InboundWay {
 
         // Update the registration
         super.updateState();
+
+        // Pipelined requests already buffered won't be selected again
+        if ((getMessageState() == MessageState.START)
+                && (getIoState() == IoState.INTEREST)
+                && getBuffer().canDrain()) {
+            setIoState(IoState.READY);
+        }
     }
 }
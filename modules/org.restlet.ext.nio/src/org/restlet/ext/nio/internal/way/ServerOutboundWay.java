@@ -43,6 +43,7 @@ import org.restlet.data.Header;
 import org.restlet.data.Method;
 import org.restlet.data.Status;
 import org.restlet.engine.header.HeaderUtils;
+import org.restlet.ext.nio.ServerConnectionHelper;
 import org.restlet.ext.nio.internal.connection.Connection;
 import org.restlet.representation.Representation;
 import org.restlet.util.Series;
@@ -144,25 +145,19 @@ public abstract class ServerOutboundWay extends OutboundWay {
         HeaderUtils.addResponseHeaders(getMessage(), headers);
     }
 
-    @Override
-    public Response getActualMessage() {
-        return getMessage();
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public Connection<Server> getConnection() {
-        return (Connection<Server>) super.getConnection();
-    }
-
-    @Override
-    public void onMessageCompleted(boolean endDetected) throws IOException {
-        if (getMessage() != null) {
+    /**
+     * Exhausts the request entity if it is still available after writing the
+     * final response, to allow reuse of the connection.
+     * 
+     * @param response
+     *            The response written.
+     */
+    protected void exhaustRequestEntity(Response response) {
+        if (response != null) {
             // Ensure that the request entity has been fully read
-            Representation requestEntity = getMessage().getRequest()
-                    .getEntity();
+            Representation requestEntity = response.getRequest().getEntity();
 
-            if (getMessage().isFinal() && (requestEntity != null)
+            if (response.isFinal() && (requestEntity != null)
                     && requestEntity.isAvailable()) {
                 try {
                     if (getLogger().isLoggable(Level.FINE)) {
@@ -185,6 +180,27 @@ public abstract class ServerOutboundWay extends OutboundWay {
                 }
             }
         }
+    }
+
+    @Override
+    public Response getActualMessage() {
+        return getMessage();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Connection<Server> getConnection() {
+        return (Connection<Server>) super.getConnection();
+    }
+
+    @Override
+    public ServerConnectionHelper getHelper() {
+        return (ServerConnectionHelper) super.getHelper();
+    }
+
+    @Override
+    public void onMessageCompleted(boolean endDetected) throws IOException {
+        exhaustRequestEntity(getMessage());
 
         // Check if we need to close the connection
         if (!getConnection().isPersistent()
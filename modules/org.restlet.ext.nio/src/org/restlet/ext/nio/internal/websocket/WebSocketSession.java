@@ -0,0 +1,830 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.websocket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.restlet.Server;
+import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.state.ConnectionState;
+import org.restlet.util.WebSocket;
+import org.restlet.util.WebSocketListener;
+
+/**
+ * WebSocket session of a server connection, once upgraded. Parses the frames
+ * received by the inbound way and writes the queued frames directly into the
+ * IO buffer of the outbound way, so that sending a message doesn't allocate a
+ * frame buffer. Listener callbacks are invoked in order by the worker threads
+ * of the connector.<br>
+ * <br>
+ * The size of the frames waiting to be written is bounded. Once reached,
+ * sending a message fails with an IOException and pings received are no
+ * longer answered, until the client reads the queued frames.
+ */
+public class WebSocketSession implements WebSocket {
+
+    /** Outbound frame waiting to be written. */
+    private static class OutboundFrame {
+
+        /** Indicates if the frame header has been written. */
+        private boolean headerWritten;
+
+        /** The offset of the next payload byte to write. */
+        private int offset;
+
+        /** The frame opcode. */
+        private final int opcode;
+
+        /** The frame payload. */
+        private final byte[] payload;
+
+        /**
+         * Constructor.
+         *
+         * @param opcode
+         *            The frame opcode.
+         * @param payload
+         *            The frame payload.
+         */
+        public OutboundFrame(int opcode, byte[] payload) {
+            this.headerWritten = false;
+            this.offset = 0;
+            this.opcode = opcode;
+            this.payload = payload;
+        }
+    }
+
+    /** Continuation frame opcode. */
+    public static final int OPCODE_CONTINUATION = 0x0;
+
+    /** Text frame opcode. */
+    public static final int OPCODE_TEXT = 0x1;
+
+    /** Binary frame opcode. */
+    public static final int OPCODE_BINARY = 0x2;
+
+    /** Close frame opcode. */
+    public static final int OPCODE_CLOSE = 0x8;
+
+    /** Ping frame opcode. */
+    public static final int OPCODE_PING = 0x9;
+
+    /** Pong frame opcode. */
+    public static final int OPCODE_PONG = 0xA;
+
+    /** The maximum payload length of a control frame. */
+    private static final int MAX_CONTROL_LENGTH = 125;
+
+    /** The UTF-8 character set. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Indicates if a close frame was received. */
+    private volatile boolean closeReceived;
+
+    /** Indicates if a close frame was queued. */
+    private volatile boolean closeSent;
+
+    /** Indicates if the listener was notified of the closing. */
+    private final AtomicBoolean closeNotified;
+
+    /** The parent connection. */
+    private final Connection<Server> connection;
+
+    /** Indicates if a task is dispatching the listener callbacks. */
+    private final AtomicBoolean dispatching;
+
+    /** The pending listener callbacks. */
+    private final Queue<Runnable> events;
+
+    /** The executor invoking the listener callbacks. */
+    private final Executor executor;
+
+    /** Indicates if the connection failed and received bytes are ignored. */
+    private volatile boolean failed;
+
+    /** The received frame header, including the masking key. */
+    private final byte[] frameHeader;
+
+    /** The number of frame header bytes received. */
+    private int frameHeaderIndex;
+
+    /** The expected frame header length. */
+    private int frameHeaderLength;
+
+    /** The listener notified of the WebSocket events. */
+    private final WebSocketListener listener;
+
+    /** The maximum size of a received message. */
+    private final int maxMessageSize;
+
+    /** The maximum size of the frames waiting to be written. */
+    private final int maxPendingSize;
+
+    /** The payload of the received message, possibly fragmented. */
+    private byte[] message;
+
+    /** The number of message bytes received. */
+    private int messageLength;
+
+    /** The opcode of the received message, or -1 between messages. */
+    private int messageOpcode;
+
+    /** The payload of the received control frame. */
+    private byte[] controlPayload;
+
+    /** The queue of frames waiting to be written. */
+    private final Queue<OutboundFrame> pendingFrames;
+
+    /** The payload size of the frames waiting to be written. */
+    private final AtomicLong pendingSize;
+
+    /** The number of payload bytes received for the current frame. */
+    private long payloadIndex;
+
+    /** The payload length of the current frame, or -1 if unknown yet. */
+    private long payloadLength;
+
+    /** The selected subprotocol or null. */
+    private final String subprotocol;
+
+    /**
+     * Constructor.
+     *
+     * @param connection
+     *            The parent connection.
+     * @param listener
+     *            The listener notified of the WebSocket events.
+     * @param subprotocol
+     *            The selected subprotocol or null.
+     * @param maxMessageSize
+     *            The maximum size of a received message.
+     * @param maxPendingSize
+     *            The maximum size of the frames waiting to be written.
+     */
+    public WebSocketSession(Connection<Server> connection,
+            WebSocketListener listener, String subprotocol,
+            int maxMessageSize, int maxPendingSize) {
+        this.closeNotified = new AtomicBoolean(false);
+        this.closeReceived = false;
+        this.closeSent = false;
+        this.connection = connection;
+        this.dispatching = new AtomicBoolean(false);
+        this.events = new ConcurrentLinkedQueue<Runnable>();
+        this.executor = connection.getHelper().getWorkerService();
+        this.failed = false;
+        this.frameHeader = new byte[14];
+        this.frameHeaderIndex = 0;
+        this.frameHeaderLength = 2;
+        this.listener = listener;
+        this.maxMessageSize = maxMessageSize;
+        this.maxPendingSize = maxPendingSize;
+        this.messageLength = 0;
+        this.messageOpcode = -1;
+        this.pendingFrames = new ConcurrentLinkedQueue<OutboundFrame>();
+        this.pendingSize = new AtomicLong();
+        this.payloadLength = -1;
+        this.subprotocol = subprotocol;
+    }
+
+    public void close(int statusCode, String reason) throws IOException {
+        queueClose(statusCode, reason);
+    }
+
+    /**
+     * Returns the payload of a close frame.
+     *
+     * @param statusCode
+     *            The close status code.
+     * @param reason
+     *            The optional reason or null.
+     * @return The payload of a close frame.
+     */
+    private byte[] createClosePayload(int statusCode, String reason) {
+        byte[] reasonBytes = (reason == null) ? new byte[0] : reason
+                .getBytes(UTF_8);
+        int reasonLength = Math.min(reasonBytes.length,
+                MAX_CONTROL_LENGTH - 2);
+        byte[] result = new byte[2 + reasonLength];
+        result[0] = (byte) (statusCode >> 8);
+        result[1] = (byte) statusCode;
+        System.arraycopy(reasonBytes, 0, result, 2, reasonLength);
+        return result;
+    }
+
+    /**
+     * Queues a listener callback and makes sure that a worker thread invokes
+     * the pending callbacks in order.
+     *
+     * @param event
+     *            The listener callback.
+     */
+    private void dispatch(Runnable event) {
+        this.events.add(event);
+        schedule();
+    }
+
+    /**
+     * Parses the received bytes into frames.
+     *
+     * @param bytes
+     *            The received bytes.
+     * @throws IOException
+     */
+    public void drain(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining() && !this.failed && !this.closeReceived
+                && (this.connection.getState() == ConnectionState.OPEN)) {
+            if (this.payloadLength == -1) {
+                this.frameHeader[this.frameHeaderIndex++] = bytes.get();
+
+                if (this.frameHeaderIndex == 2) {
+                    onFrameStart();
+                }
+
+                if (!this.failed
+                        && (this.frameHeaderIndex == this.frameHeaderLength)) {
+                    onFrameHeader();
+                }
+            } else {
+                int length = (int) Math.min(bytes.remaining(),
+                        this.payloadLength - this.payloadIndex);
+                int maskOffset = this.frameHeaderLength - 4;
+                byte[] target = isControlFrame() ? this.controlPayload
+                        : this.message;
+                int targetIndex = isControlFrame() ? (int) this.payloadIndex
+                        : this.messageLength;
+
+                for (int i = 0; i < length; i++) {
+                    target[targetIndex + i] = (byte) (bytes.get() ^ this.frameHeader[maskOffset
+                            + (int) ((this.payloadIndex + i) & 3)]);
+                }
+
+                this.payloadIndex += length;
+
+                if (!isControlFrame()) {
+                    this.messageLength += length;
+                }
+            }
+
+            if (!this.failed && (this.payloadLength != -1)
+                    && (this.payloadIndex == this.payloadLength)) {
+                onFrame();
+            }
+        }
+
+        if (this.failed || this.closeReceived) {
+            // Ignore the bytes received after the closing
+            bytes.position(bytes.limit());
+        }
+    }
+
+    /**
+     * Fails the WebSocket connection after a protocol error: a close frame is
+     * sent, the received bytes are ignored and the connection is closed.
+     *
+     * @param statusCode
+     *            The close status code.
+     * @param reason
+     *            The close reason.
+     */
+    private void fail(int statusCode, String reason) {
+        getLogger().log(Level.FINE,
+                "Failing the WebSocket connection: " + reason);
+        this.failed = true;
+
+        try {
+            queueClose(statusCode, reason);
+        } catch (IOException e) {
+            // Already closing
+        }
+
+        notifyClose(statusCode, reason);
+    }
+
+    /**
+     * Writes as many queued frames as possible into the IO buffer. Once the
+     * close frame is written, the connection is closed if the remote endpoint
+     * already sent its own one.
+     *
+     * @param bytes
+     *            The IO buffer to fill.
+     */
+    public void fill(ByteBuffer bytes) {
+        boolean progress = true;
+        OutboundFrame frame = null;
+
+        while (progress && bytes.hasRemaining()
+                && ((frame = this.pendingFrames.peek()) != null)) {
+            int length = frame.payload.length;
+
+            if (!frame.headerWritten) {
+                int headerLength = (length < 126) ? 2 : (length <= 0xFFFF) ? 4
+                        : 10;
+
+                if (bytes.remaining() >= headerLength) {
+                    // Final frame, never masked by a server
+                    bytes.put((byte) (0x80 | frame.opcode));
+
+                    if (length < 126) {
+                        bytes.put((byte) length);
+                    } else if (length <= 0xFFFF) {
+                        bytes.put((byte) 126);
+                        bytes.putShort((short) length);
+                    } else {
+                        bytes.put((byte) 127);
+                        bytes.putLong(length);
+                    }
+
+                    frame.headerWritten = true;
+                } else {
+                    progress = false;
+                }
+            }
+
+            if (frame.headerWritten) {
+                int count = Math.min(length - frame.offset, bytes.remaining());
+                bytes.put(frame.payload, frame.offset, count);
+                frame.offset += count;
+
+                if (frame.offset == length) {
+                    this.pendingFrames.poll();
+                    this.pendingSize.addAndGet(-length);
+
+                    if ((frame.opcode == OPCODE_CLOSE)
+                            && (this.closeReceived || this.failed)) {
+                        // Closing handshake completed, or failed
+                        this.connection.close(true);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the parent connection's logger.
+     *
+     * @return The parent connection's logger.
+     */
+    private Logger getLogger() {
+        return this.connection.getLogger();
+    }
+
+    public String getSubprotocol() {
+        return this.subprotocol;
+    }
+
+    /**
+     * Indicates if frames are waiting to be written.
+     *
+     * @return True if frames are waiting to be written.
+     */
+    public boolean hasOutput() {
+        return !this.pendingFrames.isEmpty();
+    }
+
+    /**
+     * Indicates if the current frame is a control frame.
+     *
+     * @return True if the current frame is a control frame.
+     */
+    private boolean isControlFrame() {
+        return (this.frameHeader[0] & 0x08) != 0;
+    }
+
+    public boolean isOpen() {
+        return !this.closeSent && !this.closeReceived;
+    }
+
+    /**
+     * Notifies the listener that the WebSocket is closed, only once.
+     *
+     * @param statusCode
+     *            The close status code.
+     * @param reason
+     *            The close reason.
+     */
+    private void notifyClose(final int statusCode, final String reason) {
+        if (this.closeNotified.compareAndSet(false, true)) {
+            dispatch(new Runnable() {
+                public void run() {
+                    try {
+                        listener.onClose(WebSocketSession.this, statusCode,
+                                (reason == null) ? "" : reason);
+                    } catch (Throwable t) {
+                        getLogger().log(Level.WARNING,
+                                "Error while closing the WebSocket", t);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Called back when the parent connection is closed. Notifies the listener
+     * of an abnormal closure if no close frame was exchanged.
+     */
+    public void onClosed() {
+        this.closeReceived = true;
+        this.pendingFrames.clear();
+        this.pendingSize.set(0);
+        notifyClose(CLOSE_ABNORMAL, "");
+    }
+
+    /**
+     * Called back when the payload of a control frame has been received.
+     *
+     * @param opcode
+     *            The control frame opcode.
+     * @throws IOException
+     */
+    private void onControlFrame(int opcode) throws IOException {
+        if (opcode == OPCODE_PING) {
+            if (!this.closeSent && !reserve(this.controlPayload.length)) {
+                getLogger().log(Level.FINE,
+                        "Too many frames waiting to be written, ping ignored");
+            } else if (!this.closeSent) {
+                queueFrame(OPCODE_PONG, this.controlPayload);
+            }
+        } else if (opcode == OPCODE_CLOSE) {
+            int statusCode = CLOSE_NO_STATUS;
+            String reason = "";
+
+            if (this.controlPayload.length == 1) {
+                fail(CLOSE_PROTOCOL_ERROR, "Invalid close frame");
+            } else if (this.controlPayload.length >= 2) {
+                statusCode = ((this.controlPayload[0] & 0xFF) << 8)
+                        | (this.controlPayload[1] & 0xFF);
+
+                if ((statusCode < 1000)
+                        || ((statusCode >= 1004) && (statusCode <= 1006))
+                        || ((statusCode >= 1012) && (statusCode < 3000))
+                        || (statusCode >= 5000)) {
+                    fail(CLOSE_PROTOCOL_ERROR, "Invalid close status code");
+                } else {
+                    reason = toText(this.controlPayload, 2,
+                            this.controlPayload.length - 2);
+                }
+            }
+
+            if (!this.failed && (reason != null)) {
+                this.closeReceived = true;
+
+                if (!this.closeSent) {
+                    // Echo the status code to complete the handshake
+                    queueClose((statusCode == CLOSE_NO_STATUS) ? CLOSE_NORMAL
+                            : statusCode, null);
+                } else if (!hasOutput()) {
+                    // Our close frame was already written
+                    this.connection.close(true);
+                }
+
+                notifyClose(statusCode, reason);
+            }
+        }
+
+        // Pong frames are ignored
+    }
+
+    /**
+     * Called back when the payload of a frame has been fully received.
+     *
+     * @throws IOException
+     */
+    private void onFrame() throws IOException {
+        int opcode = this.frameHeader[0] & 0x0F;
+        boolean fin = (this.frameHeader[0] & 0x80) != 0;
+        this.frameHeaderIndex = 0;
+        this.frameHeaderLength = 2;
+        this.payloadLength = -1;
+
+        if (isControlFrame()) {
+            onControlFrame(opcode);
+            this.controlPayload = null;
+        } else if (fin) {
+            final int messageOpcode = this.messageOpcode;
+            final byte[] data = new byte[this.messageLength];
+            System.arraycopy(this.message, 0, data, 0, this.messageLength);
+            this.messageOpcode = -1;
+            this.messageLength = 0;
+
+            if (this.message.length > 8192) {
+                // Don't retain large buffers between messages
+                this.message = null;
+            }
+
+            final String text = (messageOpcode == OPCODE_TEXT) ? toText(data,
+                    0, data.length) : null;
+
+            if ((messageOpcode == OPCODE_BINARY) || (text != null)) {
+                dispatch(new Runnable() {
+                    public void run() {
+                        try {
+                            if (text == null) {
+                                listener.onBinary(WebSocketSession.this, data);
+                            } else {
+                                listener.onText(WebSocketSession.this, text);
+                            }
+                        } catch (Throwable t) {
+                            listener.onError(WebSocketSession.this, t);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Called back when the whole frame header has been received. Validates
+     * the payload length and prepares the payload buffer.
+     */
+    private void onFrameHeader() {
+        int length = this.frameHeader[1] & 0x7F;
+
+        if (length == 126) {
+            this.payloadLength = ((this.frameHeader[2] & 0xFF) << 8)
+                    | (this.frameHeader[3] & 0xFF);
+        } else if (length == 127) {
+            this.payloadLength = ByteBuffer.wrap(this.frameHeader, 2, 8)
+                    .getLong();
+        } else {
+            this.payloadLength = length;
+        }
+
+        this.payloadIndex = 0;
+
+        if (isControlFrame()) {
+            if (this.payloadLength > MAX_CONTROL_LENGTH) {
+                fail(CLOSE_PROTOCOL_ERROR, "Control frame too long");
+            } else {
+                this.controlPayload = new byte[(int) this.payloadLength];
+            }
+        } else if ((this.payloadLength < 0)
+                || (this.messageLength + this.payloadLength > this.maxMessageSize)) {
+            fail(CLOSE_TOO_BIG, "Message too big");
+        } else {
+            int capacity = this.messageLength + (int) this.payloadLength;
+
+            if ((this.message == null) || (this.message.length < capacity)) {
+                byte[] newMessage = new byte[Math.max(capacity, Math.min(
+                        this.maxMessageSize, 256))];
+
+                if (this.messageLength > 0) {
+                    System.arraycopy(this.message, 0, newMessage, 0,
+                            this.messageLength);
+                }
+
+                this.message = newMessage;
+            }
+        }
+    }
+
+    /**
+     * Called back when the first two bytes of a frame header have been
+     * received. Validates the flags and the opcode, then computes the header
+     * length.
+     */
+    private void onFrameStart() {
+        int opcode = this.frameHeader[0] & 0x0F;
+        boolean fin = (this.frameHeader[0] & 0x80) != 0;
+        int length = this.frameHeader[1] & 0x7F;
+
+        if ((this.frameHeader[0] & 0x70) != 0) {
+            fail(CLOSE_PROTOCOL_ERROR, "Unsupported extension bits");
+        } else if ((this.frameHeader[1] & 0x80) == 0) {
+            fail(CLOSE_PROTOCOL_ERROR, "Client frames must be masked");
+        } else if (isControlFrame()) {
+            if ((opcode != OPCODE_CLOSE) && (opcode != OPCODE_PING)
+                    && (opcode != OPCODE_PONG)) {
+                fail(CLOSE_PROTOCOL_ERROR, "Unknown opcode");
+            } else if (!fin) {
+                fail(CLOSE_PROTOCOL_ERROR, "Fragmented control frame");
+            }
+        } else if (opcode == OPCODE_CONTINUATION) {
+            if (this.messageOpcode == -1) {
+                fail(CLOSE_PROTOCOL_ERROR, "Unexpected continuation frame");
+            }
+        } else if ((opcode != OPCODE_TEXT) && (opcode != OPCODE_BINARY)) {
+            fail(CLOSE_PROTOCOL_ERROR, "Unknown opcode");
+        } else if (this.messageOpcode != -1) {
+            fail(CLOSE_PROTOCOL_ERROR, "Fragmented message interrupted");
+        } else {
+            this.messageOpcode = opcode;
+        }
+
+        this.frameHeaderLength = 2 + ((length == 126) ? 2
+                : (length == 127) ? 8 : 0) + 4;
+    }
+
+    /**
+     * Notifies the listener that the WebSocket is open.
+     */
+    public void open() {
+        dispatch(new Runnable() {
+            public void run() {
+                try {
+                    listener.onOpen(WebSocketSession.this);
+                } catch (Throwable t) {
+                    listener.onError(WebSocketSession.this, t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues a close frame unless one was already queued.
+     *
+     * @param statusCode
+     *            The close status code.
+     * @param reason
+     *            The optional reason or null.
+     * @throws IOException
+     *             If a close frame was already queued.
+     */
+    private void queueClose(int statusCode, String reason) throws IOException {
+        if (this.closeSent) {
+            throw new IOException("The WebSocket is already closing");
+        }
+
+        this.closeSent = true;
+        byte[] payload = createClosePayload(statusCode, reason);
+
+        // The close frame is always queued
+        this.pendingSize.addAndGet(payload.length);
+        queueFrame(OPCODE_CLOSE, payload);
+    }
+
+    /**
+     * Queues a data or ping frame sent by the application.
+     *
+     * @param opcode
+     *            The frame opcode.
+     * @param payload
+     *            The frame payload.
+     * @throws IOException
+     *             If the WebSocket isn't open or if too many frames are
+     *             waiting to be written.
+     */
+    private void queueData(int opcode, byte[] payload) throws IOException {
+        if (!isOpen()) {
+            throw new IOException("The WebSocket is closed");
+        } else if (!reserve(payload.length)) {
+            throw new IOException(
+                    "Too many frames waiting to be written on the WebSocket");
+        }
+
+        queueFrame(opcode, payload);
+    }
+
+    /**
+     * Queues a frame and wakes up the controller so that it gets written. The
+     * payload size must have been added to the pending size.
+     *
+     * @param opcode
+     *            The frame opcode.
+     * @param payload
+     *            The frame payload.
+     */
+    private void queueFrame(int opcode, byte[] payload) {
+        this.pendingFrames.add(new OutboundFrame(opcode, payload));
+
+        // This method is also called by the application threads
+        this.connection.getHelper().getController().wakeup();
+    }
+
+    /**
+     * Adds a payload size to the pending size unless the maximum is exceeded.
+     *
+     * @param length
+     *            The payload size.
+     * @return True if the payload size was added.
+     */
+    private boolean reserve(int length) {
+        long size = this.pendingSize.addAndGet(length);
+        boolean result = (size <= this.maxPendingSize);
+
+        if (!result) {
+            this.pendingSize.addAndGet(-length);
+        }
+
+        return result;
+    }
+
+    /**
+     * Submits a task invoking the pending callbacks unless one is already
+     * running.
+     */
+    private void schedule() {
+        if (!this.events.isEmpty()
+                && this.dispatching.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            Runnable next;
+
+                            while ((next = events.poll()) != null) {
+                                next.run();
+                            }
+                        } finally {
+                            dispatching.set(false);
+
+                            // Catch the events queued concurrently
+                            schedule();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException ree) {
+                this.dispatching.set(false);
+                this.events.clear();
+                getLogger().log(Level.WARNING,
+                        "Unable to dispatch a WebSocket event", ree);
+                fail(CLOSE_GOING_AWAY, "Server overloaded");
+            }
+        }
+    }
+
+    public void send(byte[] data) throws IOException {
+        queueData(OPCODE_BINARY, data);
+    }
+
+    public void send(String text) throws IOException {
+        queueData(OPCODE_TEXT, text.getBytes(UTF_8));
+    }
+
+    public void sendPing(byte[] data) throws IOException {
+        if ((data != null) && (data.length > MAX_CONTROL_LENGTH)) {
+            throw new IllegalArgumentException("Ping data too long");
+        }
+
+        queueData(OPCODE_PING, (data == null) ? new byte[0] : data);
+    }
+
+    /**
+     * Decodes UTF-8 text, failing the connection if it is invalid.
+     *
+     * @param bytes
+     *            The source bytes.
+     * @param offset
+     *            The offset of the first byte.
+     * @param length
+     *            The number of bytes.
+     * @return The decoded text or null if invalid.
+     */
+    private String toText(byte[] bytes, int offset, int length) {
+        String result = null;
+
+        try {
+            result = UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes, offset, length)).toString();
+        } catch (CharacterCodingException e) {
+            fail(CLOSE_INVALID_DATA, "Invalid UTF-8 text");
+        }
+
+        return result;
+    }
+
+}
@@ -76,15 +76,20 @@ import org.restlet.test.ext.xml.XmlTestSuite;
 import org.restlet.test.regression.RegressionTestSuite;
 import org.restlet.test.representation.AppendableRepresentationTestCase;
 import org.restlet.test.representation.DigesterRepresentationTestCase;
+import org.restlet.test.representation.EventStreamRepresentationTestCase;
 import org.restlet.test.representation.RangeRepresentationTestCase;
+import org.restlet.test.representation.SelectableRepresentationTestCase;
 import org.restlet.test.routing.FilterTestCase;
+import org.restlet.test.routing.LoadBalancerTestCase;
 import org.restlet.test.routing.RedirectTestCase;
+import org.restlet.test.routing.ReverseProxyTestCase;
 import org.restlet.test.routing.RouteListTestCase;
 import org.restlet.test.routing.ValidatorTestCase;
 import org.restlet.test.security.HttpBasicTestCase;
 import org.restlet.test.security.RoleTestCase;
 import org.restlet.test.security.SecurityTestCase;
 import org.restlet.test.service.ServiceTestSuite;
+import org.restlet.test.util.RetryPolicyTestCase;
 import org.restlet.test.util.TemplateTestCase;
 
 /**
@@ -124,12 +129,15 @@ public class RestletTestSuite extends TestSuite {
 		addTestSuite(JaxbBasicConverterTestCase.class);
 		addTestSuite(JaxbIntegrationConverterTestCase.class);
 		addTestSuite(LanguageTestCase.class);
+		addTestSuite(LoadBalancerTestCase.class);
 		addTestSuite(MediaTypeTestCase.class);
 		addTestSuite(ProductTokenTestCase.class);
 		addTestSuite(ReferenceTestCase.class);
 		addTestSuite(RestartTestCase.class);
+		addTestSuite(RetryPolicyTestCase.class);
 		addTestSuite(RiapTestCase.class);
 		addTestSuite(RouteListTestCase.class);
+		addTestSuite(SelectableRepresentationTestCase.class);
 		addTestSuite(DigestVerifierTestCase.class);
 		addTestSuite(RecipientInfoTestCase.class);
 		addTestSuite(RoleTestCase.class);
@@ -168,12 +176,14 @@ public class RestletTestSuite extends TestSuite {
 		// [ifndef gae]
 		addTestSuite(ComponentXmlTestCase.class);
 		addTestSuite(DigesterRepresentationTestCase.class);
+		addTestSuite(EventStreamRepresentationTestCase.class);
 		addTestSuite(HeaderTestCase.class);
 		addTestSuite(HttpBasicTestCase.class);
 		addTestSuite(HttpDigestTestCase.class);
 		addTestSuite(RangeTestCase.class);
 		addTestSuite(RangeRepresentationTestCase.class);
 		addTestSuite(RedirectTestCase.class);
+		addTestSuite(ReverseProxyTestCase.class);
 		addTestSuite(SecurityTestCase.class);
 		addTestSuite(TemplateFilterTestCase.class);
 
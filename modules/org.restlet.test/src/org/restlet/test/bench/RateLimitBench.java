@@ -0,0 +1,99 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.bench;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.application.RateLimitFilter;
+import org.restlet.service.RateLimitService;
+
+/**
+ * Measures the overhead per request of the {@link RateLimitFilter}, in process
+ * and without connectors, with requests spread over a large number of client
+ * addresses.
+ */
+public class RateLimitBench {
+
+    private static long bench(Restlet restlet, Request[] requests,
+            int iterations) {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            Request request = requests[i % requests.length];
+            restlet.handle(request, new Response(request));
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int keys = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        int iterations = (args.length > 1) ? Integer.parseInt(args[1])
+                : 5000000;
+        Request[] requests = new Request[keys];
+
+        for (int i = 0; i < keys; i++) {
+            requests[i] = new Request(Method.GET, "http://localhost/resource");
+            requests[i].getClientInfo().setAddress(
+                    "10." + (i >> 16) + "." + ((i >> 8) & 0xff) + "."
+                            + (i & 0xff));
+        }
+
+        Restlet resource = new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setStatus(Status.SUCCESS_NO_CONTENT);
+            }
+        };
+        RateLimitService service = new RateLimitService();
+        service.setLimit(1000000);
+        RateLimitFilter filter = new RateLimitFilter(null, service);
+        filter.setNext(resource);
+
+        for (int round = 0; round < 3; round++) {
+            long direct = bench(resource, requests, iterations);
+            service.setHeadersAdded(false);
+            long limited = bench(filter, requests, iterations);
+            service.setHeadersAdded(true);
+            long headers = bench(filter, requests, iterations);
+            System.out.println("Round " + round + " with " + keys
+                    + " keys: overhead=" + (limited - direct) / iterations
+                    + "ns, with headers=" + (headers - direct) / iterations
+                    + "ns per request, buckets=" + filter.getBucketCount());
+        }
+    }
+}
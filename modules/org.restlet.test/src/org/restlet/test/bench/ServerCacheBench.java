@@ -0,0 +1,104 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.bench;
+
+import java.util.Arrays;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.engine.cache.ServerCacheFilter;
+
+/**
+ * Measures the latency of the hit path of the {@link ServerCacheFilter}, in
+ * process and without connectors, compared to direct calls of the resource.
+ */
+public class ServerCacheBench {
+
+    private static void bench(String name, Restlet restlet, int iterations) {
+        long[] durations = new long[iterations];
+
+        for (int i = 0; i < iterations; i++) {
+            Request request = new Request(Method.GET,
+                    "http://localhost/resource");
+            Response response = new Response(request);
+            long start = System.nanoTime();
+            restlet.handle(request, response);
+            response.getEntity().getSize();
+            durations[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(durations);
+        long total = 0;
+
+        for (long duration : durations) {
+            total += duration;
+        }
+
+        System.out.println(name + ": mean=" + (total / iterations / 1000D)
+                + "us, p50=" + durations[iterations / 2] / 1000D + "us, p99="
+                + durations[(int) (iterations * 0.99)] / 1000D + "us, p999="
+                + durations[(int) (iterations * 0.999)] / 1000D + "us");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = (args.length > 0) ? Integer.parseInt(args[0])
+                : 200000;
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < 256; i++) {
+            sb.append("0123456789abcdef");
+        }
+
+        Restlet resource = new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setEntity(sb.toString(), MediaType.TEXT_PLAIN);
+                response.getCacheDirectives().add(
+                        CacheDirective.sharedMaxAge(3600));
+            }
+        };
+        ServerCacheFilter cache = new ServerCacheFilter(null, resource);
+
+        // Warm up both paths before measuring
+        bench("Warm up (direct)", resource, iterations);
+        bench("Warm up (cache hit)", cache, iterations);
+
+        bench("Direct call", resource, iterations);
+        bench("Cache hit", cache, iterations);
+    }
+}
@@ -34,11 +34,13 @@
 package org.restlet.test.engine;
 
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.restlet.data.Method;
 import org.restlet.engine.resource.AnnotationInfo;
 import org.restlet.engine.resource.AnnotationUtils;
+import org.restlet.engine.resource.InvocationPlan;
 import org.restlet.engine.resource.MethodAnnotationInfo;
 import org.restlet.resource.Get;
 import org.restlet.resource.Put;
@@ -111,4 +113,21 @@ public class AnnotationUtilsTestCase extends RestletTestCase {
                 "Didn't find a method with IChild as the declaring class.",
                 true, found);
     }
+
+    public void testGetInvocationPlans() throws Exception {
+        Map<java.lang.reflect.Method, InvocationPlan> plans = AnnotationUtils
+                .getInstance().getInvocationPlans(IChild.class);
+        Assert.assertEquals(2, plans.size());
+        Assert.assertSame(plans, AnnotationUtils.getInstance()
+                .getInvocationPlans(IChild.class));
+
+        InvocationPlan getPlan = plans.get(IChild.class.getMethod("getType"));
+        Assert.assertEquals(Method.GET, getPlan.getRestletMethod());
+        Assert.assertNull(getPlan.getQuery());
+
+        InvocationPlan putPlan = plans.get(IChild.class.getMethod("update",
+                Object.class));
+        Assert.assertEquals(Method.PUT, putPlan.getRestletMethod());
+        Assert.assertNull(putPlan.getOutputType());
+    }
 }
@@ -36,12 +36,21 @@ package org.restlet.test.engine;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.restlet.test.engine.cache.ClientCacheFilterTestCase;
+import org.restlet.test.engine.cache.CoalescingFilterTestCase;
+import org.restlet.test.engine.cache.ServerCacheFilterTestCase;
+import org.restlet.test.engine.connector.AdmissionControllerTestCase;
+import org.restlet.test.engine.connector.ConnectorMetricsTestCase;
 import org.restlet.test.engine.connector.ConnectorsTestSuite;
+import org.restlet.test.engine.connector.HpackTestCase;
 import org.restlet.test.engine.connector.HttpInboundRequestTestCase;
 import org.restlet.test.engine.io.BioUtilsTestCase;
 import org.restlet.test.engine.io.BufferTestCase;
+import org.restlet.test.engine.io.ChunkedChannelTestCase;
 import org.restlet.test.engine.io.ReaderInputStreamTestCase;
+import org.restlet.test.engine.io.WireCaptureTestCase;
 import org.restlet.test.engine.util.Base64TestCase;
+import org.restlet.test.engine.util.CallTimingsTestCase;
 
 /**
  * Suite of unit tests for the Restlet Framework.
@@ -62,14 +71,22 @@ public class EngineTestSuite extends TestSuite {
     /** Constructor. */
     public EngineTestSuite() {
         super("Engine package");
+        addTestSuite(AdmissionControllerTestCase.class);
         addTestSuite(AlphaNumericComparatorTestCase.class);
         addTestSuite(AnnotationUtilsTestCase.class);
         addTestSuite(Base64TestCase.class);
         addTestSuite(BufferTestCase.class);
         addTestSuite(BioUtilsTestCase.class);
+        addTestSuite(CallTimingsTestCase.class);
+        addTestSuite(ChunkedChannelTestCase.class);
+        addTestSuite(ClientCacheFilterTestCase.class);
+        addTestSuite(CoalescingFilterTestCase.class);
+        addTestSuite(ServerCacheFilterTestCase.class);
+        addTestSuite(ConnectorMetricsTestCase.class);
         addTestSuite(CookiesTestCase.class);
         addTestSuite(ContentTypeTestCase.class);
         addTestSuite(HeaderTestCase.class);
+        addTestSuite(HpackTestCase.class);
         addTestSuite(HttpCallTestCase.class);
         addTestSuite(HttpInboundRequestTestCase.class);
         addTestSuite(ImmutableDateTestCase.class);
@@ -77,6 +94,7 @@ public class EngineTestSuite extends TestSuite {
         addTestSuite(UnclosableOutputStreamTestCase.class);
         addTestSuite(PreferencesTestCase.class);
         addTestSuite(ReaderInputStreamTestCase.class);
+        addTestSuite(WireCaptureTestCase.class);
 
         // Tests based on HTTP client connectors are not supported by the GAE
         // edition.
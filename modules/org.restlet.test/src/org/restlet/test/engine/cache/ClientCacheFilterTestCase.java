@@ -0,0 +1,275 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ChallengeScheme;
+import org.restlet.data.Dimension;
+import org.restlet.data.Header;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Preference;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.cache.CacheEntry;
+import org.restlet.engine.cache.CacheStore;
+import org.restlet.engine.cache.ClientCacheFilter;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.test.RestletTestCase;
+import org.restlet.util.Series;
+
+/**
+ * Test case for the {@link ClientCacheFilter} class.
+ */
+public class ClientCacheFilterTestCase extends RestletTestCase {
+
+    /**
+     * Origin Restlet counting its calls and answering with the current
+     * version of its resource.
+     */
+    private static class Origin extends Restlet {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private volatile int maxAge = 60;
+
+        private volatile boolean noStore;
+
+        private volatile boolean publicInfo;
+
+        private volatile int version = 1;
+
+        @Override
+        public void handle(Request request, Response response) {
+            this.calls.incrementAndGet();
+
+            if (Method.GET.equals(request.getMethod())) {
+                Tag tag = new Tag("v" + this.version);
+
+                if (request.getConditions().getNoneMatch().contains(tag)) {
+                    response.setStatus(Status.REDIRECTION_NOT_MODIFIED);
+                } else {
+                    StringRepresentation entity = new StringRepresentation(
+                            "version " + this.version + " as "
+                                    + getType(request), getType(request));
+                    entity.setTag(tag);
+                    response.setEntity(entity);
+                }
+
+                response.getCacheDirectives().add(
+                        this.noStore ? CacheDirective.noStore()
+                                : CacheDirective.maxAge(this.maxAge));
+
+                if (this.publicInfo) {
+                    response.getCacheDirectives().add(
+                            CacheDirective.publicInfo());
+                }
+                response.getDimensions().add(Dimension.MEDIA_TYPE);
+            } else {
+                this.version++;
+                response.setStatus(Status.SUCCESS_NO_CONTENT);
+            }
+        }
+
+        private MediaType getType(Request request) {
+            List<Preference<MediaType>> accepted = request.getClientInfo()
+                    .getAcceptedMediaTypes();
+            return accepted.isEmpty() ? MediaType.TEXT_PLAIN : accepted.get(0)
+                    .getMetadata();
+        }
+    }
+
+    private ClientCacheFilter cache;
+
+    private Origin origin;
+
+    private Response get(MediaType mediaType) {
+        return get(mediaType, null);
+    }
+
+    private Response get(MediaType mediaType, String user) {
+        Request request = new Request(Method.GET, "http://localhost/resource");
+
+        if (user != null) {
+            request.setChallengeResponse(new ChallengeResponse(
+                    ChallengeScheme.HTTP_BASIC, user, "secret"));
+        }
+
+        if (mediaType != null) {
+            request.getClientInfo().accept(mediaType);
+        }
+
+        Response response = new Response(request);
+        this.cache.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.origin = new Origin();
+        this.cache = new ClientCacheFilter(null, this.origin);
+    }
+
+    public void testAuthenticated() throws Exception {
+        get(null, "alice");
+        get(null, "bob");
+        assertEquals(2, this.origin.calls.get());
+
+        // Anonymous responses aren't served to authenticated requests
+        get(null);
+        get(null, "alice");
+        assertEquals(4, this.origin.calls.get());
+        get(null);
+        assertEquals(4, this.origin.calls.get());
+    }
+
+    public void testAuthenticatedPublic() throws Exception {
+        this.origin.publicInfo = true;
+        get(null, "alice");
+        assertEquals("version 1 as text/plain", get(null, "bob")
+                .getEntityAsText());
+        get(null);
+        assertEquals(1, this.origin.calls.get());
+    }
+
+    public void testDiskTier() throws Exception {
+        File directory = new File(System.getProperty("java.io.tmpdir"),
+                "restlet-cache-" + System.nanoTime());
+        CacheStore store = new CacheStore(4000, directory, 1000000);
+
+        try {
+            for (int i = 0; i < 10; i++) {
+                List<CacheEntry> variants = new ArrayList<CacheEntry>();
+                variants.add(new CacheEntry(Status.SUCCESS_OK,
+                        new Series<Header>(Header.class), new byte[1000],
+                        new LinkedHashMap<String, String>(), 0, 0));
+                store.put("key" + i, variants);
+            }
+
+            assertTrue(store.getSize() <= 4000);
+            assertTrue(store.getDiskSize() > 0);
+
+            // The first key was spilled to disk and is promoted back
+            List<CacheEntry> variants = store.get("key0");
+            assertNotNull(variants);
+            assertEquals(1000, variants.get(0).getBody().length);
+
+            // A new store reuses the files left on disk
+            CacheStore reopened = new CacheStore(4000, directory, 1000000);
+            assertNotNull(reopened.get("key1"));
+            reopened.clear();
+            assertNull(reopened.get("key2"));
+        } finally {
+            IoUtils.delete(directory, true);
+        }
+    }
+
+    public void testFreshHit() throws Exception {
+        Response first = get(null);
+        assertEquals(Status.SUCCESS_OK, first.getStatus());
+        assertEquals("version 1 as text/plain", first.getEntityAsText());
+
+        Response second = get(null);
+        assertEquals(1, this.origin.calls.get());
+        assertEquals(Status.SUCCESS_OK, second.getStatus());
+        assertEquals("version 1 as text/plain", second.getEntityAsText());
+        assertEquals(new Tag("v1"), second.getEntity().getTag());
+        assertEquals(MediaType.TEXT_PLAIN, second.getEntity().getMediaType());
+    }
+
+    public void testInvalidation() throws Exception {
+        get(null);
+        Request request = new Request(Method.PUT, "http://localhost/resource",
+                new StringRepresentation("update"));
+        this.cache.handle(request, new Response(request));
+        assertEquals(2, this.origin.calls.get());
+
+        assertEquals("version 2 as text/plain", get(null).getEntityAsText());
+        assertEquals(3, this.origin.calls.get());
+    }
+
+    public void testNoStore() throws Exception {
+        this.origin.noStore = true;
+        get(null);
+        get(null);
+        assertEquals(2, this.origin.calls.get());
+    }
+
+    public void testOnlyIfCached() throws Exception {
+        Request request = new Request(Method.GET, "http://localhost/resource");
+        request.getCacheDirectives().add(CacheDirective.onlyIfCached());
+        Response response = new Response(request);
+        this.cache.handle(request, response);
+        assertEquals(Status.SERVER_ERROR_GATEWAY_TIMEOUT, response.getStatus());
+        assertEquals(0, this.origin.calls.get());
+    }
+
+    public void testRevalidation() throws Exception {
+        this.origin.maxAge = 0;
+        get(null);
+
+        Response second = get(null);
+        assertEquals(2, this.origin.calls.get());
+        assertEquals(Status.SUCCESS_OK, second.getStatus());
+        assertEquals("version 1 as text/plain", second.getEntityAsText());
+        assertEquals(new Tag("v1"), second.getEntity().getTag());
+    }
+
+    public void testVary() throws Exception {
+        assertEquals("version 1 as text/plain", get(MediaType.TEXT_PLAIN)
+                .getEntityAsText());
+        assertEquals("version 1 as text/xml", get(MediaType.TEXT_XML)
+                .getEntityAsText());
+        assertEquals(2, this.origin.calls.get());
+
+        assertEquals("version 1 as text/plain", get(MediaType.TEXT_PLAIN)
+                .getEntityAsText());
+        assertEquals("version 1 as text/xml", get(MediaType.TEXT_XML)
+                .getEntityAsText());
+        assertEquals(2, this.origin.calls.get());
+    }
+
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Uniform;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.cache.CoalescingFilter;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link CoalescingFilter} class.
+ */
+public class CoalescingFilterTestCase extends RestletTestCase {
+
+    /**
+     * Origin Restlet counting its calls and holding them until released.
+     * Asynchronous calls are answered from another thread.
+     */
+    private static class Origin extends Restlet {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private void answer(Request request, Response response) {
+            try {
+                this.release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            response.setEntity("call " + this.calls.get(), MediaType.TEXT_PLAIN);
+        }
+
+        @Override
+        public void handle(final Request request, final Response response) {
+            this.calls.incrementAndGet();
+
+            if (request.isAsynchronous()) {
+                new Thread() {
+                    public void run() {
+                        answer(request, response);
+                        request.getOnResponse().handle(request, response);
+                    }
+                }.start();
+            } else {
+                answer(request, response);
+            }
+        }
+    }
+
+    private CoalescingFilter filter;
+
+    private Origin origin;
+
+    private Thread call(final MediaType mediaType, final List<String> results) {
+        Thread result = new Thread() {
+            public void run() {
+                Request request = new Request(Method.GET,
+                        "http://localhost/resource");
+                request.getClientInfo().accept(mediaType);
+                Response response = new Response(request);
+                filter.handle(request, response);
+
+                synchronized (results) {
+                    results.add(response.getEntityAsText());
+                }
+            }
+        };
+
+        result.start();
+        return result;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.origin = new Origin();
+        this.filter = new CoalescingFilter(null, this.origin);
+    }
+
+    private void waitForCalls(int calls) throws InterruptedException {
+        for (int i = 0; (i < 500) && (this.origin.calls.get() < calls); i++) {
+            Thread.sleep(10);
+        }
+
+        // Let the other requests join the calls in progress
+        Thread.sleep(200);
+    }
+
+    public void testAsynchronous() throws Exception {
+        final List<String> results = new ArrayList<String>();
+        final CountDownLatch received = new CountDownLatch(5);
+
+        for (int i = 0; i < 5; i++) {
+            Request request = new Request(Method.GET,
+                    "http://localhost/resource");
+            request.setOnResponse(new Uniform() {
+                public void handle(Request req, Response resp) {
+                    synchronized (results) {
+                        results.add(resp.getEntityAsText());
+                    }
+
+                    received.countDown();
+                }
+            });
+            this.filter.handle(request, new Response(request));
+        }
+
+        this.origin.release.countDown();
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertEquals(1, this.origin.calls.get());
+
+        for (String text : results) {
+            assertEquals("call 1", text);
+        }
+    }
+
+    public void testCoalescing() throws Exception {
+        List<String> results = new ArrayList<String>();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < 10; i++) {
+            threads.add(call(MediaType.TEXT_PLAIN, results));
+        }
+
+        waitForCalls(1);
+        this.origin.release.countDown();
+
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        assertEquals(1, this.origin.calls.get());
+        assertEquals(10, results.size());
+
+        for (String text : results) {
+            assertEquals("call 1", text);
+        }
+    }
+
+    public void testDistinctRequests() throws Exception {
+        List<String> results = new ArrayList<String>();
+        Thread plain = call(MediaType.TEXT_PLAIN, results);
+        Thread xml = call(MediaType.TEXT_XML, results);
+        waitForCalls(2);
+        this.origin.release.countDown();
+        plain.join(5000);
+        xml.join(5000);
+        assertEquals(2, this.origin.calls.get());
+    }
+
+    public void testUnsafeRequests() throws Exception {
+        this.origin.release.countDown();
+
+        for (int i = 0; i < 2; i++) {
+            Request request = new Request(Method.POST,
+                    "http://localhost/resource");
+            Response response = new Response(request);
+            this.filter.handle(request, response);
+            assertEquals(Status.SUCCESS_OK, response.getStatus());
+        }
+
+        assertEquals(2, this.origin.calls.get());
+    }
+
+}
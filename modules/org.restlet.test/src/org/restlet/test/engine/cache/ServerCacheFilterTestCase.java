@@ -0,0 +1,255 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.Application;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ChallengeScheme;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.cache.ServerCacheFilter;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.service.CacheService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link ServerCacheFilter} class.
+ */
+public class ServerCacheFilterTestCase extends RestletTestCase {
+
+    /**
+     * Resource Restlet counting its calls and answering with the current
+     * version of its resource.
+     */
+    private static class Origin extends Restlet {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private volatile CacheDirective directive = CacheDirective
+                .sharedMaxAge(60);
+
+        private volatile CountDownLatch release;
+
+        private volatile int version = 1;
+
+        @Override
+        public void handle(Request request, Response response) {
+            this.calls.incrementAndGet();
+
+            if (this.release != null) {
+                try {
+                    this.release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (Method.GET.equals(request.getMethod())) {
+                Tag tag = new Tag("v" + this.version);
+
+                if (request.getConditions().getNoneMatch().contains(tag)) {
+                    response.setStatus(Status.REDIRECTION_NOT_MODIFIED);
+                } else {
+                    StringRepresentation entity = new StringRepresentation(
+                            "version " + this.version, MediaType.TEXT_PLAIN);
+                    entity.setTag(tag);
+                    response.setEntity(entity);
+                }
+
+                response.getCacheDirectives().add(this.directive);
+            } else {
+                this.version++;
+                response.setStatus(Status.SUCCESS_NO_CONTENT);
+            }
+        }
+    }
+
+    private ServerCacheFilter cache;
+
+    private Origin origin;
+
+    private Response get() {
+        return handle(new Request(Method.GET, "http://localhost/resource"));
+    }
+
+    private Response handle(Request request) {
+        Response response = new Response(request);
+        this.cache.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.origin = new Origin();
+        this.cache = new ServerCacheFilter(null, this.origin);
+    }
+
+    public void testAuthorization() throws Exception {
+        this.origin.directive = CacheDirective.maxAge(60);
+
+        for (int i = 0; i < 2; i++) {
+            Request request = new Request(Method.GET,
+                    "http://localhost/resource");
+            request.setChallengeResponse(new ChallengeResponse(
+                    ChallengeScheme.HTTP_BASIC, "login", "secret"));
+            handle(request);
+        }
+
+        assertEquals(2, this.origin.calls.get());
+    }
+
+    public void testCacheService() throws Exception {
+        Application application = new Application();
+        CacheService service = application.getCacheService();
+        assertFalse(service.isEnabled());
+
+        ServerCacheFilter filter = (ServerCacheFilter) service
+                .createInboundFilter(new Context());
+        assertSame(service.getStore(), filter.getStore());
+    }
+
+    public void testCollapsing() throws Exception {
+        this.origin.release = new CountDownLatch(1);
+        final List<String> results = new ArrayList<String>();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < 5; i++) {
+            Thread thread = new Thread() {
+                public void run() {
+                    String text = get().getEntityAsText();
+
+                    synchronized (results) {
+                        results.add(text);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+
+        for (int i = 0; (i < 500) && (this.origin.calls.get() < 1); i++) {
+            Thread.sleep(10);
+        }
+
+        // Let the other requests join the call in progress
+        Thread.sleep(200);
+        this.origin.release.countDown();
+
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        assertEquals(1, this.origin.calls.get());
+        assertEquals(5, results.size());
+
+        for (String text : results) {
+            assertEquals("version 1", text);
+        }
+
+        assertEquals("version 1", get().getEntityAsText());
+        assertEquals(1, this.origin.calls.get());
+    }
+
+    public void testConditionalHit() throws Exception {
+        get();
+        Request request = new Request(Method.GET, "http://localhost/resource");
+        request.getConditions().getNoneMatch().add(new Tag("v1"));
+        Response response = handle(request);
+        assertEquals(Status.REDIRECTION_NOT_MODIFIED, response.getStatus());
+        assertEquals(1, this.origin.calls.get());
+    }
+
+    public void testFreshHit() throws Exception {
+        assertEquals("version 1", get().getEntityAsText());
+
+        Response second = get();
+        assertEquals(1, this.origin.calls.get());
+        assertEquals(Status.SUCCESS_OK, second.getStatus());
+        assertEquals("version 1", second.getEntityAsText());
+        assertEquals(new Tag("v1"), second.getEntity().getTag());
+        assertEquals(MediaType.TEXT_PLAIN, second.getEntity().getMediaType());
+    }
+
+    public void testHead() throws Exception {
+        get();
+        Response response = handle(new Request(Method.HEAD,
+                "http://localhost/resource"));
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals(1, this.origin.calls.get());
+    }
+
+    public void testInvalidation() throws Exception {
+        get();
+        handle(new Request(Method.PUT, "http://localhost/resource",
+                new StringRepresentation("update")));
+        assertEquals(2, this.origin.calls.get());
+
+        assertEquals("version 2", get().getEntityAsText());
+        assertEquals(3, this.origin.calls.get());
+    }
+
+    public void testPrivate() throws Exception {
+        this.origin.directive = CacheDirective.privateInfo();
+        get();
+        get();
+        assertEquals(2, this.origin.calls.get());
+    }
+
+    public void testRevalidation() throws Exception {
+        this.origin.directive = CacheDirective.sharedMaxAge(0);
+        get();
+
+        Request request = new Request(Method.GET, "http://localhost/resource");
+        Response second = handle(request);
+        assertEquals(2, this.origin.calls.get());
+        assertEquals(Status.SUCCESS_OK, second.getStatus());
+        assertEquals("version 1", second.getEntityAsText());
+        assertFalse(request.getConditions().hasSome());
+    }
+
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import java.net.Socket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.MediaType;
+import org.restlet.engine.Engine;
+import org.restlet.ext.nio.HttpServerHelper;
+import org.restlet.ext.nio.internal.controller.Acceptor;
+
+/**
+ * Test case for the acceptance of new connections by the NIO HTTP server
+ * connector, either by the controller or by dedicated acceptor threads.
+ */
+public class AcceptorTestCase extends BaseNioServerTestCase {
+
+    /** HTTP server helper keeping track of its last instance. */
+    public static class TrackedHttpServerHelper extends HttpServerHelper {
+
+        /** The last instance created. */
+        private static volatile TrackedHttpServerHelper instance;
+
+        /**
+         * Constructor.
+         * 
+         * @param server
+         *            The server to help.
+         */
+        public TrackedHttpServerHelper(Server server) {
+            super(server);
+
+            if (server != null) {
+                instance = this;
+            }
+        }
+    }
+
+    /** Restlet answering with the path. */
+    private static class PathRestlet extends Restlet {
+        @Override
+        public void handle(Request request, Response response) {
+            response.setEntity("Hello " + request.getResourceRef().getPath(),
+                    MediaType.TEXT_PLAIN);
+        }
+    }
+
+    /** The number of connections opened at once. */
+    private static final int CONNECTIONS = 50;
+
+    /**
+     * Waits up to one second for a given number of live acceptor threads.
+     * 
+     * @param expected
+     *            The expected number of acceptor threads.
+     * @return The number of live acceptor threads.
+     * @throws InterruptedException
+     */
+    private static int awaitAcceptorThreads(int expected)
+            throws InterruptedException {
+        int result = countAcceptorThreads();
+
+        for (int i = 0; (i < 100) && (result != expected); i++) {
+            Thread.sleep(10);
+            result = countAcceptorThreads();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of live acceptor threads.
+     * 
+     * @return The number of live acceptor threads.
+     */
+    private static int countAcceptorThreads() {
+        int result = 0;
+
+        for (StackTraceElement[] stack : Thread.getAllStackTraces().values()) {
+            boolean acceptor = false;
+
+            for (StackTraceElement element : stack) {
+                acceptor = acceptor
+                        || Acceptor.class.getName().equals(
+                                element.getClassName());
+            }
+
+            if (acceptor) {
+                result++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if the SO_REUSEPORT socket option is expected to be used.
+     * 
+     * @return True if the SO_REUSEPORT socket option is expected to be used.
+     * @throws Exception
+     */
+    private static boolean isReusePortSupported() throws Exception {
+        boolean result = false;
+
+        if (System.getProperty("os.name", "").toLowerCase().contains("linux")) {
+            try {
+                SocketOption<?> reusePort = (SocketOption<?>) StandardSocketOptions.class
+                        .getField("SO_REUSEPORT").get(null);
+                ServerSocketChannel probe = ServerSocketChannel.open();
+
+                try {
+                    result = probe.supportedOptions().contains(reusePort);
+                } finally {
+                    probe.close();
+                }
+            } catch (NoSuchFieldException e) {
+                result = false;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Opens many connections at once, then checks that a request sent on
+     * each of them is answered.
+     * 
+     * @throws Exception
+     */
+    private void assertConnectionBurst() throws Exception {
+        List<Socket> sockets = new ArrayList<Socket>();
+
+        try {
+            for (int i = 0; i < CONNECTIONS; i++) {
+                sockets.add(connect());
+            }
+
+            for (int i = 0; i < CONNECTIONS; i++) {
+                write(sockets.get(i), "GET /" + i
+                        + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            }
+
+            for (int i = 0; i < CONNECTIONS; i++) {
+                String response = readResponse(sockets.get(i)
+                        .getInputStream());
+                assertTrue(response, response.startsWith("HTTP/1.1 200"));
+                assertTrue(response, response.endsWith("Hello /" + i));
+            }
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the helper of the server started.
+     * 
+     * @return The helper of the server started.
+     */
+    private TrackedHttpServerHelper getHelper() {
+        return TrackedHttpServerHelper.instance;
+    }
+
+    @Override
+    protected void setUpEngine() {
+        super.setUpEngine();
+        Engine.getInstance().getRegisteredServers()
+                .add(0, new TrackedHttpServerHelper(null));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        TrackedHttpServerHelper.instance = null;
+    }
+
+    /**
+     * Starts the server. Requests are queued rather than rejected when all
+     * worker threads are busy, so that all the connections are answered.
+     * 
+     * @param parameters
+     *            The names and values of the connector parameters.
+     * @throws Exception
+     */
+    private void start(String... parameters) throws Exception {
+        String[] all = new String[parameters.length + 2];
+        all[0] = "maxQueued";
+        all[1] = "-1";
+        System.arraycopy(parameters, 0, all, 2, parameters.length);
+        start(new PathRestlet(), all);
+    }
+
+    public void testAcceptBacklog() throws Exception {
+        start("acceptBacklog", "5");
+        assertEquals(5, getHelper().getAcceptBacklog());
+        assertConnectionBurst();
+    }
+
+    public void testAcceptBatchSize() throws Exception {
+        start("acceptBatchSize", "8");
+        assertEquals(8, getHelper().getAcceptBatchSize());
+        assertConnectionBurst();
+    }
+
+    public void testAcceptBatchSizeDefault() throws Exception {
+        start();
+
+        // One connection accepted per selection, as before
+        assertEquals(1, getHelper().getAcceptBatchSize());
+        assertEquals(0, getHelper().getAcceptorThreads());
+        assertEquals(0, countAcceptorThreads());
+        assertConnectionBurst();
+    }
+
+    public void testAcceptorThreads() throws Exception {
+        start("acceptorThreads", "1", "acceptBatchSize", "4");
+        assertEquals(1, getHelper().getServerSocketChannels().size());
+        assertEquals(1, awaitAcceptorThreads(1));
+        assertConnectionBurst();
+
+        // The acceptor threads end with the server
+        getServer().stop();
+        assertEquals(0, awaitAcceptorThreads(0));
+    }
+
+    public void testReusePort() throws Exception {
+        start("acceptorThreads", "3");
+        List<ServerSocketChannel> channels = getHelper()
+                .getServerSocketChannels();
+        assertEquals(3, awaitAcceptorThreads(3));
+
+        if (isReusePortSupported()) {
+            // Each acceptor thread listens on its own socket
+            assertEquals(3, channels.size());
+
+            for (ServerSocketChannel channel : channels) {
+                assertEquals(getServer().getEphemeralPort(), channel
+                        .socket().getLocalPort());
+            }
+        } else {
+            // The acceptor threads share a single socket
+            assertEquals(1, channels.size());
+        }
+
+        assertConnectionBurst();
+    }
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.ext.nio.internal.util.AdmissionController;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit test case for the admission control of the NIO server connectors.
+ */
+public class AdmissionControllerTestCase extends RestletTestCase {
+
+    /**
+     * Returns a task blocking its worker thread until the latch is released.
+     * 
+     * @param started
+     *            The latch counted down when the task starts.
+     * @param release
+     *            The latch awaited by the task.
+     * @return The blocking task.
+     */
+    private static Runnable block(final CountDownLatch started,
+            final CountDownLatch release) {
+        return new Runnable() {
+            public void run() {
+                started.countDown();
+
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    public void testIdleWorkers() throws Exception {
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(1, 1, 60,
+                TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+        workers.prestartAllCoreThreads();
+
+        try {
+            // Starting threads are counted as active until they wait for work
+            for (int i = 0; (i < 100) && (workers.getActiveCount() > 0); i++) {
+                Thread.sleep(10);
+            }
+
+            AdmissionController controller = new AdmissionController(10);
+            assertEquals(10000000L, controller.getMaxQueueWaitNanos());
+            assertEquals(0L, controller.getEstimatedQueueWaitNanos(workers));
+            assertTrue(controller.isAdmissible(workers));
+            assertFalse(controller.isAdmissible(null));
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    public void testQueuedWork() throws Exception {
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(1, 1, 60,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        AdmissionController controller = new AdmissionController(10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            // Learn a service time of about 50 ms
+            Runnable sleeper = new Runnable() {
+                public void run() {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            workers.submit(controller.track(sleeper)).get();
+            assertTrue(controller.getAverageServiceNanos() >= 40000000L);
+
+            // One busy thread and two queued tasks
+            workers.execute(block(started, release));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            workers.execute(sleeper);
+            workers.execute(sleeper);
+
+            long estimated = controller.getEstimatedQueueWaitNanos(workers);
+            assertTrue(estimated >= 3L * 40000000L);
+            assertFalse(controller.isAdmissible(workers));
+        } finally {
+            release.countDown();
+            workers.shutdownNow();
+        }
+    }
+
+    public void testSaturatedWorkers() throws Exception {
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(1, 1, 60,
+                TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+        AdmissionController controller = new AdmissionController(1000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            workers.execute(block(started, release));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // The queue can't hold the task and the pool can't grow
+            assertEquals(Long.MAX_VALUE,
+                    controller.getEstimatedQueueWaitNanos(workers));
+            assertFalse(controller.isAdmissible(workers));
+        } finally {
+            release.countDown();
+            workers.shutdownNow();
+        }
+    }
+
+    public void testShedCount() {
+        AdmissionController controller = new AdmissionController(10);
+        assertEquals(0L, controller.getShedCount());
+        assertEquals(1L, controller.onShed());
+        assertEquals(2L, controller.onShed());
+        assertEquals(2L, controller.getShedCount());
+    }
+
+    public void testTrack() throws Exception {
+        AdmissionController controller = new AdmissionController(10);
+        final boolean[] ran = new boolean[1];
+        Runnable task = new Runnable() {
+            public void run() {
+                ran[0] = true;
+            }
+
+            @Override
+            public String toString() {
+                return "task";
+            }
+        };
+
+        Runnable tracked = controller.track(task);
+        assertEquals("task", tracked.toString());
+        Thread.sleep(5);
+        tracked.run();
+
+        assertTrue(ran[0]);
+        assertTrue(controller.getAverageQueueWaitNanos() >= 5000000L);
+        assertTrue(controller.getAverageServiceNanos() > 0L);
+    }
+
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.test.engine.connector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+import org.restlet.Context;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.Protocol;
+import org.restlet.engine.Engine;
+import org.restlet.engine.util.StringUtils;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Base test case starting a server based on the NIO HTTP connector and
+ * talking to it through plain sockets, so that the bytes on the wire can be
+ * controlled and checked.
+ */
+public abstract class BaseNioServerTestCase extends RestletTestCase {
+
+    /** The server started. */
+    private Server server;
+
+    /**
+     * Reads the head of an HTTP/1.1 message, up to and including the empty
+     * line.
+     * 
+     * @param in
+     *            The input stream.
+     * @return The head, or null if the stream ended before.
+     * @throws IOException
+     */
+    protected static String readHead(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+
+        while (!sb.toString().endsWith("\r\n\r\n")
+                && ((b = in.read()) != -1)) {
+            sb.append((char) b);
+        }
+
+        return sb.toString().endsWith("\r\n\r\n") ? sb.toString() : null;
+    }
+
+    /**
+     * Reads a given number of bytes.
+     * 
+     * @param in
+     *            The input stream.
+     * @param length
+     *            The number of bytes to read.
+     * @return The bytes read.
+     * @throws IOException
+     */
+    protected static byte[] readFully(InputStream in, int length)
+            throws IOException {
+        byte[] result = new byte[length];
+        int offset = 0;
+
+        while (offset < length) {
+            int read = in.read(result, offset, length - offset);
+
+            if (read == -1) {
+                throw new IOException("Unexpected end of stream after "
+                        + offset + " bytes");
+            }
+
+            offset += read;
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads an HTTP/1.1 response delimited by a "Content-Length" header.
+     * 
+     * @param in
+     *            The input stream.
+     * @return The head followed by the entity, or null if the stream ended
+     *         before the head.
+     * @throws IOException
+     */
+    protected static String readResponse(InputStream in) throws IOException {
+        String result = readHead(in);
+
+        if (result != null) {
+            int index = result.toLowerCase().indexOf("content-length: ");
+
+            if (index != -1) {
+                int end = result.indexOf("\r\n", index);
+                int length = Integer.parseInt(result.substring(index + 16,
+                        end).trim());
+                result += new String(readFully(in, length),
+                        "ISO-8859-1");
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads all the bytes until the end of the stream.
+     * 
+     * @param in
+     *            The input stream.
+     * @return The bytes read.
+     * @throws IOException
+     */
+    protected static byte[] readToEnd(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            result.write(buffer, 0, read);
+        }
+
+        return result.toByteArray();
+    }
+
+    /**
+     * Writes bytes to a socket.
+     * 
+     * @param socket
+     *            The socket.
+     * @param bytes
+     *            The bytes to write.
+     * @throws IOException
+     */
+    protected static void write(Socket socket, byte[] bytes)
+            throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(bytes);
+        out.flush();
+    }
+
+    /**
+     * Writes Latin-1 text to a socket.
+     * 
+     * @param socket
+     *            The socket.
+     * @param text
+     *            The text to write.
+     * @throws IOException
+     */
+    protected static void write(Socket socket, String text)
+            throws IOException {
+        write(socket, StringUtils.getLatin1Bytes(text));
+    }
+
+    /**
+     * Opens a socket to the server started, with a read timeout of five
+     * seconds.
+     * 
+     * @return The socket opened.
+     * @throws IOException
+     */
+    protected Socket connect() throws IOException {
+        Socket result = new Socket("localhost", getServer().getEphemeralPort());
+        result.setSoTimeout(5000);
+        return result;
+    }
+
+    /**
+     * Returns the server started.
+     * 
+     * @return The server started.
+     */
+    protected Server getServer() {
+        return server;
+    }
+
+    @Override
+    protected void setUpEngine() {
+        super.setUpEngine();
+        Engine.getInstance().getRegisteredServers()
+                .add(0, new org.restlet.ext.nio.HttpServerHelper(null));
+    }
+
+    /**
+     * Starts a server on an ephemeral port.
+     * 
+     * @param root
+     *            The Restlet handling the calls.
+     * @param parameters
+     *            The names and values of the connector parameters.
+     * @return The server started.
+     * @throws Exception
+     */
+    protected Server start(Restlet root, String... parameters)
+            throws Exception {
+        this.server = new Server(new Context(), Protocol.HTTP, 0, root);
+
+        for (int i = 0; i + 1 < parameters.length; i += 2) {
+            this.server.getContext().getParameters()
+                    .add(parameters[i], parameters[i + 1]);
+        }
+
+        this.server.start();
+        return this.server;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if ((this.server != null) && this.server.isStarted()) {
+            this.server.stop();
+        }
+
+        this.server = null;
+        super.tearDown();
+    }
+
+}
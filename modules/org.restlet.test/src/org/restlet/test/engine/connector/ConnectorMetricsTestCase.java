@@ -0,0 +1,116 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.engine.connector.ConnectorMetrics;
+import org.restlet.engine.util.LatencyHistogram;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link ConnectorMetrics} and {@link LatencyHistogram}
+ * classes.
+ */
+public class ConnectorMetricsTestCase extends RestletTestCase {
+
+    public void testCounters() {
+        ConnectorMetrics metrics = new ConnectorMetrics();
+        metrics.onConnectionOpened();
+        metrics.onConnectionOpened();
+        metrics.onConnectionClosed();
+        metrics.onBytesRead(100);
+        metrics.onBytesRead(-1);
+        metrics.onBytesWritten(250);
+
+        long startTime = metrics.onRequestStarted();
+        assertEquals(1, metrics.getRequestsInFlight());
+        metrics.onRequestCompleted(startTime);
+
+        assertEquals(2, metrics.getOpenedConnections());
+        assertEquals(1, metrics.getClosedConnections());
+        assertTrue(metrics.getOpenedConnectionsRate() > 0);
+        assertEquals(100, metrics.getBytesIn());
+        assertEquals(250, metrics.getBytesOut());
+        assertEquals(0, metrics.getRequestsInFlight());
+        assertEquals(1, metrics.getRequests());
+        assertEquals(1, metrics.getProcessingTime().getCount());
+    }
+
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0D, histogram.getPercentile(99));
+
+        for (int i = 0; i < 90; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(10.9D, histogram.getMean(), 0.001D);
+        assertEquals(100D, histogram.getMax());
+
+        // Upper bound of the 1024 microseconds bucket
+        assertEquals(1.024D, histogram.getPercentile(50));
+
+        // Capped by the maximum value recorded
+        assertEquals(100D, histogram.getPercentile(99));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0D, histogram.getMax());
+    }
+
+    public void testValues() {
+        ConnectorMetrics metrics = new ConnectorMetrics() {
+            @Override
+            public int getOpenConnections() {
+                return 3;
+            }
+        };
+
+        Map<String, Number> values = metrics.getValues();
+        assertEquals(3, values.get("open_connections"));
+        assertFalse(values.containsKey("idle_connections"));
+        assertFalse(values.containsKey("workers_active"));
+        assertEquals(0L, values.get("requests"));
+        assertEquals(0L, values.get("processing_time_count"));
+        assertTrue(values.containsKey("response_write_time_p99_ms"));
+    }
+
+}
@@ -58,14 +58,20 @@ public class ConnectorsTestSuite extends TestSuite {
 
         // [ifdef jse]
         // addTestSuite(AsynchroneTestCase.class);
+        addTestSuite(AcceptorTestCase.class);
         addTestSuite(ChunkedEncodingPutTestCase.class);
         addTestSuite(ChunkedEncodingTestCase.class);
+        addTestSuite(GatheringWriteTestCase.class);
         addTestSuite(GetTestCase.class);
         addTestSuite(GetChunkedTestCase.class);
+        addTestSuite(Http2ConnectorTestCase.class);
+        addTestSuite(LoadSheddingTestCase.class);
         addTestSuite(PostPutTestCase.class);
         addTestSuite(RemoteClientAddressTestCase.class);
         addTestSuite(SslClientContextGetTestCase.class);
+        addTestSuite(SslConnectionTestCase.class);
         addTestSuite(SslGetTestCase.class);
+        addTestSuite(WebSocketConnectorTestCase.class);
         // [enddef]
     }
 }
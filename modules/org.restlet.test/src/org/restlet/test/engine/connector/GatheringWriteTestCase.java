@@ -0,0 +1,238 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.test.engine.connector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.MediaType;
+import org.restlet.ext.nio.ConnectionHelper;
+import org.restlet.ext.nio.internal.connection.WireCapture;
+import org.restlet.representation.ByteArrayRepresentation;
+
+/**
+ * Test case for the gathering writes of in-memory entities and the coalescing
+ * of pipelined responses by the NIO HTTP server connector.
+ */
+public class GatheringWriteTestCase extends BaseNioServerTestCase {
+
+    /**
+     * Restlet answering with a byte array entity whose stream accesses are
+     * counted.
+     */
+    private static class BytesRestlet extends Restlet {
+
+        private final AtomicInteger releases = new AtomicInteger();
+
+        private final AtomicInteger streams = new AtomicInteger();
+
+        @Override
+        public void handle(Request request, Response response) {
+            String path = request.getResourceRef().getPath();
+            byte[] bytes = ("Hello " + path).getBytes();
+
+            if ("/slow".equals(path)) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            response.setEntity(new ByteArrayRepresentation(bytes,
+                    MediaType.TEXT_PLAIN) {
+                @Override
+                public InputStream getStream() throws IOException {
+                    streams.incrementAndGet();
+                    return super.getStream();
+                }
+
+                @Override
+                public void release() {
+                    releases.incrementAndGet();
+                    super.release();
+                }
+            });
+        }
+    }
+
+    public void testByteArraySize() {
+        byte[] bytes = new byte[10];
+        assertEquals(10, new ByteArrayRepresentation(bytes).getAvailableSize());
+        assertEquals(4,
+                new ByteArrayRepresentation(bytes, 2, 4).getAvailableSize());
+        assertEquals(20, new ByteArrayRepresentation(bytes, 0, 10, null, 20)
+                .getAvailableSize());
+    }
+
+    public void testCoalescing() throws Exception {
+        start(new BytesRestlet(), "pipeliningConnections", "true",
+                "gatheringWrites", "false", "wireCaptureSize", "8192");
+        Socket socket = connect();
+
+        try {
+            // The responses committed while the slow one is pending are
+            // written along with it
+            write(socket, "GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /next HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            InputStream in = socket.getInputStream();
+            assertTrue(readResponse(in).endsWith("\r\n\r\nHello /slow"));
+            assertTrue(readResponse(in).endsWith("\r\n\r\nHello /next"));
+
+            ConnectionHelper<?> helper = (ConnectionHelper<?>) getServer()
+                    .getContext().getAttributes()
+                    .get(ConnectionHelper.WIRE_CAPTURE_HELPER);
+            WireCapture capture = helper.getConnections().iterator().next()
+                    .getWireCapture();
+            String dump = capture.dump();
+
+            // Written bytes are captured once the write call has returned
+            for (int i = 0; (i < 100) && !dump.contains("Hello /next"); i++) {
+                Thread.sleep(10);
+                dump = capture.dump();
+            }
+
+            assertTrue(dump, dump.contains("Hello /slowHTTP/1.1 200 OK"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testCoalescingCompletion() throws Exception {
+        BytesRestlet restlet = new BytesRestlet();
+        start(restlet, "pipeliningConnections", "true",
+                "gatheringWrites", "false", "wireCaptureSize", "8192");
+        Socket socket = connect();
+
+        try {
+            write(socket, "GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /a HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /b HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            InputStream in = socket.getInputStream();
+            assertTrue(readResponse(in).endsWith("\r\n\r\nHello /slow"));
+            assertTrue(readResponse(in).endsWith("\r\n\r\nHello /a"));
+            assertTrue(readResponse(in).endsWith("\r\n\r\nHello /b"));
+
+            // Each coalesced response is completed once, after its bytes
+            // were drained
+            ConnectionHelper<?> helper = (ConnectionHelper<?>) getServer()
+                    .getContext().getAttributes()
+                    .get(ConnectionHelper.WIRE_CAPTURE_HELPER);
+
+            for (int i = 0; (i < 100) && (restlet.releases.get() < 3); i++) {
+                Thread.sleep(10);
+            }
+
+            String dump = helper.getConnections().iterator().next()
+                    .getWireCapture().dump();
+            assertTrue(dump, dump.contains("Hello /slowHTTP/1.1 200 OK"));
+            assertEquals(3, restlet.releases.get());
+            assertEquals(3, helper.getMetrics().getResponseWriteTime()
+                    .getCount());
+
+            // The connection still answers the following requests
+            write(socket, "GET /c HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertTrue(readResponse(in).endsWith("\r\n\r\nHello /c"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testGatheringDisabled() throws Exception {
+        BytesRestlet restlet = new BytesRestlet();
+        start(restlet, "gatheringWrites", "false");
+        Socket socket = connect();
+
+        try {
+            write(socket, "GET /a HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            String response = readResponse(socket.getInputStream());
+            assertTrue(response.startsWith("HTTP/1.1 200"));
+            assertTrue(response.endsWith("\r\n\r\nHello /a"));
+            assertTrue(restlet.streams.get() > 0);
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testGatheringWrite() throws Exception {
+        BytesRestlet restlet = new BytesRestlet();
+        start(restlet);
+        Socket socket = connect();
+
+        try {
+            write(socket, "GET /a HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            String response = readResponse(socket.getInputStream());
+            assertTrue(response.startsWith("HTTP/1.1 200"));
+            assertTrue(response.contains("Content-Length: 8\r\n"));
+            assertTrue(response.endsWith("\r\n\r\nHello /a"));
+
+            // The bytes were written without going through the stream
+            assertEquals(0, restlet.streams.get());
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testPipelining() throws Exception {
+        BytesRestlet restlet = new BytesRestlet();
+        start(restlet);
+        Socket socket = connect();
+
+        try {
+            StringBuilder requests = new StringBuilder();
+
+            for (int i = 0; i < 5; i++) {
+                requests.append("GET /").append(i)
+                        .append(" HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            }
+
+            write(socket, requests.toString());
+            InputStream in = socket.getInputStream();
+
+            for (int i = 0; i < 5; i++) {
+                String response = readResponse(in);
+                assertNotNull(response);
+                assertTrue(response.startsWith("HTTP/1.1 200"));
+                assertTrue(response.endsWith("\r\n\r\nHello /" + i));
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.data.Header;
+import org.restlet.ext.nio.internal.http2.HpackDecoder;
+import org.restlet.ext.nio.internal.http2.HpackEncoder;
+import org.restlet.ext.nio.internal.http2.Http2Exception;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit test case for the HPACK header compression used by the HTTP/2 support
+ * of the NIO connectors. Uses the examples of the RFC 7541 appendix C.
+ */
+public class HpackTestCase extends RestletTestCase {
+
+    private static byte[] toBytes(String hex) {
+        String digits = hex.replace(" ", "");
+        byte[] result = new byte[digits.length() / 2];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) Integer.parseInt(
+                    digits.substring(2 * i, 2 * i + 2), 16);
+        }
+
+        return result;
+    }
+
+    private static List<Header> decode(HpackDecoder decoder, String hex)
+            throws Exception {
+        byte[] block = toBytes(hex);
+        return decoder.decode(block, 0, block.length);
+    }
+
+    public void testDecodeHuffmanRequests() throws Exception {
+        HpackDecoder decoder = new HpackDecoder(4096);
+
+        List<Header> headers = decode(decoder,
+                "8286 8441 8cf1 e3c2 e5f2 3a6b a0ab 90f4 ff");
+        assertEquals(4, headers.size());
+        assertEquals(":method", headers.get(0).getName());
+        assertEquals("GET", headers.get(0).getValue());
+        assertEquals(":authority", headers.get(3).getName());
+        assertEquals("www.example.com", headers.get(3).getValue());
+
+        headers = decode(decoder, "8286 84be 5886 a8eb 1064 9cbf");
+        assertEquals(5, headers.size());
+        assertEquals("www.example.com", headers.get(3).getValue());
+        assertEquals("cache-control", headers.get(4).getName());
+        assertEquals("no-cache", headers.get(4).getValue());
+
+        headers = decode(decoder,
+                "8287 85bf 4088 25a8 49e9 5ba9 7d7f 8925 a849 e95b b8e8 b4bf");
+        assertEquals(5, headers.size());
+        assertEquals("https", headers.get(1).getValue());
+        assertEquals("/index.html", headers.get(2).getValue());
+        assertEquals("custom-key", headers.get(4).getName());
+        assertEquals("custom-value", headers.get(4).getValue());
+    }
+
+    public void testEncodeRoundTrip() throws Exception {
+        List<Header> headers = new ArrayList<Header>();
+        headers.add(new Header(":status", "200"));
+        headers.add(new Header("Content-Type", "text/plain; charset=UTF-8"));
+        headers.add(new Header("Server", "Restlet-Framework"));
+        headers.add(new Header("Set-Cookie", "id=123"));
+
+        HpackEncoder encoder = new HpackEncoder(4096);
+        HpackDecoder decoder = new HpackDecoder(4096);
+        byte[] first = encoder.encode(headers);
+        byte[] second = encoder.encode(headers);
+
+        // Indexed fields are much shorter the second time
+        assertTrue(second.length < first.length / 2);
+
+        for (byte[] block : new byte[][] { first, second }) {
+            List<Header> decoded = decoder.decode(block, 0, block.length);
+            assertEquals(4, decoded.size());
+            assertEquals("content-type", decoded.get(1).getName());
+            assertEquals("text/plain; charset=UTF-8", decoded.get(1)
+                    .getValue());
+            assertEquals("id=123", decoded.get(3).getValue());
+        }
+    }
+
+    public void testInvalidIndex() throws Exception {
+        try {
+            decode(new HpackDecoder(4096), "be");
+            fail("Dynamic table is empty");
+        } catch (Http2Exception e) {
+            assertEquals(Http2Exception.COMPRESSION_ERROR, e.getErrorCode());
+        }
+    }
+
+}
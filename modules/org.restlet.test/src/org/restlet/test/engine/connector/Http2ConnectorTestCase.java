@@ -0,0 +1,370 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Header;
+import org.restlet.data.MediaType;
+import org.restlet.ext.nio.internal.http2.HpackDecoder;
+import org.restlet.ext.nio.internal.http2.HpackEncoder;
+import org.restlet.ext.nio.internal.http2.Http2Session;
+
+/**
+ * Test case for the cleartext HTTP/2 support of the NIO HTTP server
+ * connector, driving the connection with raw frames.
+ */
+public class Http2ConnectorTestCase extends BaseNioServerTestCase {
+
+    /** A received frame. */
+    private static class Frame {
+        final int flags;
+
+        final byte[] payload;
+
+        final int streamId;
+
+        final int type;
+
+        Frame(int type, int flags, int streamId, byte[] payload) {
+            this.type = type;
+            this.flags = flags;
+            this.streamId = streamId;
+            this.payload = payload;
+        }
+
+        boolean isEndStream() {
+            return (this.flags & Http2Session.FLAG_END_STREAM) != 0;
+        }
+    }
+
+    /** Restlet answering with the path, a large entity or slowly. */
+    private static class H2Restlet extends Restlet {
+        @Override
+        public void handle(Request request, Response response) {
+            String path = request.getResourceRef().getPath();
+
+            if ("/slow".equals(path)) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if ("/large".equals(path)) {
+                StringBuilder sb = new StringBuilder();
+
+                for (int i = 0; i < 100; i++) {
+                    sb.append((char) ('a' + (i % 26)));
+                }
+
+                response.setEntity(sb.toString(), MediaType.TEXT_PLAIN);
+            } else {
+                response.setEntity("Hello " + path, MediaType.TEXT_PLAIN);
+            }
+        }
+    }
+
+    /**
+     * Returns the payload of a SETTINGS frame.
+     * 
+     * @param settings
+     *            The identifiers and values of the settings.
+     * @return The payload of a SETTINGS frame.
+     */
+    private static byte[] settings(int... settings) {
+        ByteBuffer result = ByteBuffer.allocate(settings.length * 3);
+
+        for (int i = 0; i + 1 < settings.length; i += 2) {
+            result.putShort((short) settings[i]);
+            result.putInt(settings[i + 1]);
+        }
+
+        return result.array();
+    }
+
+    /** The decoder of the received header blocks. */
+    private HpackDecoder decoder;
+
+    /** The encoder of the sent header blocks. */
+    private HpackEncoder encoder;
+
+    /**
+     * Reads frames until the end of a stream, acknowledging SETTINGS frames.
+     * 
+     * @param in
+     *            The input stream.
+     * @param streamId
+     *            The stream identifier.
+     * @param headers
+     *            The list receiving the decoded response headers.
+     * @return The response entity.
+     * @throws Exception
+     */
+    private String readStream(InputStream in, int streamId,
+            List<Header> headers) throws Exception {
+        ByteArrayOutputStream entity = new ByteArrayOutputStream();
+        Frame frame = null;
+
+        do {
+            frame = readFrame(in);
+
+            if (frame.streamId == streamId) {
+                if (frame.type == Http2Session.TYPE_HEADERS) {
+                    headers.addAll(this.decoder.decode(frame.payload, 0,
+                            frame.payload.length));
+                } else if (frame.type == Http2Session.TYPE_DATA) {
+                    entity.write(frame.payload);
+                }
+            }
+        } while ((frame.streamId != streamId) || !frame.isEndStream());
+
+        return new String(entity.toByteArray(), "UTF-8");
+    }
+
+    /**
+     * Reads a frame.
+     * 
+     * @param in
+     *            The input stream.
+     * @return The frame read.
+     * @throws IOException
+     */
+    private Frame readFrame(InputStream in) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(readFully(in,
+                Http2Session.FRAME_HEADER_SIZE));
+        int length = ((header.get() & 0xFF) << 16)
+                | ((header.get() & 0xFF) << 8) | (header.get() & 0xFF);
+        int type = header.get() & 0xFF;
+        int flags = header.get() & 0xFF;
+        int streamId = header.getInt() & 0x7FFFFFFF;
+        return new Frame(type, flags, streamId, readFully(in, length));
+    }
+
+    /**
+     * Sends a request on a new stream.
+     * 
+     * @param socket
+     *            The socket.
+     * @param streamId
+     *            The stream identifier.
+     * @param path
+     *            The path requested.
+     * @throws IOException
+     */
+    private void sendRequest(Socket socket, int streamId, String path)
+            throws IOException {
+        List<Header> headers = new ArrayList<Header>();
+        headers.add(new Header(":method", "GET"));
+        headers.add(new Header(":scheme", "http"));
+        headers.add(new Header(":path", path));
+        headers.add(new Header(":authority", "localhost"));
+        byte[] block = this.encoder.encode(headers);
+        writeFrame(socket, Http2Session.TYPE_HEADERS,
+                Http2Session.FLAG_END_HEADERS | Http2Session.FLAG_END_STREAM,
+                streamId, block);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.decoder = new HpackDecoder(Http2Session.HEADER_TABLE_SIZE);
+        this.encoder = new HpackEncoder(Http2Session.HEADER_TABLE_SIZE);
+        start(new H2Restlet(), "http2", "true");
+    }
+
+    /**
+     * Sends the client connection preface followed by a SETTINGS frame.
+     * 
+     * @param socket
+     *            The socket.
+     * @param settings
+     *            The payload of the SETTINGS frame.
+     * @throws IOException
+     */
+    private void startHttp2(Socket socket, byte[] settings) throws IOException {
+        write(socket, Http2Session.PREFACE);
+        writeFrame(socket, Http2Session.TYPE_SETTINGS, 0, 0, settings);
+    }
+
+    public void testConcurrentStreams() throws Exception {
+        Socket socket = connect();
+
+        try {
+            startHttp2(socket, settings());
+            sendRequest(socket, 1, "/slow");
+            sendRequest(socket, 3, "/fast");
+            InputStream in = socket.getInputStream();
+            List<Integer> ended = new ArrayList<Integer>();
+
+            while (ended.size() < 2) {
+                Frame frame = readFrame(in);
+
+                if ((frame.streamId != 0) && frame.isEndStream()) {
+                    ended.add(frame.streamId);
+                }
+            }
+
+            // The fast stream isn't blocked by the slow one
+            assertEquals(Integer.valueOf(3), ended.get(0));
+            assertEquals(Integer.valueOf(1), ended.get(1));
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testPreface() throws Exception {
+        Socket socket = connect();
+
+        try {
+            startHttp2(socket, settings());
+            InputStream in = socket.getInputStream();
+
+            // The server preface comes first
+            Frame frame = readFrame(in);
+            assertEquals(Http2Session.TYPE_SETTINGS, frame.type);
+            assertEquals(0, frame.flags & Http2Session.FLAG_ACK);
+
+            sendRequest(socket, 1, "/hello");
+            List<Header> headers = new ArrayList<Header>();
+            assertEquals("Hello /hello", readStream(in, 1, headers));
+            assertEquals(":status", headers.get(0).getName());
+            assertEquals("200", headers.get(0).getValue());
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testUpgrade() throws Exception {
+        Socket socket = connect();
+
+        try {
+            // SETTINGS_MAX_CONCURRENT_STREAMS = 100, base64url encoded
+            write(socket, "GET /upgraded HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Connection: Upgrade, HTTP2-Settings\r\n"
+                    + "Upgrade: h2c\r\nHTTP2-Settings: AAMAAABk\r\n\r\n");
+            InputStream in = socket.getInputStream();
+            String head = readHead(in);
+            assertTrue(head, head.startsWith("HTTP/1.1 101"));
+            assertTrue(head, head.contains("Upgrade: h2c"));
+
+            // The upgraded request is answered on the first stream
+            startHttp2(socket, settings());
+            List<Header> headers = new ArrayList<Header>();
+            assertEquals("Hello /upgraded", readStream(in, 1, headers));
+            assertEquals("200", headers.get(0).getValue());
+
+            // New streams are accepted afterwards
+            sendRequest(socket, 3, "/next");
+            assertEquals("Hello /next", readStream(in, 3, headers));
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testWindowUpdate() throws Exception {
+        Socket socket = connect();
+
+        try {
+            startHttp2(socket, settings(
+                    Http2Session.SETTINGS_INITIAL_WINDOW_SIZE, 10));
+            sendRequest(socket, 1, "/large");
+            InputStream in = socket.getInputStream();
+            int received = 0;
+
+            while (received < 10) {
+                Frame frame = readFrame(in);
+
+                if ((frame.streamId == 1)
+                        && (frame.type == Http2Session.TYPE_DATA)) {
+                    received += frame.payload.length;
+                    assertFalse(frame.isEndStream());
+                }
+            }
+
+            // The stream window is exhausted
+            assertEquals(10, received);
+            socket.setSoTimeout(300);
+
+            try {
+                Frame frame = readFrame(in);
+                fail("Unexpected frame of type " + frame.type);
+            } catch (SocketTimeoutException e) {
+                // Expected
+            }
+
+            socket.setSoTimeout(5000);
+            writeFrame(socket, Http2Session.TYPE_WINDOW_UPDATE, 0, 1,
+                    ByteBuffer.allocate(4).putInt(1000).array());
+            String rest = readStream(in, 1, new ArrayList<Header>());
+            assertEquals(90, rest.length());
+            assertTrue(rest.endsWith("v"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Writes a frame.
+     * 
+     * @param socket
+     *            The socket.
+     * @param type
+     *            The frame type.
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     * @param payload
+     *            The frame payload.
+     * @throws IOException
+     */
+    private void writeFrame(Socket socket, int type, int flags, int streamId,
+            byte[] payload) throws IOException {
+        write(socket, Http2Session.createFrame(type, flags, streamId, payload,
+                0, payload.length).array());
+    }
+
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import java.io.InputStream;
+import java.net.Socket;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.MediaType;
+
+/**
+ * Test case for the load shedding of the NIO HTTP server connector, when the
+ * estimated queue wait time of the worker service is exceeded.
+ */
+public class LoadSheddingTestCase extends BaseNioServerTestCase {
+
+    /** Restlet answering slowly to let the worker service saturate. */
+    private static class SlowRestlet extends Restlet {
+        @Override
+        public void handle(Request request, Response response) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            response.setEntity("Done", MediaType.TEXT_PLAIN);
+        }
+    }
+
+    public void testShedding() throws Exception {
+        start(new SlowRestlet(), "minThreads", "1", "maxThreads", "1",
+                "maxQueueWaitTimeMs", "100", "retryAfterSec", "3");
+        Socket busy = connect();
+        Socket shed = connect();
+
+        try {
+            write(busy, "GET /busy HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            Thread.sleep(200);
+            write(shed, "GET /shed HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+            // The pre-encoded response is fully written before closing
+            InputStream in = shed.getInputStream();
+            String response = new String(readToEnd(in), "ISO-8859-1");
+            assertTrue(response,
+                    response.startsWith("HTTP/1.1 503 Service Unavailable"));
+            assertTrue(response, response.contains("Retry-After: 3\r\n"));
+            assertTrue(response, response.endsWith("\r\n\r\n"));
+
+            // The admitted request is still answered
+            response = readResponse(busy.getInputStream());
+            assertTrue(response, response.startsWith("HTTP/1.1 200 OK"));
+            assertTrue(response, response.endsWith("Done"));
+        } finally {
+            busy.close();
+            shed.close();
+        }
+    }
+
+}
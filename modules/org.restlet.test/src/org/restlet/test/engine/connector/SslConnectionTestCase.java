@@ -0,0 +1,255 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.MediaType;
+import org.restlet.data.Parameter;
+import org.restlet.data.Protocol;
+import org.restlet.engine.Engine;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.util.StringUtils;
+import org.restlet.test.RestletTestCase;
+import org.restlet.util.Series;
+
+/**
+ * Test case for the SSL connections of the NIO HTTPS server connector,
+ * checking the handshakes, including the batched delegated tasks, and the
+ * counting of session resumptions.
+ */
+public class SslConnectionTestCase extends RestletTestCase {
+
+    /** HTTPS server helper keeping track of its last instance. */
+    public static class TrackedHttpsServerHelper extends
+            org.restlet.ext.nio.HttpsServerHelper {
+
+        /** The last instance created. */
+        private static volatile TrackedHttpsServerHelper instance;
+
+        /**
+         * Constructor.
+         * 
+         * @param server
+         *            The server to help.
+         */
+        public TrackedHttpsServerHelper(Server server) {
+            super(server);
+
+            if (server != null) {
+                instance = this;
+            }
+        }
+    }
+
+    /** The client SSL context, trusting the test certificate. */
+    private SSLContext clientContext;
+
+    /** The temporary key store file. */
+    private File keystoreFile;
+
+    /** The server started. */
+    private Server server;
+
+    /**
+     * Sends a GET request on a new TLS 1.2 connection and reads the response.
+     * 
+     * @return The response head and entity.
+     * @throws Exception
+     */
+    private String get() throws Exception {
+        SSLSocket socket = (SSLSocket) this.clientContext.getSocketFactory()
+                .createSocket("localhost", this.server.getEphemeralPort());
+
+        try {
+            socket.setSoTimeout(5000);
+            socket.setEnabledProtocols(new String[] { "TLSv1.2" });
+            socket.startHandshake();
+
+            OutputStream out = socket.getOutputStream();
+            out.write(StringUtils
+                    .getLatin1Bytes("GET / HTTP/1.1\r\nHost: localhost\r\n"
+                            + "Connection: close\r\n\r\n"));
+            out.flush();
+            return BaseNioServerTestCase.readResponse(socket.getInputStream());
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Returns the server helper started.
+     * 
+     * @return The server helper started.
+     */
+    private TrackedHttpsServerHelper getHelper() {
+        return TrackedHttpsServerHelper.instance;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.keystoreFile = File.createTempFile("restlet", ".jks");
+        InputStream in = getClass().getResourceAsStream("dummy.jks");
+        OutputStream out = new FileOutputStream(this.keystoreFile);
+
+        try {
+            IoUtils.copy(in, out);
+        } finally {
+            in.close();
+            out.close();
+        }
+
+        KeyStore trustStore = KeyStore.getInstance("JKS");
+        in = new FileInputStream(this.keystoreFile);
+
+        try {
+            trustStore.load(in, "testtest".toCharArray());
+        } finally {
+            in.close();
+        }
+
+        TrustManagerFactory tmf = TrustManagerFactory
+                .getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(trustStore);
+        this.clientContext = SSLContext.getInstance("TLS");
+        this.clientContext.init(null, tmf.getTrustManagers(), null);
+    }
+
+    @Override
+    protected void setUpEngine() {
+        super.setUpEngine();
+        Engine.getInstance().getRegisteredServers()
+                .add(0, new TrackedHttpsServerHelper(null));
+    }
+
+    /**
+     * Starts an HTTPS server on an ephemeral port.
+     * 
+     * @param parameters
+     *            The names and values of additional connector parameters.
+     * @throws Exception
+     */
+    private void start(String... parameters) throws Exception {
+        Restlet root = new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setEntity("Hello", MediaType.TEXT_PLAIN);
+            }
+        };
+
+        this.server = new Server(new Context(), Protocol.HTTPS, 0, root);
+        Series<Parameter> series = this.server.getContext().getParameters();
+        series.add("keystorePath", this.keystoreFile.getPath());
+        series.add("keystorePassword", "testtest");
+        series.add("keyPassword", "testtest");
+
+        for (int i = 0; i + 1 < parameters.length; i += 2) {
+            series.add(parameters[i], parameters[i + 1]);
+        }
+
+        this.server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if ((this.server != null) && this.server.isStarted()) {
+            this.server.stop();
+        }
+
+        this.server = null;
+        TrackedHttpsServerHelper.instance = null;
+        IoUtils.delete(this.keystoreFile);
+        super.tearDown();
+    }
+
+    public void testConcurrentHandshakes() throws Exception {
+        // Delegated tasks of all the connections share a single worker
+        start("minThreads", "1", "maxThreads", "1", "maxQueued", "-1");
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<String>> responses = new ArrayList<Future<String>>();
+
+            for (int i = 0; i < 4; i++) {
+                responses.add(clients.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return get();
+                    }
+                }));
+            }
+
+            for (Future<String> response : responses) {
+                assertTrue(response.get().endsWith("\r\n\r\nHello"));
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        assertEquals(4, getHelper().getSslHandshakeCount());
+    }
+
+    public void testResumption() throws Exception {
+        start();
+        assertTrue(get().startsWith("HTTP/1.1 200"));
+        assertEquals(1, getHelper().getSslHandshakeCount());
+        assertEquals(0, getHelper().getSslResumptionCount());
+
+        // The client context caches the session of the first connection
+        assertTrue(get().startsWith("HTTP/1.1 200"));
+        assertEquals(2, getHelper().getSslHandshakeCount());
+        assertEquals(1, getHelper().getSslResumptionCount());
+    }
+
+}
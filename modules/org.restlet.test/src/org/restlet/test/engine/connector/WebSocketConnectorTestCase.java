@@ -0,0 +1,465 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.resource.WebSocketResource;
+import org.restlet.util.WebSocket;
+
+/**
+ * Test case for the WebSocket support of the NIO HTTP server connector,
+ * driving the frame parser with raw frames.
+ */
+public class WebSocketConnectorTestCase extends BaseNioServerTestCase {
+
+    /** Resource echoing the messages received. */
+    public static class EchoResource extends WebSocketResource {
+        @Override
+        public void onBinary(WebSocket webSocket, byte[] data) {
+            try {
+                webSocket.send(data);
+            } catch (IOException e) {
+                onError(webSocket, e);
+            }
+        }
+
+        @Override
+        public void onClose(WebSocket webSocket, int statusCode,
+                String reason) {
+            closeStatus = statusCode;
+            closeReason = reason;
+            closed.countDown();
+        }
+
+        @Override
+        public void onText(WebSocket webSocket, String text) {
+            try {
+                if ("flood".equals(text)) {
+                    byte[] data = new byte[100];
+
+                    try {
+                        while (floodCount < 100) {
+                            webSocket.send(data);
+                            floodCount++;
+                        }
+                    } catch (IOException e) {
+                        floodRefused = true;
+                    }
+
+                    flooded.countDown();
+                } else {
+                    webSocket.send(text);
+                }
+            } catch (IOException e) {
+                onError(webSocket, e);
+            }
+        }
+    }
+
+    /** A received frame. */
+    private static class Frame {
+        final int opcode;
+
+        final byte[] payload;
+
+        Frame(int opcode, byte[] payload) {
+            this.opcode = opcode;
+            this.payload = payload;
+        }
+
+        int getStatusCode() {
+            return ((this.payload[0] & 0xFF) << 8) | (this.payload[1] & 0xFF);
+        }
+    }
+
+    /** The reason of the last closing notified. */
+    private static volatile String closeReason;
+
+    /** The status code of the last closing notified. */
+    private static volatile int closeStatus;
+
+    /** Counted down when the closing is notified. */
+    private static volatile CountDownLatch closed;
+
+    /** The number of messages sent while flooding. */
+    private static volatile int floodCount;
+
+    /** Counted down when the flooding is over. */
+    private static volatile CountDownLatch flooded;
+
+    /** Indicates if a message was refused while flooding. */
+    private static volatile boolean floodRefused;
+
+    /** The masking key of the frames sent. */
+    private static final byte[] MASK = { 0x37, (byte) 0xFA, 0x21, 0x3D };
+
+    /**
+     * Reads a server frame, which is never masked.
+     * 
+     * @param in
+     *            The input stream.
+     * @return The frame read.
+     * @throws IOException
+     */
+    private static Frame readFrame(InputStream in) throws IOException {
+        byte[] header = readFully(in, 2);
+        assertEquals("Server frames are final", 0x80, header[0] & 0x80);
+        assertEquals("Server frames aren't masked", 0, header[1] & 0x80);
+        long length = header[1] & 0x7F;
+
+        if (length == 126) {
+            length = ByteBuffer.wrap(readFully(in, 2)).getShort() & 0xFFFF;
+        } else if (length == 127) {
+            length = ByteBuffer.wrap(readFully(in, 8)).getLong();
+        }
+
+        return new Frame(header[0] & 0x0F, readFully(in, (int) length));
+    }
+
+    /**
+     * Writes a masked frame.
+     * 
+     * @param socket
+     *            The socket.
+     * @param fin
+     *            Indicates if this is the final frame of the message.
+     * @param opcode
+     *            The frame opcode.
+     * @param payload
+     *            The unmasked payload.
+     * @throws IOException
+     */
+    private static void writeFrame(Socket socket, boolean fin, int opcode,
+            byte[] payload) throws IOException {
+        writeFrame(socket, fin, opcode, payload, true);
+    }
+
+    /**
+     * Writes a frame.
+     * 
+     * @param socket
+     *            The socket.
+     * @param fin
+     *            Indicates if this is the final frame of the message.
+     * @param opcode
+     *            The frame opcode.
+     * @param payload
+     *            The unmasked payload.
+     * @param masked
+     *            Indicates if the payload is masked.
+     * @throws IOException
+     */
+    private static void writeFrame(Socket socket, boolean fin, int opcode,
+            byte[] payload, boolean masked) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write((fin ? 0x80 : 0) | opcode);
+        int maskBit = masked ? 0x80 : 0;
+
+        if (payload.length < 126) {
+            frame.write(maskBit | payload.length);
+        } else {
+            frame.write(maskBit | 126);
+            frame.write(payload.length >> 8);
+            frame.write(payload.length);
+        }
+
+        if (masked) {
+            frame.write(MASK);
+        }
+
+        for (int i = 0; i < payload.length; i++) {
+            frame.write(masked ? payload[i] ^ MASK[i & 3] : payload[i]);
+        }
+
+        write(socket, frame.toByteArray());
+    }
+
+    /**
+     * Asserts that the server fails the connection with a close frame and
+     * closes it.
+     * 
+     * @param in
+     *            The input stream.
+     * @param statusCode
+     *            The expected close status code.
+     * @throws Exception
+     */
+    private void assertFailed(InputStream in, int statusCode)
+            throws Exception {
+        Frame frame = readFrame(in);
+        assertEquals(0x8, frame.opcode);
+        assertEquals(statusCode, frame.getStatusCode());
+        assertEquals(-1, in.read());
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertEquals(statusCode, closeStatus);
+    }
+
+    /**
+     * Connects and upgrades the connection to the WebSocket protocol.
+     * 
+     * @return The connected socket.
+     * @throws IOException
+     */
+    private Socket open() throws IOException {
+        Socket result = connect();
+        write(result, "GET /ws HTTP/1.1\r\nHost: localhost\r\n"
+                + "Connection: Upgrade\r\nUpgrade: websocket\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n");
+        String head = readHead(result.getInputStream());
+        assertTrue(head, head.startsWith("HTTP/1.1 101"));
+        assertTrue(head, head
+                .contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo="));
+        return result;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        closed = new CountDownLatch(1);
+        closeReason = null;
+        closeStatus = 0;
+        flooded = new CountDownLatch(1);
+        floodCount = 0;
+        floodRefused = false;
+    }
+
+    /**
+     * Starts the server with the echo resource.
+     * 
+     * @param parameters
+     *            The connector parameters.
+     * @throws Exception
+     */
+    private void start(String... parameters) throws Exception {
+        start(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                EchoResource resource = new EchoResource();
+                resource.init(new Context(), request, response);
+                resource.handle();
+            }
+        }, parameters);
+    }
+
+    public void testCloseHandshake() throws Exception {
+        start();
+        Socket socket = open();
+
+        try {
+            byte[] payload = { 0x03, (byte) 0xE8, 'b', 'y', 'e' };
+            writeFrame(socket, true, 0x8, payload);
+
+            // The status code is echoed, then the connection is closed
+            InputStream in = socket.getInputStream();
+            Frame frame = readFrame(in);
+            assertEquals(0x8, frame.opcode);
+            assertEquals(WebSocket.CLOSE_NORMAL, frame.getStatusCode());
+            assertEquals(-1, in.read());
+            assertTrue(closed.await(5, TimeUnit.SECONDS));
+            assertEquals(WebSocket.CLOSE_NORMAL, closeStatus);
+            assertEquals("bye", closeReason);
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testControlFrames() throws Exception {
+        start();
+        Socket socket = open();
+
+        try {
+            InputStream in = socket.getInputStream();
+            writeFrame(socket, true, 0x9, "ping".getBytes("UTF-8"));
+            Frame frame = readFrame(in);
+            assertEquals(0xA, frame.opcode);
+            assertEquals("ping", new String(frame.payload, "UTF-8"));
+
+            // Unsolicited pongs are ignored
+            writeFrame(socket, true, 0xA, new byte[0]);
+            writeFrame(socket, true, 0x1, "after".getBytes("UTF-8"));
+            assertEquals("after", new String(readFrame(in).payload, "UTF-8"));
+
+            // Control frames can't be longer than 125 bytes
+            writeFrame(socket, true, 0x9, new byte[126]);
+            assertFailed(in, WebSocket.CLOSE_PROTOCOL_ERROR);
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testFragmentation() throws Exception {
+        start();
+        Socket socket = open();
+
+        try {
+            InputStream in = socket.getInputStream();
+            writeFrame(socket, false, 0x1, "Hel".getBytes("UTF-8"));
+
+            // Control frames can be interleaved with fragments
+            writeFrame(socket, true, 0x9, new byte[] { 1 });
+            writeFrame(socket, false, 0x0, "lo ".getBytes("UTF-8"));
+            writeFrame(socket, true, 0x0, "world".getBytes("UTF-8"));
+            Frame frame = readFrame(in);
+            assertEquals(0xA, frame.opcode);
+            frame = readFrame(in);
+            assertEquals(0x1, frame.opcode);
+            assertEquals("Hello world", new String(frame.payload, "UTF-8"));
+
+            // A new message can't start before the end of the previous one
+            writeFrame(socket, false, 0x2, new byte[] { 1 });
+            writeFrame(socket, true, 0x2, new byte[] { 2 });
+            assertFailed(in, WebSocket.CLOSE_PROTOCOL_ERROR);
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testFragmentedControlFrame() throws Exception {
+        start();
+        Socket socket = open();
+
+        try {
+            writeFrame(socket, false, 0x9, new byte[0]);
+            assertFailed(socket.getInputStream(),
+                    WebSocket.CLOSE_PROTOCOL_ERROR);
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testInvalidCloseStatus() throws Exception {
+        start();
+        Socket socket = open();
+
+        try {
+            writeFrame(socket, true, 0x8, new byte[] { 0x03, (byte) 0xED });
+            assertFailed(socket.getInputStream(),
+                    WebSocket.CLOSE_PROTOCOL_ERROR);
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testInvalidUtf8() throws Exception {
+        start();
+        Socket socket = open();
+
+        try {
+            InputStream in = socket.getInputStream();
+            writeFrame(socket, true, 0x1, "h\u00e9".getBytes("UTF-8"));
+            assertEquals("h\u00e9", new String(readFrame(in).payload, "UTF-8"));
+            writeFrame(socket, true, 0x1, new byte[] { (byte) 0xC3, 0x28 });
+            assertFailed(in, WebSocket.CLOSE_INVALID_DATA);
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testMasking() throws Exception {
+        start();
+        Socket socket = open();
+
+        try {
+            InputStream in = socket.getInputStream();
+            byte[] data = new byte[300];
+
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) i;
+            }
+
+            writeFrame(socket, true, 0x2, data);
+            Frame frame = readFrame(in);
+            assertEquals(0x2, frame.opcode);
+            assertTrue(Arrays.equals(data, frame.payload));
+
+            // Client frames must be masked
+            writeFrame(socket, true, 0x1, "Hello".getBytes("UTF-8"), false);
+            assertFailed(in, WebSocket.CLOSE_PROTOCOL_ERROR);
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testMaxPendingSize() throws Exception {
+        start("webSocketMaxPendingSize", "1000");
+        Socket socket = open();
+
+        try {
+            writeFrame(socket, true, 0x1, "flood".getBytes("UTF-8"));
+            assertTrue(flooded.await(5, TimeUnit.SECONDS));
+            assertTrue(floodRefused);
+            assertTrue(floodCount >= 10);
+            assertTrue(floodCount < 100);
+
+            // The queued messages are still written
+            InputStream in = socket.getInputStream();
+
+            for (int i = 0; i < floodCount; i++) {
+                assertEquals(100, readFrame(in).payload.length);
+            }
+
+            writeFrame(socket, true, 0x1, "again".getBytes("UTF-8"));
+            assertEquals("again", new String(readFrame(in).payload, "UTF-8"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testUnexpectedContinuation() throws Exception {
+        start();
+        Socket socket = open();
+
+        try {
+            writeFrame(socket, true, 0x0, new byte[] { 1 });
+            assertFailed(socket.getInputStream(),
+                    WebSocket.CLOSE_PROTOCOL_ERROR);
+        } finally {
+            socket.close();
+        }
+    }
+
+}
@@ -34,8 +34,15 @@
 package org.restlet.test.engine.io;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.restlet.ext.nio.internal.buffer.Buffer;
+import org.restlet.ext.nio.internal.buffer.BufferPool;
 import org.restlet.ext.nio.internal.buffer.BufferState;
 import org.restlet.test.RestletTestCase;
 
@@ -73,4 +80,125 @@ public class BufferTestCase extends RestletTestCase {
         buffer.drain(sb, BufferState.FILLING);
         assertEquals("Remaining buffer", "ijklmnopqrstuvwxyz", sb.toString());
     }
+
+    public void testPool() {
+        BufferPool pool = new BufferPool(64, false);
+        assertEquals(64, pool.getBufferSize());
+        assertFalse(pool.isDirect());
+
+        ByteBuffer bytes = pool.checkout();
+        assertEquals(64, bytes.capacity());
+        assertFalse(bytes.isDirect());
+        bytes.put((byte) 1);
+
+        // Checked in buffers are cleared and reused
+        pool.checkin(bytes);
+        assertSame(bytes, pool.checkout());
+        assertEquals(0, bytes.position());
+        assertEquals(64, bytes.limit());
+        assertNotSame(bytes, pool.checkout());
+
+        assertTrue(new BufferPool(64, true).checkout().isDirect());
+    }
+
+    public void testPoolMaxPooled() {
+        BufferPool pool = new BufferPool(64, false, 2);
+        ByteBuffer[] bytes = new ByteBuffer[4];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = pool.checkout();
+        }
+
+        for (ByteBuffer byteBuffer : bytes) {
+            pool.checkin(byteBuffer);
+        }
+
+        // Buffers checked in beyond the maximum are dropped
+        assertEquals(2, pool.getPooled());
+        assertSame(bytes[0], pool.checkout());
+        assertSame(bytes[1], pool.checkout());
+        assertEquals(0, pool.getPooled());
+        ByteBuffer created = pool.checkout();
+
+        for (ByteBuffer byteBuffer : bytes) {
+            assertNotSame(byteBuffer, created);
+        }
+
+        pool.checkin(created);
+        assertEquals(1, pool.getPooled());
+        pool.clear();
+        assertEquals(0, pool.getPooled());
+    }
+
+    public void testPoolConcurrentCheckout() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        BufferPool pool = new BufferPool(64, false) {
+            @Override
+            protected ByteBuffer createObject() {
+                created.incrementAndGet();
+                return super.createObject();
+            }
+        };
+
+        for (int i = 0; i < 20; i++) {
+            final Buffer buffer = new Buffer(pool);
+            final CountDownLatch start = new CountDownLatch(1);
+            final Set<ByteBuffer> borrowed = Collections
+                    .newSetFromMap(new ConcurrentHashMap<ByteBuffer, Boolean>());
+            Thread[] threads = new Thread[4];
+
+            for (int j = 0; j < threads.length; j++) {
+                threads[j] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            borrowed.add(buffer.getBytes());
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                };
+                threads[j].start();
+            }
+
+            start.countDown();
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // Concurrent callers share a single borrowed byte buffer
+            assertEquals(1, borrowed.size());
+            buffer.release();
+        }
+
+        assertEquals(1, created.get());
+    }
+
+    public void testRelease() throws IOException {
+        BufferPool pool = new BufferPool(64, false);
+        Buffer buffer = new Buffer(pool);
+        assertTrue(buffer.isEmpty());
+
+        // Bytes are borrowed on demand
+        buffer.fill("abc");
+        ByteBuffer bytes = buffer.getBytes();
+
+        // A buffer still holding bytes is kept
+        buffer.release();
+        assertSame(bytes, buffer.getBytes());
+
+        buffer.flip();
+        StringBuilder sb = new StringBuilder();
+        buffer.drain(sb, BufferState.FILLING);
+        assertEquals("abc", sb.toString());
+
+        // An empty buffer goes back to the pool and is borrowed again
+        buffer.release();
+        assertTrue(buffer.isEmpty());
+        assertTrue(buffer.isFilling());
+        assertSame(bytes, pool.checkout());
+        assertNotSame(bytes, buffer.getBytes());
+    }
 }
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import org.restlet.engine.io.ReadableSelectionChannel;
+import org.restlet.ext.nio.internal.buffer.Buffer;
+import org.restlet.ext.nio.internal.channel.ReadableChunkedChannel;
+import org.restlet.ext.nio.internal.channel.ReadableChunkingChannel;
+import org.restlet.test.RestletTestCase;
+import org.restlet.util.SelectionRegistration;
+
+/**
+ * Test case for the {@link ReadableChunkedChannel} and
+ * {@link ReadableChunkingChannel} classes.
+ */
+public class ChunkedChannelTestCase extends RestletTestCase {
+
+    /**
+     * Readable channel returning its content in small slices.
+     */
+    private static class SlicedChannel implements ReadableSelectionChannel {
+
+        private final ByteBuffer content;
+
+        private final SelectionRegistration registration;
+
+        private final int sliceSize;
+
+        public SlicedChannel(String content, int sliceSize) throws IOException {
+            this.content = ByteBuffer.wrap(content.getBytes("US-ASCII"));
+            this.registration = new SelectionRegistration(0, null, null);
+            this.sliceSize = sliceSize;
+        }
+
+        public void close() {
+        }
+
+        public SelectionRegistration getRegistration() {
+            return this.registration;
+        }
+
+        public boolean isBlocking() {
+            return false;
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public int read(ByteBuffer dst) {
+            int result = -1;
+
+            if (this.content.hasRemaining()) {
+                result = Math.min(this.sliceSize,
+                        Math.min(dst.remaining(), this.content.remaining()));
+
+                for (int i = 0; i < result; i++) {
+                    dst.put(this.content.get());
+                }
+            }
+
+            return result;
+        }
+    }
+
+    private static final String CHUNKED = "5;name=value\r\nHello\r\n"
+            + "7\r\n, world\r\n" + "0\r\nX-Trailer: ignored\r\n\r\n";
+
+    private String dechunk(int sliceSize) throws IOException {
+        Buffer buffer = new Buffer(8192);
+        ReadableChunkedChannel channel = new ReadableChunkedChannel(null,
+                buffer, new SlicedChannel(CHUNKED, sliceSize), null);
+        ByteBuffer target = ByteBuffer.allocate(1024);
+
+        while (channel.read(target) != -1) {
+        }
+
+        return new String(target.array(), 0, target.position(), "US-ASCII");
+    }
+
+    public void testChunking() throws IOException {
+        ReadableByteChannel channel = new ReadableChunkingChannel(
+                new SlicedChannel("Hello, world", 3), 8192);
+        ByteBuffer target = ByteBuffer.allocate(1024);
+
+        // The slices are coalesced and the last chunk follows the data
+        assertEquals(25, channel.read(target));
+        assertEquals("000c\r\nHello, world\r\n0\r\n\r\n", new String(
+                target.array(), 0, target.position(), "US-ASCII"));
+        assertEquals(-1, channel.read(target));
+    }
+
+    public void testChunkingSmallBuffer() throws IOException {
+        ReadableByteChannel channel = new ReadableChunkingChannel(
+                new SlicedChannel("Hello, world", 3), 8192);
+        ByteBuffer target = ByteBuffer.allocate(16);
+        StringBuilder sb = new StringBuilder();
+
+        while (channel.read(target) != -1) {
+            target.flip();
+            sb.append(new String(target.array(), 0, target.limit(),
+                    "US-ASCII"));
+            target.clear();
+        }
+
+        assertEquals("0003\r\nHel\r\n0003\r\nlo,\r\n0003\r\n wo\r\n"
+                + "0003\r\nrld\r\n0\r\n\r\n", sb.toString());
+    }
+
+    public void testDechunking() throws IOException {
+        assertEquals("Hello, world", dechunk(8192));
+    }
+
+    public void testDechunkingSliced() throws IOException {
+        assertEquals("Hello, world", dechunk(1));
+        assertEquals("Hello, world", dechunk(4));
+    }
+
+    public void testInvalidChunkSize() throws IOException {
+        Buffer buffer = new Buffer(8192);
+        ReadableChunkedChannel channel = new ReadableChunkedChannel(null,
+                buffer, new SlicedChannel("zz\r\nHello\r\n", 8192), null);
+
+        try {
+            channel.read(ByteBuffer.allocate(1024));
+            fail("An invalid chunk size should be rejected");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
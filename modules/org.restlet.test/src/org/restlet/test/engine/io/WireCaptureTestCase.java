@@ -0,0 +1,96 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.restlet.ext.nio.internal.connection.WireCapture;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link WireCapture} class.
+ */
+public class WireCaptureTestCase extends RestletTestCase {
+
+    private static ByteBuffer bytes(String text, boolean direct)
+            throws IOException {
+        byte[] array = text.getBytes("US-ASCII");
+        ByteBuffer result = direct ? ByteBuffer.allocateDirect(array.length)
+                : ByteBuffer.allocate(array.length);
+        result.put(array);
+        result.flip();
+        return result;
+    }
+
+    public void testCapture() throws IOException {
+        WireCapture capture = new WireCapture(1024);
+        capture.captureEvent("Connection state: OPEN");
+        capture.captureInbound(bytes("GET / HTTP/1.1\r\n", false), 0, 16);
+        capture.captureOutbound(bytes("HTTP/1.1 200 OK\r\n\u0001", true), 0,
+                18);
+
+        String dump = capture.dump();
+        assertTrue(dump.contains("* Connection state: OPEN\n"));
+        assertTrue(dump.contains("<< 16 bytes\nGET / HTTP/1.1\\r\n"));
+        assertTrue(dump.contains(">> 18 bytes\nHTTP/1.1 200 OK\\r\n\\x01\n"));
+
+        capture.clear();
+        assertEquals("", capture.dump());
+    }
+
+    public void testEviction() throws IOException {
+        // Each record takes 13 bytes of header and 10 bytes of data
+        WireCapture capture = new WireCapture(50);
+
+        for (int i = 0; i < 10; i++) {
+            capture.captureInbound(bytes("record-00" + i, false), 0, 10);
+        }
+
+        String dump = capture.dump();
+        assertFalse(dump.contains("record-007"));
+        assertTrue(dump.contains("record-008"));
+        assertTrue(dump.contains("record-009"));
+    }
+
+    public void testTruncation() throws IOException {
+        WireCapture capture = new WireCapture(30);
+        capture.captureOutbound(bytes("0123456789abcdefghijklmnopqrstuvwxyz",
+                false), 2, 36);
+
+        // Only the last bytes of a record larger than the ring are kept
+        String dump = capture.dump();
+        assertTrue(dump.contains(">> 17 bytes\njklmnopqrstuvwxyz\n"));
+    }
+}
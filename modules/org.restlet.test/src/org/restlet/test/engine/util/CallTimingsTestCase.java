@@ -0,0 +1,140 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.test.engine.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.engine.connector.ConnectorMetrics;
+import org.restlet.engine.connector.ServerHelper;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.util.CallTimings;
+import org.restlet.routing.Router;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link CallTimings} class.
+ */
+public class CallTimingsTestCase extends RestletTestCase {
+
+    public void testFormat() {
+        CallTimings timings = new CallTimings();
+        assertEquals("-", timings.toString());
+
+        timings.add(CallTimings.STAGE_PARSE, 45000);
+        timings.add(CallTimings.STAGE_RESOURCE,
+                TimeUnit.MILLISECONDS.toNanos(3));
+        timings.add(CallTimings.STAGE_RESOURCE, 210000);
+        assertEquals("parse=0.045,resource=3.210", timings.toString());
+        assertTrue(timings.toServerTiming().startsWith(
+                "parse;dur=0.045, resource;dur=3.210, total;dur="));
+
+        Request request = new Request(Method.GET, "http://localhost/");
+        Response response = new Response(request);
+        timings.addHeader(response);
+        assertNotNull(response.getHeaders().getFirstValue(
+                HeaderConstants.HEADER_SERVER_TIMING));
+    }
+
+    public void testMetrics() {
+        CallTimings timings = new CallTimings();
+        timings.add(CallTimings.STAGE_ROUTING, 1000);
+        timings.add(CallTimings.STAGE_CONVERSION, 2000);
+
+        ConnectorMetrics metrics = new ConnectorMetrics();
+        metrics.onRequestTimed(timings);
+        assertEquals(1, metrics.getStageTime(CallTimings.STAGE_ROUTING)
+                .getCount());
+        assertEquals(0, metrics.getStageTime(CallTimings.STAGE_RESOURCE)
+                .getCount());
+        assertTrue(metrics.getValues().containsKey("conversion_time_count"));
+        assertFalse(metrics.getValues().containsKey("auth_time_count"));
+    }
+
+    public void testRouting() {
+        Router router = new Router();
+        router.attach("/path", new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+            }
+        });
+
+        Request request = new Request(Method.GET, "http://localhost/path");
+        request.getResourceRef().setBaseRef("http://localhost");
+        router.handle(request, new Response(request));
+        assertNull(request.getTimings());
+
+        request = new Request(Method.GET, "http://localhost/path");
+        request.getResourceRef().setBaseRef("http://localhost");
+        request.setTimings(new CallTimings());
+        router.handle(request, new Response(request));
+        assertTrue(request.getTimings().getDuration(
+                CallTimings.STAGE_ROUTING) > 0);
+    }
+
+    public void testServerHelper() throws Exception {
+        Restlet next = new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+            }
+        };
+        Context context = new Context();
+        Server server = new Server(context, Protocol.HTTP, 0, next);
+        ServerHelper helper = new ServerHelper(server);
+
+        Request request = new Request(Method.GET, "http://localhost/");
+        Response response = new Response(request);
+        helper.handle(request, response);
+        assertFalse(helper.isTimed());
+        assertNull(request.getTimings());
+        assertEquals(1, helper.getMetrics().getRequests());
+
+        context.getParameters().add("timings", "true");
+        helper.stop();
+        request = new Request(Method.GET, "http://localhost/");
+        response = new Response(request);
+        helper.handle(request, response);
+        assertTrue(helper.isTimed());
+        assertNotNull(request.getTimings());
+        assertNotNull(response.getHeaders().getFirstValue(
+                HeaderConstants.HEADER_SERVER_TIMING));
+        assertEquals(2, helper.getMetrics().getRequests());
+    }
+
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.representation;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.data.MediaType;
+import org.restlet.representation.EventStreamRepresentation;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit test case for the {@link EventStreamRepresentation} class.
+ */
+public class EventStreamRepresentationTestCase extends RestletTestCase {
+
+    public void testCloseWhileSending() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            final EventStreamRepresentation esr;
+            esr = new EventStreamRepresentation();
+            final AtomicInteger accepted = new AtomicInteger();
+            final CountDownLatch started = new CountDownLatch(1);
+            Thread sender = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            if (esr.send("e")) {
+                                accepted.incrementAndGet();
+                            }
+
+                            started.countDown();
+                        }
+                    } catch (Exception e) {
+                        fail(e.getMessage());
+                    }
+                }
+            };
+            sender.start();
+            started.await();
+            esr.close();
+            String text = esr.getText();
+            sender.join();
+
+            // Every accepted event is sent before the end of the stream
+            assertEquals(accepted.get() * "data: e\n\n".length(),
+                    text.length());
+        }
+    }
+
+    public void testReleaseWhileSending() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            final EventStreamRepresentation esr;
+            esr = new EventStreamRepresentation();
+            esr.setMaxQueuedEvents(10);
+            final CountDownLatch started = new CountDownLatch(1);
+            Thread sender = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            esr.send("e");
+                            started.countDown();
+                        }
+                    } catch (Exception e) {
+                        fail(e.getMessage());
+                    }
+                }
+            };
+            sender.start();
+            started.await();
+            esr.release();
+            sender.join();
+
+            // No event is left after the release
+            assertFalse(esr.send("late"));
+            assertEquals(0, esr.getChannel().read(ByteBuffer.allocate(16)));
+        }
+    }
+
+    public void testEvents() throws Exception {
+        final EventStreamRepresentation esr = new EventStreamRepresentation();
+        assertEquals(MediaType.TEXT_EVENT_STREAM, esr.getMediaType());
+
+        new Thread() {
+            public void run() {
+                try {
+                    esr.sendRetry(1000);
+                    Thread.sleep(50);
+                    esr.send("first");
+                    esr.sendComment("ping");
+                    Thread.sleep(50);
+                    esr.send("7", "update", "a\nb");
+                    esr.close();
+                } catch (Exception e) {
+                    fail(e.getMessage());
+                }
+            }
+        }.start();
+
+        assertEquals("retry: 1000\n\ndata: first\n\n: ping\n\n"
+                + "id: 7\nevent: update\ndata: a\ndata: b\n\n", esr.getText());
+        assertFalse(esr.send("late"));
+    }
+
+    public void testLargeEvent() throws Exception {
+        EventStreamRepresentation esr = new EventStreamRepresentation(16);
+        StringBuilder data = new StringBuilder();
+
+        for (int i = 0; i < 100; i++) {
+            data.append(i);
+        }
+
+        esr.send(data.toString());
+        esr.close();
+        assertEquals("data: " + data + "\n\n", esr.getText());
+    }
+
+    public void testLineBreaks() throws Exception {
+        EventStreamRepresentation esr = new EventStreamRepresentation();
+
+        try {
+            esr.send("1\ndata: injected", "update", "a");
+            fail("Line break accepted in the identifier");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        try {
+            esr.send("update\r\nid: 2", "a");
+            fail("Line break accepted in the name");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        assertTrue(esr.send("1", "update", "a"));
+        esr.close();
+        assertEquals("id: 1\nevent: update\ndata: a\n\n", esr.getText());
+    }
+
+    public void testMaxQueuedEvents() throws Exception {
+        EventStreamRepresentation esr = new EventStreamRepresentation();
+        esr.setMaxQueuedEvents(2);
+        assertTrue(esr.send("first"));
+        assertTrue(esr.send("second"));
+        assertFalse(esr.send("third"));
+        assertFalse(esr.isClosed());
+
+        // Consuming the queue makes room for new events
+        assertTrue(esr.getChannel().read(ByteBuffer.allocate(64)) > 0);
+        assertTrue(esr.send("fourth"));
+        esr.close();
+        assertEquals("data: fourth\n\n", esr.getText());
+    }
+
+    public void testRelease() throws Exception {
+        EventStreamRepresentation esr = new EventStreamRepresentation();
+        assertTrue(esr.send("first"));
+        esr.release();
+        assertTrue(esr.isClosed());
+        assertFalse(esr.send("second"));
+        assertEquals(0, esr.getChannel().read(ByteBuffer.allocate(16)));
+    }
+
+}
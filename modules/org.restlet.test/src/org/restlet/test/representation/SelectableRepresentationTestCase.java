@@ -0,0 +1,109 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.representation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.restlet.data.MediaType;
+import org.restlet.representation.SelectableRepresentation;
+import org.restlet.test.RestletTestCase;
+import org.restlet.util.WritingListener;
+
+/**
+ * Unit test case for the {@link SelectableRepresentation} class.
+ */
+public class SelectableRepresentationTestCase extends RestletTestCase {
+
+    /** Writing listener producing the content queued by another thread. */
+    private static class QueueListener extends WritingListener {
+
+        private final ConcurrentLinkedQueue<String> parts = new ConcurrentLinkedQueue<String>();
+
+        private volatile boolean last;
+
+        public void add(String part, boolean last) throws IOException {
+            this.parts.add(part);
+            this.last = last;
+            resume();
+        }
+
+        @Override
+        protected void onWritable(ByteBuffer byteBuffer) throws IOException {
+            String part = this.parts.poll();
+
+            if (part != null) {
+                byteBuffer.put(part.getBytes());
+            }
+
+            if (this.last && this.parts.isEmpty()) {
+                end();
+            }
+        }
+    }
+
+    public void testAsynchronousContent() throws Exception {
+        final QueueListener listener = new QueueListener();
+        SelectableRepresentation sr = new SelectableRepresentation(
+                MediaType.TEXT_PLAIN, listener);
+
+        new Thread() {
+            public void run() {
+                try {
+                    for (int i = 0; i < 5; i++) {
+                        Thread.sleep(50);
+                        listener.add("part" + i, i == 4);
+                    }
+                } catch (Exception e) {
+                    fail(e.getMessage());
+                }
+            }
+        }.start();
+
+        assertTrue(sr.isSelectable());
+        assertEquals("part0part1part2part3part4", sr.getText());
+    }
+
+    public void testNoContentYet() throws Exception {
+        QueueListener listener = new QueueListener();
+        ByteBuffer bb = ByteBuffer.allocate(16);
+        assertEquals(0, listener.getChannel().read(bb));
+
+        listener.add("abc", true);
+        assertEquals(3, listener.getChannel().read(bb));
+        assertEquals(-1, listener.getChannel().read(bb));
+    }
+
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.resource;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Header;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.resource.WebSocketResource;
+import org.restlet.test.RestletTestCase;
+import org.restlet.util.Series;
+
+/**
+ * Unit test case for the {@link WebSocketResource} handshake.
+ */
+public class WebSocketResourceTestCase extends RestletTestCase {
+
+    private Response handshake(String version) {
+        Request request = new Request(Method.GET, "http://localhost/ws");
+        Series<Header> headers = new Series<Header>(Header.class);
+        headers.add(HeaderConstants.HEADER_UPGRADE, "websocket");
+        headers.add(HeaderConstants.HEADER_CONNECTION, "keep-alive, Upgrade");
+        headers.add(HeaderConstants.HEADER_SEC_WEBSOCKET_KEY,
+                "dGhlIHNhbXBsZSBub25jZQ==");
+        headers.add(HeaderConstants.HEADER_SEC_WEBSOCKET_VERSION, version);
+        request.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS,
+                headers);
+        Response response = new Response(request);
+        WebSocketResource resource = new WebSocketResource();
+        resource.init(new Context(), request, response);
+        resource.handle();
+        return response;
+    }
+
+    public void testAcceptKey() {
+        // Example of RFC 6455
+        assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=",
+                WebSocketResource.getAcceptKey("dGhlIHNhbXBsZSBub25jZQ=="));
+    }
+
+    public void testHandshake() {
+        Response response = handshake("13");
+        assertEquals(Status.INFO_SWITCHING_PROTOCOL, response.getStatus());
+        assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", response.getHeaders()
+                .getFirstValue(HeaderConstants.HEADER_SEC_WEBSOCKET_ACCEPT));
+        assertNotNull(response.getAttributes().get(
+                HeaderConstants.ATTRIBUTE_WEBSOCKET_LISTENER));
+    }
+
+    public void testUnsupportedVersion() {
+        Response response = handshake("8");
+        assertEquals(426, response.getStatus().getCode());
+        assertEquals("13", response.getHeaders().getFirstValue(
+                HeaderConstants.HEADER_SEC_WEBSOCKET_VERSION));
+        assertNull(response.getAttributes().get(
+                HeaderConstants.ATTRIBUTE_WEBSOCKET_LISTENER));
+    }
+
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Uniform;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.routing.BalancedTarget;
+import org.restlet.routing.LoadBalancer;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link LoadBalancer} class.
+ */
+public class LoadBalancerTestCase extends RestletTestCase {
+
+    /**
+     * Restlet answering for all the targets. Asynchronous calls are kept
+     * pending, calls to the "bad" host fail and calls to the "slow" host are
+     * delayed.
+     */
+    private static class Targets extends Restlet {
+
+        private final List<Request> pending = new ArrayList<Request>();
+
+        private final List<String> uris = new ArrayList<String>();
+
+        @Override
+        public void handle(Request request, Response response) {
+            String host = request.getResourceRef().getHostDomain();
+            this.uris.add(request.getResourceRef().toString());
+
+            if (request.isAsynchronous()) {
+                this.pending.add(request);
+            } else if ("bad".equals(host)) {
+                response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+            } else if ("slow".equals(host)) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private LoadBalancer balancer;
+
+    private Targets targets;
+
+    private void call() {
+        Request request = new Request(Method.GET,
+                "http://service/path?query=1");
+        this.balancer.handle(request, new Response(request));
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.targets = new Targets();
+        this.balancer = new LoadBalancer(null, this.targets);
+    }
+
+    public void testEjection() throws Exception {
+        BalancedTarget bad = this.balancer.addTarget("http://bad");
+        BalancedTarget good = this.balancer.addTarget("http://good");
+        this.balancer.setMaxFailures(2);
+        this.balancer.setEjectionTime(200);
+
+        for (int i = 0; i < 10; i++) {
+            call();
+        }
+
+        assertEquals(2, bad.getCalls());
+        assertEquals(8, good.getCalls());
+        assertTrue(bad.isEjected(System.currentTimeMillis()));
+
+        // The re-admitted target is ejected again by its next failure
+        Thread.sleep(300);
+        assertFalse(bad.isEjected(System.currentTimeMillis()));
+        call();
+        assertEquals(3, bad.getCalls());
+        assertTrue(bad.isEjected(System.currentTimeMillis()));
+    }
+
+    public void testLeastOutstanding() throws Exception {
+        BalancedTarget first = this.balancer.addTarget("http://first");
+        BalancedTarget second = this.balancer.addTarget("http://second");
+
+        for (int i = 0; i < 4; i++) {
+            Request request = new Request(Method.GET, "http://service/path");
+            request.setOnResponse(new Uniform() {
+                public void handle(Request req, Response resp) {
+                }
+            });
+            this.balancer.handle(request, new Response(request));
+        }
+
+        assertEquals(2, first.getOutstanding());
+        assertEquals(2, second.getOutstanding());
+
+        Request request = this.targets.pending.get(0);
+        request.getOnResponse().handle(request, new Response(request));
+        assertEquals(3, first.getOutstanding() + second.getOutstanding());
+    }
+
+    public void testPowerOfTwoChoices() throws Exception {
+        BalancedTarget fast = this.balancer.addTarget("http://fast");
+        BalancedTarget slow = this.balancer.addTarget("http://slow");
+        this.balancer.setMode(LoadBalancer.MODE_POWER_OF_TWO_CHOICES);
+
+        for (int i = 0; (i < 10)
+                && ((fast.getLatency() == 0) || (slow.getLatency() == 0)); i++) {
+            call();
+        }
+
+        long slowCalls = slow.getCalls();
+
+        for (int i = 0; i < 10; i++) {
+            call();
+        }
+
+        assertTrue(fast.getLatency() < slow.getLatency());
+        assertEquals(slowCalls, slow.getCalls());
+    }
+
+    public void testPowerOfTwoChoicesUnmeasured() throws Exception {
+        BalancedTarget slow = this.balancer.addTarget("http://slow");
+        this.balancer.setMode(LoadBalancer.MODE_POWER_OF_TWO_CHOICES);
+        call();
+        assertTrue(slow.getLatency() > 0);
+
+        // The new target doesn't attract all the calls until measured
+        BalancedTarget fresh = this.balancer.addTarget("http://fresh");
+
+        for (int i = 0; i < 4; i++) {
+            Request request = new Request(Method.GET, "http://service/path");
+            request.setOnResponse(new Uniform() {
+                public void handle(Request req, Response resp) {
+                }
+            });
+            this.balancer.handle(request, new Response(request));
+        }
+
+        assertEquals(0D, fresh.getLatency());
+        assertEquals(2, fresh.getOutstanding());
+        assertEquals(2, slow.getOutstanding());
+    }
+
+    public void testTargetRef() throws Exception {
+        this.balancer.addTarget("https://replica:8183");
+        call();
+        assertEquals("https://replica:8183/path?query=1",
+                this.targets.uris.get(0));
+    }
+
+}
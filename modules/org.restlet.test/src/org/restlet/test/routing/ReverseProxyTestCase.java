@@ -0,0 +1,239 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.routing;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Header;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Reference;
+import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.routing.ReverseProxy;
+import org.restlet.test.RestletTestCase;
+import org.restlet.util.Series;
+
+/**
+ * Test case for the {@link ReverseProxy} class.
+ */
+public class ReverseProxyTestCase extends RestletTestCase {
+
+    /**
+     * Reverse proxy forwarding the calls to a local upstream Restlet.
+     */
+    private static class TestProxy extends ReverseProxy {
+
+        private final Restlet upstream;
+
+        public TestProxy(Restlet upstream) {
+            super(new Context(), "http://upstream:8080/root{rr}");
+            this.upstream = upstream;
+        }
+
+        @Override
+        protected void serverRedirect(Restlet next, Reference targetRef,
+                Request request, Response response) {
+            super.serverRedirect(this.upstream, targetRef, request, response);
+        }
+    }
+
+    private static Request createRequest() {
+        Request result = new Request(Method.GET,
+                "http://front:8182/app/path?q=1");
+        result.getResourceRef().setBaseRef("http://front:8182/app");
+        result.setHostRef("http://front:8182");
+        result.setProtocol(Protocol.HTTP);
+        result.getClientInfo().setAddress("10.0.0.1");
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Series<Header> getHeaders(Request request) {
+        Series<Header> result = (Series<Header>) request.getAttributes().get(
+                HeaderConstants.ATTRIBUTE_HEADERS);
+
+        if (result == null) {
+            result = new Series<Header>(Header.class);
+            request.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS,
+                    result);
+        }
+
+        return result;
+    }
+
+    public void testHeaders() throws Exception {
+        final Request[] forwarded = new Request[1];
+        final String[] upstreamUri = new String[1];
+        TestProxy proxy = new TestProxy(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                forwarded[0] = request;
+                upstreamUri[0] = request.getResourceRef().toString();
+                Series<Header> headers = new Series<Header>(Header.class);
+                headers.add("X-Upstream", "1");
+                headers.add(HeaderConstants.HEADER_CONNECTION, "X-Secret");
+                headers.add("X-Secret", "2");
+                response.getAttributes().put(
+                        HeaderConstants.ATTRIBUTE_HEADERS, headers);
+            }
+        });
+
+        Request request = createRequest();
+        Series<Header> headers = getHeaders(request);
+        headers.add("X-Custom", "a");
+        headers.add(HeaderConstants.HEADER_CONNECTION, "keep-alive, X-Private");
+        headers.add("Keep-Alive", "timeout=5");
+        headers.add("X-Private", "b");
+        headers.add(HeaderConstants.HEADER_X_FORWARDED_FOR, "1.2.3.4");
+        Response response = new Response(request);
+        proxy.handle(request, response);
+
+        assertEquals("http://upstream:8080/root/path?q=1", upstreamUri[0]);
+        Series<Header> sent = forwarded[0].getHeaders();
+        assertEquals("a", sent.getFirstValue("X-Custom"));
+        assertNull(sent.getFirstValue("X-Private"));
+        assertNull(sent.getFirstValue("Keep-Alive"));
+        assertEquals("1.2.3.4, 10.0.0.1",
+                sent.getFirstValue(HeaderConstants.HEADER_X_FORWARDED_FOR));
+        assertEquals("front:8182",
+                sent.getFirstValue(HeaderConstants.HEADER_X_FORWARDED_HOST));
+        assertEquals("http",
+                sent.getFirstValue(HeaderConstants.HEADER_X_FORWARDED_PROTO));
+        assertEquals(1, forwarded[0].getRecipientsInfo().size());
+        assertEquals("restlet", forwarded[0].getRecipientsInfo().get(0)
+                .getName());
+
+        Series<Header> received = response.getHeaders();
+        assertEquals("1", received.getFirstValue("X-Upstream"));
+        assertNull(received.getFirstValue("X-Secret"));
+        assertNull(received.getFirstValue(HeaderConstants.HEADER_CONNECTION));
+        assertEquals(1, response.getRecipientsInfo().size());
+        assertEquals("http://front:8182/app/path?q=1", request
+                .getResourceRef().toString());
+    }
+
+    public void testMaxCalls() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final TestProxy proxy = new TestProxy(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                started.countDown();
+
+                try {
+                    finish.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        proxy.setMaxCallsPerUpstream(1);
+        proxy.setAcquireTimeout(10);
+
+        Thread blocking = new Thread() {
+            @Override
+            public void run() {
+                Request request = createRequest();
+                proxy.handle(request, new Response(request));
+            }
+        };
+        blocking.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Request request = createRequest();
+        Response response = new Response(request);
+        proxy.handle(request, response);
+        assertEquals(Status.SERVER_ERROR_SERVICE_UNAVAILABLE,
+                response.getStatus());
+
+        finish.countDown();
+        blocking.join();
+        request = createRequest();
+        response = new Response(request);
+        proxy.handle(request, response);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+    }
+
+    public void testMaxCallsStreaming() throws Exception {
+        TestProxy proxy = new TestProxy(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setEntity(new StringRepresentation("upstream"));
+            }
+        });
+        proxy.setMaxCallsPerUpstream(1);
+        proxy.setAcquireTimeout(10);
+
+        // The slot is kept while the entity isn't consumed
+        Request request = createRequest();
+        Response streaming = new Response(request);
+        proxy.handle(request, streaming);
+        assertEquals(Status.SUCCESS_OK, streaming.getStatus());
+        request = createRequest();
+        Response response = new Response(request);
+        proxy.handle(request, response);
+        assertEquals(Status.SERVER_ERROR_SERVICE_UNAVAILABLE,
+                response.getStatus());
+
+        // Reading the stream to its end gives back the slot
+        assertEquals("upstream",
+                IoUtils.toString(streaming.getEntity().getStream()));
+        request = createRequest();
+        streaming = new Response(request);
+        proxy.handle(request, streaming);
+        assertEquals(Status.SUCCESS_OK, streaming.getStatus());
+
+        // Releasing the entity gives back the slot, only once
+        streaming.getEntity().release();
+        streaming.getEntity().release();
+        request = createRequest();
+        streaming = new Response(request);
+        proxy.handle(request, streaming);
+        assertEquals(Status.SUCCESS_OK, streaming.getStatus());
+        request = createRequest();
+        response = new Response(request);
+        proxy.handle(request, response);
+        assertEquals(Status.SERVER_ERROR_SERVICE_UNAVAILABLE,
+                response.getStatus());
+    }
+
+}
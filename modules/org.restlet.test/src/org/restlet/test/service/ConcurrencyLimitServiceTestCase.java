@@ -0,0 +1,209 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.application.ConcurrencyLimitFilter;
+import org.restlet.service.ConcurrencyLimitService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the {@link ConcurrencyLimitService} and its
+ * {@link ConcurrencyLimitFilter}.
+ */
+public class ConcurrencyLimitServiceTestCase extends RestletTestCase {
+
+    /**
+     * Resource Restlet blocking the calls of the "/blocked" resource until
+     * released, and delaying the calls of the "/slow" resource.
+     */
+    private static class Resource extends Restlet {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public void handle(Request request, Response response) {
+            String path = request.getResourceRef().getPath();
+
+            try {
+                if ("/blocked".equals(path)) {
+                    this.entered.countDown();
+                    this.released.await(5, TimeUnit.SECONDS);
+                } else if ("/slow".equals(path)) {
+                    Thread.sleep(30);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            response.setStatus(Status.SUCCESS_NO_CONTENT);
+        }
+    }
+
+    private ConcurrencyLimitFilter filter;
+
+    private Resource resource;
+
+    private ConcurrencyLimitService service;
+
+    private Thread blockedCall() throws Exception {
+        Thread result = new Thread() {
+            @Override
+            public void run() {
+                call("/blocked");
+            }
+        };
+        result.start();
+        assertTrue(this.resource.entered.await(5, TimeUnit.SECONDS));
+        return result;
+    }
+
+    private Status call(String path) {
+        Request request = new Request(Method.GET, "http://localhost" + path);
+        Response response = new Response(request);
+        this.filter.handle(request, response);
+        return response.getStatus();
+    }
+
+    private void createFilter() {
+        this.filter = new ConcurrencyLimitFilter(null, this.service);
+        this.filter.setNext(this.resource);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.resource = new Resource();
+        this.service = new ConcurrencyLimitService();
+        this.service.setWindow(0);
+    }
+
+    public void testAimd() throws Exception {
+        this.service.setMode(ConcurrencyLimitService.MODE_AIMD);
+        this.service.setInitialLimit(2);
+        this.service.setLatencyThreshold(10);
+        createFilter();
+
+        // Sequential calls only use half of a limit of 2
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Status.SUCCESS_NO_CONTENT, call("/fast"));
+        }
+
+        assertEquals(3, this.filter.getLimit());
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Status.SUCCESS_NO_CONTENT, call("/slow"));
+        }
+
+        assertEquals(1, this.filter.getLimit());
+    }
+
+    public void testGradient() throws Exception {
+        this.service.setInitialLimit(10);
+        createFilter();
+
+        for (int i = 0; i < 10; i++) {
+            call("/fast");
+        }
+
+        // Sequential calls don't use enough of the limit to increase it
+        int limit = this.filter.getLimit();
+        assertTrue(limit <= 10);
+
+        for (int i = 0; i < 5; i++) {
+            call("/slow");
+        }
+
+        assertTrue(this.filter.getLimit() < limit);
+        assertTrue(this.filter.getLimit() >= 1);
+    }
+
+    public void testQueue() throws Exception {
+        this.service.setInitialLimit(1);
+        this.service.setMinLimit(1);
+        this.service.setMaxWait(5000);
+        this.service.setMaxQueued(1);
+        this.service.setWindow(60000);
+        createFilter();
+        Thread blocked = blockedCall();
+
+        final Status[] queuedStatus = new Status[1];
+        Thread queued = new Thread() {
+            @Override
+            public void run() {
+                queuedStatus[0] = call("/fast");
+            }
+        };
+        queued.start();
+
+        while (this.filter.getQueued() == 0) {
+            Thread.sleep(5);
+        }
+
+        // The queue is full
+        assertEquals(Status.SERVER_ERROR_SERVICE_UNAVAILABLE, call("/fast"));
+
+        this.resource.released.countDown();
+        blocked.join(5000);
+        queued.join(5000);
+        assertEquals(Status.SUCCESS_NO_CONTENT, queuedStatus[0]);
+        assertEquals(0, this.filter.getInFlight());
+    }
+
+    public void testReject() throws Exception {
+        this.service.setInitialLimit(1);
+        this.service.setMaxWait(0);
+        this.service.setWindow(60000);
+        createFilter();
+        Thread blocked = blockedCall();
+
+        assertEquals(1, this.filter.getInFlight());
+        assertEquals(Status.SERVER_ERROR_SERVICE_UNAVAILABLE, call("/fast"));
+
+        this.resource.released.countDown();
+        blocked.join(5000);
+        assertEquals(0, this.filter.getInFlight());
+        assertEquals(Status.SUCCESS_NO_CONTENT, call("/fast"));
+    }
+
+}
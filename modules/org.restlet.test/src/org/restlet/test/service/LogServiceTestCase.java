@@ -0,0 +1,222 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.log.AccessLogWriter;
+import org.restlet.engine.log.LogFilter;
+import org.restlet.engine.log.LoggingThreadFactory;
+import org.restlet.service.LogService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the {@link LogService}, its {@link LogFilter} and its
+ * asynchronous {@link AccessLogWriter}.
+ */
+public class LogServiceTestCase extends RestletTestCase {
+
+    /**
+     * Handler keeping the log lines, optionally blocking the first record
+     * until released.
+     */
+    private static class LinesHandler extends Handler {
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+
+        private final List<String> lines = new ArrayList<String>();
+
+        private volatile CountDownLatch released;
+
+        private volatile int records;
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public synchronized void publish(LogRecord record) {
+            if (this.released != null) {
+                this.blocked.countDown();
+
+                try {
+                    this.released.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                this.released = null;
+            }
+
+            this.records++;
+
+            for (String line : record.getMessage().split("\n")) {
+                this.lines.add(line);
+            }
+        }
+    }
+
+    private LinesHandler handler;
+
+    private Logger logger;
+
+    private void call(Restlet restlet, String path) {
+        Request request = new Request(Method.GET, "http://localhost" + path);
+        restlet.handle(request, new Response(request));
+    }
+
+    private LogFilter createFilter(LogService service) {
+        service.setLoggerName(this.logger.getName());
+        LogFilter result = new LogFilter(null, service);
+        result.setNext(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setStatus(Status.SUCCESS_NO_CONTENT);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.handler = new LinesHandler();
+        this.logger = Logger.getLogger(LogServiceTestCase.class.getName());
+        this.logger.setUseParentHandlers(false);
+        this.logger.addHandler(this.handler);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.logger.removeHandler(this.handler);
+        super.tearDown();
+    }
+
+    public void testAsynchronous() throws Exception {
+        LogService service = new LogService();
+        service.setAsynchronous(true);
+        LogFilter filter = createFilter(service);
+        filter.start();
+
+        for (int i = 0; i < 100; i++) {
+            call(filter, "/resource/" + i);
+        }
+
+        filter.stop();
+        assertEquals(100, this.handler.lines.size());
+        assertEquals(100, this.handler.records);
+
+        for (int i = 0; i < 100; i++) {
+            String[] fields = this.handler.lines.get(i).split("\t");
+            assertTrue(fields[0].matches("\\d{4}-\\d{2}-\\d{2}"));
+            assertTrue(fields[1].matches("\\d{2}:\\d{2}:\\d{2}"));
+            assertEquals("GET", fields[6]);
+            assertEquals("/resource/" + i, fields[7]);
+            assertEquals("204", fields[9]);
+        }
+    }
+
+    public void testBatchSize() throws Exception {
+        AccessLogWriter writer = new AccessLogWriter(this.logger, 16, 4, false);
+        this.handler.released = new CountDownLatch(1);
+        writer.start(new LoggingThreadFactory(this.logger, true));
+
+        assertTrue(writer.offer("first"));
+        assertTrue(this.handler.blocked.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 8; i++) {
+            assertTrue(writer.offer("entry " + i));
+        }
+
+        this.handler.released.countDown();
+        writer.stop();
+        assertEquals(9, this.handler.lines.size());
+        assertEquals(3, this.handler.records);
+
+        for (int i = 0; i < 8; i++) {
+            assertEquals("entry " + i, this.handler.lines.get(i + 1));
+        }
+    }
+
+    public void testDropped() throws Exception {
+        AccessLogWriter writer = new AccessLogWriter(this.logger, 4, 1, false);
+        this.handler.released = new CountDownLatch(1);
+        writer.start(new LoggingThreadFactory(this.logger, true));
+
+        assertTrue(writer.offer("first"));
+        assertTrue(this.handler.blocked.await(5, TimeUnit.SECONDS));
+        int accepted = 1;
+
+        for (int i = 0; i < 10; i++) {
+            if (writer.offer("entry " + i)) {
+                accepted++;
+            }
+        }
+
+        assertEquals(5, accepted);
+        assertEquals(6, writer.getDropped());
+
+        this.handler.released.countDown();
+        writer.stop();
+        assertEquals(5, this.handler.lines.size());
+        assertFalse(writer.offer("after stop"));
+    }
+
+    public void testResponseLogFormat() throws Exception {
+        LogService service = new LogService();
+        service.setResponseLogFormat("{m} {rp} {S}");
+        service.start();
+        LogFilter filter = createFilter(service);
+
+        call(filter, "/resource");
+        assertEquals(1, this.handler.lines.size());
+        assertEquals("GET /resource 204", this.handler.lines.get(0));
+    }
+
+}
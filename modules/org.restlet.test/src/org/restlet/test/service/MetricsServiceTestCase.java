@@ -0,0 +1,188 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.test.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.restlet.Application;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.application.CallMetrics;
+import org.restlet.engine.application.MetricsJmx;
+import org.restlet.engine.application.MetricsRestlet;
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+import org.restlet.routing.Router;
+import org.restlet.service.MetricsService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the {@link MetricsService}.
+ */
+public class MetricsServiceTestCase extends RestletTestCase {
+
+    /**
+     * Resource answering GET requests only.
+     */
+    public static class UserResource extends ServerResource {
+        @Get
+        public String represent() {
+            return "user";
+        }
+    }
+
+    private Application application;
+
+    private MetricsService service;
+
+    private Response handle(Method method, String path) {
+        Request request = new Request(method, "http://localhost" + path);
+        request.getResourceRef().setBaseRef("http://localhost");
+        Response response = new Response(request);
+        this.application.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.application = new Application() {
+            @Override
+            public Restlet createInboundRoot() {
+                Router router = new Router(getContext());
+                router.attach("/users/{id}", UserResource.class);
+                router.attach("/fail", new Restlet() {
+                    @Override
+                    public void handle(Request request, Response response) {
+                        response.setStatus(Status.SERVER_ERROR_INTERNAL);
+                    }
+                });
+                router.attach("/metrics", new MetricsRestlet(getContext(),
+                        getMetricsService()));
+                return router;
+            }
+        };
+        this.service = this.application.getMetricsService();
+        this.service.setEnabled(true);
+        this.service.setJmxEnabled(false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.application.stop();
+        super.tearDown();
+    }
+
+    public void testDisabled() throws Exception {
+        this.service.setEnabled(false);
+        this.application.start();
+        handle(Method.GET, "/users/1");
+        assertTrue(this.service.getRouteMetrics().isEmpty());
+        assertTrue(this.service.getResourceMetrics().isEmpty());
+    }
+
+    public void testJmx() throws Exception {
+        this.service.setJmxEnabled(true);
+        this.application.start();
+        handle(Method.GET, "/users/1");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = MetricsJmx.getObjectName(this.service, "route",
+                "/users/{id}", "GET");
+        assertTrue(server.isRegistered(name));
+        assertEquals(1L, server.getAttribute(name, "Requests"));
+        assertEquals(0, server.getAttribute(name, "RequestsInFlight"));
+
+        this.application.stop();
+        assertFalse(server.isRegistered(name));
+    }
+
+    public void testMerge() throws Exception {
+        CallMetrics first = new CallMetrics();
+        CallMetrics second = new CallMetrics();
+        first.onCallCompleted(first.onCallStarted(), Status.SUCCESS_OK);
+        second.onCallCompleted(second.onCallStarted(),
+                Status.CLIENT_ERROR_NOT_FOUND);
+        second.onCallCompleted(second.onCallStarted(), null);
+
+        first.merge(second);
+        assertEquals(3, first.getRequests());
+        assertEquals(1, first.getSuccesses());
+        assertEquals(1, first.getClientErrors());
+        assertEquals(0, first.getRequestsInFlight());
+    }
+
+    public void testMetrics() throws Exception {
+        this.application.start();
+        handle(Method.GET, "/users/1");
+        handle(Method.GET, "/users/2");
+        handle(Method.DELETE, "/users/1");
+        handle(Method.GET, "/fail");
+
+        Map<String, CallMetrics> route = this.service.getRouteMetrics().get(
+                "/users/{id}");
+        assertEquals(2, route.get("GET").getRequests());
+        assertEquals(2, route.get("GET").getSuccesses());
+        assertEquals(0, route.get("GET").getRequestsInFlight());
+        assertEquals(1, route.get("DELETE").getClientErrors());
+        assertEquals(1, this.service.getRouteMetrics().get("/fail").get("GET")
+                .getServerErrors());
+
+        Map<String, CallMetrics> resource = this.service.getResourceMetrics()
+                .get(UserResource.class.getName());
+        assertEquals(2, resource.get("GET").getSuccesses());
+        assertEquals(1, resource.get("DELETE").getClientErrors());
+        assertEquals(1, this.service.getResourceMetrics().size());
+    }
+
+    public void testRestlet() throws Exception {
+        this.application.start();
+        handle(Method.GET, "/users/1");
+
+        String json = handle(Method.GET, "/metrics").getEntityAsText();
+        assertTrue(json.startsWith("{\"routes\":{"));
+        assertTrue(json.contains("\"/users/{id}\":{\"GET\":{\"requests\":1,"));
+        assertTrue(json.contains("\"resources\":{\""
+                + UserResource.class.getName() + "\":{\"GET\":{"));
+        assertEquals(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED,
+                handle(Method.POST, "/metrics").getStatus());
+    }
+
+}
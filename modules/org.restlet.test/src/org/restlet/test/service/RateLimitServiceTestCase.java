@@ -0,0 +1,177 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.service;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ChallengeScheme;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.application.RateLimitFilter;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.service.RateLimitService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the {@link RateLimitService} and its {@link RateLimitFilter}.
+ */
+public class RateLimitServiceTestCase extends RestletTestCase {
+
+    private RateLimitFilter filter;
+
+    private RateLimitService service;
+
+    private Response call(String address, String identifier) {
+        Request request = new Request(Method.GET, "http://localhost/resource");
+        request.getClientInfo().setAddress(address);
+
+        if (identifier != null) {
+            request.setChallengeResponse(new ChallengeResponse(
+                    ChallengeScheme.HTTP_BASIC, identifier, "secret"));
+        }
+
+        Response response = new Response(request);
+        this.filter.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.service = new RateLimitService();
+        this.service.setLimit(3);
+        this.service.setPeriod(60000);
+        createFilter();
+    }
+
+    private void createFilter() {
+        this.filter = new RateLimitFilter(null, this.service);
+        this.filter.setNext(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setStatus(Status.SUCCESS_NO_CONTENT);
+            }
+        });
+    }
+
+    public void testCustomKey() throws Exception {
+        this.service = new RateLimitService() {
+            @Override
+            public String getKey(Request request) {
+                return request.getResourceRef().getHostDomain();
+            }
+        };
+        this.service.setLimit(1);
+        createFilter();
+
+        assertEquals(Status.SUCCESS_NO_CONTENT, call("1.2.3.4", null)
+                .getStatus());
+        assertEquals(Status.CLIENT_ERROR_TOO_MANY_REQUESTS,
+                call("5.6.7.8", null).getStatus());
+    }
+
+    public void testEviction() throws Exception {
+        this.service.setPeriod(10);
+
+        for (int i = 0; i < 10; i++) {
+            call("10.0.0." + i, null);
+        }
+
+        assertEquals(10, this.filter.getBucketCount());
+        Thread.sleep(1100);
+        call("10.0.0.1", null);
+        assertEquals(1, this.filter.getBucketCount());
+    }
+
+    public void testIdentifier() throws Exception {
+        this.service.setKeyMode(RateLimitService.KEY_IDENTIFIER);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Status.SUCCESS_NO_CONTENT, call("10.0.0." + i,
+                    "scott").getStatus());
+        }
+
+        assertEquals(Status.CLIENT_ERROR_TOO_MANY_REQUESTS,
+                call("10.0.0.9", "scott").getStatus());
+        assertEquals(Status.SUCCESS_NO_CONTENT, call("10.0.0.9", "tiger")
+                .getStatus());
+        assertEquals(Status.SUCCESS_NO_CONTENT, call("10.0.0.9", null)
+                .getStatus());
+    }
+
+    public void testLimit() throws Exception {
+        for (int i = 2; i >= 0; i--) {
+            Response response = call("1.2.3.4", null);
+            assertEquals(Status.SUCCESS_NO_CONTENT, response.getStatus());
+            assertEquals("3", response.getHeaders().getFirstValue(
+                    HeaderConstants.HEADER_RATELIMIT_LIMIT));
+            assertEquals(Integer.toString(i), response.getHeaders()
+                    .getFirstValue(HeaderConstants.HEADER_RATELIMIT_REMAINING));
+        }
+
+        Response response = call("1.2.3.4", null);
+        assertEquals(Status.CLIENT_ERROR_TOO_MANY_REQUESTS,
+                response.getStatus());
+        assertNotNull(response.getRetryAfter());
+        assertTrue(response.getRetryAfter().getTime() > System
+                .currentTimeMillis() + 10000);
+        assertEquals("0", response.getHeaders().getFirstValue(
+                HeaderConstants.HEADER_RATELIMIT_REMAINING));
+        assertEquals("60", response.getHeaders().getFirstValue(
+                HeaderConstants.HEADER_RATELIMIT_RESET));
+
+        // Other clients aren't limited
+        assertEquals(Status.SUCCESS_NO_CONTENT, call("5.6.7.8", null)
+                .getStatus());
+    }
+
+    public void testRefill() throws Exception {
+        this.service.setPeriod(300);
+
+        for (int i = 0; i < 3; i++) {
+            call("1.2.3.4", null);
+        }
+
+        assertEquals(Status.CLIENT_ERROR_TOO_MANY_REQUESTS,
+                call("1.2.3.4", null).getStatus());
+        Thread.sleep(120);
+        assertEquals(Status.SUCCESS_NO_CONTENT, call("1.2.3.4", null)
+                .getStatus());
+        assertEquals(Status.CLIENT_ERROR_TOO_MANY_REQUESTS,
+                call("1.2.3.4", null).getStatus());
+    }
+
+}
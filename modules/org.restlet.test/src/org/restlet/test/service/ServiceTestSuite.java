@@ -42,11 +42,17 @@ public class ServiceTestSuite {
         TestSuite suite = new TestSuite("Service package");
 
         // $JUnit-BEGIN$
+        suite.addTestSuite(ConcurrencyLimitServiceTestCase.class);
         suite.addTestSuite(ConnegServiceTestCase.class);
+        suite.addTestSuite(LogServiceTestCase.class);
         suite.addTestSuite(MetadataServiceTestCase.class);
+        suite.addTestSuite(MetricsServiceTestCase.class);
+        suite.addTestSuite(RateLimitServiceTestCase.class);
         // [ifndef jee]
         suite.addTestSuite(StatusServiceTestCase.class);
         // [enddef]
+        suite.addTestSuite(TagServiceTestCase.class);
+        suite.addTestSuite(TaskServiceTestCase.class);
 
         // $JUnit-END$
 
@@ -0,0 +1,212 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ChallengeScheme;
+import org.restlet.data.Dimension;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Preference;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.application.TagFilter;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.service.TagService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the {@link TagService} and its {@link TagFilter}.
+ */
+public class TagServiceTestCase extends RestletTestCase {
+
+    /**
+     * Resource Restlet counting its calls and answering with the current
+     * version of its resource, without tag.
+     */
+    private static class Origin extends Restlet {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private volatile boolean privateInfo;
+
+        private volatile int version = 1;
+
+        @Override
+        public void handle(Request request, Response response) {
+            this.calls.incrementAndGet();
+
+            if (Method.GET.equals(request.getMethod())) {
+                List<Preference<MediaType>> accepted = request.getClientInfo()
+                        .getAcceptedMediaTypes();
+                MediaType type = accepted.isEmpty() ? MediaType.TEXT_PLAIN
+                        : accepted.get(0).getMetadata();
+                response.setEntity(new StringRepresentation("version "
+                        + this.version + " as " + type, type));
+                response.getDimensions().add(Dimension.MEDIA_TYPE);
+
+                if (this.privateInfo) {
+                    response.getCacheDirectives().add(
+                            CacheDirective.privateInfo());
+                }
+            } else {
+                this.version++;
+                response.setStatus(Status.SUCCESS_NO_CONTENT);
+            }
+        }
+    }
+
+    private TagFilter filter;
+
+    private Origin origin;
+
+    private TagService service;
+
+    private Response get(MediaType mediaType, Tag noneMatch) {
+        return get(mediaType, noneMatch, null);
+    }
+
+    private Response get(MediaType mediaType, Tag noneMatch, String user) {
+        Request request = new Request(Method.GET, "http://localhost/resource");
+
+        if (user != null) {
+            request.setChallengeResponse(new ChallengeResponse(
+                    ChallengeScheme.HTTP_BASIC, user, "secret"));
+        }
+
+        if (mediaType != null) {
+            request.getClientInfo().accept(mediaType);
+        }
+
+        if (noneMatch != null) {
+            request.getConditions().getNoneMatch().add(noneMatch);
+        }
+
+        Response response = new Response(request);
+        this.filter.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.origin = new Origin();
+        this.service = new TagService();
+        this.filter = new TagFilter(null, this.service);
+        this.filter.setNext(this.origin);
+    }
+
+    public void testAuthenticated() throws Exception {
+        Tag tag = get(null, null, "alice").getEntity().getTag();
+        assertNotNull(tag);
+
+        // Not remembered, so the origin is invoked again
+        Response response = get(null, tag);
+        assertEquals(2, this.origin.calls.get());
+        assertEquals(Status.REDIRECTION_NOT_MODIFIED, response.getStatus());
+
+        // Never answered from remembered tags either
+        get(null, null);
+        response = get(null, tag, "bob");
+        assertEquals(4, this.origin.calls.get());
+        assertEquals(Status.REDIRECTION_NOT_MODIFIED, response.getStatus());
+    }
+
+    public void testComputedTag() throws Exception {
+        Response response = get(null, null);
+        Tag tag = response.getEntity().getTag();
+        assertNotNull(tag);
+        assertFalse(tag.isWeak());
+        assertEquals("version 1 as text/plain", response.getEntityAsText());
+        assertEquals(MediaType.TEXT_PLAIN, response.getEntity().getMediaType());
+        assertEquals(tag, get(null, null).getEntity().getTag());
+    }
+
+    public void testInvalidation() throws Exception {
+        Tag tag = get(null, null).getEntity().getTag();
+        Request request = new Request(Method.PUT, "http://localhost/resource",
+                new StringRepresentation("update"));
+        this.filter.handle(request, new Response(request));
+
+        Response response = get(null, tag);
+        assertEquals(3, this.origin.calls.get());
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("version 2 as text/plain", response.getEntityAsText());
+        assertFalse(tag.equals(response.getEntity().getTag()));
+    }
+
+    public void testNotModified() throws Exception {
+        this.service.setTagLifetime(0);
+        Tag tag = get(null, null).getEntity().getTag();
+
+        Response response = get(null, tag);
+        assertEquals(2, this.origin.calls.get());
+        assertEquals(Status.REDIRECTION_NOT_MODIFIED, response.getStatus());
+    }
+
+    public void testPrivate() throws Exception {
+        this.origin.privateInfo = true;
+        Tag tag = get(null, null).getEntity().getTag();
+        assertNotNull(tag);
+
+        Response response = get(null, tag);
+        assertEquals(2, this.origin.calls.get());
+        assertEquals(Status.REDIRECTION_NOT_MODIFIED, response.getStatus());
+    }
+
+    public void testShortCircuit() throws Exception {
+        Tag tag = get(null, null).getEntity().getTag();
+
+        Response response = get(null, tag);
+        assertEquals(1, this.origin.calls.get());
+        assertEquals(Status.REDIRECTION_NOT_MODIFIED, response.getStatus());
+        assertEquals(tag, response.getEntity().getTag());
+    }
+
+    public void testVariants() throws Exception {
+        Tag plain = get(MediaType.TEXT_PLAIN, null).getEntity().getTag();
+        Response response = get(MediaType.TEXT_XML, plain);
+        assertEquals(2, this.origin.calls.get());
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("version 1 as text/xml", response.getEntityAsText());
+    }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.restlet.engine.log.LoggingThreadFactory;
+import org.restlet.service.TaskService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the task service.
+ */
+public class TaskServiceTestCase extends RestletTestCase {
+
+    /**
+     * Submits more blocking tasks than the core pool size and returns the
+     * number of tasks that could run concurrently.
+     * 
+     * @param taskService
+     *            The task service to test.
+     * @param taskCount
+     *            The number of tasks to submit.
+     * @return The number of tasks that could run concurrently.
+     */
+    private long runBlockingTasks(TaskService taskService, int taskCount)
+            throws Exception {
+        final CountDownLatch started = new CountDownLatch(taskCount);
+        final CountDownLatch released = new CountDownLatch(1);
+
+        for (int i = 0; i < taskCount; i++) {
+            taskService.submit(new Runnable() {
+                public void run() {
+                    started.countDown();
+
+                    try {
+                        released.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+
+        started.await(2, TimeUnit.SECONDS);
+        long result = taskCount - started.getCount();
+        released.countDown();
+        return result;
+    }
+
+    public void testPlatformThreads() throws Exception {
+        TaskService taskService = new TaskService(2);
+        taskService.setShutdownAllowed(true);
+        taskService.start();
+
+        try {
+            assertFalse(taskService.isVirtualThreads());
+            assertEquals(2, runBlockingTasks(taskService, 10));
+        } finally {
+            taskService.shutdownNow();
+        }
+    }
+
+    public void testVirtualThreads() throws Exception {
+        boolean supported = new LoggingThreadFactory(
+                Logger.getLogger(getClass().getName()), true, true)
+                .isVirtual();
+        TaskService taskService = new TaskService(2);
+        taskService.setShutdownAllowed(true);
+        taskService.setVirtualThreads(true);
+        taskService.start();
+
+        try {
+            assertEquals(supported ? 100 : 2,
+                    runBlockingTasks(taskService, 100));
+
+            Future<?> future = taskService.submit(new Runnable() {
+                public void run() {
+                }
+            });
+            future.get(2, TimeUnit.SECONDS);
+            assertTrue(future.isDone());
+        } finally {
+            taskService.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.util;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Uniform;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.resource.ClientResource;
+import org.restlet.test.RestletTestCase;
+import org.restlet.util.RetryPolicy;
+
+/**
+ * Test case for the {@link RetryPolicy} class and its use by
+ * {@link ClientResource}.
+ */
+public class RetryPolicyTestCase extends RestletTestCase {
+
+    /**
+     * Restlet failing a given number of times, then succeeding. Asynchronous
+     * calls are answered from another thread, like a client connector does.
+     */
+    private static class FlakyRestlet extends Restlet {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private final int failures;
+
+        private volatile Thread lastThread;
+
+        public FlakyRestlet(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public void handle(final Request request, final Response response) {
+            this.lastThread = Thread.currentThread();
+            boolean failing = this.calls.incrementAndGet() <= this.failures;
+            response.setStatus(failing ? Status.SERVER_ERROR_SERVICE_UNAVAILABLE
+                    : Status.SUCCESS_OK);
+
+            if (request.isAsynchronous()) {
+                new Thread() {
+                    public void run() {
+                        request.getOnResponse().handle(request, response);
+                    }
+                }.start();
+            }
+        }
+    }
+
+    private static Response response(Method method, Status status) {
+        Request request = new Request(method, "http://localhost/");
+        Response result = new Response(request);
+        result.setStatus(status);
+        return result;
+    }
+
+    public void testAsynchronousRetry() throws Exception {
+        FlakyRestlet next = new FlakyRestlet(2);
+        ClientResource resource = new ClientResource("http://localhost/");
+        resource.setNext(next);
+        resource.getRetryPolicy().setInitialDelay(10L);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Status[] status = new Status[1];
+        final Thread caller = Thread.currentThread();
+        final boolean[] callerBlocked = new boolean[1];
+        resource.setOnResponse(new Uniform() {
+            public void handle(Request request, Response response) {
+                status[0] = response.getStatus();
+                callerBlocked[0] = (Thread.currentThread() == caller);
+                latch.countDown();
+            }
+        });
+        resource.get();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(Status.SUCCESS_OK, status[0]);
+        assertEquals(3, next.calls.get());
+        assertFalse(callerBlocked[0]);
+        assertNotSame(caller, next.lastThread);
+    }
+
+    public void testBudget() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setBudgetSize(2);
+        long now = System.currentTimeMillis();
+
+        assertTrue(policy.acquire(0, now));
+        assertTrue(policy.acquire(0, now));
+        assertFalse(policy.acquire(0, now));
+
+        // Five calls deposit one retry
+        for (int i = 0; i < 5; i++) {
+            policy.recordCall();
+        }
+
+        assertTrue(policy.acquire(0, now));
+        assertFalse(policy.acquire(0, now));
+
+        policy.setBudgetRatio(0);
+        assertTrue(policy.acquire(0, now));
+    }
+
+    public void testCopy() {
+        ClientResource resource = new ClientResource("http://localhost/");
+        RetryPolicy policy = resource.getRetryPolicy();
+        policy.setBudgetSize(2);
+        policy.setMaxRetries(5);
+        policy.setJitter(0.5D);
+
+        // The settings are copied
+        ClientResource copy = new ClientResource(resource);
+        RetryPolicy copied = copy.getRetryPolicy();
+        assertNotSame(policy, copied);
+        assertEquals(5, copied.getMaxRetries());
+        assertEquals(0.5D, copied.getJitter());
+        assertEquals(2, copied.getBudgetSize());
+        copied.setMaxRetries(1);
+        assertEquals(5, policy.getMaxRetries());
+
+        // The budget is shared
+        long now = System.currentTimeMillis();
+        assertTrue(policy.acquire(0, now));
+        assertTrue(copied.acquire(0, now));
+        assertFalse(policy.acquire(0, now));
+        assertFalse(copied.acquire(0, now));
+    }
+
+    public void testDeadline() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setTimeout(1000L);
+        long now = System.currentTimeMillis();
+
+        assertTrue(policy.acquire(100L, now));
+        assertFalse(policy.acquire(100L, now - 950L));
+        assertFalse(policy.acquire(policy.getMaxDelay() + 1, now));
+    }
+
+    public void testDelays() {
+        RetryPolicy policy = new RetryPolicy(5, 100L);
+        policy.setMaxDelay(1000L);
+
+        for (int i = 0; i < 20; i++) {
+            long delay = policy.getDelay(null, 0);
+            assertTrue(delay >= 80L && delay <= 100L);
+            delay = policy.getDelay(null, 2);
+            assertTrue(delay >= 320L && delay <= 400L);
+            delay = policy.getDelay(null, 10);
+            assertTrue(delay >= 800L && delay <= 1000L);
+        }
+
+        Response response = response(Method.GET,
+                Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+        response.setRetryAfter(new Date(System.currentTimeMillis() + 600000L));
+        assertTrue(policy.getDelay(response, 0) > 500000L);
+        assertFalse(policy.acquire(policy.getDelay(response, 0),
+                System.currentTimeMillis()));
+    }
+
+    public void testLongInitialDelay() {
+        RetryPolicy policy = new RetryPolicy(2, 60000L);
+        assertEquals(60000L, policy.getMaxDelay());
+
+        policy = new RetryPolicy();
+        policy.setJitter(0D);
+        policy.setInitialDelay(60000L);
+        assertEquals(60000L, policy.getMaxDelay());
+        assertEquals(60000L, policy.getDelay(null, 0));
+        assertEquals(60000L, policy.getDelay(null, 1));
+
+        // A shorter initial delay keeps the maximum delay
+        policy.setInitialDelay(1000L);
+        assertEquals(60000L, policy.getMaxDelay());
+    }
+
+    public void testRetryable() {
+        RetryPolicy policy = new RetryPolicy();
+        Response response = response(Method.GET,
+                Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+        assertTrue(policy.isRetryable(response.getRequest(), response, 0));
+        assertFalse(policy.isRetryable(response.getRequest(), response, 2));
+
+        response = response(Method.GET, Status.CLIENT_ERROR_NOT_FOUND);
+        assertFalse(policy.isRetryable(response.getRequest(), response, 0));
+
+        response = response(Method.POST,
+                Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+        assertFalse(policy.isRetryable(response.getRequest(), response, 0));
+
+        // The request was never sent
+        response = response(Method.POST, Status.CONNECTOR_ERROR_CONNECTION);
+        assertTrue(policy.isRetryable(response.getRequest(), response, 0));
+
+        policy.setRetryingNonIdempotent(true);
+        response = response(Method.POST,
+                Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+        assertTrue(policy.isRetryable(response.getRequest(), response, 0));
+    }
+
+    public void testSynchronousRetry() {
+        FlakyRestlet next = new FlakyRestlet(1);
+        ClientResource resource = new ClientResource("http://localhost/");
+        resource.setNext(next);
+        resource.setRetryDelay(10L);
+        resource.get();
+
+        assertEquals(Status.SUCCESS_OK, resource.getStatus());
+        assertEquals(2, next.calls.get());
+    }
+
+}
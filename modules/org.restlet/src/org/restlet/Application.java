@@ -44,14 +44,19 @@ import org.restlet.resource.ServerResource;
 import org.restlet.routing.Router;
 import org.restlet.routing.VirtualHost;
 import org.restlet.security.Role;
+import org.restlet.service.CacheService;
+import org.restlet.service.ConcurrencyLimitService;
 import org.restlet.service.ConnectorService;
 import org.restlet.service.ConnegService;
 import org.restlet.service.ConverterService;
 import org.restlet.service.DecoderService;
 import org.restlet.service.EncoderService;
 import org.restlet.service.MetadataService;
+import org.restlet.service.MetricsService;
 import org.restlet.service.RangeService;
+import org.restlet.service.RateLimitService;
 import org.restlet.service.StatusService;
+import org.restlet.service.TagService;
 import org.restlet.service.TunnelService;
 import org.restlet.util.ServiceList;
 
@@ -65,6 +70,10 @@ import org.restlet.util.ServiceList;
  * Applications also have many useful services associated. Most are enabled by
  * default and are available as properties that can be eventually overridden:
  * <ul>
+ * <li>"cacheService" to cache the responses of the application (disabled by
+ * default).</li>
+ * <li>"concurrencyLimitService" to limit the number of concurrent calls with an
+ * adaptive limit (disabled by default).</li>
  * <li>"connectorService" to declare necessary client and server connectors.</li>
  * <li>"converterService" to convert between regular objects and
  * representations.</li>
@@ -74,8 +83,14 @@ import org.restlet.util.ServiceList;
  * (disabled by default).</li>
  * <li>"metadataService" to provide access to metadata and their associated
  * extension names.</li>
+ * <li>"metricsService" to record latency and status metrics per route and
+ * resource (disabled by default).</li>
  * <li>"rangeService" to automatically exposes ranges of response entities.</li>
+ * <li>"rateLimitService" to limit the rate of the requests of each client
+ * (disabled by default).</li>
  * <li>"statusService" to provide common representations for exception status.</li>
+ * <li>"tagService" to automatically compute entity tags and answer conditional
+ * requests (disabled by default).</li>
  * <li>"taskService" to run tasks asynchronously (disabled by default).</li>
  * <li>"tunnelService" to tunnel method names or client preferences via query
  * parameters.</li>
@@ -161,11 +176,16 @@ public class Application extends Restlet {
         this.inboundRoot = null;
         this.roles = new CopyOnWriteArrayList<Role>();
         this.services = new ServiceList(context);
+        this.services.add(new RateLimitService(false));
+        this.services.add(new ConcurrencyLimitService(false));
         this.services.add(new TunnelService(true, true));
         this.services.add(new StatusService());
         this.services.add(new DecoderService());
         this.services.add(new EncoderService(false));
         this.services.add(new RangeService());
+        this.services.add(new CacheService(false));
+        this.services.add(new TagService(false));
+        this.services.add(new MetricsService(false));
         this.services.add(new ConnectorService());
         this.services.add(new ConnegService());
         this.services.add(new ConverterService());
@@ -206,6 +226,24 @@ public class Application extends Restlet {
         return getHelper().getFirstOutboundFilter();
     }
 
+    /**
+     * Returns the cache service. The service is disabled by default.
+     * 
+     * @return The cache service.
+     */
+    public CacheService getCacheService() {
+        return getServices().get(CacheService.class);
+    }
+
+    /**
+     * Returns the concurrency limit service.
+     * 
+     * @return The concurrency limit service.
+     */
+    public ConcurrencyLimitService getConcurrencyLimitService() {
+        return getServices().get(ConcurrencyLimitService.class);
+    }
+
     /**
      * Returns the connector service. The service is enabled by default.
      * 
@@ -287,6 +325,15 @@ public class Application extends Restlet {
         return getServices().get(MetadataService.class);
     }
 
+    /**
+     * Returns the metrics service. The service is disabled by default.
+     * 
+     * @return The metrics service.
+     */
+    public MetricsService getMetricsService() {
+        return getServices().get(MetricsService.class);
+    }
+
     /**
      * Returns the outbound root Restlet.
      * 
@@ -313,6 +360,15 @@ public class Application extends Restlet {
         return getServices().get(RangeService.class);
     }
 
+    /**
+     * Returns the rate limit service.
+     * 
+     * @return The rate limit service.
+     */
+    public RateLimitService getRateLimitService() {
+        return getServices().get(RateLimitService.class);
+    }
+
     /**
      * Returns the role associated to the given name.
      * 
@@ -357,6 +413,15 @@ public class Application extends Restlet {
         return getServices().get(StatusService.class);
     }
 
+    /**
+     * Returns the tag service. The service is disabled by default.
+     * 
+     * @return The tag service.
+     */
+    public TagService getTagService() {
+        return getServices().get(TagService.class);
+    }
+
     /**
      * Returns a task service to run concurrent tasks. The service is enabled by
      * default.
@@ -388,6 +453,27 @@ public class Application extends Restlet {
         }
     }
 
+    /**
+     * Sets the cache service.
+     * 
+     * @param cacheService
+     *            The cache service.
+     */
+    public void setCacheService(CacheService cacheService) {
+        getServices().set(cacheService);
+    }
+
+    /**
+     * Sets the concurrency limit service.
+     * 
+     * @param concurrencyLimitService
+     *            The concurrency limit service.
+     */
+    public void setConcurrencyLimitService(
+            ConcurrencyLimitService concurrencyLimitService) {
+        getServices().set(concurrencyLimitService);
+    }
+
     /**
      * Sets the connector service.
      * 
@@ -480,6 +566,16 @@ public class Application extends Restlet {
         getServices().set(metadataService);
     }
 
+    /**
+     * Sets the metrics service.
+     * 
+     * @param metricsService
+     *            The metrics service.
+     */
+    public void setMetricsService(MetricsService metricsService) {
+        getServices().set(metricsService);
+    }
+
     /**
      * Sets the outbound root Resource class.
      * 
@@ -515,6 +611,16 @@ public class Application extends Restlet {
         getServices().set(rangeService);
     }
 
+    /**
+     * Sets the rate limit service.
+     * 
+     * @param rateLimitService
+     *            The rate limit service.
+     */
+    public void setRateLimitService(RateLimitService rateLimitService) {
+        getServices().set(rateLimitService);
+    }
+
     /**
      * Sets the modifiable list of roles. This method clears the current list
      * and adds all entries in the parameter list.
@@ -544,6 +650,16 @@ public class Application extends Restlet {
         getServices().set(statusService);
     }
 
+    /**
+     * Sets the tag service.
+     * 
+     * @param tagService
+     *            The tag service.
+     */
+    public void setTagService(TagService tagService) {
+        getServices().set(tagService);
+    }
+
     /**
      * Sets the task service.
      * 
@@ -145,6 +145,19 @@ public class Client extends Connector {
         this(Protocol.valueOf(protocolName));
     }
 
+    // [ifndef gwt] method
+    @Override
+    public org.restlet.engine.connector.ConnectorMetrics getMetrics() {
+        org.restlet.engine.connector.ConnectorMetrics result = null;
+
+        if (getHelper() instanceof org.restlet.engine.connector.ConnectorHelper) {
+            result = ((org.restlet.engine.connector.ConnectorHelper<?>) getHelper())
+                    .getMetrics();
+        }
+
+        return result;
+    }
+
     /**
      * Returns the helper provided by the implementation.
      * 
@@ -184,6 +197,8 @@ public class Client extends Connector {
         if (isStopped()) {
             if (getHelper() != null) {
                 getHelper().start();
+                // [ifndef android,gae,gwt] instruction
+                org.restlet.engine.connector.ConnectorMetricsJmx.register(this);
             }
 
             // Must be invoked as a last step
@@ -198,6 +213,8 @@ public class Client extends Connector {
             super.stop();
 
             if (getHelper() != null) {
+                // [ifndef android,gae,gwt] instruction
+                org.restlet.engine.connector.ConnectorMetricsJmx.unregister(this);
                 getHelper().stop();
             }
         }
@@ -95,6 +95,20 @@ public abstract class Connector extends Restlet {
         }
     }
 
+    // [ifndef gwt] method
+    /**
+     * Returns the runtime metrics of the underlying connector helper, such as
+     * the connections opened, the bytes exchanged or the latency of calls.
+     * They can also be published as a JMX MBean by setting the "metricsJmx"
+     * parameter of the connector's context to "true". By default, returns
+     * null.
+     * 
+     * @return The runtime metrics or null if they aren't available.
+     */
+    public org.restlet.engine.connector.ConnectorMetrics getMetrics() {
+        return null;
+    }
+
     /**
      * Returns the modifiable list of protocols simultaneously supported.
      * 
@@ -133,6 +133,10 @@ public class Request extends Message {
     /** The application root reference. */
     private volatile Reference rootRef;
 
+    // [ifndef gwt] member
+    /** The timings of the processing stages, if enabled. */
+    private volatile org.restlet.engine.util.CallTimings timings;
+
     /**
      * Constructor.
      */
@@ -181,6 +185,8 @@ public class Request extends Message {
         this.referrerRef = null;
         this.resourceRef = resourceRef;
         this.rootRef = null;
+        // [ifndef gwt] instruction
+        this.timings = null;
     }
 
     /**
@@ -584,6 +590,18 @@ public class Request extends Message {
         return this.rootRef;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Returns the timings of the processing stages of the request. They are
+     * only set by server connectors whose "timings" parameter is set, and
+     * updated by the components crossed by the request.
+     * 
+     * @return The timings of the processing stages or null.
+     */
+    public org.restlet.engine.util.CallTimings getTimings() {
+        return this.timings;
+    }
+
     /**
      * Indicates if the request is asynchronous. The test consist in verifying
      * that the {@link #getOnResponse()} method returns a callback object.
@@ -897,6 +915,17 @@ public class Request extends Message {
         this.rootRef = rootRef;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Sets the timings of the processing stages of the request.
+     * 
+     * @param timings
+     *            The timings of the processing stages or null.
+     */
+    public void setTimings(org.restlet.engine.util.CallTimings timings) {
+        this.timings = timings;
+    }
+
     /**
      * Displays a synthesis of the request like an HTTP request line.
      * 
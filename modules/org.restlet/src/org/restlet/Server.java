@@ -481,6 +481,19 @@ public class Server extends Connector {
         return (Integer) getHelper().getAttributes().get("ephemeralPort");
     }
 
+    // [ifndef gwt] method
+    @Override
+    public org.restlet.engine.connector.ConnectorMetrics getMetrics() {
+        org.restlet.engine.connector.ConnectorMetrics result = null;
+
+        if (getHelper() instanceof org.restlet.engine.connector.ConnectorHelper) {
+            result = ((org.restlet.engine.connector.ConnectorHelper<?>) getHelper())
+                    .getMetrics();
+        }
+
+        return result;
+    }
+
     /**
      * Returns the internal server.
      * 
@@ -586,6 +599,8 @@ public class Server extends Connector {
         if (isStopped()) {
             if (getHelper() != null) {
                 getHelper().start();
+                // [ifndef android,gae,gwt] instruction
+                org.restlet.engine.connector.ConnectorMetricsJmx.register(this);
             }
 
             // Must be invoked as a last step
@@ -600,6 +615,8 @@ public class Server extends Connector {
             super.stop();
 
             if (getHelper() != null) {
+                // [ifndef android,gae,gwt] instruction
+                org.restlet.engine.connector.ConnectorMetricsJmx.unregister(this);
                 getHelper().stop();
             }
         }
@@ -609,6 +609,10 @@ public final class MediaType extends Metadata {
     public static final MediaType TEXT_DAT = register("text/x-fixed-field",
             "Fixed-width Values");
 
+    // [ifndef gwt] member
+    public static final MediaType TEXT_EVENT_STREAM = register(
+            "text/event-stream", "Server-Sent Events stream");
+
     public static final MediaType TEXT_HTML = register("text/html",
             "HTML document");
 
@@ -111,6 +111,9 @@ public abstract class HttpClientHelper extends ClientHelper {
 
     @Override
     public void handle(Request request, Response response) {
+        // [ifndef gwt] instruction
+        long startTime = getMetrics().onRequestStarted();
+
         try {
             ClientCall clientCall = getAdapter().toSpecific(this, request);
             getAdapter().commit(clientCall, request, response);
@@ -119,6 +122,9 @@ public abstract class HttpClientHelper extends ClientHelper {
                     "Error while handling an HTTP client call", e);
             response.setStatus(Status.CONNECTOR_ERROR_INTERNAL, e);
         }
+
+        // [ifndef gwt] instruction
+        getMetrics().onRequestCompleted(startTime);
     }
 
     /**
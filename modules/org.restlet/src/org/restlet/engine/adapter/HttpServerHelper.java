@@ -40,6 +40,7 @@ import org.restlet.Context;
 import org.restlet.Server;
 import org.restlet.engine.Engine;
 import org.restlet.engine.connector.ServerHelper;
+import org.restlet.engine.util.CallTimings;
 
 /**
  * Base HTTP server connector. Here is the list of parameters that are
@@ -68,6 +69,15 @@ import org.restlet.engine.connector.ServerHelper;
  * <td>Class name of the adapter of low-level HTTP calls into high level
  * requests and responses.</td>
  * </tr>
+ * <tr>
+ * <td>timings</td>
+ * <td>boolean</td>
+ * <td>false</td>
+ * <td>Indicates if the time spent by calls in each processing stage is
+ * measured. The timings are returned in a "Server-Timing" response header,
+ * added to the access log entries and recorded in the metrics of the
+ * connector. See {@link CallTimings}.</td>
+ * </tr>
  * </table>
  * 
  * @author Jerome Louvel
@@ -147,10 +157,20 @@ public class HttpServerHelper extends ServerHelper {
      */
     public void handle(ServerCall httpCall) {
         try {
+            CallTimings timings = isTimed() ? new CallTimings() : null;
             HttpRequest request = getAdapter().toRequest(httpCall);
+            request.setTimings(timings);
+
             HttpResponse response = new HttpResponse(httpCall, request);
             handle(request, response);
+            long writeStartTime = System.nanoTime();
             getAdapter().commit(response);
+            long writeTime = System.nanoTime() - writeStartTime;
+            getMetrics().getResponseWriteTime().record(writeTime);
+
+            if (timings != null) {
+                timings.add(CallTimings.STAGE_WRITE, writeTime);
+            }
         } catch (Exception e) {
             getLogger().log(Level.WARNING,
                     "Error while handling an HTTP server call: ",
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.application;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.restlet.data.Status;
+import org.restlet.engine.util.LatencyHistogram;
+
+// [excludes gwt]
+/**
+ * Runtime metrics of the calls handled by a route or a resource for a given
+ * method. Recording a call only updates a few atomic counters and the
+ * fixed-size latency histogram, so it doesn't allocate any object.<br>
+ * <br>
+ * Metrics recorded separately, for example by several applications, can be
+ * aggregated with the {@link #merge(CallMetrics)} method.
+ * 
+ * @see org.restlet.service.MetricsService
+ */
+public class CallMetrics implements CallMetricsMBean {
+
+    /** The latency of the calls. */
+    private final LatencyHistogram latency;
+
+    /** The number of calls currently handled. */
+    private final AtomicInteger requestsInFlight;
+
+    /**
+     * The count of calls per status class, indexed by the first digit of the
+     * status code, other codes being counted at index zero.
+     */
+    private final AtomicLongArray statusClasses;
+
+    /**
+     * Constructor.
+     */
+    public CallMetrics() {
+        this.latency = new LatencyHistogram();
+        this.requestsInFlight = new AtomicInteger();
+        this.statusClasses = new AtomicLongArray(6);
+    }
+
+    public long getClientErrors() {
+        return this.statusClasses.get(4);
+    }
+
+    public long getInformational() {
+        return this.statusClasses.get(1);
+    }
+
+    /**
+     * Returns the latency histogram of the calls.
+     * 
+     * @return The latency histogram of the calls.
+     */
+    public LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    public double getLatencyMax() {
+        return this.latency.getMax();
+    }
+
+    public double getLatencyMean() {
+        return this.latency.getMean();
+    }
+
+    public double getLatencyP50() {
+        return this.latency.getPercentile(50);
+    }
+
+    public double getLatencyP90() {
+        return this.latency.getPercentile(90);
+    }
+
+    public double getLatencyP99() {
+        return this.latency.getPercentile(99);
+    }
+
+    public long getRedirections() {
+        return this.statusClasses.get(3);
+    }
+
+    public long getRequests() {
+        return this.latency.getCount();
+    }
+
+    public int getRequestsInFlight() {
+        return this.requestsInFlight.get();
+    }
+
+    public long getServerErrors() {
+        return this.statusClasses.get(5);
+    }
+
+    public long getSuccesses() {
+        return this.statusClasses.get(2);
+    }
+
+    /**
+     * Returns a snapshot of all the metrics, keyed by metric name.
+     * 
+     * @return A snapshot of all the metrics.
+     */
+    public Map<String, Number> getValues() {
+        Map<String, Number> result = new LinkedHashMap<String, Number>();
+        result.put("requests", getRequests());
+        result.put("requests_in_flight", getRequestsInFlight());
+        result.put("status_1xx", getInformational());
+        result.put("status_2xx", getSuccesses());
+        result.put("status_3xx", getRedirections());
+        result.put("status_4xx", getClientErrors());
+        result.put("status_5xx", getServerErrors());
+        result.put("latency_mean_ms", getLatencyMean());
+        result.put("latency_p50_ms", getLatencyP50());
+        result.put("latency_p90_ms", getLatencyP90());
+        result.put("latency_p99_ms", getLatencyP99());
+        result.put("latency_max_ms", getLatencyMax());
+        return result;
+    }
+
+    /**
+     * Adds the metrics recorded by another instance to this one. The number
+     * of calls in flight isn't merged as it is a gauge.
+     * 
+     * @param other
+     *            The metrics to merge.
+     */
+    public void merge(CallMetrics other) {
+        this.latency.merge(other.latency);
+
+        for (int i = 0; i < this.statusClasses.length(); i++) {
+            this.statusClasses.addAndGet(i, other.statusClasses.get(i));
+        }
+    }
+
+    /**
+     * Records the end of a call.
+     * 
+     * @param startTime
+     *            The time returned by {@link #onCallStarted()}.
+     * @param status
+     *            The status of the response or null.
+     */
+    public void onCallCompleted(long startTime, Status status) {
+        this.latency.record(System.nanoTime() - startTime);
+        int index = (status == null) ? 0 : status.getCode() / 100;
+        this.statusClasses.incrementAndGet(((index > 0) && (index < 6)) ? index
+                : 0);
+        this.requestsInFlight.decrementAndGet();
+    }
+
+    /**
+     * Records the start of a call.
+     * 
+     * @return The start time in nanoseconds, to be given back to
+     *         {@link #onCallCompleted(long, Status)}.
+     */
+    public long onCallStarted() {
+        this.requestsInFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void reset() {
+        this.latency.reset();
+
+        for (int i = 0; i < this.statusClasses.length(); i++) {
+            this.statusClasses.set(i, 0);
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.application;
+
+// [excludes gwt]
+/**
+ * Management interface of the metrics of a route or resource, published via
+ * JMX by the metrics service. Latencies are expressed in milliseconds.
+ * 
+ * @see org.restlet.service.MetricsService
+ */
+public interface CallMetricsMBean {
+
+    /**
+     * Returns the count of calls answered with a client error status.
+     * 
+     * @return The count of calls answered with a client error status.
+     */
+    public long getClientErrors();
+
+    /**
+     * Returns the count of calls answered with an informational status.
+     * 
+     * @return The count of calls answered with an informational status.
+     */
+    public long getInformational();
+
+    /**
+     * Returns the maximum latency of the calls.
+     * 
+     * @return The maximum latency of the calls.
+     */
+    public double getLatencyMax();
+
+    /**
+     * Returns the mean latency of the calls.
+     * 
+     * @return The mean latency of the calls.
+     */
+    public double getLatencyMean();
+
+    /**
+     * Returns the median latency of the calls.
+     * 
+     * @return The median latency of the calls.
+     */
+    public double getLatencyP50();
+
+    /**
+     * Returns the 90th percentile of the latency of the calls.
+     * 
+     * @return The 90th percentile of the latency of the calls.
+     */
+    public double getLatencyP90();
+
+    /**
+     * Returns the 99th percentile of the latency of the calls.
+     * 
+     * @return The 99th percentile of the latency of the calls.
+     */
+    public double getLatencyP99();
+
+    /**
+     * Returns the count of calls answered with a redirection status.
+     * 
+     * @return The count of calls answered with a redirection status.
+     */
+    public long getRedirections();
+
+    /**
+     * Returns the count of calls completed.
+     * 
+     * @return The count of calls completed.
+     */
+    public long getRequests();
+
+    /**
+     * Returns the number of calls currently handled.
+     * 
+     * @return The number of calls currently handled.
+     */
+    public int getRequestsInFlight();
+
+    /**
+     * Returns the count of calls answered with a server error status.
+     * 
+     * @return The count of calls answered with a server error status.
+     */
+    public long getServerErrors();
+
+    /**
+     * Returns the count of calls answered with a success status.
+     * 
+     * @return The count of calls answered with a success status.
+     */
+    public long getSuccesses();
+
+    /**
+     * Resets the counters and the latency histogram.
+     */
+    public void reset();
+
+}
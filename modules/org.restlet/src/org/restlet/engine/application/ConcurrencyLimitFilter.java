@@ -0,0 +1,394 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.application;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Status;
+import org.restlet.routing.Filter;
+import org.restlet.service.ConcurrencyLimitService;
+
+// [excludes gwt]
+/**
+ * Filter limiting the number of calls concurrently handled by the next
+ * Restlet, with a limit adapting itself to the latency of the calls. The
+ * calls exceeding the limit wait for a slot then are rejected with a
+ * "503 Service Unavailable" status.<br>
+ * <br>
+ * The slots are taken and given back without lock. Only the calls waiting for
+ * a slot synchronize on a monitor, which is notified when a slot is given back
+ * or when the limit grows. The latency is measured from the time the call
+ * gets its slot to the time the next Restlet returns, so asynchronous calls
+ * only account for their synchronous part.
+ * 
+ * @see ConcurrencyLimitService
+ */
+public class ConcurrencyLimitFilter extends Filter {
+
+    /** The service providing the settings. */
+    private final ConcurrencyLimitService concurrencyLimitService;
+
+    /** The number of calls currently handled. */
+    private final AtomicInteger inFlight;
+
+    /** The sum of the latencies of the current window, in nanoseconds. */
+    private final AtomicLong latencySum;
+
+    /** The current limit, as a real number to allow smooth variations. */
+    private volatile double limit;
+
+    /** The monitor on which the calls waiting for a slot wait. */
+    private final Object lock;
+
+    /** The long term average latency in nanoseconds. */
+    private volatile double longLatency;
+
+    /** The maximum number of calls handled during the current window. */
+    private final AtomicInteger peakInFlight;
+
+    /** The number of calls waiting for a slot. */
+    private final AtomicInteger queued;
+
+    /** The number of calls rejected with a 503 status by the next Restlet. */
+    private final AtomicInteger rejections;
+
+    /** The number of calls measured during the current window. */
+    private final AtomicInteger samples;
+
+    /** The start time in nanoseconds of the current window. */
+    private final AtomicLong windowStart;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The parent context.
+     * @param concurrencyLimitService
+     *            The service providing the settings.
+     */
+    public ConcurrencyLimitFilter(Context context,
+            ConcurrencyLimitService concurrencyLimitService) {
+        super(context);
+        this.concurrencyLimitService = concurrencyLimitService;
+        this.inFlight = new AtomicInteger();
+        this.latencySum = new AtomicLong();
+        this.limit = concurrencyLimitService.getInitialLimit();
+        this.lock = new Object();
+        this.longLatency = 0D;
+        this.peakInFlight = new AtomicInteger();
+        this.queued = new AtomicInteger();
+        this.rejections = new AtomicInteger();
+        this.samples = new AtomicInteger();
+        this.windowStart = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Adjusts the limit at the end of a measurement window.
+     * 
+     * @param latency
+     *            The average latency of the window, in nanoseconds.
+     * @param rejected
+     *            The number of calls rejected by the next Restlet.
+     * @param peak
+     *            The maximum number of calls handled during the window.
+     */
+    private void adjust(double latency, int rejected, int peak) {
+        ConcurrencyLimitService service = getConcurrencyLimitService();
+        double current = this.limit;
+        double result = current;
+        boolean used = (peak * 2 >= current);
+
+        if (service.getMode() == ConcurrencyLimitService.MODE_AIMD) {
+            if ((rejected > 0)
+                    || (latency > TimeUnit.MILLISECONDS.toNanos(service
+                            .getLatencyThreshold()))) {
+                result = current * 0.9D;
+            } else if (used) {
+                result = current + 1D;
+            }
+        } else {
+            double longTerm = this.longLatency;
+
+            if (longTerm == 0D) {
+                longTerm = latency;
+            } else {
+                longTerm = longTerm * 0.95D + latency * 0.05D;
+
+                // Quickly follow a drop of the latency
+                if (longTerm / latency > 2D) {
+                    longTerm *= 0.95D;
+                }
+            }
+
+            this.longLatency = longTerm;
+            double gradient = Math.max(0.5D,
+                    Math.min(1D, 1.5D * longTerm / latency));
+            double target = current * gradient;
+
+            if (used) {
+                // Leave room for some queuing to probe for a higher limit
+                target += Math.sqrt(current);
+            }
+
+            result = current * 0.8D + target * 0.2D;
+        }
+
+        result = Math.max(service.getMinLimit(),
+                Math.min(service.getMaxLimit(), result));
+        this.limit = result;
+
+        if ((result > current) && (this.queued.get() > 0)) {
+            synchronized (this.lock) {
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Takes a slot for the call, waiting for one if needed, or rejects it.
+     * 
+     * @param request
+     *            The request to filter.
+     * @param response
+     *            The response to filter.
+     * @return The continuation status.
+     */
+    @Override
+    protected int beforeHandle(Request request, Response response) {
+        int result = CONTINUE;
+        boolean acquired = tryAcquire();
+
+        ConcurrencyLimitService service = getConcurrencyLimitService();
+
+        if (!acquired && (service.getMaxWait() > 0)) {
+            try {
+                if (this.queued.incrementAndGet() <= service.getMaxQueued()) {
+                    acquired = await(service.getMaxWait());
+                }
+            } finally {
+                this.queued.decrementAndGet();
+            }
+        }
+
+        if (!acquired) {
+            response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE,
+                    "Too many concurrent calls");
+            result = STOP;
+        }
+
+        return result;
+    }
+
+    /**
+     * Waits for a slot.
+     * 
+     * @param maxWait
+     *            The maximum time in milliseconds to wait.
+     * @return True if a slot was taken.
+     */
+    private boolean await(long maxWait) {
+        boolean result = false;
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(maxWait);
+
+        synchronized (this.lock) {
+            long remaining = deadline - System.nanoTime();
+
+            while (!result && (remaining > 0)) {
+                result = tryAcquire();
+
+                if (!result) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this.lock, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        remaining = 0;
+                    }
+
+                    remaining = Math.min(remaining,
+                            deadline - System.nanoTime());
+                }
+            }
+        }
+
+        return result || tryAcquire();
+    }
+
+    /**
+     * Handles the call, measures its latency then gives back its slot.
+     * 
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     * @return The continuation status.
+     */
+    @Override
+    protected int doHandle(Request request, Response response) {
+        int result = CONTINUE;
+        long start = System.nanoTime();
+        boolean rejected = false;
+
+        try {
+            result = super.doHandle(request, response);
+            rejected = Status.SERVER_ERROR_SERVICE_UNAVAILABLE.equals(response
+                    .getStatus());
+        } finally {
+            release();
+            sample(System.nanoTime() - start, rejected);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the service providing the settings.
+     * 
+     * @return The service providing the settings.
+     */
+    public ConcurrencyLimitService getConcurrencyLimitService() {
+        return concurrencyLimitService;
+    }
+
+    /**
+     * Returns the number of calls currently handled.
+     * 
+     * @return The number of calls currently handled.
+     */
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Returns the current limit.
+     * 
+     * @return The current limit.
+     */
+    public int getLimit() {
+        return (int) this.limit;
+    }
+
+    /**
+     * Returns the number of calls waiting for a slot, including the ones being
+     * rejected because too many calls are already waiting.
+     * 
+     * @return The number of calls waiting for a slot.
+     */
+    public int getQueued() {
+        return this.queued.get();
+    }
+
+    /**
+     * Gives back a slot and notifies a waiting call if any.
+     */
+    private void release() {
+        this.inFlight.decrementAndGet();
+
+        if (this.queued.get() > 0) {
+            synchronized (this.lock) {
+                this.lock.notify();
+            }
+        }
+    }
+
+    /**
+     * Records the latency of a call, and adjusts the limit if the current
+     * window is over and no other thread started to.
+     * 
+     * @param latency
+     *            The latency in nanoseconds.
+     * @param rejected
+     *            True if the next Restlet rejected the call.
+     */
+    private void sample(long latency, boolean rejected) {
+        this.latencySum.addAndGet(latency);
+        this.samples.incrementAndGet();
+
+        if (rejected) {
+            this.rejections.incrementAndGet();
+        }
+
+        long now = System.nanoTime();
+        long start = this.windowStart.get();
+
+        if ((now - start >= TimeUnit.MILLISECONDS
+                .toNanos(getConcurrencyLimitService().getWindow()))
+                && this.windowStart.compareAndSet(start, now)) {
+            int count = this.samples.getAndSet(0);
+            long sum = this.latencySum.getAndSet(0);
+            int rejectedCount = this.rejections.getAndSet(0);
+            int peak = this.peakInFlight.getAndSet(this.inFlight.get());
+
+            if (count > 0) {
+                adjust(Math.max(1D, (double) sum / count), rejectedCount,
+                        peak);
+            }
+        }
+    }
+
+    /**
+     * Takes a slot if the limit isn't reached.
+     * 
+     * @return True if a slot was taken.
+     */
+    private boolean tryAcquire() {
+        boolean result = false;
+        int max = getLimit();
+        int current = this.inFlight.get();
+
+        while (!result && (current < max)) {
+            result = this.inFlight.compareAndSet(current, current + 1);
+
+            if (result) {
+                int next = current + 1;
+                int peak = this.peakInFlight.get();
+
+                while ((peak < next)
+                        && !this.peakInFlight.compareAndSet(peak, next)) {
+                    peak = this.peakInFlight.get();
+                }
+            } else {
+                current = this.inFlight.get();
+            }
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.application;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.logging.Level;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.restlet.Context;
+import org.restlet.service.MetricsService;
+
+// [excludes gwt]
+/**
+ * Publishes the metrics recorded by a metrics service as MBeans of the
+ * platform MBean server. The object names look like
+ * "org.restlet:type=Metrics,service=1b6d3586,kind=route,name="/users/{id}",method=GET".
+ * 
+ * @see CallMetricsMBean
+ * @see MetricsService
+ */
+public class MetricsJmx {
+
+    /**
+     * Returns the identifier of a metrics service used in object names.
+     * 
+     * @param service
+     *            The metrics service.
+     * @return The identifier of the metrics service.
+     */
+    private static String getId(MetricsService service) {
+        return Integer.toHexString(System.identityHashCode(service));
+    }
+
+    /**
+     * Returns the object name of a metrics MBean.
+     * 
+     * @param service
+     *            The metrics service.
+     * @param kind
+     *            The kind of metrics, "route" or "resource".
+     * @param name
+     *            The route pattern or the resource class name.
+     * @param method
+     *            The method name.
+     * @return The object name.
+     * @throws Exception
+     */
+    public static ObjectName getObjectName(MetricsService service,
+            String kind, String name, String method) throws Exception {
+        StringBuilder sb = new StringBuilder("org.restlet:type=Metrics");
+        sb.append(",service=").append(getId(service));
+        sb.append(",kind=").append(kind);
+        sb.append(",name=").append(ObjectName.quote(name));
+        sb.append(",method=").append(ObjectName.quote(method));
+        return new ObjectName(sb.toString());
+    }
+
+    /**
+     * Registers the MBeans of a map of metrics.
+     * 
+     * @param service
+     *            The metrics service.
+     * @param kind
+     *            The kind of metrics, "route" or "resource".
+     * @param metrics
+     *            The metrics keyed by name then by method name.
+     */
+    public static void register(MetricsService service, String kind,
+            Map<String, Map<String, CallMetrics>> metrics) {
+        for (Map.Entry<String, Map<String, CallMetrics>> entry : metrics
+                .entrySet()) {
+            for (Map.Entry<String, CallMetrics> methodEntry : entry.getValue()
+                    .entrySet()) {
+                register(service, kind, entry.getKey(), methodEntry.getKey(),
+                        methodEntry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Registers the MBean of the metrics of a route or resource.
+     * 
+     * @param service
+     *            The metrics service.
+     * @param kind
+     *            The kind of metrics, "route" or "resource".
+     * @param name
+     *            The route pattern or the resource class name.
+     * @param method
+     *            The method name.
+     * @param metrics
+     *            The metrics to publish.
+     */
+    public static void register(MetricsService service, String kind,
+            String name, String method, CallMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = getObjectName(service, kind, name, method);
+
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(new StandardMBean(metrics,
+                        CallMetricsMBean.class), objectName);
+            }
+        } catch (Exception e) {
+            Context.getCurrentLogger().log(Level.WARNING,
+                    "Unable to register the metrics MBean", e);
+        }
+    }
+
+    /**
+     * Unregisters all the MBeans of a metrics service.
+     * 
+     * @param service
+     *            The metrics service.
+     */
+    public static void unregister(MetricsService service) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            for (ObjectName objectName : server.queryNames(new ObjectName(
+                    "org.restlet:type=Metrics,service=" + getId(service)
+                            + ",*"), null)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (Exception e) {
+            Context.getCurrentLogger().log(Level.WARNING,
+                    "Unable to unregister the metrics MBeans", e);
+        }
+    }
+
+    /**
+     * Private constructor to ensure that the class acts as a true utility
+     * class i.e. it isn't instantiable and extensible.
+     */
+    private MetricsJmx() {
+    }
+
+}
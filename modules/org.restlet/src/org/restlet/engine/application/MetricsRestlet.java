@@ -0,0 +1,187 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.application;
+
+import java.util.Map;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.service.MetricsService;
+
+// [excludes gwt]
+/**
+ * Restlet exposing the metrics recorded by a metrics service as JSON. The
+ * routes and resources are listed by pattern or class name, then by method
+ * name. For example:
+ * 
+ * <pre>
+ * {"routes":{"/users/{id}":{"GET":{"requests":12,"requests_in_flight":1,...}}},
+ * "resources":{...}}
+ * </pre>
+ * 
+ * Typical usage is to attach it to an administrative route of the
+ * application, with the application's metrics service.
+ * 
+ * @see MetricsService
+ */
+public class MetricsRestlet extends Restlet {
+
+    /** The metrics service whose metrics are exposed. */
+    private final MetricsService metricsService;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param metricsService
+     *            The metrics service whose metrics are exposed.
+     */
+    public MetricsRestlet(Context context, MetricsService metricsService) {
+        super(context);
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * Appends a JSON object with the metrics of routes or resources.
+     * 
+     * @param sb
+     *            The builder to update.
+     * @param metrics
+     *            The metrics keyed by name then by method name.
+     */
+    private void appendMetrics(StringBuilder sb,
+            Map<String, Map<String, CallMetrics>> metrics) {
+        boolean first = true;
+        sb.append('{');
+
+        for (Map.Entry<String, Map<String, CallMetrics>> entry : metrics
+                .entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+
+            first = false;
+            appendString(sb, entry.getKey());
+            sb.append(":{");
+            boolean firstMethod = true;
+
+            for (Map.Entry<String, CallMetrics> methodEntry : entry.getValue()
+                    .entrySet()) {
+                if (!firstMethod) {
+                    sb.append(',');
+                }
+
+                firstMethod = false;
+                appendString(sb, methodEntry.getKey());
+                sb.append(":{");
+                boolean firstValue = true;
+
+                for (Map.Entry<String, Number> value : methodEntry.getValue()
+                        .getValues().entrySet()) {
+                    if (!firstValue) {
+                        sb.append(',');
+                    }
+
+                    firstValue = false;
+                    appendString(sb, value.getKey());
+                    sb.append(':').append(value.getValue());
+                }
+
+                sb.append('}');
+            }
+
+            sb.append('}');
+        }
+
+        sb.append('}');
+    }
+
+    /**
+     * Appends a JSON string.
+     * 
+     * @param sb
+     *            The builder to update.
+     * @param value
+     *            The string value.
+     */
+    private void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if ((c == '"') || (c == '\\')) {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+
+        sb.append('"');
+    }
+
+    /**
+     * Returns the metrics service whose metrics are exposed.
+     * 
+     * @return The metrics service whose metrics are exposed.
+     */
+    public MetricsService getMetricsService() {
+        return metricsService;
+    }
+
+    @Override
+    public void handle(Request request, Response response) {
+        super.handle(request, response);
+
+        if (!Method.GET.equals(request.getMethod())) {
+            response.setStatus(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED);
+            response.getAllowedMethods().add(Method.GET);
+        } else {
+            StringBuilder sb = new StringBuilder("{\"routes\":");
+            appendMetrics(sb, getMetricsService().getRouteMetrics());
+            sb.append(",\"resources\":");
+            appendMetrics(sb, getMetricsService().getResourceMetrics());
+            sb.append('}');
+            response.setEntity(sb.toString(), MediaType.APPLICATION_JSON);
+        }
+    }
+
+}
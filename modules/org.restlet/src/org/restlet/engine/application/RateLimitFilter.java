@@ -0,0 +1,275 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.application;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Header;
+import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.routing.Filter;
+import org.restlet.service.RateLimitService;
+import org.restlet.util.Series;
+
+// [excludes gwt]
+/**
+ * Filter limiting the rate of the requests of each client with a token
+ * bucket. Rejected requests are answered with a "429 Too Many Requests"
+ * status and a "Retry-After" header.
+ * 
+ * @see RateLimitService
+ */
+public class RateLimitFilter extends Filter {
+
+    /** The token buckets per client key. */
+    private final ConcurrentMap<String, TokenBucket> buckets;
+
+    /** The time in nanoseconds of the next sweep of the full buckets. */
+    private final AtomicLong nextSweep;
+
+    /** The service providing the settings. */
+    private final RateLimitService rateLimitService;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The parent context.
+     * @param rateLimitService
+     *            The service providing the settings.
+     */
+    public RateLimitFilter(Context context, RateLimitService rateLimitService) {
+        super(context);
+        this.buckets = new ConcurrentHashMap<String, TokenBucket>(1024, 0.75f,
+                64);
+        this.nextSweep = new AtomicLong(System.nanoTime());
+        this.rateLimitService = rateLimitService;
+    }
+
+    /**
+     * Adds the "RateLimit-*" headers to the response if required.
+     * 
+     * @param request
+     *            The request to filter.
+     * @param response
+     *            The response to filter.
+     */
+    @Override
+    protected void afterHandle(Request request, Response response) {
+        if (getRateLimitService().isHeadersAdded()) {
+            String key = getRateLimitService().getKey(request);
+
+            if (key != null) {
+                TokenBucket bucket = this.buckets.get(key);
+                long refillTime = (bucket == null) ? 0L : bucket
+                        .getRefillTime(System.nanoTime());
+                addHeaders(response, refillTime);
+            }
+        }
+    }
+
+    /**
+     * Adds the "RateLimit-*" headers to a response.
+     * 
+     * @param response
+     *            The response to update.
+     * @param refillTime
+     *            The time in nanoseconds to refill the bucket.
+     */
+    private void addHeaders(Response response, long refillTime) {
+        int limit = getLimit();
+        long period = getPeriodNanos();
+        long remaining = (period - refillTime) / (period / limit);
+        Series<Header> headers = response.getHeaders();
+
+        if (headers == null) {
+            headers = new Series<Header>(Header.class, new ArrayList<Header>(
+                    3));
+            response.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS,
+                    headers);
+        }
+
+        headers.set(HeaderConstants.HEADER_RATELIMIT_LIMIT,
+                Integer.toString(limit));
+        headers.set(HeaderConstants.HEADER_RATELIMIT_REMAINING,
+                Long.toString(Math.max(0L, remaining)));
+        headers.set(HeaderConstants.HEADER_RATELIMIT_RESET,
+                Long.toString(toSeconds(refillTime)));
+    }
+
+    /**
+     * Consumes a token of the bucket of the client, and rejects the request
+     * if none is available.
+     * 
+     * @param request
+     *            The request to filter.
+     * @param response
+     *            The response to filter.
+     * @return The continuation status.
+     */
+    @Override
+    protected int beforeHandle(Request request, Response response) {
+        int result = CONTINUE;
+        String key = getRateLimitService().getKey(request);
+
+        if (key != null) {
+            long now = System.nanoTime();
+            long period = getPeriodNanos();
+            TokenBucket bucket = getBucket(key, now);
+            long refillTime = bucket.consume(now, period / getLimit(), period);
+
+            if (refillTime < 0) {
+                long wait = TimeUnit.SECONDS.toMillis(toSeconds(-refillTime));
+                response.setStatus(Status.CLIENT_ERROR_TOO_MANY_REQUESTS);
+                response.setRetryAfter(new Date(System.currentTimeMillis()
+                        + wait));
+                addHeaders(response, bucket.getRefillTime(now));
+                result = STOP;
+            }
+
+            sweep(now, period);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the bucket of a client, created if needed.
+     * 
+     * @param key
+     *            The client key.
+     * @param now
+     *            The current time in nanoseconds.
+     * @return The bucket of the client.
+     */
+    private TokenBucket getBucket(String key, long now) {
+        TokenBucket result = this.buckets.get(key);
+
+        if (result == null) {
+            result = new TokenBucket(now);
+            TokenBucket current = this.buckets.putIfAbsent(key, result);
+
+            if (current != null) {
+                result = current;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of buckets currently kept.
+     * 
+     * @return The number of buckets currently kept.
+     */
+    public int getBucketCount() {
+        return this.buckets.size();
+    }
+
+    /**
+     * Returns the maximum number of requests per period, at least 1.
+     * 
+     * @return The maximum number of requests per period.
+     */
+    private int getLimit() {
+        return Math.max(1, getRateLimitService().getLimit());
+    }
+
+    /**
+     * Returns the period in nanoseconds.
+     * 
+     * @return The period in nanoseconds.
+     */
+    private long getPeriodNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(1L,
+                getRateLimitService().getPeriod()));
+    }
+
+    /**
+     * Returns the service providing the settings.
+     * 
+     * @return The service providing the settings.
+     */
+    public RateLimitService getRateLimitService() {
+        return rateLimitService;
+    }
+
+    /**
+     * Evicts the full buckets if the time of the next sweep is reached and no
+     * other thread started to. The next sweep is scheduled one period later,
+     * or one second later for shorter periods. A client concurrently consuming
+     * a token of an evicted bucket may get an extra token once.
+     * 
+     * @param now
+     *            The current time in nanoseconds.
+     * @param period
+     *            The period in nanoseconds.
+     */
+    private void sweep(long now, long period) {
+        long current = this.nextSweep.get();
+        long next = now + Math.max(period, TimeUnit.SECONDS.toNanos(1));
+
+        if ((now - current >= 0)
+                && this.nextSweep.compareAndSet(current, next)) {
+            for (Map.Entry<String, TokenBucket> entry : this.buckets
+                    .entrySet()) {
+                if (entry.getValue().isFull(now)) {
+                    this.buckets.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts a duration to seconds, rounded up.
+     * 
+     * @param nanos
+     *            The duration in nanoseconds.
+     * @return The duration in seconds.
+     */
+    private static long toSeconds(long nanos) {
+        long second = TimeUnit.SECONDS.toNanos(1);
+        return (nanos + second - 1) / second;
+    }
+
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.application;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Conditions;
+import org.restlet.data.Header;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.cache.CacheEntry;
+import org.restlet.engine.cache.CacheUtils;
+import org.restlet.engine.header.DimensionWriter;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.DigesterRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.routing.Filter;
+import org.restlet.service.TagService;
+import org.restlet.util.Series;
+
+// [excludes gwt]
+/**
+ * Filter computing strong entity tags for the responses that don't have one,
+ * and answering conditional requests matching a recently computed tag without
+ * invoking the next Restlet. The tags of authenticated requests and of private
+ * responses are never remembered, so that they can't be disclosed to other
+ * clients.
+ * 
+ * @see TagService
+ */
+public class TagFilter extends Filter {
+
+    /** The service providing the settings and the store of tags. */
+    private final TagService tagService;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The parent context.
+     * @param tagService
+     *            The service providing the settings and the store of tags.
+     */
+    public TagFilter(Context context, TagService tagService) {
+        super(context);
+        this.tagService = tagService;
+    }
+
+    /**
+     * Computes the tag of a successful response if needed, then evaluates the
+     * conditions of the request against it. The remembered tags of a resource
+     * are forgotten when it is updated.
+     * 
+     * @param request
+     *            The request to filter.
+     * @param response
+     *            The response to filter.
+     */
+    @Override
+    protected void afterHandle(Request request, Response response) {
+        Method method = request.getMethod();
+        Status status = response.getStatus();
+
+        if (!method.isSafe()) {
+            if (status.isSuccess() || status.isRedirection()) {
+                CacheUtils.invalidate(getTagService().getStore(), request,
+                        response);
+            }
+        } else if ((Method.GET.equals(method) || Method.HEAD.equals(method))
+                && Status.SUCCESS_OK.equals(status)
+                && response.isEntityAvailable()
+                && (response.getEntity().getTag() == null)
+                && (response.getEntity().getRange() == null)) {
+            Tag tag = computeTag(response);
+
+            if (tag != null) {
+                if (isRememberable(request, response)) {
+                    remember(request, response, tag);
+                }
+
+                Status conditionalStatus = request.getConditions().getStatus(
+                        method, true, tag,
+                        response.getEntity().getModificationDate());
+
+                if (conditionalStatus != null) {
+                    response.setStatus(conditionalStatus);
+
+                    if (conditionalStatus.isError()) {
+                        response.setEntity(null);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers a conditional GET or HEAD request with "304 Not Modified" if one
+     * of its tags matches a recently computed tag of the selected variant.
+     * 
+     * @param request
+     *            The request to filter.
+     * @param response
+     *            The response to filter.
+     * @return The continuation status.
+     */
+    @Override
+    protected int beforeHandle(Request request, Response response) {
+        int result = CONTINUE;
+        Method method = request.getMethod();
+        Conditions conditions = request.getConditions();
+
+        if ((Method.GET.equals(method) || Method.HEAD.equals(method))
+                && !conditions.getNoneMatch().isEmpty()
+                && conditions.getMatch().isEmpty()
+                && (request.getChallengeResponse() == null)
+                && (getTagService().getTagLifetime() > 0)) {
+            CacheEntry entry = getTagService().getStore().select(request);
+            long age = (entry == null) ? 0 : System.currentTimeMillis()
+                    - entry.getResponseTime();
+
+            if ((entry != null)
+                    && (age < getTagService().getTagLifetime())
+                    && Status.REDIRECTION_NOT_MODIFIED.equals(conditions
+                            .getStatus(method, true, entry.getTag(), null))) {
+                response.setStatus(Status.REDIRECTION_NOT_MODIFIED);
+                HeaderUtils.copyResponseTransportHeaders(entry.getHeaders(),
+                        response);
+                response.setEntity(entry.toRepresentation());
+                result = STOP;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Buffers the entity of a response through a digester and sets its tag.
+     * Entities larger than the maximum size are left untouched.
+     * 
+     * @param response
+     *            The response.
+     * @return The computed tag or null.
+     */
+    private Tag computeTag(Response response) {
+        Tag result = null;
+        Representation entity = response.getEntity();
+        long maxSize = getTagService().getMaxEntrySize();
+
+        if ((entity.getSize() == Representation.UNKNOWN_SIZE)
+                || (entity.getSize() <= maxSize)) {
+            Series<Header> headers = new Series<Header>(Header.class);
+            HeaderUtils.addEntityHeaders(entity, headers);
+
+            try {
+                DigesterRepresentation digester = new DigesterRepresentation(
+                        entity, getTagService().getAlgorithm());
+                response.setEntity(digester);
+                byte[] body = CacheUtils.buffer(response, headers, maxSize);
+
+                if (body != null) {
+                    result = new Tag(IoUtils.toHexString(digester
+                            .getComputedDigest().getValue()), false);
+                    Representation buffered = HeaderUtils
+                            .extractEntityHeaders(headers,
+                                    new ByteArrayRepresentation(body, null,
+                                            body.length));
+                    buffered.setTag(result);
+                    response.setEntity(buffered);
+                }
+            } catch (IOException ioe) {
+                getLogger().log(Level.WARNING,
+                        "Unable to compute the tag of the response entity",
+                        ioe);
+                response.setStatus(Status.SERVER_ERROR_INTERNAL, ioe);
+            } catch (NoSuchAlgorithmException nsae) {
+                getLogger().log(Level.WARNING,
+                        "Unable to compute the tag of the response entity",
+                        nsae);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the service providing the settings and the store of tags.
+     * 
+     * @return The service providing the settings and the store of tags.
+     */
+    public TagService getTagService() {
+        return tagService;
+    }
+
+    /**
+     * Indicates if the tag computed for a response can be remembered. This is
+     * not the case for authenticated requests or private responses.
+     * 
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     * @return True if the tag computed for the response can be remembered.
+     */
+    private boolean isRememberable(Request request, Response response) {
+        return (request.getChallengeResponse() == null)
+                && (CacheUtils.getDirective(response.getCacheDirectives(),
+                        HeaderConstants.CACHE_PRIVATE) == null);
+    }
+
+    /**
+     * Remembers the tag computed for the variant selected by a request.
+     * 
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     * @param tag
+     *            The computed tag.
+     */
+    private void remember(Request request, Response response, Tag tag) {
+        Series<Header> headers = new Series<Header>(Header.class);
+        headers.add(HeaderConstants.HEADER_ETAG, tag.format());
+        List<String> varyNames = Collections.emptyList();
+        Map<String, String> varyValues = new LinkedHashMap<String, String>();
+
+        if (!response.getDimensions().isEmpty()) {
+            headers.add(HeaderConstants.HEADER_VARY,
+                    DimensionWriter.write(response.getDimensions()));
+            varyNames = CacheUtils.getVaryNames(headers);
+        }
+
+        if (!varyNames.contains("*")) {
+            for (String name : varyNames) {
+                varyValues.put(name, CacheUtils.getVaryValue(request, name));
+            }
+
+            long now = System.currentTimeMillis();
+            getTagService().getStore().replace(
+                    request,
+                    new CacheEntry(Status.SUCCESS_OK, headers, new byte[0],
+                            varyValues, now, now));
+        }
+    }
+
+}
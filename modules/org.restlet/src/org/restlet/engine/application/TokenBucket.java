@@ -0,0 +1,122 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.application;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// [excludes gwt]
+/**
+ * Token bucket of a rate limited client, lock-free. Instead of a number of
+ * tokens and a last refill time, it holds the single theoretical arrival time
+ * of the next request, updated with a compare-and-set, as in the generic cell
+ * rate algorithm. The bucket is full when this time is in the past, and each
+ * accepted request moves it forward by the emission interval. A request is
+ * rejected when it would move it further than the period after the current
+ * time.
+ * 
+ * @see RateLimitFilter
+ */
+public class TokenBucket {
+
+    /** The theoretical arrival time of the next request, in nanoseconds. */
+    private final AtomicLong arrival;
+
+    /**
+     * Constructor.
+     * 
+     * @param now
+     *            The current time in nanoseconds.
+     */
+    public TokenBucket(long now) {
+        this.arrival = new AtomicLong(now);
+    }
+
+    /**
+     * Tries to consume a token.
+     * 
+     * @param now
+     *            The current time in nanoseconds.
+     * @param interval
+     *            The emission interval in nanoseconds, the period divided by
+     *            the number of tokens of a full bucket.
+     * @param period
+     *            The time in nanoseconds to refill an empty bucket.
+     * @return The time in nanoseconds to refill the bucket after consuming
+     *         the token, or the negated time to wait for a token if none is
+     *         available.
+     */
+    public long consume(long now, long interval, long period) {
+        long result = 0;
+        boolean done = false;
+
+        while (!done) {
+            long current = this.arrival.get();
+            long next = Math.max(current, now) + interval;
+            result = next - now;
+
+            if (result > period) {
+                result = -(result - period);
+                done = true;
+            } else {
+                done = this.arrival.compareAndSet(current, next);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the time in nanoseconds to refill the bucket.
+     * 
+     * @param now
+     *            The current time in nanoseconds.
+     * @return The time in nanoseconds to refill the bucket.
+     */
+    public long getRefillTime(long now) {
+        return Math.max(0L, this.arrival.get() - now);
+    }
+
+    /**
+     * Indicates if the bucket is full, in which case it can be evicted and
+     * later recreated without changing the rate limit.
+     * 
+     * @param now
+     *            The current time in nanoseconds.
+     * @return True if the bucket is full.
+     */
+    public boolean isFull(long now) {
+        return this.arrival.get() - now <= 0;
+    }
+
+}
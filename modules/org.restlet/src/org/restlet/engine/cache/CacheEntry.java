@@ -0,0 +1,555 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.restlet.Request;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.Header;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.header.CacheDirectiveReader;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.engine.util.DateUtils;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+/**
+ * Response stored by an HTTP cache, made of its status, its headers and its
+ * buffered entity. The age and the freshness lifetime are computed from the
+ * stored headers as described in RFC 7234, so that an entry can be rebuilt
+ * from its serialized form.<br>
+ * <br>
+ * Concurrency note: instances of this class are immutable and can be shared by
+ * several threads.
+ */
+public class CacheEntry {
+
+    /**
+     * Indicates if a status is cacheable by default, allowing a heuristic
+     * freshness lifetime.
+     *
+     * @param status
+     *            The status to test.
+     * @return True if the status is cacheable by default.
+     */
+    public static boolean isHeuristicallyCacheable(Status status) {
+        switch (status.getCode()) {
+        case 200:
+        case 203:
+        case 204:
+        case 300:
+        case 301:
+        case 404:
+        case 405:
+        case 410:
+        case 414:
+        case 501:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Reads an entry previously written with {@link #write(DataOutputStream)}.
+     *
+     * @param in
+     *            The input stream.
+     * @return The entry read.
+     * @throws IOException
+     */
+    public static CacheEntry read(DataInputStream in) throws IOException {
+        Status status = Status.valueOf(in.readInt());
+        long requestTime = in.readLong();
+        long responseTime = in.readLong();
+        Map<String, String> varyValues = new LinkedHashMap<String, String>();
+
+        for (int i = in.readInt(); i > 0; i--) {
+            String name = in.readUTF();
+            varyValues.put(name, in.readBoolean() ? in.readUTF() : null);
+        }
+
+        Series<Header> headers = new Series<Header>(Header.class);
+
+        for (int i = in.readInt(); i > 0; i--) {
+            headers.add(in.readUTF(), in.readUTF());
+        }
+
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return new CacheEntry(status, headers, body, varyValues, requestTime,
+                responseTime);
+    }
+
+    /** The buffered entity. */
+    private final byte[] body;
+
+    /** The age of the response when it was received, in milliseconds. */
+    private final long correctedInitialAge;
+
+    /** The freshness lifetime in milliseconds. */
+    private final long freshnessLifetime;
+
+    /** The response headers, without the hop-by-hop headers. */
+    private final Series<Header> headers;
+
+    /** The last modification date of the entity. */
+    private final Date modificationDate;
+
+    /** Indicates if the entry must not be used stale. */
+    private final boolean mustRevalidate;
+
+    /** Indicates if the entry must be revalidated before each use. */
+    private final boolean noCache;
+
+    /** Indicates if the entry must not be used stale by a shared cache. */
+    private final boolean proxyRevalidate;
+
+    /** Indicates if the entry can be shared between users. */
+    private final boolean publicResponse;
+
+    /** The time when the request was sent, in milliseconds. */
+    private final long requestTime;
+
+    /** The time when the response was received, in milliseconds. */
+    private final long responseTime;
+
+    /** The freshness lifetime for a shared cache in milliseconds. */
+    private final long sharedFreshnessLifetime;
+
+    /** The response status. */
+    private final Status status;
+
+    /** The entity tag. */
+    private final Tag tag;
+
+    /** The values of the request headers selected by the "Vary" header. */
+    private final Map<String, String> varyValues;
+
+    /**
+     * Constructor.
+     *
+     * @param status
+     *            The response status.
+     * @param headers
+     *            The response headers, without the hop-by-hop headers.
+     * @param body
+     *            The buffered entity.
+     * @param varyValues
+     *            The values of the request headers selected by the "Vary"
+     *            header, keyed by lower case header name.
+     * @param requestTime
+     *            The time when the request was sent, in milliseconds.
+     * @param responseTime
+     *            The time when the response was received, in milliseconds.
+     */
+    public CacheEntry(Status status, Series<Header> headers, byte[] body,
+            Map<String, String> varyValues, long requestTime,
+            long responseTime) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        this.varyValues = Collections.unmodifiableMap(varyValues);
+        this.requestTime = requestTime;
+        this.responseTime = responseTime;
+
+        List<CacheDirective> directives = new ArrayList<CacheDirective>();
+        Date date = null;
+        Date expires = null;
+        boolean expiresFound = false;
+        Date lastModified = null;
+        Tag etag = null;
+        long age = 0;
+
+        for (Header header : headers) {
+            String name = header.getName();
+
+            if (HeaderConstants.HEADER_CACHE_CONTROL.equalsIgnoreCase(name)) {
+                CacheDirectiveReader.addValues(header, directives);
+            } else if (HeaderConstants.HEADER_DATE.equalsIgnoreCase(name)) {
+                date = DateUtils.parse(header.getValue());
+            } else if (HeaderConstants.HEADER_AGE.equalsIgnoreCase(name)) {
+                try {
+                    age = Long.parseLong(header.getValue().trim());
+                } catch (NumberFormatException nfe) {
+                    age = 0;
+                }
+            } else if (HeaderConstants.HEADER_EXPIRES.equalsIgnoreCase(name)) {
+                // An invalid date means that the response is already expired
+                expires = DateUtils.parse(header.getValue());
+                expiresFound = true;
+            } else if (HeaderConstants.HEADER_LAST_MODIFIED
+                    .equalsIgnoreCase(name)) {
+                lastModified = DateUtils.parse(header.getValue());
+            } else if (HeaderConstants.HEADER_ETAG.equalsIgnoreCase(name)) {
+                etag = Tag.parse(header.getValue());
+            }
+        }
+
+        this.modificationDate = lastModified;
+        this.tag = etag;
+        this.mustRevalidate = CacheUtils.getDirective(directives,
+                HeaderConstants.CACHE_MUST_REVALIDATE) != null;
+        this.noCache = CacheUtils.getDirective(directives,
+                HeaderConstants.CACHE_NO_CACHE) != null;
+        this.publicResponse = CacheUtils.getDirective(directives,
+                HeaderConstants.CACHE_PUBLIC) != null;
+
+        // Compute the age and the freshness lifetime (RFC 7234, section 4.2)
+        long dateValue = (date == null) ? responseTime : date.getTime();
+        long apparentAge = Math.max(0, responseTime - dateValue);
+        long correctedAgeValue = (age * 1000L) + (responseTime - requestTime);
+        this.correctedInitialAge = Math.max(apparentAge, correctedAgeValue);
+
+        int maxAge = CacheUtils.getSeconds(CacheUtils.getDirective(directives,
+                HeaderConstants.CACHE_MAX_AGE));
+
+        if (maxAge >= 0) {
+            this.freshnessLifetime = maxAge * 1000L;
+        } else if (expiresFound) {
+            this.freshnessLifetime = (expires == null) ? 0 : Math.max(0,
+                    expires.getTime() - dateValue);
+        } else if ((lastModified != null) && isHeuristicallyCacheable(status)) {
+            // Heuristic freshness of 10% of the time since the last change
+            this.freshnessLifetime = Math.max(0,
+                    (dateValue - lastModified.getTime()) / 10);
+        } else {
+            this.freshnessLifetime = 0;
+        }
+
+        // Shared caches favor "s-maxage", which implies "proxy-revalidate"
+        int sharedMaxAge = CacheUtils.getSeconds(CacheUtils.getDirective(
+                directives, HeaderConstants.CACHE_SHARED_MAX_AGE));
+        this.sharedFreshnessLifetime = (sharedMaxAge >= 0) ? sharedMaxAge
+                * 1000L : this.freshnessLifetime;
+        this.proxyRevalidate = this.mustRevalidate
+                || (sharedMaxAge >= 0)
+                || (CacheUtils.getDirective(directives,
+                        HeaderConstants.CACHE_PROXY_MUST_REVALIDATE) != null);
+    }
+
+    /**
+     * Returns the buffered entity.
+     *
+     * @return The buffered entity.
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the current age of the entry in milliseconds.
+     *
+     * @param now
+     *            The current time in milliseconds.
+     * @return The current age of the entry in milliseconds.
+     */
+    public long getCurrentAge(long now) {
+        return this.correctedInitialAge + Math.max(0, now - this.responseTime);
+    }
+
+    /**
+     * Returns the freshness lifetime in milliseconds.
+     *
+     * @return The freshness lifetime in milliseconds.
+     */
+    public long getFreshnessLifetime() {
+        return freshnessLifetime;
+    }
+
+    /**
+     * Returns the response headers, without the hop-by-hop headers.
+     *
+     * @return The response headers.
+     */
+    public Series<Header> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Returns the last modification date of the entity.
+     *
+     * @return The last modification date of the entity.
+     */
+    public Date getModificationDate() {
+        return modificationDate;
+    }
+
+    /**
+     * Returns the time when the request was sent, in milliseconds.
+     *
+     * @return The time when the request was sent.
+     */
+    public long getRequestTime() {
+        return requestTime;
+    }
+
+    /**
+     * Returns the time when the response was received, in milliseconds.
+     *
+     * @return The time when the response was received.
+     */
+    public long getResponseTime() {
+        return responseTime;
+    }
+
+    /**
+     * Returns the freshness lifetime for a shared cache in milliseconds, based
+     * on the "s-maxage" directive if present.
+     *
+     * @return The freshness lifetime for a shared cache in milliseconds.
+     */
+    public long getSharedFreshnessLifetime() {
+        return sharedFreshnessLifetime;
+    }
+
+    /**
+     * Returns the approximate memory size of the entry in bytes.
+     *
+     * @return The approximate memory size of the entry.
+     */
+    public long getSize() {
+        long result = 64 + this.body.length;
+
+        for (Header header : this.headers) {
+            result += 2 * (header.getName().length() + header.getValue()
+                    .length());
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the response status.
+     *
+     * @return The response status.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the entity tag.
+     *
+     * @return The entity tag.
+     */
+    public Tag getTag() {
+        return tag;
+    }
+
+    /**
+     * Returns the values of the request headers selected by the "Vary" header,
+     * keyed by lower case header name.
+     *
+     * @return The values of the request headers selected by the "Vary" header.
+     */
+    public Map<String, String> getVaryValues() {
+        return varyValues;
+    }
+
+    /**
+     * Indicates if the entry can be revalidated with a conditional request.
+     *
+     * @return True if the entry has an entity tag or a modification date.
+     */
+    public boolean hasValidator() {
+        return (getTag() != null) || (getModificationDate() != null);
+    }
+
+    /**
+     * Indicates if the entry is fresh.
+     *
+     * @param now
+     *            The current time in milliseconds.
+     * @return True if the entry is fresh.
+     */
+    public boolean isFresh(long now) {
+        return getCurrentAge(now) < getFreshnessLifetime();
+    }
+
+    /**
+     * Indicates if the entry must not be used stale, even if the request
+     * accepts it.
+     *
+     * @return True if the entry must not be used stale.
+     */
+    public boolean isMustRevalidate() {
+        return mustRevalidate;
+    }
+
+    /**
+     * Indicates if the entry must be revalidated before each use.
+     *
+     * @return True if the entry must be revalidated before each use.
+     */
+    public boolean isNoCache() {
+        return noCache;
+    }
+
+    /**
+     * Indicates if the entry must not be used stale by a shared cache, even if
+     * the request accepts it.
+     *
+     * @return True if the entry must not be used stale by a shared cache.
+     */
+    public boolean isProxyRevalidate() {
+        return proxyRevalidate;
+    }
+
+    /**
+     * Indicates if the entry can be shared between users, meaning that the
+     * response has a "public" directive.
+     *
+     * @return True if the entry can be shared between users.
+     */
+    public boolean isPublic() {
+        return publicResponse;
+    }
+
+    /**
+     * Indicates if the entry can be selected for a request, based on the
+     * request headers selected by the "Vary" header.
+     *
+     * @param request
+     *            The request.
+     * @return True if the entry can be selected for the request.
+     */
+    public boolean matches(Request request) {
+        boolean result = true;
+
+        for (Map.Entry<String, String> entry : this.varyValues.entrySet()) {
+            String value = CacheUtils.getVaryValue(request, entry.getKey());
+            result = result
+                    && ((value == null) ? entry.getValue() == null : value
+                            .equals(entry.getValue()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a new representation of the buffered entity, described by the
+     * stored entity headers.
+     *
+     * @return A new representation or null if there is no entity.
+     */
+    public Representation toRepresentation() {
+        return HeaderUtils.extractEntityHeaders(getHeaders(),
+                (this.body.length == 0) ? null : new ByteArrayRepresentation(
+                        this.body, null, this.body.length));
+    }
+
+    /**
+     * Returns a new entry updated with the headers of a "304 Not Modified"
+     * response. The stored headers with the same name as an updating header
+     * are replaced (RFC 7234, section 4.3.4).
+     *
+     * @param updatingHeaders
+     *            The headers of the "304 Not Modified" response.
+     * @param requestTime
+     *            The time when the conditional request was sent.
+     * @param responseTime
+     *            The time when the conditional response was received.
+     * @return The updated entry.
+     */
+    public CacheEntry update(Series<Header> updatingHeaders, long requestTime,
+            long responseTime) {
+        Series<Header> merged = new Series<Header>(Header.class);
+
+        for (Header header : this.headers) {
+            if (HeaderConstants.HEADER_CONTENT_LENGTH.equalsIgnoreCase(header
+                    .getName())
+                    || (updatingHeaders.getFirst(header.getName(), true) == null)) {
+                merged.add(header);
+            }
+        }
+
+        for (Header header : updatingHeaders) {
+            if (!HeaderConstants.HEADER_CONTENT_LENGTH.equalsIgnoreCase(header
+                    .getName())) {
+                merged.add(header);
+            }
+        }
+
+        return new CacheEntry(getStatus(), merged, getBody(), getVaryValues(),
+                requestTime, responseTime);
+    }
+
+    /**
+     * Writes the entry so that it can later be read with
+     * {@link #read(DataInputStream)}.
+     *
+     * @param out
+     *            The output stream.
+     * @throws IOException
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(getStatus().getCode());
+        out.writeLong(getRequestTime());
+        out.writeLong(getResponseTime());
+        out.writeInt(this.varyValues.size());
+
+        for (Map.Entry<String, String> entry : this.varyValues.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeBoolean(entry.getValue() != null);
+
+            if (entry.getValue() != null) {
+                out.writeUTF(entry.getValue());
+            }
+        }
+
+        out.writeInt(this.headers.size());
+
+        for (Header header : this.headers) {
+            out.writeUTF(header.getName());
+            out.writeUTF(header.getValue());
+        }
+
+        out.writeInt(this.body.length);
+        out.write(this.body);
+    }
+
+}
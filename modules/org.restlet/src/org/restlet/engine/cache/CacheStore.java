@@ -0,0 +1,566 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.Request;
+
+/**
+ * Size-bounded store of cache entries, keyed by resource URI. Each key maps to
+ * the list of variants stored for the resource. The least recently used keys
+ * are evicted when the memory size is exceeded and, if a directory is set,
+ * spilled to a disk tier which is itself bounded. Entries found on disk are
+ * promoted back to memory.<br>
+ * <br>
+ * Concurrency note: instances of this class can be shared by several threads.
+ * The disk operations are done outside of the lock guarding the memory tier.
+ */
+public class CacheStore {
+
+    /** The magic number starting the files of the disk tier. */
+    private static final int MAGIC = 0x52434531;
+
+    /** The directory of the disk tier, or null. */
+    private final File directory;
+
+    /** The file sizes of the disk tier, from the least recently written. */
+    private final Map<String, Long> diskEntries;
+
+    /** The current size of the disk tier in bytes. */
+    private long diskSize;
+
+    /** The variants in memory, in least recently used order. */
+    private final LinkedHashMap<String, List<CacheEntry>> entries;
+
+    /** The maximum size of the disk tier in bytes. */
+    private final long maxDiskSize;
+
+    /** The maximum size of the memory tier in bytes. */
+    private final long maxSize;
+
+    /** The current size of the memory tier in bytes. */
+    private long size;
+
+    /**
+     * Constructor of a memory only store.
+     *
+     * @param maxSize
+     *            The maximum size of the memory tier in bytes.
+     */
+    public CacheStore(long maxSize) {
+        this(maxSize, null, 0);
+    }
+
+    /**
+     * Constructor. The files left in the directory by a previous store are
+     * reused.
+     *
+     * @param maxSize
+     *            The maximum size of the memory tier in bytes.
+     * @param directory
+     *            The directory of the disk tier, or null.
+     * @param maxDiskSize
+     *            The maximum size of the disk tier in bytes.
+     */
+    public CacheStore(long maxSize, File directory, long maxDiskSize) {
+        this.maxSize = maxSize;
+        this.directory = directory;
+        this.maxDiskSize = maxDiskSize;
+        this.entries = new LinkedHashMap<String, List<CacheEntry>>(16, 0.75f,
+                true);
+        this.diskEntries = new LinkedHashMap<String, Long>();
+
+        if (directory != null) {
+            directory.mkdirs();
+            loadDiskEntries();
+        }
+    }
+
+    /**
+     * Discards all the variants, in memory and on disk.
+     */
+    public void clear() {
+        List<String> files;
+
+        synchronized (this) {
+            this.entries.clear();
+            this.size = 0;
+            files = new ArrayList<String>(this.diskEntries.keySet());
+            this.diskEntries.clear();
+            this.diskSize = 0;
+        }
+
+        for (String key : files) {
+            getFile(key).delete();
+        }
+    }
+
+    /**
+     * Closes a stream, ignoring errors.
+     *
+     * @param in
+     *            The stream to close or null.
+     */
+    private void close(DataInputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException ioe) {
+                // Ignore
+            }
+        }
+    }
+
+    /**
+     * Returns the variants stored for a key. They are looked up in memory
+     * first, then on disk.
+     *
+     * @param key
+     *            The resource key.
+     * @return The unmodifiable list of variants or null.
+     */
+    public List<CacheEntry> get(String key) {
+        List<CacheEntry> result;
+
+        synchronized (this) {
+            result = this.entries.get(key);
+        }
+
+        if ((result == null) && (this.directory != null)) {
+            result = readDiskEntry(key);
+
+            if (result != null) {
+                put(key, result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of keys in memory.
+     *
+     * @return The number of keys in memory.
+     */
+    public synchronized int getCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the directory of the disk tier.
+     *
+     * @return The directory of the disk tier, or null.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the current size of the disk tier in bytes.
+     *
+     * @return The current size of the disk tier in bytes.
+     */
+    public synchronized long getDiskSize() {
+        return diskSize;
+    }
+
+    /**
+     * Returns the file of the disk tier storing a key.
+     *
+     * @param key
+     *            The resource key.
+     * @return The file storing the key.
+     */
+    private File getFile(String key) {
+        return new File(this.directory, CacheUtils.digest(key) + ".cache");
+    }
+
+    /**
+     * Returns the maximum size of the disk tier in bytes.
+     *
+     * @return The maximum size of the disk tier in bytes.
+     */
+    public long getMaxDiskSize() {
+        return maxDiskSize;
+    }
+
+    /**
+     * Returns the maximum size of the memory tier in bytes.
+     *
+     * @return The maximum size of the memory tier in bytes.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the current size of the memory tier in bytes.
+     *
+     * @return The current size of the memory tier in bytes.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the size of a list of variants in bytes.
+     *
+     * @param key
+     *            The resource key.
+     * @param variants
+     *            The variants.
+     * @return The size of the variants in bytes.
+     */
+    private long getSize(String key, List<CacheEntry> variants) {
+        long result = 2 * key.length();
+
+        for (CacheEntry variant : variants) {
+            result += variant.getSize();
+        }
+
+        return result;
+    }
+
+    /**
+     * Indexes the files left in the directory, from the least recently
+     * modified.
+     */
+    private void loadDiskEntries() {
+        File[] files = this.directory.listFiles();
+
+        if (files != null) {
+            Arrays.sort(files, new Comparator<File>() {
+                public int compare(File f1, File f2) {
+                    return Long.valueOf(f1.lastModified()).compareTo(
+                            f2.lastModified());
+                }
+            });
+
+            for (File file : files) {
+                if (file.getName().endsWith(".cache")) {
+                    DataInputStream in = null;
+
+                    try {
+                        in = new DataInputStream(new FileInputStream(file));
+
+                        if (in.readInt() == MAGIC) {
+                            this.diskEntries.put(in.readUTF(), file.length());
+                            this.diskSize += file.length();
+                        }
+                    } catch (IOException ioe) {
+                        Context.getCurrentLogger().log(Level.FINE,
+                                "Unable to index the cache file " + file, ioe);
+                    } finally {
+                        close(in);
+                    }
+                }
+            }
+
+            trimDisk();
+        }
+    }
+
+    /**
+     * Stores the variants of a key, replacing the previous ones. The least
+     * recently used keys are evicted to respect the maximum size.
+     *
+     * @param key
+     *            The resource key.
+     * @param variants
+     *            The variants, or an empty list to remove the key.
+     */
+    public void put(String key, List<CacheEntry> variants) {
+        List<String> evictedKeys = new ArrayList<String>();
+        List<List<CacheEntry>> evictedVariants = new ArrayList<List<CacheEntry>>();
+        boolean onDisk = false;
+
+        synchronized (this) {
+            List<CacheEntry> previous = this.entries.remove(key);
+
+            if (previous != null) {
+                this.size -= getSize(key, previous);
+            }
+
+            Long diskEntrySize = this.diskEntries.remove(key);
+
+            if (diskEntrySize != null) {
+                this.diskSize -= diskEntrySize;
+                onDisk = true;
+            }
+
+            long variantsSize = getSize(key, variants);
+
+            if (!variants.isEmpty() && (variantsSize <= this.maxSize)) {
+                this.entries.put(key, Collections
+                        .unmodifiableList(new ArrayList<CacheEntry>(variants)));
+                this.size += variantsSize;
+            }
+
+            for (Iterator<Map.Entry<String, List<CacheEntry>>> iter = this.entries
+                    .entrySet().iterator(); (this.size > this.maxSize)
+                    && iter.hasNext();) {
+                Map.Entry<String, List<CacheEntry>> eldest = iter.next();
+                iter.remove();
+                this.size -= getSize(eldest.getKey(), eldest.getValue());
+                evictedKeys.add(eldest.getKey());
+                evictedVariants.add(eldest.getValue());
+            }
+        }
+
+        if (onDisk) {
+            getFile(key).delete();
+        }
+
+        if (this.directory != null) {
+            for (int i = 0; i < evictedKeys.size(); i++) {
+                writeDiskEntry(evictedKeys.get(i), evictedVariants.get(i));
+            }
+        }
+    }
+
+    /**
+     * Reads and removes the variants of a key from the disk tier.
+     *
+     * @param key
+     *            The resource key.
+     * @return The variants read or null.
+     */
+    private List<CacheEntry> readDiskEntry(String key) {
+        List<CacheEntry> result = null;
+        boolean found;
+
+        synchronized (this) {
+            Long fileSize = this.diskEntries.remove(key);
+            found = (fileSize != null);
+
+            if (found) {
+                this.diskSize -= fileSize;
+            }
+        }
+
+        if (found) {
+            File file = getFile(key);
+            DataInputStream in = null;
+
+            try {
+                in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(file)));
+
+                if ((in.readInt() == MAGIC) && key.equals(in.readUTF())) {
+                    result = new ArrayList<CacheEntry>();
+
+                    for (int i = in.readInt(); i > 0; i--) {
+                        result.add(CacheEntry.read(in));
+                    }
+                }
+            } catch (IOException ioe) {
+                Context.getCurrentLogger().log(Level.FINE,
+                        "Unable to read the cache file " + file, ioe);
+                result = null;
+            } finally {
+                close(in);
+                file.delete();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes the variants of a key.
+     *
+     * @param key
+     *            The resource key.
+     */
+    public void remove(String key) {
+        put(key, Collections.<CacheEntry> emptyList());
+    }
+
+    /**
+     * Stores a variant of the resource targeted by a request. The stored
+     * variants that the request would select are replaced.
+     *
+     * @param request
+     *            The request.
+     * @param entry
+     *            The new variant, or null to only remove the replaced ones.
+     */
+    public void replace(Request request, CacheEntry entry) {
+        String key = CacheUtils.getKey(request);
+        List<CacheEntry> variants = new ArrayList<CacheEntry>();
+        List<CacheEntry> previous = get(key);
+
+        if (entry != null) {
+            variants.add(entry);
+        }
+
+        if (previous != null) {
+            for (CacheEntry variant : previous) {
+                if (!variant.matches(request)) {
+                    variants.add(variant);
+                }
+            }
+        }
+
+        put(key, variants);
+    }
+
+    /**
+     * Returns the stored variant selected for a request, based on the request
+     * headers listed by the "Vary" header of each variant.
+     *
+     * @param request
+     *            The request.
+     * @return The stored variant or null.
+     */
+    public CacheEntry select(Request request) {
+        CacheEntry result = null;
+        List<CacheEntry> variants = get(CacheUtils.getKey(request));
+
+        if (variants != null) {
+            for (int i = 0; (result == null) && (i < variants.size()); i++) {
+                if (variants.get(i).matches(request)) {
+                    result = variants.get(i);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Deletes the least recently written files until the disk tier respects
+     * its maximum size.
+     */
+    private void trimDisk() {
+        List<String> deleted = new ArrayList<String>();
+
+        synchronized (this) {
+            for (Iterator<Map.Entry<String, Long>> iter = this.diskEntries
+                    .entrySet().iterator(); (this.diskSize > this.maxDiskSize)
+                    && iter.hasNext();) {
+                Map.Entry<String, Long> eldest = iter.next();
+                iter.remove();
+                this.diskSize -= eldest.getValue();
+                deleted.add(eldest.getKey());
+            }
+        }
+
+        for (String key : deleted) {
+            getFile(key).delete();
+        }
+    }
+
+    /**
+     * Writes the variants of a key to the disk tier. The file is written under
+     * a temporary name then renamed, so that it is only indexed once
+     * complete.
+     *
+     * @param key
+     *            The resource key.
+     * @param variants
+     *            The variants to write.
+     */
+    private void writeDiskEntry(String key, List<CacheEntry> variants) {
+        File file = getFile(key);
+        File tmpFile = new File(this.directory, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        boolean written = false;
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmpFile)));
+            out.writeInt(MAGIC);
+            out.writeUTF(key);
+            out.writeInt(variants.size());
+
+            for (CacheEntry variant : variants) {
+                variant.write(out);
+            }
+
+            out.close();
+            out = null;
+            file.delete();
+            written = tmpFile.renameTo(file);
+        } catch (IOException ioe) {
+            Context.getCurrentLogger().log(Level.FINE,
+                    "Unable to write the cache file " + file, ioe);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ioe) {
+                    // Ignore
+                }
+            }
+
+            if (!written) {
+                tmpFile.delete();
+            }
+        }
+
+        if (written) {
+            synchronized (this) {
+                Long previous = this.diskEntries.put(key, file.length());
+
+                if (previous != null) {
+                    this.diskSize -= previous;
+                }
+
+                this.diskSize += file.length();
+            }
+
+            trimDisk();
+        }
+    }
+
+}
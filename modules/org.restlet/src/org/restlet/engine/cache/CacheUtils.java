@@ -0,0 +1,471 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ClientInfo;
+import org.restlet.data.Header;
+import org.restlet.data.Reference;
+import org.restlet.data.Status;
+import org.restlet.engine.header.CookieWriter;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.engine.header.PreferenceWriter;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.representation.InputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+/**
+ * Utilities related to HTTP caching, as described in RFC 7234.
+ */
+public class CacheUtils {
+
+    /**
+     * Buffers the entity of a response if it doesn't exceed a maximum size.
+     * Otherwise, the entity is replaced by a representation streaming the
+     * bytes already read followed by the remaining ones.
+     *
+     * @param response
+     *            The response.
+     * @param headers
+     *            The response headers.
+     * @param maxSize
+     *            The maximum size of the entity in bytes.
+     * @return The buffered entity or null if it is too large.
+     * @throws IOException
+     */
+    public static byte[] buffer(Response response, Series<Header> headers,
+            long maxSize) throws IOException {
+        byte[] result = null;
+        Representation entity = response.getEntity();
+
+        if ((entity == null) || !entity.isAvailable()) {
+            result = new byte[0];
+        } else if ((entity.getSize() == Representation.UNKNOWN_SIZE)
+                || (entity.getSize() <= maxSize)) {
+            InputStream in = entity.getStream();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    (entity.getSize() > 0) ? (int) entity.getSize()
+                            : IoUtils.BUFFER_SIZE);
+            byte[] buffer = new byte[IoUtils.BUFFER_SIZE];
+            long total = 0;
+
+            for (int read = 0; (total <= maxSize) && (read != -1); total += Math
+                    .max(read, 0)) {
+                read = in.read(buffer);
+
+                if (read > 0) {
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            if (total <= maxSize) {
+                in.close();
+                result = out.toByteArray();
+            } else {
+                // Don't lose the bytes already read
+                response.setEntity(HeaderUtils.extractEntityHeaders(headers,
+                        new InputRepresentation(new SequenceInputStream(
+                                new ByteArrayInputStream(out.toByteArray()),
+                                in))));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a digest of the given text, as an hexadecimal string. Used to
+     * compare or name sensitive values without keeping them.
+     *
+     * @param text
+     *            The text to digest.
+     * @return The hexadecimal digest.
+     */
+    public static String digest(String text) {
+        String result = null;
+
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            result = IoUtils.toHexString(md.digest(text.getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException e) {
+            result = Integer.toHexString(text.hashCode());
+        } catch (UnsupportedEncodingException e) {
+            result = Integer.toHexString(text.hashCode());
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the first directive with the given name.
+     *
+     * @param directives
+     *            The directives to search.
+     * @param name
+     *            The name of the directive.
+     * @return The first directive with the given name or null.
+     */
+    public static CacheDirective getDirective(
+            List<CacheDirective> directives, String name) {
+        CacheDirective result = null;
+
+        for (int i = 0; (result == null) && (i < directives.size()); i++) {
+            if (name.equalsIgnoreCase(directives.get(i).getName())) {
+                result = directives.get(i);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the headers of a response, suitable for storage. If the response
+     * was received by a client connector, its raw headers are copied,
+     * otherwise they are formatted from the response properties. The
+     * hop-by-hop headers are removed.
+     *
+     * @param response
+     *            The response.
+     * @return The headers of the response.
+     */
+    public static Series<Header> getHeaders(Response response) {
+        Series<Header> result = new Series<Header>(Header.class);
+        Series<Header> raw = response.getHeaders();
+
+        if ((raw != null)
+                && ((raw.getFirst(HeaderConstants.HEADER_DATE, true) != null)
+                        || (raw.getFirst(HeaderConstants.HEADER_CONTENT_LENGTH,
+                                true) != null) || (raw.getFirst(
+                        HeaderConstants.HEADER_TRANSFER_ENCODING, true) != null))) {
+            for (Header header : raw) {
+                if ((header.getValue() != null)
+                        && !HeaderUtils.isHopByHop(header.getName(), raw)) {
+                    result.add(header);
+                }
+            }
+        } else {
+            HeaderUtils.addGeneralHeaders(response, result);
+            HeaderUtils.addResponseHeaders(response, result);
+            HeaderUtils.addEntityHeaders(response.getEntity(), result);
+
+            if (raw != null) {
+                // Keep the extension headers set by the application
+                for (Header header : raw) {
+                    if ((header.getValue() != null)
+                            && HeaderUtils.isExtensionHeader(header.getName())
+                            && !HeaderUtils.isHopByHop(header.getName(), raw)) {
+                        result.add(header);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the key of the resource targeted by a request, made of its
+     * absolute URI without fragment.
+     *
+     * @param request
+     *            The request.
+     * @return The key of the target resource.
+     */
+    public static String getKey(Request request) {
+        return request.getResourceRef().getTargetRef().toString(true, false);
+    }
+
+    /**
+     * Returns the value of a directive as a number of seconds.
+     *
+     * @param directive
+     *            The directive.
+     * @return The number of seconds or -1 if the value is missing or invalid.
+     */
+    public static int getSeconds(CacheDirective directive) {
+        int result = -1;
+
+        if ((directive != null) && (directive.getValue() != null)) {
+            try {
+                result = Integer.parseInt(directive.getValue().trim());
+            } catch (NumberFormatException nfe) {
+                result = -1;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the value of a request header named in the "Vary" header of a
+     * response. The standard headers are formatted from the request
+     * properties, the others are read from the extension headers. Credentials
+     * are only kept as a digest.
+     *
+     * @param request
+     *            The request.
+     * @param name
+     *            The header name.
+     * @return The header value or null.
+     */
+    public static String getVaryValue(Request request, String name) {
+        String result = null;
+        ClientInfo clientInfo = request.getClientInfo();
+
+        if (HeaderConstants.HEADER_ACCEPT.equalsIgnoreCase(name)) {
+            result = PreferenceWriter.write(clientInfo
+                    .getAcceptedMediaTypes());
+        } else if (HeaderConstants.HEADER_ACCEPT_CHARSET.equalsIgnoreCase(name)) {
+            result = PreferenceWriter.write(clientInfo
+                    .getAcceptedCharacterSets());
+        } else if (HeaderConstants.HEADER_ACCEPT_ENCODING
+                .equalsIgnoreCase(name)) {
+            result = PreferenceWriter.write(clientInfo.getAcceptedEncodings());
+        } else if (HeaderConstants.HEADER_ACCEPT_LANGUAGE
+                .equalsIgnoreCase(name)) {
+            result = PreferenceWriter.write(clientInfo.getAcceptedLanguages());
+        } else if (HeaderConstants.HEADER_USER_AGENT.equalsIgnoreCase(name)) {
+            result = clientInfo.getAgent();
+        } else if (HeaderConstants.HEADER_AUTHORIZATION.equalsIgnoreCase(name)) {
+            ChallengeResponse cr = request.getChallengeResponse();
+
+            if (cr != null) {
+                result = digest(cr.getScheme() + " " + cr.getIdentifier()
+                        + " " + String.valueOf(cr.getSecret()) + " "
+                        + cr.getRawValue());
+            }
+        } else if (HeaderConstants.HEADER_COOKIE.equalsIgnoreCase(name)) {
+            if (!request.getCookies().isEmpty()) {
+                result = CookieWriter.write(request.getCookies());
+            }
+        } else if (request.getHeaders() != null) {
+            result = request.getHeaders().getValues(name, ",", true);
+        }
+
+        if ((result != null) && (result.length() == 0)) {
+            result = null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the names of the request headers listed by the "Vary" headers,
+     * in lower case.
+     *
+     * @param headers
+     *            The response headers.
+     * @return The names of the request headers.
+     */
+    public static List<String> getVaryNames(Series<Header> headers) {
+        List<String> result = new ArrayList<String>();
+
+        for (Header header : headers) {
+            if (HeaderConstants.HEADER_VARY.equalsIgnoreCase(header.getName())) {
+                for (String name : header.getValue().split(",")) {
+                    name = name.trim().toLowerCase(Locale.ENGLISH);
+
+                    if ((name.length() > 0) && !result.contains(name)) {
+                        result.add(name);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes the stored responses of a resource modified by an unsafe request,
+     * as well as the ones of the resources referenced by the "Location" and
+     * "Content-Location" headers if they are on the same host.
+     *
+     * @param store
+     *            The store of cache entries.
+     * @param request
+     *            The unsafe request.
+     * @param response
+     *            The successful response.
+     */
+    public static void invalidate(CacheStore store, Request request,
+            Response response) {
+        Reference targetRef = request.getResourceRef().getTargetRef();
+        store.remove(getKey(request));
+        invalidate(store, targetRef, response.getLocationRef());
+
+        if (response.getEntity() != null) {
+            invalidate(store, targetRef, response.getEntity().getLocationRef());
+        }
+    }
+
+    /**
+     * Removes the stored responses of a referenced resource if it is on the
+     * same host as the target of the request.
+     *
+     * @param store
+     *            The store of cache entries.
+     * @param targetRef
+     *            The target of the request.
+     * @param ref
+     *            The reference of the resource to invalidate or null.
+     */
+    private static void invalidate(CacheStore store, Reference targetRef,
+            Reference ref) {
+        if (ref != null) {
+            Reference absoluteRef = ref.isRelative() ? new Reference(
+                    targetRef, ref).getTargetRef() : ref.getTargetRef();
+
+            if ((absoluteRef.getHostIdentifier() != null)
+                    && absoluteRef.getHostIdentifier().equalsIgnoreCase(
+                            targetRef.getHostIdentifier())) {
+                store.remove(absoluteRef.toString(true, false));
+            }
+        }
+    }
+
+    /**
+     * Indicates if a stored response can be used without revalidation, based
+     * on its freshness and on the request directives.
+     *
+     * @param entry
+     *            The stored response.
+     * @param request
+     *            The request.
+     * @param now
+     *            The current time in milliseconds.
+     * @param shared
+     *            True if the store is a shared cache, using the "s-maxage" and
+     *            "proxy-revalidate" directives.
+     * @return True if the stored response can be used.
+     */
+    public static boolean isUsable(CacheEntry entry, Request request,
+            long now, boolean shared) {
+        List<CacheDirective> directives = request.getCacheDirectives();
+        boolean result = !entry.isNoCache()
+                && (getDirective(directives,
+                        HeaderConstants.CACHE_NO_CACHE) == null);
+
+        if (result) {
+            long age = entry.getCurrentAge(now);
+            long lifetime = shared ? entry.getSharedFreshnessLifetime()
+                    : entry.getFreshnessLifetime();
+            int maxAge = getSeconds(getDirective(directives,
+                    HeaderConstants.CACHE_MAX_AGE));
+            int minFresh = getSeconds(getDirective(directives,
+                    HeaderConstants.CACHE_MIN_FRESH));
+
+            if (maxAge >= 0) {
+                lifetime = Math.min(lifetime, maxAge * 1000L);
+            }
+
+            if (minFresh > 0) {
+                age += minFresh * 1000L;
+            }
+
+            result = (age < lifetime);
+
+            if (!result
+                    && !(shared ? entry.isProxyRevalidate() : entry
+                            .isMustRevalidate())) {
+                CacheDirective maxStale = getDirective(directives,
+                        HeaderConstants.CACHE_MAX_STALE);
+
+                if (maxStale != null) {
+                    int seconds = getSeconds(maxStale);
+                    result = (seconds < 0)
+                            || ((age - lifetime) <= seconds * 1000L);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Updates a response with a stored status, headers and entity. The
+     * properties set by a previous response, such as the one of a
+     * conditional request, are discarded.
+     *
+     * @param response
+     *            The response to update.
+     * @param status
+     *            The status to set.
+     * @param headers
+     *            The headers to copy.
+     * @param entity
+     *            The entity to set.
+     */
+    public static void updateResponse(Response response, Status status,
+            Series<Header> headers, Representation entity) {
+        response.getAllowedMethods().clear();
+        response.getCacheDirectives().clear();
+        response.getChallengeRequests().clear();
+        response.getCookieSettings().clear();
+        response.getDimensions().clear();
+        response.getProxyChallengeRequests().clear();
+        response.getRecipientsInfo().clear();
+        response.getWarnings().clear();
+
+        response.setStatus(status);
+        response.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS,
+                headers);
+        HeaderUtils.copyResponseTransportHeaders(headers, response);
+        response.setEntity(entity);
+    }
+
+    /**
+     * Private constructor to ensure that the class acts as a true utility class
+     * i.e. it isn't instantiable and extensible.
+     */
+    private CacheUtils() {
+    }
+
+}
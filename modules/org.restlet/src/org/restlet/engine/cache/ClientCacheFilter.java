@@ -0,0 +1,438 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Uniform;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.Conditions;
+import org.restlet.data.Header;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.routing.Filter;
+import org.restlet.util.Series;
+
+/**
+ * Filter implementing a private HTTP cache on the client side, as described in
+ * RFC 7234. It can be inserted before a client connector or a client
+ * dispatcher, for example with
+ * {@link org.restlet.resource.ClientResource#setNext(Uniform)}:
+ *
+ * <pre>
+ * ClientCacheFilter cache = new ClientCacheFilter(context,
+ *         context.getClientDispatcher());
+ * clientResource.setNext(cache);
+ * </pre>
+ *
+ * Responses to GET requests are buffered and stored when they are cacheable.
+ * Fresh stored responses are then returned without invoking the next Restlet,
+ * while stale ones with a validator are revalidated with a conditional request
+ * whose "304 Not Modified" response is completed from the store. The "Vary"
+ * header selects between the stored variants of a resource. Successful unsafe
+ * requests invalidate the stored responses of their target resource.
+ * Authenticated requests bypass the cache, unless the response is explicitly
+ * "public", as the response might depend on the identity of the user.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe. The
+ * store can be shared between several filters.
+ */
+public class ClientCacheFilter extends Filter {
+
+    /** The name of the request attribute holding the stale entry. */
+    private static final String ATTRIBUTE_ENTRY = "org.restlet.engine.cache.entry";
+
+    /** The name of the request attribute holding the time of the request. */
+    private static final String ATTRIBUTE_REQUEST_TIME = "org.restlet.engine.cache.requestTime";
+
+    /** The maximum size of a stored entity in bytes. */
+    private volatile long maxEntrySize;
+
+    /** The store of cache entries. */
+    private final CacheStore store;
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     *            The context.
+     */
+    public ClientCacheFilter(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Constructor storing up to 16 MB of responses in memory.
+     *
+     * @param context
+     *            The context.
+     * @param next
+     *            The next Restlet.
+     */
+    public ClientCacheFilter(Context context, Restlet next) {
+        this(context, next, new CacheStore(16L * 1024 * 1024));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     *            The context.
+     * @param next
+     *            The next Restlet.
+     * @param store
+     *            The store of cache entries.
+     */
+    public ClientCacheFilter(Context context, Restlet next, CacheStore store) {
+        super(context, next);
+        this.store = store;
+        this.maxEntrySize = 1024L * 1024;
+    }
+
+    /**
+     * Stores, revalidates or invalidates entries based on the response, unless
+     * the call is asynchronous in which case this is done when the response is
+     * received.
+     *
+     * @param request
+     *            The request to filter.
+     * @param response
+     *            The response to filter.
+     */
+    @Override
+    protected void afterHandle(Request request, Response response) {
+        if (!request.isAsynchronous()) {
+            update(request, response);
+        }
+    }
+
+    /**
+     * Returns a stored response if it can be used for the request, or turns
+     * the request into a conditional one if the stored response needs to be
+     * revalidated.
+     *
+     * @param request
+     *            The request to filter.
+     * @param response
+     *            The response to filter.
+     * @return The continuation status.
+     */
+    @Override
+    protected int beforeHandle(Request request, Response response) {
+        int result = CONTINUE;
+        long now = System.currentTimeMillis();
+
+        if (Method.GET.equals(request.getMethod())
+                && !request.getConditions().hasSome()
+                && request.getRanges().isEmpty()) {
+            CacheEntry entry = lookup(request);
+
+            if ((entry != null) && isUsable(entry, request, now)) {
+                serve(entry, response, now);
+                result = STOP;
+            } else if (CacheUtils.getDirective(request.getCacheDirectives(),
+                    HeaderConstants.CACHE_ONLY_IF_CACHED) != null) {
+                response.setStatus(Status.SERVER_ERROR_GATEWAY_TIMEOUT,
+                        "No stored response can be used for this request");
+                result = STOP;
+            } else if ((entry != null) && entry.hasValidator()) {
+                Conditions conditions = new Conditions();
+
+                if (entry.getTag() != null) {
+                    List<Tag> tags = new ArrayList<Tag>();
+                    tags.add(entry.getTag());
+                    conditions.setNoneMatch(tags);
+                } else {
+                    conditions.setModifiedSince(entry.getModificationDate());
+                }
+
+                request.setConditions(conditions);
+                request.getAttributes().put(ATTRIBUTE_ENTRY, entry);
+            }
+        }
+
+        if (result == STOP) {
+            if (request.getOnResponse() != null) {
+                request.getOnResponse().handle(request, response);
+            }
+        } else {
+            request.getAttributes().put(ATTRIBUTE_REQUEST_TIME, now);
+
+            if (request.isAsynchronous()) {
+                final Uniform onResponse = request.getOnResponse();
+                request.setOnResponse(new Uniform() {
+                    public void handle(Request req, Response resp) {
+                        req.setOnResponse(onResponse);
+                        update(req, resp);
+                        onResponse.handle(req, resp);
+                    }
+                });
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the maximum size of a stored entity in bytes. Larger responses
+     * are passed through without being buffered. Default value is 1 MB.
+     *
+     * @return The maximum size of a stored entity in bytes.
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Returns the store of cache entries.
+     *
+     * @return The store of cache entries.
+     */
+    public CacheStore getStore() {
+        return store;
+    }
+
+    /**
+     * Removes the stored responses of a resource modified by an unsafe request,
+     * as well as the ones of the resources referenced by the "Location" and
+     * "Content-Location" headers if they are on the same host.
+     *
+     * @param request
+     *            The unsafe request.
+     * @param response
+     *            The successful response.
+     */
+    protected void invalidate(Request request, Response response) {
+        CacheUtils.invalidate(getStore(), request, response);
+    }
+
+    /**
+     * Indicates if a response can be stored, based on the request method,
+     * credentials and directives and on the response status and directives.
+     *
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     * @return True if the response can be stored.
+     */
+    protected boolean isStorable(Request request, Response response) {
+        List<CacheDirective> directives = response.getCacheDirectives();
+        boolean result = Method.GET.equals(request.getMethod())
+                && request.getRanges().isEmpty()
+                && CacheEntry.isHeuristicallyCacheable(response.getStatus())
+                && (CacheUtils.getDirective(request.getCacheDirectives(),
+                        HeaderConstants.CACHE_NO_STORE) == null)
+                && (CacheUtils.getDirective(directives,
+                        HeaderConstants.CACHE_NO_STORE) == null);
+
+        if (result && (request.getChallengeResponse() != null)) {
+            // Authenticated responses must be explicitly shareable
+            result = (CacheUtils.getDirective(directives,
+                    HeaderConstants.CACHE_PUBLIC) != null);
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if a stored response can be used without revalidation, based
+     * on its freshness and on the request directives.
+     *
+     * @param entry
+     *            The stored response.
+     * @param request
+     *            The request.
+     * @param now
+     *            The current time in milliseconds.
+     * @return True if the stored response can be used.
+     */
+    protected boolean isUsable(CacheEntry entry, Request request, long now) {
+        return CacheUtils.isUsable(entry, request, now, false);
+    }
+
+    /**
+     * Returns the stored response selected for a request. Authenticated
+     * requests can only select public responses.
+     *
+     * @param request
+     *            The request.
+     * @return The stored response or null.
+     */
+    protected CacheEntry lookup(Request request) {
+        CacheEntry result = getStore().select(request);
+
+        if ((result != null) && (request.getChallengeResponse() != null)
+                && !result.isPublic()) {
+            result = null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Updates a response with a stored one. The "Age" header is set to the
+     * current age of the stored response.
+     *
+     * @param entry
+     *            The stored response.
+     * @param response
+     *            The response to update.
+     * @param now
+     *            The current time in milliseconds.
+     */
+    protected void serve(CacheEntry entry, Response response, long now) {
+        Series<Header> headers = new Series<Header>(Header.class);
+
+        for (Header header : entry.getHeaders()) {
+            if (!HeaderConstants.HEADER_AGE.equalsIgnoreCase(header.getName())) {
+                headers.add(header);
+            }
+        }
+
+        headers.add(HeaderConstants.HEADER_AGE,
+                Long.toString(entry.getCurrentAge(now) / 1000L));
+
+        CacheUtils.updateResponse(response, entry.getStatus(), headers,
+                entry.toRepresentation());
+    }
+
+    /**
+     * Sets the maximum size of a stored entity in bytes.
+     *
+     * @param maxEntrySize
+     *            The maximum size of a stored entity in bytes.
+     */
+    public void setMaxEntrySize(long maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Buffers and stores a response if its headers allow it. The stored
+     * variants of the resource that the request would have selected are
+     * replaced.
+     *
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     * @param requestTime
+     *            The time when the request was sent.
+     * @param now
+     *            The time when the response was received.
+     */
+    protected void store(Request request, Response response, long requestTime,
+            long now) {
+        Series<Header> headers = CacheUtils.getHeaders(response);
+        List<String> varyNames = CacheUtils.getVaryNames(headers);
+        Map<String, String> varyValues = new LinkedHashMap<String, String>();
+
+        for (String name : varyNames) {
+            varyValues.put(name, CacheUtils.getVaryValue(request, name));
+        }
+
+        // Check the freshness before buffering the entity
+        CacheEntry entry = new CacheEntry(response.getStatus(), headers,
+                new byte[0], varyValues, requestTime, now);
+
+        if (!varyNames.contains("*")
+                && ((entry.getFreshnessLifetime() > 0) || entry.hasValidator())) {
+            try {
+                byte[] body = CacheUtils.buffer(response, headers,
+                        getMaxEntrySize());
+
+                if (body != null) {
+                    entry = new CacheEntry(response.getStatus(), headers, body,
+                            varyValues, requestTime, now);
+                    response.setEntity(entry.toRepresentation());
+                    getStore().replace(request, entry);
+                }
+            } catch (IOException ioe) {
+                getLogger().log(Level.WARNING,
+                        "Unable to buffer the response entity", ioe);
+                response.setStatus(Status.CONNECTOR_ERROR_COMMUNICATION, ioe);
+            }
+        }
+    }
+
+    /**
+     * Updates the store based on the response of a call that wasn't answered
+     * from the store.
+     *
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     */
+    protected void update(Request request, Response response) {
+        Long requestTime = (Long) request.getAttributes().remove(
+                ATTRIBUTE_REQUEST_TIME);
+        CacheEntry entry = (CacheEntry) request.getAttributes().remove(
+                ATTRIBUTE_ENTRY);
+        long now = System.currentTimeMillis();
+        long sent = (requestTime == null) ? now : requestTime;
+        Status status = response.getStatus();
+
+        if (!request.getMethod().isSafe()) {
+            if (status.isSuccess() || status.isRedirection()) {
+                invalidate(request, response);
+            }
+        } else if ((entry != null)
+                && Status.REDIRECTION_NOT_MODIFIED.equals(status)) {
+            // Complete the response with the revalidated entry
+            CacheEntry updated = entry.update(CacheUtils.getHeaders(response),
+                    sent, now);
+            boolean noStore = CacheUtils.getDirective(
+                    response.getCacheDirectives(),
+                    HeaderConstants.CACHE_NO_STORE) != null;
+            getStore().replace(request, noStore ? null : updated);
+            serve(updated, response, now);
+        } else if (isStorable(request, response)) {
+            store(request, response, sent, now);
+        }
+    }
+
+}
@@ -0,0 +1,415 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Uniform;
+import org.restlet.data.Header;
+import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.routing.Filter;
+import org.restlet.util.Series;
+
+/**
+ * Filter coalescing concurrent identical safe requests into a single call to
+ * the next Restlet, also known as "single flight". Requests are identical when
+ * they have the same method, target URI, "Accept*" headers and credentials.
+ * The first request is handled normally while the others wait for its
+ * response, whose entity is buffered once and replayed to each of them.
+ * Asynchronous requests don't block, their callback is invoked when the shared
+ * response is received.<br>
+ * <br>
+ * It protects origin servers from the bursts of identical requests issued when
+ * a popular resource expires from a cache. Requests with an entity, conditions
+ * or ranges are never coalesced. If the shared response is larger than the
+ * maximum entity size or can't be received, the waiting requests are handled
+ * separately.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe.
+ */
+public class CoalescingFilter extends Filter {
+
+    /**
+     * Call in progress shared by identical requests.
+     */
+    private class Flight {
+
+        /** The asynchronous requests waiting for the response. */
+        private final List<Response> callbacks;
+
+        /** Indicates if the shared call has completed. */
+        private boolean done;
+
+        /** The latch released when the shared call completes. */
+        private final CountDownLatch latch;
+
+        /** The shared response, or null if it can't be shared. */
+        private volatile CacheEntry result;
+
+        /**
+         * Constructor.
+         */
+        public Flight() {
+            this.callbacks = new ArrayList<Response>();
+            this.latch = new CountDownLatch(1);
+        }
+
+        /**
+         * Adds an asynchronous request waiting for the response, unless the
+         * flight has already completed.
+         *
+         * @param response
+         *            The response of the waiting request.
+         * @return True if the request was added.
+         */
+        public synchronized boolean addCallback(Response response) {
+            if (!this.done) {
+                this.callbacks.add(response);
+            }
+
+            return !this.done;
+        }
+
+        /**
+         * Completes the flight and delivers the shared response to the
+         * asynchronous requests waiting for it.
+         *
+         * @param result
+         *            The shared response, or null if it can't be shared.
+         */
+        public void complete(CacheEntry result) {
+            List<Response> waiting = null;
+
+            synchronized (this) {
+                if (!this.done) {
+                    this.result = result;
+                    this.done = true;
+                    waiting = new ArrayList<Response>(this.callbacks);
+                    this.callbacks.clear();
+                }
+            }
+
+            if (waiting != null) {
+                this.latch.countDown();
+
+                for (Response response : waiting) {
+                    deliver(this, response.getRequest(), response);
+                }
+            }
+        }
+    }
+
+    /** The calls in progress, by request key. */
+    private final ConcurrentMap<String, Flight> flights;
+
+    /** The maximum size of a shared entity in bytes. */
+    private volatile long maxEntrySize;
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     *            The context.
+     */
+    public CoalescingFilter(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     *            The context.
+     * @param next
+     *            The next Restlet.
+     */
+    public CoalescingFilter(Context context, Restlet next) {
+        super(context, next);
+        this.flights = new ConcurrentHashMap<String, Flight>();
+        this.maxEntrySize = 1024L * 1024;
+    }
+
+    /**
+     * Buffers the response of the shared call and completes the flight. The
+     * flight is removed first so that later requests start a new call.
+     *
+     * @param key
+     *            The request key.
+     * @param flight
+     *            The flight to complete.
+     * @param response
+     *            The response of the shared call, or null if it failed.
+     */
+    private void complete(String key, Flight flight, Response response) {
+        this.flights.remove(key, flight);
+        CacheEntry result = null;
+
+        if (response != null) {
+            try {
+                Series<Header> headers = CacheUtils.getHeaders(response);
+                byte[] body = CacheUtils.buffer(response, headers,
+                        getMaxEntrySize());
+
+                if (body != null) {
+                    result = new CacheEntry(response.getStatus(), headers,
+                            body, Collections.<String, String> emptyMap(), 0,
+                            0);
+                    response.setEntity(result.toRepresentation());
+                }
+            } catch (IOException ioe) {
+                getLogger().log(Level.WARNING,
+                        "Unable to buffer the shared response entity", ioe);
+                response.setStatus(Status.CONNECTOR_ERROR_COMMUNICATION, ioe);
+            }
+        }
+
+        flight.complete(result);
+    }
+
+    /**
+     * Delivers the shared response to a waiting asynchronous request, or
+     * handles it separately if the response can't be shared.
+     *
+     * @param flight
+     *            The completed flight.
+     * @param request
+     *            The waiting request.
+     * @param response
+     *            The response of the waiting request.
+     */
+    private void deliver(Flight flight, Request request, Response response) {
+        if (flight.result != null) {
+            replay(flight.result, response);
+
+            if (request.getOnResponse() != null) {
+                request.getOnResponse().handle(request, response);
+            }
+        } else {
+            super.doHandle(request, response);
+        }
+    }
+
+    /**
+     * Handles the call by joining the call in progress for an identical
+     * request, or by starting a new one that later identical requests can
+     * join.
+     *
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     * @return The continuation status.
+     */
+    @Override
+    protected int doHandle(Request request, Response response) {
+        int result = CONTINUE;
+
+        if (isCoalescable(request)) {
+            String key = getKey(request);
+            Flight flight = new Flight();
+            Flight current = this.flights.putIfAbsent(key, flight);
+
+            if (current == null) {
+                lead(key, flight, request, response);
+            } else {
+                follow(current, request, response);
+            }
+        } else {
+            result = super.doHandle(request, response);
+        }
+
+        return result;
+    }
+
+    /**
+     * Waits for the response of a call in progress. Asynchronous requests
+     * return immediately and are notified through their callback.
+     *
+     * @param flight
+     *            The call in progress.
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     */
+    private void follow(Flight flight, Request request, Response response) {
+        if (request.isAsynchronous()) {
+            if (!flight.addCallback(response)) {
+                deliver(flight, request, response);
+            }
+        } else {
+            try {
+                flight.latch.await();
+                deliver(flight, request, response);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                response.setStatus(Status.CONNECTOR_ERROR_INTERNAL, ie,
+                        "Interrupted while waiting for an identical request");
+            }
+        }
+    }
+
+    /**
+     * Returns the key identifying identical requests, made of the method, the
+     * target URI, the "Accept*" headers and a digest of the credentials.
+     *
+     * @param request
+     *            The request.
+     * @return The request key.
+     */
+    protected String getKey(Request request) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(request.getMethod().getName()).append(' ')
+                .append(CacheUtils.getKey(request));
+        sb.append('\n').append(
+                CacheUtils.getVaryValue(request, HeaderConstants.HEADER_ACCEPT));
+        sb.append('\n').append(
+                CacheUtils.getVaryValue(request,
+                        HeaderConstants.HEADER_ACCEPT_CHARSET));
+        sb.append('\n').append(
+                CacheUtils.getVaryValue(request,
+                        HeaderConstants.HEADER_ACCEPT_ENCODING));
+        sb.append('\n').append(
+                CacheUtils.getVaryValue(request,
+                        HeaderConstants.HEADER_ACCEPT_LANGUAGE));
+        sb.append('\n').append(
+                CacheUtils.getVaryValue(request,
+                        HeaderConstants.HEADER_AUTHORIZATION));
+        return sb.toString();
+    }
+
+    /**
+     * Returns the maximum size of a shared entity in bytes. Larger responses
+     * are only given to the first request. Default value is 1 MB.
+     *
+     * @return The maximum size of a shared entity in bytes.
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Indicates if a request can be coalesced with identical ones. By default,
+     * only safe requests without entity, conditions or ranges can be.
+     *
+     * @param request
+     *            The request.
+     * @return True if the request can be coalesced.
+     */
+    protected boolean isCoalescable(Request request) {
+        return request.getMethod().isSafe()
+                && !request.isEntityAvailable()
+                && !request.getConditions().hasSome()
+                && request.getRanges().isEmpty();
+    }
+
+    /**
+     * Handles the shared call and completes the flight with its response.
+     *
+     * @param key
+     *            The request key.
+     * @param flight
+     *            The flight to complete.
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     */
+    private void lead(final String key, final Flight flight, Request request,
+            Response response) {
+        boolean started = false;
+
+        try {
+            if (request.isAsynchronous()) {
+                final Uniform onResponse = request.getOnResponse();
+                request.setOnResponse(new Uniform() {
+                    public void handle(Request req, Response resp) {
+                        req.setOnResponse(onResponse);
+                        complete(key, flight, resp);
+                        onResponse.handle(req, resp);
+                    }
+                });
+                super.doHandle(request, response);
+            } else {
+                super.doHandle(request, response);
+                complete(key, flight, response);
+            }
+
+            started = true;
+        } finally {
+            if (!started) {
+                // Let the waiting requests be handled separately
+                complete(key, flight, null);
+            }
+        }
+    }
+
+    /**
+     * Updates a response with the shared one.
+     *
+     * @param result
+     *            The shared response.
+     * @param response
+     *            The response to update.
+     */
+    private void replay(CacheEntry result, Response response) {
+        CacheUtils.updateResponse(response, result.getStatus(),
+                new Series<Header>(Header.class, new ArrayList<Header>(
+                        result.getHeaders())), result.toRepresentation());
+    }
+
+    /**
+     * Sets the maximum size of a shared entity in bytes.
+     *
+     * @param maxEntrySize
+     *            The maximum size of a shared entity in bytes.
+     */
+    public void setMaxEntrySize(long maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+}
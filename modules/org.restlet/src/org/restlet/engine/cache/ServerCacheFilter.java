@@ -0,0 +1,479 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.Conditions;
+import org.restlet.data.Header;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.util.Series;
+
+/**
+ * Filter implementing a shared HTTP cache on the server side, as described in
+ * RFC 7234. It is usually created by the
+ * {@link org.restlet.service.CacheService} of an application, but can also be
+ * inserted anywhere in a chain of Restlets.<br>
+ * <br>
+ * Responses to GET requests are buffered and stored when their cache
+ * directives allow a shared cache to do so, taking "s-maxage" into account.
+ * Fresh stored responses are then returned to GET and HEAD requests without
+ * invoking the next Restlet, the conditions of the request being evaluated
+ * against the stored response. Stale ones with a validator are revalidated
+ * with a conditional request whose "304 Not Modified" response is completed
+ * from the store. The "Vary" header selects between the stored variants of a
+ * resource. Successful unsafe requests invalidate the stored responses of
+ * their target resource.<br>
+ * <br>
+ * Concurrent identical requests that can't be answered from the store are
+ * collapsed into a single call to the next Restlet, as done by the parent
+ * {@link CoalescingFilter}, so that the expiration of a popular response
+ * doesn't result in a burst of calls.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe. The
+ * store can be shared between several filters.
+ */
+public class ServerCacheFilter extends CoalescingFilter {
+
+    /** The name of the request attribute holding the stale entry. */
+    private static final String ATTRIBUTE_ENTRY = "org.restlet.engine.cache.server.entry";
+
+    /** The name of the request attribute holding the time of the request. */
+    private static final String ATTRIBUTE_REQUEST_TIME = "org.restlet.engine.cache.server.requestTime";
+
+    /** Indicates if concurrent identical requests are collapsed. */
+    private volatile boolean collapsing;
+
+    /** The store of cache entries. */
+    private final CacheStore store;
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     *            The context.
+     */
+    public ServerCacheFilter(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Constructor storing up to 64 MB of responses in memory.
+     *
+     * @param context
+     *            The context.
+     * @param next
+     *            The next Restlet.
+     */
+    public ServerCacheFilter(Context context, Restlet next) {
+        this(context, next, new CacheStore(64L * 1024 * 1024));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     *            The context.
+     * @param next
+     *            The next Restlet.
+     * @param store
+     *            The store of cache entries.
+     */
+    public ServerCacheFilter(Context context, Restlet next, CacheStore store) {
+        super(context, next);
+        this.collapsing = true;
+        this.store = store;
+    }
+
+    /**
+     * Stores, revalidates or invalidates entries based on the response.
+     *
+     * @param request
+     *            The request to filter.
+     * @param response
+     *            The response to filter.
+     */
+    @Override
+    protected void afterHandle(Request request, Response response) {
+        if (!request.isAsynchronous()) {
+            update(request, response);
+        }
+    }
+
+    /**
+     * Returns a stored response if it can be used for the request, or turns
+     * the request into a conditional one if the stored response needs to be
+     * revalidated.
+     *
+     * @param request
+     *            The request to filter.
+     * @param response
+     *            The response to filter.
+     * @return The continuation status.
+     */
+    @Override
+    protected int beforeHandle(Request request, Response response) {
+        int result = CONTINUE;
+        long now = System.currentTimeMillis();
+        Method method = request.getMethod();
+
+        if ((Method.GET.equals(method) || Method.HEAD.equals(method))
+                && !request.isAsynchronous()) {
+            CacheEntry entry = getStore().select(request);
+
+            if ((entry != null)
+                    && CacheUtils.isUsable(entry, request, now, true)) {
+                serve(entry, request, response, now);
+                result = STOP;
+            } else if (CacheUtils.getDirective(request.getCacheDirectives(),
+                    HeaderConstants.CACHE_ONLY_IF_CACHED) != null) {
+                response.setStatus(Status.SERVER_ERROR_GATEWAY_TIMEOUT,
+                        "No stored response can be used for this request");
+                result = STOP;
+            } else if ((entry != null) && entry.hasValidator()
+                    && Method.GET.equals(method)
+                    && !request.getConditions().hasSome()) {
+                Conditions conditions = new Conditions();
+
+                if (entry.getTag() != null) {
+                    List<Tag> tags = new ArrayList<Tag>();
+                    tags.add(entry.getTag());
+                    conditions.setNoneMatch(tags);
+                } else {
+                    conditions.setModifiedSince(entry.getModificationDate());
+                }
+
+                request.setConditions(conditions);
+                request.getAttributes().put(ATTRIBUTE_ENTRY, entry);
+            }
+        }
+
+        if (result == CONTINUE) {
+            request.getAttributes().put(ATTRIBUTE_REQUEST_TIME, now);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the key identifying identical requests. In addition to the
+     * parent key, it contains the values of the request headers selected by
+     * the "Vary" header of the stored variants, and the validator of the
+     * stored response being revalidated.
+     *
+     * @param request
+     *            The request.
+     * @return The request key.
+     */
+    @Override
+    protected String getKey(Request request) {
+        StringBuilder sb = new StringBuilder(super.getKey(request));
+        List<CacheEntry> variants = getStore().get(CacheUtils.getKey(request));
+
+        if ((variants != null) && !variants.isEmpty()) {
+            for (String name : variants.get(0).getVaryValues().keySet()) {
+                sb.append('\n').append(name).append(": ")
+                        .append(CacheUtils.getVaryValue(request, name));
+            }
+        }
+
+        CacheEntry entry = (CacheEntry) request.getAttributes().get(
+                ATTRIBUTE_ENTRY);
+
+        if (entry != null) {
+            sb.append('\n').append(entry.getTag()).append(' ')
+                    .append(entry.getModificationDate());
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the store of cache entries.
+     *
+     * @return The store of cache entries.
+     */
+    public CacheStore getStore() {
+        return store;
+    }
+
+    /**
+     * Indicates if a request can be collapsed with identical ones. In addition
+     * to the parent rules, the conditional requests revalidating a stored
+     * response can be collapsed.
+     *
+     * @param request
+     *            The request.
+     * @return True if the request can be collapsed.
+     */
+    @Override
+    protected boolean isCoalescable(Request request) {
+        boolean result = isCollapsing();
+
+        if (result) {
+            if (request.getAttributes().containsKey(ATTRIBUTE_ENTRY)) {
+                result = !request.isEntityAvailable()
+                        && request.getRanges().isEmpty();
+            } else {
+                result = super.isCoalescable(request);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if concurrent identical requests that can't be answered from
+     * the store are collapsed into a single call. Default value is true.
+     *
+     * @return True if concurrent identical requests are collapsed.
+     */
+    public boolean isCollapsing() {
+        return collapsing;
+    }
+
+    /**
+     * Indicates if a response can be stored by a shared cache, based on the
+     * request method, credentials and directives and on the response status,
+     * cookies and directives.
+     *
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     * @return True if the response can be stored.
+     */
+    protected boolean isStorable(Request request, Response response) {
+        List<CacheDirective> directives = response.getCacheDirectives();
+        boolean result = Method.GET.equals(request.getMethod())
+                && CacheEntry.isHeuristicallyCacheable(response.getStatus())
+                && response.getCookieSettings().isEmpty()
+                && (CacheUtils.getDirective(request.getCacheDirectives(),
+                        HeaderConstants.CACHE_NO_STORE) == null)
+                && (CacheUtils.getDirective(directives,
+                        HeaderConstants.CACHE_NO_STORE) == null)
+                && (CacheUtils.getDirective(directives,
+                        HeaderConstants.CACHE_PRIVATE) == null);
+
+        if (result && (request.getChallengeResponse() != null)) {
+            // Authenticated responses must be explicitly shareable
+            result = (CacheUtils.getDirective(directives,
+                    HeaderConstants.CACHE_PUBLIC) != null)
+                    || (CacheUtils.getDirective(directives,
+                            HeaderConstants.CACHE_SHARED_MAX_AGE) != null)
+                    || (CacheUtils.getDirective(directives,
+                            HeaderConstants.CACHE_MUST_REVALIDATE) != null);
+        }
+
+        return result;
+    }
+
+    /**
+     * Updates a response with a stored one. The "Age" header is set to the
+     * current age of the stored response and the conditions of the request
+     * are evaluated against it.
+     *
+     * @param entry
+     *            The stored response.
+     * @param request
+     *            The request.
+     * @param response
+     *            The response to update.
+     * @param now
+     *            The current time in milliseconds.
+     */
+    protected void serve(CacheEntry entry, Request request, Response response,
+            long now) {
+        Series<Header> headers = new Series<Header>(Header.class);
+        Series<Header> extensionHeaders = new Series<Header>(Header.class);
+
+        for (Header header : entry.getHeaders()) {
+            if (!HeaderConstants.HEADER_AGE
+                    .equalsIgnoreCase(header.getName())) {
+                headers.add(header);
+
+                if (HeaderUtils.isExtensionHeader(header.getName())) {
+                    extensionHeaders.add(header);
+                }
+            }
+        }
+
+        headers.add(HeaderConstants.HEADER_AGE,
+                Long.toString(entry.getCurrentAge(now) / 1000L));
+        CacheUtils.updateResponse(response, entry.getStatus(), headers,
+                entry.toRepresentation());
+
+        // The standard headers are written from the response properties
+        response.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS,
+                extensionHeaders);
+
+        if (entry.getStatus().isSuccess()
+                && request.getConditions().hasSome()) {
+            Status status = request.getConditions().getStatus(
+                    request.getMethod(), response.getEntity() != null,
+                    entry.getTag(), entry.getModificationDate());
+
+            if (status != null) {
+                response.setStatus(status);
+
+                if (status.isError()) {
+                    response.setEntity(null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Indicates if concurrent identical requests that can't be answered from
+     * the store are collapsed into a single call.
+     *
+     * @param collapsing
+     *            True if concurrent identical requests are collapsed.
+     */
+    public void setCollapsing(boolean collapsing) {
+        this.collapsing = collapsing;
+    }
+
+    /**
+     * Buffers and stores a response if its headers allow it. The stored
+     * variants of the resource that the request would have selected are
+     * replaced, unless a more recent response was stored in the meantime,
+     * for example by a collapsed request.
+     *
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     * @param requestTime
+     *            The time when the request was received.
+     * @param now
+     *            The time when the response was produced.
+     */
+    protected void store(Request request, Response response, long requestTime,
+            long now) {
+        Series<Header> headers = CacheUtils.getHeaders(response);
+        List<String> varyNames = CacheUtils.getVaryNames(headers);
+        Map<String, String> varyValues = new LinkedHashMap<String, String>();
+
+        for (String name : varyNames) {
+            varyValues.put(name, CacheUtils.getVaryValue(request, name));
+        }
+
+        // Check the freshness before buffering the entity
+        CacheEntry entry = new CacheEntry(response.getStatus(), headers,
+                new byte[0], varyValues, requestTime, now);
+        CacheEntry current = getStore().select(request);
+        boolean newer = (current == null)
+                || (current.getResponseTime() < requestTime);
+
+        if (newer
+                && !varyNames.contains("*")
+                && ((entry.getSharedFreshnessLifetime() > 0) || entry
+                        .hasValidator())) {
+            try {
+                byte[] body = CacheUtils.buffer(response, headers,
+                        getMaxEntrySize());
+
+                if (body != null) {
+                    entry = new CacheEntry(response.getStatus(), headers, body,
+                            varyValues, requestTime, now);
+                    response.setEntity(entry.toRepresentation());
+                    getStore().replace(request, entry);
+                }
+            } catch (IOException ioe) {
+                getLogger().log(Level.WARNING,
+                        "Unable to buffer the response entity", ioe);
+                response.setStatus(Status.SERVER_ERROR_INTERNAL, ioe);
+            }
+        }
+    }
+
+    /**
+     * Updates the store based on the response of a call that wasn't answered
+     * from the store.
+     *
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     */
+    protected void update(Request request, Response response) {
+        Long requestTime = (Long) request.getAttributes().remove(
+                ATTRIBUTE_REQUEST_TIME);
+        CacheEntry entry = (CacheEntry) request.getAttributes().remove(
+                ATTRIBUTE_ENTRY);
+        long now = System.currentTimeMillis();
+        long received = (requestTime == null) ? now : requestTime;
+        Status status = response.getStatus();
+
+        if (entry != null) {
+            // Remove the conditions added for the revalidation
+            request.setConditions(new Conditions());
+        }
+
+        if (!request.getMethod().isSafe()) {
+            if (status.isSuccess() || status.isRedirection()) {
+                CacheUtils.invalidate(getStore(), request, response);
+            }
+        } else if ((entry != null)
+                && Status.REDIRECTION_NOT_MODIFIED.equals(status)) {
+            // Complete the response with the revalidated entry
+            CacheEntry updated = entry.update(CacheUtils.getHeaders(response),
+                    received, now);
+            boolean noStore = CacheUtils.getDirective(
+                    response.getCacheDirectives(),
+                    HeaderConstants.CACHE_NO_STORE) != null;
+            getStore().replace(request, noStore ? null : updated);
+            serve(updated, request, response, now);
+        } else if (isStorable(request, response)) {
+            store(request, response, received, now);
+        }
+    }
+
+}
@@ -38,6 +38,8 @@ import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.restlet.Connector;
 import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
 import org.restlet.data.Protocol;
 import org.restlet.engine.Edition;
 import org.restlet.engine.RestletHelper;
@@ -70,9 +72,17 @@ public abstract class ConnectorHelper<T extends Connector> extends
         return result;
     }
 
+    // [ifndef gwt] member
+    /** The runtime metrics, lazily created. */
+    private volatile ConnectorMetrics metrics;
+
     /** The protocols simultaneously supported. */
     private final List<Protocol> protocols;
 
+    // [ifndef gwt] member
+    /** Indicates if the calls are timed, lazily read from the parameters. */
+    private volatile Boolean timed;
+
     /**
      * Constructor.
      */
@@ -81,6 +91,18 @@ public abstract class ConnectorHelper<T extends Connector> extends
         this.protocols = new CopyOnWriteArrayList<Protocol>();
     }
 
+    // [ifndef gwt] method
+    /**
+     * Creates the runtime metrics. Subclasses can override it to sample the
+     * gauges that they are able to measure, such as open connections or busy
+     * worker threads.
+     * 
+     * @return The new runtime metrics.
+     */
+    protected ConnectorMetrics createMetrics() {
+        return new ConnectorMetrics();
+    }
+
     /**
      * Returns the helped Restlet context.
      * 
@@ -95,6 +117,30 @@ public abstract class ConnectorHelper<T extends Connector> extends
         return super.getContext();
     }
 
+    // [ifndef gwt] method
+    /**
+     * Returns the runtime metrics, created on first access by
+     * {@link #createMetrics()}.
+     * 
+     * @return The runtime metrics.
+     */
+    public ConnectorMetrics getMetrics() {
+        ConnectorMetrics result = this.metrics;
+
+        if (result == null) {
+            synchronized (this) {
+                result = this.metrics;
+
+                if (result == null) {
+                    result = createMetrics();
+                    this.metrics = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns the protocols simultaneously supported.
      * 
@@ -104,12 +150,74 @@ public abstract class ConnectorHelper<T extends Connector> extends
         return this.protocols;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Invokes the helped connector's
+     * {@link Connector#handle(Request, Response)} method, measuring the call
+     * in the runtime metrics. When the calls are
+     * timed, the timings are attached to the request if the connector didn't
+     * do it earlier, recorded in the metrics and returned in a "Server-Timing"
+     * response header.
+     * 
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     */
+    protected void handleMeasured(Request request, Response response) {
+        org.restlet.engine.util.CallTimings timings = null;
+
+        if (isTimed()) {
+            timings = request.getTimings();
+
+            if (timings == null) {
+                timings = new org.restlet.engine.util.CallTimings();
+                request.setTimings(timings);
+            }
+        }
+
+        long startTime = getMetrics().onRequestStarted();
+
+        try {
+            getHelped().handle(request, response);
+        } finally {
+            getMetrics().onRequestCompleted(startTime);
+
+            if (timings != null) {
+                getMetrics().onRequestTimed(timings);
+                timings.addHeader(response);
+            }
+        }
+    }
+
+    // [ifndef gwt] method
+    /**
+     * Indicates if the calls are timed, based on the "timings" boolean
+     * parameter of the connector. Default value is false.
+     * 
+     * @return True if the calls are timed.
+     * @see org.restlet.engine.util.CallTimings
+     */
+    public boolean isTimed() {
+        Boolean result = this.timed;
+
+        if (result == null) {
+            result = Boolean.parseBoolean(getHelpedParameters().getFirstValue(
+                    "timings", "false"));
+            this.timed = result;
+        }
+
+        return result;
+    }
+
     @Override
     public void start() throws Exception {
     }
 
     @Override
     public void stop() throws Exception {
+        // [ifndef gwt] instruction
+        this.timed = null;
     }
 
     @Override
@@ -0,0 +1,403 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.connector;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.restlet.engine.util.CallTimings;
+import org.restlet.engine.util.LatencyHistogram;
+import org.restlet.engine.util.RateMeter;
+
+/**
+ * Runtime metrics of a connector. Counters and latency histograms are updated
+ * by the connector helper as calls and connections are processed. Gauges such
+ * as the number of open connections or busy worker threads are sampled on
+ * demand by overriding the related getters; by default they return -1 meaning
+ * that the connector can't measure them.<br>
+ * <br>
+ * The queue wait time and the processing time separate the latency added by
+ * the connector while calls wait for a worker thread from the latency added by
+ * the application.
+ * 
+ * @see ConnectorHelper#getMetrics()
+ */
+public class ConnectorMetrics implements ConnectorMetricsMBean {
+
+    /** The count of bytes read from the network. */
+    private final AtomicLong bytesIn;
+
+    /** The count of bytes written to the network. */
+    private final AtomicLong bytesOut;
+
+    /** The connections closed. */
+    private final RateMeter closedConnections;
+
+    /** The time to parse message heads. */
+    private final LatencyHistogram headParseTime;
+
+    /** The connections opened. */
+    private final RateMeter openedConnections;
+
+    /** The time spent by the application handling calls. */
+    private final LatencyHistogram processingTime;
+
+    /** The time spent by calls waiting for a worker thread. */
+    private final LatencyHistogram queueWaitTime;
+
+    /** The count of calls handled. */
+    private final AtomicLong requests;
+
+    /** The number of calls currently handled. */
+    private final AtomicInteger requestsInFlight;
+
+    /** The time to write messages. */
+    private final LatencyHistogram responseWriteTime;
+
+    /** The time spent by timed calls per processing stage. */
+    private final LatencyHistogram[] stageTimes;
+
+    /**
+     * Constructor.
+     */
+    public ConnectorMetrics() {
+        this.bytesIn = new AtomicLong();
+        this.bytesOut = new AtomicLong();
+        this.closedConnections = new RateMeter();
+        this.headParseTime = new LatencyHistogram();
+        this.openedConnections = new RateMeter();
+        this.processingTime = new LatencyHistogram();
+        this.queueWaitTime = new LatencyHistogram();
+        this.requests = new AtomicLong();
+        this.requestsInFlight = new AtomicInteger();
+        this.responseWriteTime = new LatencyHistogram();
+        this.stageTimes = new LatencyHistogram[CallTimings.STAGES];
+
+        // The connector stages are always measured
+        this.stageTimes[CallTimings.STAGE_PARSE] = this.headParseTime;
+        this.stageTimes[CallTimings.STAGE_QUEUE] = this.queueWaitTime;
+        this.stageTimes[CallTimings.STAGE_WRITE] = this.responseWriteTime;
+
+        for (int i = 0; i < CallTimings.STAGES; i++) {
+            if (this.stageTimes[i] == null) {
+                this.stageTimes[i] = new LatencyHistogram();
+            }
+        }
+    }
+
+    /**
+     * Adds the summary of a latency histogram to a map of values.
+     * 
+     * @param values
+     *            The map of values to update.
+     * @param name
+     *            The name of the histogram.
+     * @param histogram
+     *            The histogram to summarize.
+     */
+    private void addHistogram(Map<String, Number> values, String name,
+            LatencyHistogram histogram) {
+        values.put(name + "_count", histogram.getCount());
+        values.put(name + "_mean_ms", histogram.getMean());
+        values.put(name + "_p50_ms", histogram.getPercentile(50));
+        values.put(name + "_p90_ms", histogram.getPercentile(90));
+        values.put(name + "_p99_ms", histogram.getPercentile(99));
+        values.put(name + "_max_ms", histogram.getMax());
+    }
+
+    public long getBytesIn() {
+        return this.bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return this.bytesOut.get();
+    }
+
+    public long getClosedConnections() {
+        return this.closedConnections.getCount();
+    }
+
+    public double getClosedConnectionsRate() {
+        return this.closedConnections.getRate();
+    }
+
+    /**
+     * Returns the histogram of the time to parse message heads.
+     * 
+     * @return The histogram of the time to parse message heads.
+     */
+    public LatencyHistogram getHeadParseTime() {
+        return this.headParseTime;
+    }
+
+    public double getHeadParseTimeMean() {
+        return getHeadParseTime().getMean();
+    }
+
+    public double getHeadParseTimeP99() {
+        return getHeadParseTime().getPercentile(99);
+    }
+
+    public int getIdleConnections() {
+        return -1;
+    }
+
+    public int getOpenConnections() {
+        return -1;
+    }
+
+    public long getOpenedConnections() {
+        return this.openedConnections.getCount();
+    }
+
+    public double getOpenedConnectionsRate() {
+        return this.openedConnections.getRate();
+    }
+
+    /**
+     * Returns the histogram of the time spent by the application handling
+     * calls.
+     * 
+     * @return The histogram of the time spent handling calls.
+     */
+    public LatencyHistogram getProcessingTime() {
+        return this.processingTime;
+    }
+
+    public double getProcessingTimeMean() {
+        return getProcessingTime().getMean();
+    }
+
+    public double getProcessingTimeP99() {
+        return getProcessingTime().getPercentile(99);
+    }
+
+    /**
+     * Returns the histogram of the time spent by calls waiting for a worker
+     * thread.
+     * 
+     * @return The histogram of the time spent waiting for a worker thread.
+     */
+    public LatencyHistogram getQueueWaitTime() {
+        return this.queueWaitTime;
+    }
+
+    public double getQueueWaitTimeMean() {
+        return getQueueWaitTime().getMean();
+    }
+
+    public double getQueueWaitTimeP99() {
+        return getQueueWaitTime().getPercentile(99);
+    }
+
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    public int getRequestsInFlight() {
+        return this.requestsInFlight.get();
+    }
+
+    /**
+     * Returns the histogram of the time to write messages.
+     * 
+     * @return The histogram of the time to write messages.
+     */
+    public LatencyHistogram getResponseWriteTime() {
+        return this.responseWriteTime;
+    }
+
+    public double getResponseWriteTimeMean() {
+        return getResponseWriteTime().getMean();
+    }
+
+    public double getResponseWriteTimeP99() {
+        return getResponseWriteTime().getPercentile(99);
+    }
+
+    /**
+     * Returns the histogram of the time spent in a processing stage. The
+     * stages crossed inside the application are only measured for the calls
+     * timed via the "timings" parameter of the server connector.
+     * 
+     * @param stage
+     *            The processing stage, as defined by {@link CallTimings}.
+     * @return The histogram of the time spent in the stage.
+     */
+    public LatencyHistogram getStageTime(int stage) {
+        return this.stageTimes[stage];
+    }
+
+    /**
+     * Returns a snapshot of all the metrics, by name. Gauges that can't be
+     * measured are omitted, like the stages of the timed calls when none was
+     * recorded.
+     * 
+     * @return A snapshot of all the metrics, by name.
+     */
+    public Map<String, Number> getValues() {
+        Map<String, Number> result = new LinkedHashMap<String, Number>();
+
+        if (getOpenConnections() >= 0) {
+            result.put("open_connections", getOpenConnections());
+        }
+
+        if (getIdleConnections() >= 0) {
+            result.put("idle_connections", getIdleConnections());
+        }
+
+        result.put("opened_connections", getOpenedConnections());
+        result.put("opened_connections_rate", getOpenedConnectionsRate());
+        result.put("closed_connections", getClosedConnections());
+        result.put("closed_connections_rate", getClosedConnectionsRate());
+        result.put("bytes_in", getBytesIn());
+        result.put("bytes_out", getBytesOut());
+        result.put("requests", getRequests());
+        result.put("requests_in_flight", getRequestsInFlight());
+
+        if (getWorkersActive() >= 0) {
+            result.put("workers_active", getWorkersActive());
+        }
+
+        if (getWorkersQueued() >= 0) {
+            result.put("workers_queued", getWorkersQueued());
+        }
+
+        addHistogram(result, "queue_wait_time", getQueueWaitTime());
+        addHistogram(result, "head_parse_time", getHeadParseTime());
+        addHistogram(result, "processing_time", getProcessingTime());
+        addHistogram(result, "response_write_time", getResponseWriteTime());
+
+        for (int i = CallTimings.STAGE_ROUTING;
+                i <= CallTimings.STAGE_CONVERSION; i++) {
+            if (getStageTime(i).getCount() > 0) {
+                addHistogram(result, CallTimings.getName(i) + "_time",
+                        getStageTime(i));
+            }
+        }
+
+        return result;
+    }
+
+    public int getWorkersActive() {
+        return -1;
+    }
+
+    public int getWorkersQueued() {
+        return -1;
+    }
+
+    /**
+     * Records bytes read from the network.
+     * 
+     * @param count
+     *            The count of bytes read.
+     */
+    public void onBytesRead(long count) {
+        if (count > 0) {
+            this.bytesIn.addAndGet(count);
+        }
+    }
+
+    /**
+     * Records bytes written to the network.
+     * 
+     * @param count
+     *            The count of bytes written.
+     */
+    public void onBytesWritten(long count) {
+        if (count > 0) {
+            this.bytesOut.addAndGet(count);
+        }
+    }
+
+    /**
+     * Records a connection closed.
+     */
+    public void onConnectionClosed() {
+        this.closedConnections.mark();
+    }
+
+    /**
+     * Records a connection opened.
+     */
+    public void onConnectionOpened() {
+        this.openedConnections.mark();
+    }
+
+    /**
+     * Records the end of a call handled by the application.
+     * 
+     * @param startTime
+     *            The value of {@link System#nanoTime()} returned by
+     *            {@link #onRequestStarted()}.
+     */
+    public void onRequestCompleted(long startTime) {
+        this.requestsInFlight.decrementAndGet();
+        this.requests.incrementAndGet();
+        getProcessingTime().record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Records the start of a call handled by the application.
+     * 
+     * @return The current value of {@link System#nanoTime()}, to be given back
+     *         to {@link #onRequestCompleted(long)}.
+     */
+    public long onRequestStarted() {
+        this.requestsInFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the stages crossed inside the application by a timed call. The
+     * connector stages are recorded separately as they are always measured.
+     * 
+     * @param timings
+     *            The timings of the call.
+     */
+    public void onRequestTimed(CallTimings timings) {
+        for (int i = CallTimings.STAGE_ROUTING;
+                i <= CallTimings.STAGE_CONVERSION; i++) {
+            long duration = timings.getDuration(i);
+
+            if (duration > 0) {
+                getStageTime(i).record(duration);
+            }
+        }
+    }
+
+}
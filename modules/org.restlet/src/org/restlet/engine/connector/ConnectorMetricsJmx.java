@@ -0,0 +1,160 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.connector;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.restlet.Connector;
+import org.restlet.Context;
+import org.restlet.Server;
+import org.restlet.data.Protocol;
+
+/**
+ * Publishes the runtime metrics of connectors as MBeans of the platform MBean
+ * server. The registration is enabled by setting the "metricsJmx" parameter of
+ * the connector's context to "true". The object names look like
+ * "org.restlet:type=Server,protocols=HTTP,port=8182,id=1b6d3586".
+ * 
+ * @see ConnectorMetricsMBean
+ */
+public class ConnectorMetricsJmx {
+
+    /**
+     * Returns the object name of a connector's metrics MBean.
+     * 
+     * @param connector
+     *            The connector.
+     * @return The object name.
+     * @throws Exception
+     */
+    public static ObjectName getObjectName(Connector connector)
+            throws Exception {
+        StringBuilder sb = new StringBuilder("org.restlet:type=");
+        sb.append((connector instanceof Server) ? "Server" : "Client");
+        sb.append(",protocols=");
+
+        for (int i = 0; i < connector.getProtocols().size(); i++) {
+            Protocol protocol = connector.getProtocols().get(i);
+
+            if (i > 0) {
+                sb.append('+');
+            }
+
+            sb.append(protocol.getName());
+        }
+
+        if (connector instanceof Server) {
+            sb.append(",port=").append(((Server) connector).getPort());
+        }
+
+        sb.append(",id=").append(
+                Integer.toHexString(System.identityHashCode(connector)));
+        return new ObjectName(sb.toString());
+    }
+
+    /**
+     * Indicates if the metrics of a connector should be published.
+     * 
+     * @param connector
+     *            The connector.
+     * @return True if the metrics of a connector should be published.
+     */
+    private static boolean isEnabled(Connector connector) {
+        Context context = connector.getContext();
+        return (context != null)
+                && Boolean.parseBoolean(context.getParameters().getFirstValue(
+                        "metricsJmx", "false"));
+    }
+
+    /**
+     * Registers the metrics MBean of a connector if enabled.
+     * 
+     * @param connector
+     *            The connector.
+     */
+    public static void register(Connector connector) {
+        ConnectorMetrics metrics = isEnabled(connector) ? connector.getMetrics()
+                : null;
+
+        if (metrics != null) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = getObjectName(connector);
+
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new StandardMBean(metrics,
+                            ConnectorMetricsMBean.class), name);
+                }
+            } catch (Exception e) {
+                Context.getCurrentLogger().log(Level.WARNING,
+                        "Unable to register the connector metrics MBean", e);
+            }
+        }
+    }
+
+    /**
+     * Unregisters the metrics MBean of a connector if registered.
+     * 
+     * @param connector
+     *            The connector.
+     */
+    public static void unregister(Connector connector) {
+        if (isEnabled(connector)) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = getObjectName(connector);
+
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (Exception e) {
+                Context.getCurrentLogger().log(Level.WARNING,
+                        "Unable to unregister the connector metrics MBean", e);
+            }
+        }
+    }
+
+    /**
+     * Private constructor to ensure that the class acts as a true utility
+     * class i.e. it isn't instantiable and extensible.
+     */
+    private ConnectorMetricsJmx() {
+    }
+
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.connector;
+
+/**
+ * Management interface of the connector metrics, published via JMX when the
+ * "metricsJmx" connector parameter is set. Gauges return -1 when the connector
+ * can't measure them. Latencies are expressed in milliseconds.
+ */
+public interface ConnectorMetricsMBean {
+
+    /**
+     * Returns the count of bytes read from the network.
+     * 
+     * @return The count of bytes read from the network.
+     */
+    public long getBytesIn();
+
+    /**
+     * Returns the count of bytes written to the network.
+     * 
+     * @return The count of bytes written to the network.
+     */
+    public long getBytesOut();
+
+    /**
+     * Returns the count of connections closed.
+     * 
+     * @return The count of connections closed.
+     */
+    public long getClosedConnections();
+
+    /**
+     * Returns the rate of connections closed per second over the last minute.
+     * 
+     * @return The rate of connections closed per second.
+     */
+    public double getClosedConnectionsRate();
+
+    /**
+     * Returns the mean time to parse a message head.
+     * 
+     * @return The mean time to parse a message head.
+     */
+    public double getHeadParseTimeMean();
+
+    /**
+     * Returns the 99th percentile of the time to parse a message head.
+     * 
+     * @return The 99th percentile of the time to parse a message head.
+     */
+    public double getHeadParseTimeP99();
+
+    /**
+     * Returns the number of open connections waiting for a new message.
+     * 
+     * @return The number of idle connections.
+     */
+    public int getIdleConnections();
+
+    /**
+     * Returns the number of open connections.
+     * 
+     * @return The number of open connections.
+     */
+    public int getOpenConnections();
+
+    /**
+     * Returns the count of connections opened, accepted by servers or
+     * established by clients.
+     * 
+     * @return The count of connections opened.
+     */
+    public long getOpenedConnections();
+
+    /**
+     * Returns the rate of connections opened per second over the last minute.
+     * 
+     * @return The rate of connections opened per second.
+     */
+    public double getOpenedConnectionsRate();
+
+    /**
+     * Returns the mean time spent by the application handling a call.
+     * 
+     * @return The mean time spent by the application handling a call.
+     */
+    public double getProcessingTimeMean();
+
+    /**
+     * Returns the 99th percentile of the time spent by the application handling
+     * a call.
+     * 
+     * @return The 99th percentile of the time spent handling a call.
+     */
+    public double getProcessingTimeP99();
+
+    /**
+     * Returns the mean time spent by a call waiting for a worker thread.
+     * 
+     * @return The mean time spent waiting for a worker thread.
+     */
+    public double getQueueWaitTimeMean();
+
+    /**
+     * Returns the 99th percentile of the time spent by a call waiting for a
+     * worker thread.
+     * 
+     * @return The 99th percentile of the time spent waiting for a worker.
+     */
+    public double getQueueWaitTimeP99();
+
+    /**
+     * Returns the count of calls handled.
+     * 
+     * @return The count of calls handled.
+     */
+    public long getRequests();
+
+    /**
+     * Returns the number of calls currently handled.
+     * 
+     * @return The number of calls currently handled.
+     */
+    public int getRequestsInFlight();
+
+    /**
+     * Returns the mean time to write a message.
+     * 
+     * @return The mean time to write a message.
+     */
+    public double getResponseWriteTimeMean();
+
+    /**
+     * Returns the 99th percentile of the time to write a message.
+     * 
+     * @return The 99th percentile of the time to write a message.
+     */
+    public double getResponseWriteTimeP99();
+
+    /**
+     * Returns the number of worker threads currently busy.
+     * 
+     * @return The number of worker threads currently busy.
+     */
+    public int getWorkersActive();
+
+    /**
+     * Returns the number of tasks waiting for a worker thread.
+     * 
+     * @return The number of tasks waiting for a worker thread.
+     */
+    public int getWorkersQueued();
+
+}
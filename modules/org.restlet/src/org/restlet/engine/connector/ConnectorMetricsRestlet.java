@@ -0,0 +1,144 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.connector;
+
+import java.util.List;
+import java.util.Map;
+
+import org.restlet.Connector;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+
+/**
+ * Restlet exposing the runtime metrics of a list of connectors as plain text,
+ * one metric per line, using the Prometheus text format. For example:
+ * 
+ * <pre>
+ * restlet_connector_requests_in_flight{connector="server-HTTP-8182"} 3
+ * </pre>
+ * 
+ * Typical usage is to attach it to an administrative route with the list of
+ * servers or clients of a component. Connectors that don't provide metrics are
+ * ignored.
+ * 
+ * @see Connector#getMetrics()
+ */
+public class ConnectorMetricsRestlet extends Restlet {
+
+    /** The connectors whose metrics are exposed. */
+    private final List<? extends Connector> connectors;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param connectors
+     *            The connectors whose metrics are exposed.
+     */
+    public ConnectorMetricsRestlet(Context context,
+            List<? extends Connector> connectors) {
+        super(context);
+        this.connectors = connectors;
+    }
+
+    /**
+     * Returns the connectors whose metrics are exposed.
+     * 
+     * @return The connectors whose metrics are exposed.
+     */
+    public List<? extends Connector> getConnectors() {
+        return connectors;
+    }
+
+    /**
+     * Returns the label identifying a connector.
+     * 
+     * @param connector
+     *            The connector.
+     * @return The label identifying a connector.
+     */
+    protected String getLabel(Connector connector) {
+        StringBuilder sb = new StringBuilder();
+        sb.append((connector instanceof Server) ? "server" : "client");
+
+        for (Protocol protocol : connector.getProtocols()) {
+            sb.append('-').append(protocol.getName());
+        }
+
+        if ((connector instanceof Server)
+                && (((Server) connector).getPort() > 0)) {
+            sb.append('-').append(((Server) connector).getPort());
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public void handle(Request request, Response response) {
+        super.handle(request, response);
+
+        if (!Method.GET.equals(request.getMethod())) {
+            response.setStatus(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED);
+            response.getAllowedMethods().add(Method.GET);
+        } else {
+            StringBuilder sb = new StringBuilder();
+
+            for (Connector connector : getConnectors()) {
+                ConnectorMetrics metrics = connector.getMetrics();
+
+                if (metrics != null) {
+                    String label = getLabel(connector);
+
+                    for (Map.Entry<String, Number> entry : metrics.getValues()
+                            .entrySet()) {
+                        sb.append("restlet_connector_").append(entry.getKey());
+                        sb.append("{connector=\"").append(label).append("\"} ");
+                        sb.append(entry.getValue()).append('\n');
+                    }
+                }
+            }
+
+            response.setEntity(sb.toString(), MediaType.TEXT_PLAIN);
+        }
+    }
+
+}
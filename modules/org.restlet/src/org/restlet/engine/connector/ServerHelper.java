@@ -59,7 +59,8 @@ public class ServerHelper extends ConnectorHelper<Server> {
 
     /**
      * Handles a call by invoking the helped Server's
-     * {@link Server#handle(Request, Response)} method.
+     * {@link Server#handle(Request, Response)} method, measuring it via
+     * {@link #handleMeasured(Request, Response)}.
      * 
      * @param request
      *            The request to handle.
@@ -69,7 +70,7 @@ public class ServerHelper extends ConnectorHelper<Server> {
     @Override
     public void handle(Request request, Response response) {
         super.handle(request, response);
-        getHelped().handle(request, response);
+        handleMeasured(request, response);
     }
 
     /**
@@ -157,12 +157,28 @@ public final class HeaderConstants {
 
     public static final String HEADER_RANGE = "Range";
 
+    public static final String HEADER_RATELIMIT_LIMIT = "RateLimit-Limit";
+
+    public static final String HEADER_RATELIMIT_REMAINING = "RateLimit-Remaining";
+
+    public static final String HEADER_RATELIMIT_RESET = "RateLimit-Reset";
+
     public static final String HEADER_REFERRER = "Referer";
 
     public static final String HEADER_RETRY_AFTER = "Retry-After";
 
+    public static final String HEADER_SEC_WEBSOCKET_ACCEPT = "Sec-WebSocket-Accept";
+
+    public static final String HEADER_SEC_WEBSOCKET_KEY = "Sec-WebSocket-Key";
+
+    public static final String HEADER_SEC_WEBSOCKET_PROTOCOL = "Sec-WebSocket-Protocol";
+
+    public static final String HEADER_SEC_WEBSOCKET_VERSION = "Sec-WebSocket-Version";
+
     public static final String HEADER_SERVER = "Server";
 
+    public static final String HEADER_SERVER_TIMING = "Server-Timing";
+
     public static final String HEADER_SET_COOKIE = "Set-Cookie";
 
     public static final String HEADER_SET_COOKIE2 = "Set-Cookie2";
@@ -189,6 +205,10 @@ public final class HeaderConstants {
 
     public static final String HEADER_X_FORWARDED_FOR = "X-Forwarded-For";
 
+    public static final String HEADER_X_FORWARDED_HOST = "X-Forwarded-Host";
+
+    public static final String HEADER_X_FORWARDED_PROTO = "X-Forwarded-Proto";
+
     public static final String HEADER_X_HTTP_METHOD_OVERRIDE = "X-HTTP-Method-Override";
 
     // -------------------------
@@ -202,4 +222,6 @@ public final class HeaderConstants {
     public static final String ATTRIBUTE_HTTPS_KEY_SIZE = "org.restlet.https.keySize";
 
     public static final String ATTRIBUTE_HTTPS_SSL_SESSION_ID = "org.restlet.https.sslSessionId";
+
+    public static final String ATTRIBUTE_WEBSOCKET_LISTENER = "org.restlet.websocket.listener";
 }
@@ -39,6 +39,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.logging.Level;
 
@@ -75,6 +76,16 @@ import org.restlet.util.Series;
  */
 public class HeaderUtils {
 
+    // [ifndef gwt] member
+    /**
+     * The headers that only apply to a single connection and must not be
+     * forwarded or stored, in lower case.
+     */
+    private static final List<String> HOP_BY_HOP_HEADERS = Arrays.asList(
+            "connection", "keep-alive", "proxy-authenticate",
+            "proxy-authorization", "proxy-connection", "te", "trailer",
+            "transfer-encoding", "upgrade");
+
     /**
      * Standard set of headers which cannot be modified.
      */
@@ -1002,6 +1013,51 @@ public class HeaderUtils {
         return result;
     }
 
+    /**
+     * Indicates if a header is an extension header, meaning that it isn't a
+     * standard header set from the properties of the Restlet API.
+     * 
+     * @param name
+     *            The header name.
+     * @return True if the header is an extension header.
+     */
+    public static boolean isExtensionHeader(String name) {
+        return !STANDARD_HEADERS.contains(name)
+                && !UNSUPPORTED_STANDARD_HEADERS.contains(name);
+    }
+
+    // [ifndef gwt] method
+    /**
+     * Indicates if a header only applies to a single connection, either
+     * because it is a standard hop-by-hop header or because it is listed in
+     * the "Connection" header.
+     * 
+     * @param name
+     *            The header name.
+     * @param headers
+     *            The headers of the message.
+     * @return True if the header only applies to a single connection.
+     */
+    public static boolean isHopByHop(String name, Series<Header> headers) {
+        String lowerName = name.toLowerCase(Locale.ENGLISH);
+        boolean result = HOP_BY_HOP_HEADERS.contains(lowerName);
+
+        if (!result && (headers != null)) {
+            String connection = headers.getValues(
+                    HeaderConstants.HEADER_CONNECTION, ",", true);
+
+            if (connection != null) {
+                for (String token : connection.split(",")) {
+                    result = result
+                            || lowerName.equals(token.trim().toLowerCase(
+                                    Locale.ENGLISH));
+                }
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Indicates if the given character is a control character.
      * 
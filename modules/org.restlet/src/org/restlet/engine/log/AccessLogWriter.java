@@ -0,0 +1,291 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.log;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.restlet.Context;
+
+/**
+ * Asynchronous writer of access log entries. The entries are handed over to a
+ * single writer thread via a bounded ring buffer, without lock, so that the
+ * synchronized handlers of the logger are only used by one thread. With a batch
+ * size greater than one, the writer thread joins the entries available, one per
+ * line, into a single log record, so that a file handler such as
+ * {@link AccessLogFileHandler} writes and flushes them at once.<br>
+ * <br>
+ * When the ring buffer is full, new entries are either dropped and counted, or
+ * the calling threads wait for some room, depending on the policy.
+ */
+public class AccessLogWriter implements Runnable {
+
+    /** The maximum number of entries logged in a single record. */
+    private final int batchSize;
+
+    /** Indicates if the callers wait when the buffer is full. */
+    private final boolean blocking;
+
+    /** The number of entries dropped because the buffer was full. */
+    private final AtomicLong dropped;
+
+    /** The ring buffer of entries. */
+    private final AtomicReferenceArray<String> entries;
+
+    /** The index of the next entry to log, only updated by the writer. */
+    private volatile long head;
+
+    /** The access logger. */
+    private final Logger logger;
+
+    /** The mask giving the position of an index in the ring buffer. */
+    private final int mask;
+
+    /** Indicates if the writer is running. */
+    private volatile boolean running;
+
+    /** The index of the next entry to add. */
+    private final AtomicLong tail;
+
+    /** The writer thread. */
+    private volatile Thread thread;
+
+    /** Indicates if the writer thread waits for entries. */
+    private volatile boolean waiting;
+
+    /**
+     * Constructor.
+     * 
+     * @param logger
+     *            The access logger.
+     * @param capacity
+     *            The capacity of the ring buffer, rounded up to a power of
+     *            two.
+     * @param batchSize
+     *            The maximum number of entries logged in a single record.
+     * @param blocking
+     *            Indicates if the callers wait when the buffer is full.
+     */
+    public AccessLogWriter(Logger logger, int capacity, int batchSize,
+            boolean blocking) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.batchSize = Math.max(1, batchSize);
+        this.blocking = blocking;
+        this.dropped = new AtomicLong();
+        this.entries = new AtomicReferenceArray<String>(size);
+        this.head = 0L;
+        this.logger = logger;
+        this.mask = size - 1;
+        this.running = false;
+        this.tail = new AtomicLong();
+    }
+
+    /**
+     * Returns the number of entries dropped because the buffer was full.
+     * 
+     * @return The number of entries dropped.
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /**
+     * Returns the number of entries waiting to be logged.
+     * 
+     * @return The number of entries waiting to be logged.
+     */
+    public int getPending() {
+        return (int) (this.tail.get() - this.head);
+    }
+
+    /**
+     * Indicates if the writer is running.
+     * 
+     * @return True if the writer is running.
+     */
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    /**
+     * Adds an entry to log. If the buffer is full, the entry is dropped or
+     * the calling thread waits for some room, depending on the policy. The
+     * entries added while the writer isn't running are dropped.
+     * 
+     * @param entry
+     *            The entry to log.
+     * @return True if the entry was added, false if it was dropped.
+     */
+    public boolean offer(String entry) {
+        boolean result = false;
+        boolean done = false;
+
+        while (!done) {
+            long index = this.tail.get();
+
+            if (!isRunning()) {
+                done = true;
+            } else if (index - this.head >= this.entries.length()) {
+                if (this.blocking) {
+                    wakeUp();
+                    LockSupport.parkNanos(this, 100000L);
+                } else {
+                    done = true;
+                }
+            } else if (this.tail.compareAndSet(index, index + 1)) {
+                this.entries.lazySet((int) index & this.mask, entry);
+                result = true;
+                done = true;
+
+                if (this.waiting) {
+                    wakeUp();
+                }
+            }
+        }
+
+        if (!result) {
+            this.dropped.incrementAndGet();
+        }
+
+        return result;
+    }
+
+    /**
+     * Logs the available entries, in batches, until stopped. The entries
+     * added before the stop are logged before returning.
+     */
+    public void run() {
+        StringBuilder batch = new StringBuilder();
+        long reported = 0L;
+
+        while (isRunning() || (this.head != this.tail.get())) {
+            int count = 0;
+            batch.setLength(0);
+
+            while (count < this.batchSize) {
+                int position = (int) this.head & this.mask;
+                String entry = this.entries.get(position);
+
+                if (entry == null) {
+                    // Empty buffer or entry being added
+                    break;
+                }
+
+                this.entries.lazySet(position, null);
+                this.head++;
+
+                if (count++ > 0) {
+                    batch.append('\n');
+                }
+
+                batch.append(entry);
+            }
+
+            if (count > 0) {
+                try {
+                    this.logger.log(Level.INFO, batch.toString());
+                } catch (Throwable t) {
+                    Context.getCurrentLogger().log(Level.WARNING,
+                            "Unable to log the access log entries", t);
+                }
+            } else {
+                this.waiting = true;
+
+                if (isRunning() && (this.head == this.tail.get())) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS
+                            .toNanos(100));
+                } else {
+                    Thread.yield();
+                }
+
+                this.waiting = false;
+            }
+
+            long droppedCount = getDropped();
+
+            if (droppedCount != reported) {
+                Context.getCurrentLogger().warning(
+                        (droppedCount - reported)
+                                + " access log entries were dropped");
+                reported = droppedCount;
+            }
+        }
+    }
+
+    /**
+     * Starts the writer thread.
+     * 
+     * @param threadFactory
+     *            The factory of the writer thread.
+     */
+    public synchronized void start(ThreadFactory threadFactory) {
+        if (!isRunning()) {
+            this.running = true;
+            this.thread = threadFactory.newThread(this);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+    }
+
+    /**
+     * Stops the writer thread, after it has logged the pending entries.
+     * 
+     * @throws InterruptedException
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (isRunning()) {
+            this.running = false;
+            wakeUp();
+            this.thread.join(TimeUnit.SECONDS.toMillis(5));
+            this.thread = null;
+        }
+    }
+
+    /**
+     * Wakes the writer thread up.
+     */
+    private void wakeUp() {
+        Thread writer = this.thread;
+
+        if (writer != null) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.log;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Context;
+
+/**
+ * Asynchronous and cached resolution of user identifiers via the IDENT
+ * protocol (RFC 1413). The lookups are done by a few background threads with
+ * the {@link IdentClient}, so that the calling threads never wait for the
+ * network. As the identifier of a connection is only known once its lookup is
+ * complete, the first calls of a connection are logged without it.<br>
+ * <br>
+ * The results, including the failed lookups, are cached per client address
+ * and port and per server port for a limited time. The cache is cleared when
+ * it grows too much.
+ */
+public class IdentResolver {
+
+    /** Cached result of a lookup. */
+    private static class Result {
+
+        /** The expiration time in milliseconds. */
+        private final long expiration;
+
+        /** The user identifier, or null if unknown. */
+        private final String identifier;
+
+        /**
+         * Constructor.
+         * 
+         * @param identifier
+         *            The user identifier, or null if unknown.
+         * @param expiration
+         *            The expiration time in milliseconds.
+         */
+        public Result(String identifier, long expiration) {
+            this.expiration = expiration;
+            this.identifier = identifier;
+        }
+    }
+
+    /** The result marking a pending lookup. */
+    private static final Result PENDING = new Result(null, Long.MAX_VALUE);
+
+    /** The executor of the lookups. */
+    private final ExecutorService executor;
+
+    /** The maximum number of cached results. */
+    private final int maxEntries;
+
+    /** The cached results. */
+    private final ConcurrentMap<String, Result> results;
+
+    /** The time to live in milliseconds of a cached result. */
+    private final long timeToLive;
+
+    /**
+     * Constructor.
+     * 
+     * @param maxLookups
+     *            The maximum number of concurrent lookups. Other lookups are
+     *            skipped.
+     * @param maxEntries
+     *            The maximum number of cached results.
+     * @param timeToLive
+     *            The time to live in milliseconds of a cached result.
+     */
+    public IdentResolver(int maxLookups, int maxEntries, long timeToLive) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(0, maxLookups, 60L,
+                TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                new LoggingThreadFactory(Context.getCurrentLogger(), true));
+        this.executor = pool;
+        this.maxEntries = maxEntries;
+        this.results = new ConcurrentHashMap<String, Result>();
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Starts the lookup of a user identifier, unless too many lookups are in
+     * progress.
+     * 
+     * @param key
+     *            The key of the cached result.
+     * @param clientAddress
+     *            The client IP address.
+     * @param clientPort
+     *            The client port (remote).
+     * @param serverPort
+     *            The server port (local).
+     */
+    private void lookup(final String key, final String clientAddress,
+            final int clientPort, final int serverPort) {
+        if (this.results.size() > this.maxEntries) {
+            this.results.clear();
+            this.results.put(key, PENDING);
+        }
+
+        try {
+            this.executor.execute(new Runnable() {
+                public void run() {
+                    String identifier = new IdentClient(clientAddress,
+                            clientPort, serverPort).getUserIdentifier();
+                    results.put(key, new Result(identifier, System
+                            .currentTimeMillis() + timeToLive));
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            // Too many lookups in progress, try again later
+            this.results.remove(key, PENDING);
+        }
+    }
+
+    /**
+     * Returns the user identifier of a connection if known. Otherwise, starts
+     * its lookup if needed and returns null.
+     * 
+     * @param clientAddress
+     *            The client IP address.
+     * @param clientPort
+     *            The client port (remote).
+     * @param serverPort
+     *            The server port (local).
+     * @return The user identifier or null.
+     */
+    public String resolve(String clientAddress, int clientPort,
+            int serverPort) {
+        String result = null;
+
+        if ((clientAddress != null) && (clientPort != -1)
+                && (serverPort != -1)) {
+            String key = clientAddress + ':' + clientPort + ':'
+                    + serverPort;
+            long now = System.currentTimeMillis();
+            Result cached = this.results.get(key);
+
+            if ((cached != null) && (cached.expiration > now)) {
+                result = cached.identifier;
+            } else {
+                // Only one thread starts the lookup
+                boolean started;
+
+                if (cached == null) {
+                    started = (this.results.putIfAbsent(key, PENDING) == null);
+                } else {
+                    started = this.results.replace(key, cached, PENDING);
+                }
+
+                if (started) {
+                    lookup(key, clientAddress, clientPort, serverPort);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Stops the lookups.
+     */
+    public void stop() {
+        this.executor.shutdownNow();
+    }
+
+}
@@ -48,6 +48,9 @@ import org.restlet.service.LogService;
  * current format is similar to IIS 6 logs. The logging is based on the
  * java.util.logging package.
  * 
+ * In the asynchronous mode of the log service, the calls are logged by a
+ * single background thread, started and stopped with the filter.
+ * 
  * Concurrency note: instances of this class or its subclasses can be invoked by
  * several threads at the same time and therefore must be thread-safe. You
  * should be especially careful when storing state in member variables.
@@ -61,6 +64,10 @@ public class LogFilter extends Filter {
     /** The log service logger. */
     private volatile Logger logLogger;
 
+    // [ifndef gae] member
+    /** The asynchronous writer of log entries, or null. */
+    private volatile AccessLogWriter logWriter;
+
     /**
      * Constructor.
      * 
@@ -103,8 +110,20 @@ public class LogFilter extends Filter {
             long startTime = (Long) request.getAttributes().get(
                     "org.restlet.startTime");
             int duration = (int) (System.currentTimeMillis() - startTime);
-            this.logLogger.log(Level.INFO,
-                    this.logService.getResponseLogMessage(response, duration));
+            String message = this.logService.getResponseLogMessage(response,
+                    duration);
+
+            // [ifndef gae]
+            AccessLogWriter writer = this.logWriter;
+
+            if (writer != null) {
+                writer.offer(message);
+            } else {
+                // [enddef]
+                this.logLogger.log(Level.INFO, message);
+                // [ifndef gae]
+            }
+            // [enddef]
         }
     }
 
@@ -136,4 +155,39 @@ public class LogFilter extends Filter {
         return CONTINUE;
     }
 
+    // [ifndef gae] method
+    /**
+     * Starts the filter and the asynchronous writer of log entries if
+     * required.
+     */
+    @Override
+    public synchronized void start() throws Exception {
+        if ((this.logService != null) && this.logService.isAsynchronous()
+                && (this.logWriter == null)) {
+            AccessLogWriter writer = new AccessLogWriter(this.logLogger,
+                    this.logService.getQueueCapacity(),
+                    this.logService.getBatchSize(),
+                    this.logService.isBlocking());
+            writer.start(new LoggingThreadFactory(getLogger(), true));
+            this.logWriter = writer;
+        }
+
+        super.start();
+    }
+
+    // [ifndef gae] method
+    /**
+     * Stops the filter and the asynchronous writer of log entries, after it
+     * has logged the pending entries.
+     */
+    @Override
+    public synchronized void stop() throws Exception {
+        super.stop();
+
+        if (this.logWriter != null) {
+            this.logWriter.stop();
+            this.logWriter = null;
+        }
+    }
+
 }
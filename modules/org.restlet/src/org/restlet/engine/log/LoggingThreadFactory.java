@@ -39,11 +39,36 @@ import java.util.logging.Logger;
 
 /**
  * Thread factory that logs uncaught exceptions thrown by the created threads.
+ * It can optionally create virtual threads when the Java runtime supports them
+ * (Java SE 21 and above). The detection is done by reflection so that this
+ * class can still be compiled and run with older Java runtimes.
  * 
  * @author Jerome Louvel
  */
 public class LoggingThreadFactory implements ThreadFactory {
 
+    /**
+     * Creates a factory of virtual threads, using reflection to call the
+     * "Thread.ofVirtual().factory()" method.
+     * 
+     * @return The virtual thread factory or null if the Java runtime doesn't
+     *         support virtual threads.
+     */
+    private static ThreadFactory createVirtualThreadFactory() {
+        ThreadFactory result = null;
+
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            result = (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                    .getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            // Virtual threads aren't supported
+            result = null;
+        }
+
+        return result;
+    }
+
     /**
      * Handle uncaught thread exceptions.
      */
@@ -62,6 +87,9 @@ public class LoggingThreadFactory implements ThreadFactory {
     /** Indicates if threads should be created as daemons. */
     private final boolean daemon;
 
+    /** The factory of virtual threads, if requested and supported. */
+    private final ThreadFactory virtualThreadFactory;
+
     /**
      * Constructor.
      * 
@@ -81,8 +109,39 @@ public class LoggingThreadFactory implements ThreadFactory {
      *            Indicates if threads should be created as daemons.
      */
     public LoggingThreadFactory(Logger logger, boolean daemon) {
+        this(logger, daemon, false);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param logger
+     *            The associated logger.
+     * @param daemon
+     *            Indicates if threads should be created as daemons. Ignored
+     *            for virtual threads which are always daemons.
+     * @param virtual
+     *            Indicates if virtual threads should be created when supported
+     *            by the Java runtime. Otherwise, platform threads are created.
+     */
+    public LoggingThreadFactory(Logger logger, boolean daemon, boolean virtual) {
         this.logger = logger;
         this.daemon = daemon;
+        this.virtualThreadFactory = virtual ? createVirtualThreadFactory()
+                : null;
+
+        if (virtual && (this.virtualThreadFactory == null)) {
+            logger.fine("Virtual threads aren't supported by this Java runtime. Platform threads will be created instead.");
+        }
+    }
+
+    /**
+     * Indicates if virtual threads are effectively created.
+     * 
+     * @return True if virtual threads are effectively created.
+     */
+    public boolean isVirtual() {
+        return this.virtualThreadFactory != null;
     }
 
     /**
@@ -92,10 +151,15 @@ public class LoggingThreadFactory implements ThreadFactory {
      *            The runnable task.
      */
     public Thread newThread(Runnable r) {
-        Thread result = new Thread(r);
+        Thread result = isVirtual() ? this.virtualThreadFactory.newThread(r)
+                : new Thread(r);
         result.setName("Restlet-" + result.hashCode());
         result.setUncaughtExceptionHandler(new LoggingExceptionHandler());
-        result.setDaemon(this.daemon);
+
+        if (!isVirtual()) {
+            result.setDaemon(this.daemon);
+        }
+
         return result;
     }
 }
@@ -35,7 +35,9 @@ package org.restlet.engine.resource;
 
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -65,6 +67,9 @@ public class AnnotationUtils {
     /** Annotation info cache. */
     private final ConcurrentMap<Class<?>, List<AnnotationInfo>> cache = new ConcurrentHashMap<Class<?>, List<AnnotationInfo>>();
 
+    /** Invocation plans cache. */
+    private final ConcurrentMap<Class<?>, Map<java.lang.reflect.Method, InvocationPlan>> plans = new ConcurrentHashMap<Class<?>, Map<java.lang.reflect.Method, InvocationPlan>>();
+
     /**
      * Protected constructor.
      */
@@ -211,6 +216,7 @@ public class AnnotationUtils {
      */
     public void clearCache() {
         cache.clear();
+        plans.clear();
     }
 
     /**
@@ -270,6 +276,44 @@ public class AnnotationUtils {
         return addMethodAnnotationDescriptors(null, clazz, clazz, javaMethod);
     }
 
+    /**
+     * Returns the invocation plans of the annotated Java methods of the given
+     * resource interface, computed once and cached.
+     * 
+     * @param clazz
+     *            The resource interface to introspect.
+     * @return The invocation plans indexed by Java method.
+     */
+    public Map<java.lang.reflect.Method, InvocationPlan> getInvocationPlans(
+            Class<?> clazz) {
+        Map<java.lang.reflect.Method, InvocationPlan> result = plans.get(clazz);
+
+        if (result == null) {
+            result = new HashMap<java.lang.reflect.Method, InvocationPlan>();
+
+            for (AnnotationInfo annotationInfo : getAnnotations(clazz)) {
+                // The first annotation of a Java method prevails
+                if ((annotationInfo instanceof MethodAnnotationInfo)
+                        && !result.containsKey(annotationInfo.getJavaMethod())) {
+                    result.put(annotationInfo.getJavaMethod(),
+                            new InvocationPlan(
+                                    (MethodAnnotationInfo) annotationInfo));
+                }
+            }
+
+            // Put the plans in the cache if no one was previously present
+            Map<java.lang.reflect.Method, InvocationPlan> prev = plans
+                    .putIfAbsent(clazz, result);
+
+            if (prev != null) {
+                // Reuse the previous entry
+                result = prev;
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns the first annotation descriptor matching the given Java method.
      * 
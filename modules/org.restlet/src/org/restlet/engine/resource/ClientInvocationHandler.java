@@ -35,15 +35,13 @@ package org.restlet.engine.resource;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.util.List;
+import java.util.Map;
 
 import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Uniform;
 import org.restlet.data.ClientInfo;
-import org.restlet.data.Form;
 import org.restlet.representation.Representation;
 import org.restlet.representation.Variant;
 import org.restlet.resource.ClientProxy;
@@ -63,6 +61,32 @@ import org.restlet.resource.Result;
  */
 public class ClientInvocationHandler<T> implements InvocationHandler {
 
+    /** The {@link ClientProxy#getClientResource()} method. */
+    private static final Method GET_CLIENT_RESOURCE = getMethod(
+            ClientProxy.class, "getClientResource");
+
+    /** The {@link Object#toString()} method. */
+    private static final Method TO_STRING = getMethod(
+            Object.class, "toString");
+
+    /**
+     * Returns a public method without parameters.
+     * 
+     * @param clazz
+     *            The class declaring the method.
+     * @param name
+     *            The name of the method.
+     * @return The method.
+     */
+    private static Method getMethod(Class<?> clazz,
+            String name) {
+        try {
+            return clazz.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /** The annotations of the resource interface. */
     private final List<AnnotationInfo> annotations;
 
@@ -72,6 +96,9 @@ public class ClientInvocationHandler<T> implements InvocationHandler {
     /** The associated annotation utils. */
     private AnnotationUtils annotationUtils;
 
+    /** The invocation plans of the resource interface, by Java method. */
+    private final Map<Method, InvocationPlan> plans;
+
     /**
      * Constructor.
      * 
@@ -103,6 +130,7 @@ public class ClientInvocationHandler<T> implements InvocationHandler {
         // Introspect the interface for Restlet annotations
         this.annotations = this.annotationUtils
                 .getAnnotations(resourceInterface);
+        this.plans = this.annotationUtils.getInvocationPlans(resourceInterface);
     }
 
     /**
@@ -138,142 +166,123 @@ public class ClientInvocationHandler<T> implements InvocationHandler {
     public Object invoke(Object proxy, java.lang.reflect.Method javaMethod,
             Object[] args) throws Throwable {
         Object result = null;
+        InvocationPlan plan = this.plans.get(javaMethod);
+
+        if (plan != null) {
+            Representation requestEntity = null;
+            boolean isSynchronous = true;
+
+            if ((args != null) && args.length > 0) {
+                // Checks if the user has defined its own
+                // callback.
+                for (int i = 0; i < args.length; i++) {
+                    Object o = args[i];
+
+                    if (o == null) {
+                        requestEntity = null;
+                    } else if (Result.class.isAssignableFrom(o.getClass())) {
+                        // Asynchronous mode where a callback
+                        // object is to be called.
+                        isSynchronous = false;
+
+                        // Get the kind of result expected.
+                        final Result rCallback = (Result) o;
+                        final Class<?> actualType = plan.getCallbackType(i);
+
+                        // Define the callback
+                        Uniform callback = new Uniform() {
+                            @SuppressWarnings("unchecked")
+                            public void handle(Request request,
+                                    Response response) {
+                                if (response.getStatus().isError()) {
+                                    rCallback.onFailure(new ResourceException(
+                                            response.getStatus()));
+                                } else {
+                                    if (actualType != null) {
+                                        Object result = null;
+                                        boolean serializationError = false;
+
+                                        try {
+                                            result = getClientResource()
+                                                    .toObject(
+                                                            response.getEntity(),
+                                                            actualType);
+                                        } catch (Exception e) {
+                                            serializationError = true;
+                                            rCallback
+                                                    .onFailure(new ResourceException(
+                                                            e));
+                                        }
 
-        if (javaMethod.equals(Object.class.getMethod("toString"))) {
-            // Help debug
-            result = "ClientProxy for resource: " + clientResource;
-        } else if (javaMethod.equals(ClientProxy.class
-                .getMethod("getClientResource"))) {
-            result = clientResource;
-        } else {
-            MethodAnnotationInfo annotationInfo = annotationUtils
-                    .getMethodAnnotation(annotations, javaMethod);
-
-            if (annotationInfo != null) {
-                Representation requestEntity = null;
-                boolean isSynchronous = true;
-
-                if ((args != null) && args.length > 0) {
-                    // Checks if the user has defined its own
-                    // callback.
-                    for (int i = 0; i < args.length; i++) {
-                        Object o = args[i];
-
-                        if (o == null) {
-                            requestEntity = null;
-                        } else if (Result.class.isAssignableFrom(o.getClass())) {
-                            // Asynchronous mode where a callback
-                            // object is to be called.
-                            isSynchronous = false;
-
-                            // Get the kind of result expected.
-                            final Result rCallback = (Result) o;
-                            Type[] genericParameterTypes = javaMethod
-                                    .getGenericParameterTypes();
-                            Type genericParameterType = genericParameterTypes[i];
-                            ParameterizedType parameterizedType = (genericParameterType instanceof java.lang.reflect.ParameterizedType) ? (java.lang.reflect.ParameterizedType) genericParameterType
-                                    : null;
-                            final Class<?> actualType = (parameterizedType
-                                    .getActualTypeArguments()[0] instanceof Class<?>) ? (Class<?>) parameterizedType
-                                    .getActualTypeArguments()[0] : null;
-
-                            // Define the callback
-                            Uniform callback = new Uniform() {
-                                @SuppressWarnings("unchecked")
-                                public void handle(Request request,
-                                        Response response) {
-                                    if (response.getStatus().isError()) {
-                                        rCallback
-                                                .onFailure(new ResourceException(
-                                                        response.getStatus()));
-                                    } else {
-                                        if (actualType != null) {
-                                            Object result = null;
-                                            boolean serializationError = false;
-
-                                            try {
-                                                result = getClientResource()
-                                                        .toObject(
-                                                                response.getEntity(),
-                                                                actualType);
-                                            } catch (Exception e) {
-                                                serializationError = true;
-                                                rCallback
-                                                        .onFailure(new ResourceException(
-                                                                e));
-                                            }
-
-                                            if (!serializationError) {
-                                                rCallback.onSuccess(result);
-                                            }
-                                        } else {
-                                            rCallback.onSuccess(null);
+                                        if (!serializationError) {
+                                            rCallback.onSuccess(result);
                                         }
+                                    } else {
+                                        rCallback.onSuccess(null);
                                     }
                                 }
-                            };
+                            }
+                        };
 
-                            getClientResource().setOnResponse(callback);
-                        } else {
-                            requestEntity = getClientResource()
-                                    .toRepresentation(args[i]);
-                        }
+                        getClientResource().setOnResponse(callback);
+                    } else {
+                        requestEntity = getClientResource().toRepresentation(
+                                args[i]);
                     }
                 }
+            }
 
-                // Clone the prototype request
-                Request request = getRequest(javaMethod, args);
-
-                // The Java method was annotated
-                request.setMethod(annotationInfo.getRestletMethod());
+            // Clone the prototype request
+            Request request = getRequest(javaMethod, args);
 
-                // Add the mandatory query parameters
-                String query = annotationInfo.getQuery();
+            // The Java method was annotated
+            request.setMethod(plan.getRestletMethod());
 
-                if (query != null) {
-                    Form queryParams = new Form(annotationInfo.getQuery());
-                    request.getResourceRef().addQueryParameters(queryParams);
-                }
+            // Add the mandatory query parameters
+            if (plan.getQuery() != null) {
+                request.getResourceRef().addQueryParameters(plan.getQuery());
+            }
 
-                // Set the entity
-                request.setEntity(requestEntity);
-
-                // Updates the client preferences if they weren't changed
-                if ((request.getClientInfo().getAcceptedCharacterSets().size() == 0)
-                        && (request.getClientInfo().getAcceptedEncodings()
-                                .size() == 0)
-                        && (request.getClientInfo().getAcceptedLanguages()
-                                .size() == 0)
-                        && (request.getClientInfo().getAcceptedMediaTypes()
-                                .size() == 0)) {
-                    List<Variant> responseVariants = annotationInfo
-                            .getResponseVariants(getClientResource()
-                                    .getMetadataService(), getClientResource()
-                                    .getConverterService());
-
-                    if (responseVariants != null) {
-                        request.setClientInfo(new ClientInfo(responseVariants));
-                    }
+            // Set the entity
+            request.setEntity(requestEntity);
+
+            // Updates the client preferences if they weren't changed
+            if ((request.getClientInfo().getAcceptedCharacterSets().size() == 0)
+                    && (request.getClientInfo().getAcceptedEncodings()
+                            .size() == 0)
+                    && (request.getClientInfo().getAcceptedLanguages()
+                            .size() == 0)
+                    && (request.getClientInfo().getAcceptedMediaTypes()
+                            .size() == 0)) {
+                List<Variant> responseVariants = plan.getResponseVariants(
+                        getClientResource().getMetadataService(),
+                        getClientResource().getConverterService());
+
+                if (responseVariants != null) {
+                    request.setClientInfo(new ClientInfo(responseVariants));
                 }
+            }
 
-                // Effectively handle the call
-                Response response = getClientResource().handleOutbound(request);
+            // Effectively handle the call
+            Response response = getClientResource().handleOutbound(request);
 
-                // Handle the response
-                if (isSynchronous) {
-                    if (response.getStatus().isError()) {
-                        getClientResource().doError(response.getStatus());
-                    }
+            // Handle the response
+            if (isSynchronous) {
+                if (response.getStatus().isError()) {
+                    getClientResource().doError(response.getStatus());
+                }
 
-                    if (!annotationInfo.getJavaOutputType().equals(void.class)) {
-                        result = getClientResource()
-                                .toObject(
-                                        (response == null ? null
-                                                : response.getEntity()),
-                                        annotationInfo.getJavaOutputType());
-                    }
+                if (plan.getOutputType() != null) {
+                    result = getClientResource().toObject(
+                            (response == null ? null : response.getEntity()),
+                            plan.getOutputType());
                 }
             }
+        } else if (TO_STRING.equals(javaMethod)) {
+            // Help debug
+            result = "ClientProxy for resource: " + clientResource;
+        } else if (GET_CLIENT_RESOURCE.equals(javaMethod)) {
+            result = clientResource;
         }
 
         return result;
@@ -0,0 +1,214 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.resource;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import org.restlet.data.Form;
+import org.restlet.data.Method;
+import org.restlet.representation.Variant;
+import org.restlet.service.ConverterService;
+import org.restlet.service.MetadataService;
+
+// [excludes gwt]
+/**
+ * Invocation plan of an annotated Java method of a resource interface, used by
+ * the {@link ClientInvocationHandler}. It holds the results of the reflection
+ * and annotation lookups needed to issue a call, computed once per method, so
+ * that proxy calls don't repeat them.
+ */
+public class InvocationPlan {
+
+    /**
+     * Response variants computed for a pair of services.
+     */
+    private static class ResponseVariants {
+
+        /** The converter service used. */
+        private final ConverterService converterService;
+
+        /** The metadata service used. */
+        private final MetadataService metadataService;
+
+        /** The response variants. */
+        private final List<Variant> variants;
+
+        /**
+         * Constructor.
+         *
+         * @param metadataService
+         *            The metadata service used.
+         * @param converterService
+         *            The converter service used.
+         * @param variants
+         *            The response variants.
+         */
+        public ResponseVariants(MetadataService metadataService,
+                ConverterService converterService, List<Variant> variants) {
+            this.converterService = converterService;
+            this.metadataService = metadataService;
+            this.variants = variants;
+        }
+    }
+
+    /** The annotation descriptor of the Java method. */
+    private final MethodAnnotationInfo annotationInfo;
+
+    /**
+     * The type of result expected by each {@link org.restlet.resource.Result}
+     * callback parameter, or null.
+     */
+    private final Class<?>[] callbackTypes;
+
+    /** The output type of the Java method, or null if it returns nothing. */
+    private final Class<?> outputType;
+
+    /** The mandatory query parameters or null. */
+    private final Form query;
+
+    /** The response variants computed for the last services used. */
+    private volatile ResponseVariants responseVariants;
+
+    /**
+     * Constructor.
+     *
+     * @param annotationInfo
+     *            The annotation descriptor of the Java method.
+     */
+    public InvocationPlan(MethodAnnotationInfo annotationInfo) {
+        this.annotationInfo = annotationInfo;
+        Type[] parameterTypes = annotationInfo.getJavaMethod()
+                .getGenericParameterTypes();
+        this.callbackTypes = new Class<?>[parameterTypes.length];
+
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i] instanceof ParameterizedType) {
+                Type actualType = ((ParameterizedType) parameterTypes[i])
+                        .getActualTypeArguments()[0];
+
+                if (actualType instanceof Class<?>) {
+                    this.callbackTypes[i] = (Class<?>) actualType;
+                }
+            }
+        }
+
+        Class<?> javaOutputType = annotationInfo.getJavaOutputType();
+        this.outputType = void.class.equals(javaOutputType) ? null
+                : javaOutputType;
+        this.query = (annotationInfo.getQuery() == null) ? null : new Form(
+                annotationInfo.getQuery());
+    }
+
+    /**
+     * Returns the annotation descriptor of the Java method.
+     *
+     * @return The annotation descriptor of the Java method.
+     */
+    public MethodAnnotationInfo getAnnotationInfo() {
+        return annotationInfo;
+    }
+
+    /**
+     * Returns the type of result expected by a callback parameter.
+     *
+     * @param index
+     *            The index of the parameter.
+     * @return The type of result expected, or null if unknown.
+     */
+    public Class<?> getCallbackType(int index) {
+        return (index < this.callbackTypes.length) ? this.callbackTypes[index]
+                : null;
+    }
+
+    /**
+     * Returns the output type of the Java method, or null if it returns
+     * nothing.
+     *
+     * @return The output type of the Java method.
+     */
+    public Class<?> getOutputType() {
+        return outputType;
+    }
+
+    /**
+     * Returns the mandatory query parameters. The returned form is shared and
+     * must not be modified.
+     *
+     * @return The mandatory query parameters or null.
+     */
+    public Form getQuery() {
+        return query;
+    }
+
+    /**
+     * Returns the response variants of the Java method. They are computed
+     * once and recomputed only if other services are given.
+     *
+     * @param metadataService
+     *            The metadata service to use.
+     * @param converterService
+     *            The converter service to use.
+     * @return The response variants or null.
+     * @throws IOException
+     * @see MethodAnnotationInfo#getResponseVariants(MetadataService,
+     *      ConverterService)
+     */
+    public List<Variant> getResponseVariants(MetadataService metadataService,
+            ConverterService converterService) throws IOException {
+        ResponseVariants current = this.responseVariants;
+
+        if ((current == null) || (current.metadataService != metadataService)
+                || (current.converterService != converterService)) {
+            current = new ResponseVariants(metadataService, converterService,
+                    getAnnotationInfo().getResponseVariants(metadataService,
+                            converterService));
+            this.responseVariants = current;
+        }
+
+        return current.variants;
+    }
+
+    /**
+     * Returns the Restlet method of the call.
+     *
+     * @return The Restlet method of the call.
+     */
+    public Method getRestletMethod() {
+        return getAnnotationInfo().getRestletMethod();
+    }
+
+}
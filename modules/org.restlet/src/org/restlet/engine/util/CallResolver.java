@@ -232,6 +232,10 @@ public class CallResolver extends Resolver<Object> {
                 } else if (variableName.startsWith("r")) {
                     result = getReferenceContent(variableName.substring(1),
                             this.request.getResourceRef());
+                } else if (variableName.equals("t")) {
+                    if (this.request.getTimings() != null) {
+                        result = this.request.getTimings().toString();
+                    }
                 }
             }
 
@@ -0,0 +1,273 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.restlet.Response;
+import org.restlet.data.Header;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.util.Series;
+
+/**
+ * Breakdown of the time spent by a call in the successive stages of the
+ * processing pipeline, from the parsing of the request head by the server
+ * connector to the writing of the response. Timings are only attached to
+ * requests when the "timings" parameter of the server connector is set, so
+ * the components checking {@link org.restlet.Request#getTimings()} have
+ * nothing to do otherwise.<br>
+ * <br>
+ * Durations are measured with {@link System#nanoTime()} and accumulated per
+ * stage, as a call can cross several routers for example. They can be updated
+ * by the successive threads handling the call.
+ * 
+ * @see <a href="https://www.w3.org/TR/server-timing/">Server Timing</a>
+ */
+public class CallTimings {
+
+    /** Parsing of the request head by the server connector. */
+    public static final int STAGE_PARSE = 0;
+
+    /** Waiting for a worker thread of the server connector. */
+    public static final int STAGE_QUEUE = 1;
+
+    /** Selection of the next Restlet by the virtual hosts and routers. */
+    public static final int STAGE_ROUTING = 2;
+
+    /** Authentication of the client by the authenticators. */
+    public static final int STAGE_AUTHENTICATION = 3;
+
+    /** Invocation of the annotated method of the target resource. */
+    public static final int STAGE_RESOURCE = 4;
+
+    /** Conversion between entities and the objects of the resource methods. */
+    public static final int STAGE_CONVERSION = 5;
+
+    /** Writing of the response by the server connector. */
+    public static final int STAGE_WRITE = 6;
+
+    /** The number of stages. */
+    public static final int STAGES = 7;
+
+    /** The names of the stages, used as Server-Timing metric names. */
+    private static final String[] NAMES = { "parse", "queue", "routing",
+            "auth", "resource", "conversion", "write" };
+
+    /**
+     * Appends a duration in milliseconds with three decimals.
+     * 
+     * @param sb
+     *            The builder to update.
+     * @param nanos
+     *            The duration in nanoseconds.
+     */
+    private static void appendMillis(StringBuilder sb, long nanos) {
+        long micros = nanos / 1000L;
+        long fraction = micros % 1000L;
+        sb.append(micros / 1000L).append('.');
+
+        if (fraction < 100) {
+            sb.append((fraction < 10) ? "00" : "0");
+        }
+
+        sb.append(fraction);
+    }
+
+    /**
+     * Returns the name of a stage.
+     * 
+     * @param stage
+     *            The stage.
+     * @return The name of the stage.
+     */
+    public static String getName(int stage) {
+        return NAMES[stage];
+    }
+
+    /** The accumulated durations per stage, in nanoseconds. */
+    private final AtomicLongArray durations;
+
+    /** The start time of the call, in nanoseconds. */
+    private final long startTime;
+
+    /**
+     * Constructor starting now.
+     */
+    public CallTimings() {
+        this(System.nanoTime());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param startTime
+     *            The start time of the call, as given by
+     *            {@link System#nanoTime()}.
+     */
+    public CallTimings(long startTime) {
+        this.durations = new AtomicLongArray(STAGES);
+        this.startTime = startTime;
+    }
+
+    /**
+     * Adds a duration to a stage.
+     * 
+     * @param stage
+     *            The stage.
+     * @param nanos
+     *            The duration in nanoseconds.
+     */
+    public void add(int stage, long nanos) {
+        this.durations.addAndGet(stage, nanos);
+    }
+
+    /**
+     * Adds the time elapsed since a given time to a stage.
+     * 
+     * @param stage
+     *            The stage.
+     * @param startTime
+     *            The start time of the stage, as given by
+     *            {@link System#nanoTime()}.
+     * @return The current time, which can be used as the start time of the
+     *         next stage.
+     */
+    public long addElapsed(int stage, long startTime) {
+        long result = System.nanoTime();
+        add(stage, result - startTime);
+        return result;
+    }
+
+    /**
+     * Adds a "Server-Timing" header to a response, with the value returned by
+     * {@link #toServerTiming()}.
+     * 
+     * @param response
+     *            The response to update.
+     */
+    public void addHeader(Response response) {
+        Series<Header> headers = response.getHeaders();
+
+        if (headers == null) {
+            headers = new Series<Header>(Header.class);
+            response.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS,
+                    headers);
+        }
+
+        headers.add(HeaderConstants.HEADER_SERVER_TIMING, toServerTiming());
+    }
+
+    /**
+     * Returns the duration accumulated by a stage.
+     * 
+     * @param stage
+     *            The stage.
+     * @return The duration in nanoseconds, zero if the stage wasn't recorded.
+     */
+    public long getDuration(int stage) {
+        return this.durations.get(stage);
+    }
+
+    /**
+     * Returns the time elapsed since the start of the call.
+     * 
+     * @return The time elapsed in nanoseconds.
+     */
+    public long getElapsed() {
+        return System.nanoTime() - this.startTime;
+    }
+
+    /**
+     * Returns the start time of the call, as given by {@link System#nanoTime()}
+     * .
+     * 
+     * @return The start time of the call.
+     */
+    public long getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * Returns the value of a "Server-Timing" header listing the durations of
+     * the stages recorded so far, followed by the total time elapsed, in
+     * milliseconds. For example: "parse;dur=0.045, routing;dur=0.012,
+     * resource;dur=3.210, total;dur=3.502".
+     * 
+     * @return The value of a "Server-Timing" header.
+     */
+    public String toServerTiming() {
+        StringBuilder sb = new StringBuilder(128);
+
+        for (int i = 0; i < STAGES; i++) {
+            long duration = getDuration(i);
+
+            if (duration > 0) {
+                sb.append(NAMES[i]).append(";dur=");
+                appendMillis(sb, duration);
+                sb.append(", ");
+            }
+        }
+
+        sb.append("total;dur=");
+        appendMillis(sb, getElapsed());
+        return sb.toString();
+    }
+
+    /**
+     * Returns the durations of the stages recorded so far in milliseconds, in
+     * a compact form suitable for access logs. For example:
+     * "parse=0.045,routing=0.012,resource=3.210".
+     * 
+     * @return The durations of the stages recorded.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(96);
+
+        for (int i = 0; i < STAGES; i++) {
+            long duration = getDuration(i);
+
+            if (duration > 0) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+
+                sb.append(NAMES[i]).append('=');
+                appendMillis(sb, duration);
+            }
+        }
+
+        return (sb.length() == 0) ? "-" : sb.toString();
+    }
+
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with power of two buckets expressed in
+ * microseconds. Recording a value is a few atomic increments so it can be done
+ * on hot paths, while percentiles are approximated by the upper bound of the
+ * matching bucket.
+ */
+public class LatencyHistogram {
+
+    /** The number of buckets, covering up to about 35 minutes. */
+    private static final int BUCKETS = 32;
+
+    /** The count of values per bucket. */
+    private final AtomicLongArray buckets;
+
+    /** The count of values recorded. */
+    private final AtomicLong count;
+
+    /** The maximum value recorded, in nanoseconds. */
+    private final AtomicLong max;
+
+    /** The sum of values recorded, in nanoseconds. */
+    private final AtomicLong sum;
+
+    /**
+     * Constructor.
+     */
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.max = new AtomicLong();
+        this.sum = new AtomicLong();
+    }
+
+    /**
+     * Returns the count of values recorded.
+     * 
+     * @return The count of values recorded.
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Returns the maximum value recorded in milliseconds.
+     * 
+     * @return The maximum value recorded in milliseconds.
+     */
+    public double getMax() {
+        return this.max.get() / 1000000D;
+    }
+
+    /**
+     * Returns the mean of the values recorded in milliseconds.
+     * 
+     * @return The mean of the values recorded in milliseconds.
+     */
+    public double getMean() {
+        long n = getCount();
+        return (n == 0) ? 0 : (this.sum.get() / 1000000D) / n;
+    }
+
+    /**
+     * Returns an approximation of the given percentile in milliseconds, based
+     * on the upper bound of the matching bucket.
+     * 
+     * @param percentile
+     *            The percentile, between 0 and 100.
+     * @return An approximation of the percentile in milliseconds.
+     */
+    public double getPercentile(double percentile) {
+        double result = 0;
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            total += this.buckets.get(i);
+        }
+
+        if (total > 0) {
+            long rank = (long) Math.ceil(total * percentile / 100D);
+            long seen = 0;
+            int i = 0;
+
+            for (; (i < BUCKETS - 1) && (seen + this.buckets.get(i) < rank); i++) {
+                seen += this.buckets.get(i);
+            }
+
+            // Don't report more than the maximum observed
+            result = Math.min((1L << i) / 1000D, getMax());
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds the values recorded by another histogram to this one. As both
+     * histograms share the same fixed buckets, merging is exact, and can be
+     * used to aggregate histograms recorded separately.
+     * 
+     * @param other
+     *            The histogram to merge.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long value = other.buckets.get(i);
+
+            if (value > 0) {
+                this.buckets.addAndGet(i, value);
+            }
+        }
+
+        this.count.addAndGet(other.count.get());
+        this.sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        long current = this.max.get();
+
+        while ((otherMax > current)
+                && !this.max.compareAndSet(current, otherMax)) {
+            current = this.max.get();
+        }
+    }
+
+    /**
+     * Records a value.
+     * 
+     * @param nanos
+     *            The value in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos >= 0) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            int bucket = (micros <= 1) ? 0 : 64 - Long
+                    .numberOfLeadingZeros(micros - 1);
+            this.buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+            this.count.incrementAndGet();
+            this.sum.addAndGet(nanos);
+            long current = this.max.get();
+
+            while ((nanos > current) && !this.max.compareAndSet(current, nanos)) {
+                current = this.max.get();
+            }
+        }
+    }
+
+    /**
+     * Discards all values recorded.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        }
+
+        this.count.set(0);
+        this.max.set(0);
+        this.sum.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", mean=" + getMean() + "ms, p50="
+                + getPercentile(50) + "ms, p99=" + getPercentile(99)
+                + "ms, max=" + getMax() + "ms";
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free meter counting events and computing their rate over the last
+ * minute, using one bucket per second.
+ */
+public class RateMeter {
+
+    /** The number of one second buckets. */
+    private static final int WINDOW = 60;
+
+    /** The second covered by each bucket. */
+    private final AtomicLongArray bucketSeconds;
+
+    /** The count of events per bucket. */
+    private final AtomicLongArray buckets;
+
+    /** The total count of events. */
+    private final AtomicLong count;
+
+    /**
+     * Constructor.
+     */
+    public RateMeter() {
+        this.bucketSeconds = new AtomicLongArray(WINDOW);
+        this.buckets = new AtomicLongArray(WINDOW);
+        this.count = new AtomicLong();
+    }
+
+    /**
+     * Returns the total count of events.
+     * 
+     * @return The total count of events.
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Returns the mean rate of events per second over the last minute.
+     * 
+     * @return The mean rate of events per second over the last minute.
+     */
+    public double getRate() {
+        long now = System.currentTimeMillis() / 1000;
+        long total = 0;
+
+        for (int i = 0; i < WINDOW; i++) {
+            if (now - this.bucketSeconds.get(i) < WINDOW) {
+                total += this.buckets.get(i);
+            }
+        }
+
+        return total / (double) WINDOW;
+    }
+
+    /**
+     * Records an event.
+     */
+    public void mark() {
+        mark(1);
+    }
+
+    /**
+     * Records several events.
+     * 
+     * @param events
+     *            The number of events.
+     */
+    public void mark(long events) {
+        long now = System.currentTimeMillis() / 1000;
+        int index = (int) (now % WINDOW);
+        long second = this.bucketSeconds.get(index);
+
+        // Recycle the bucket of the previous minute, losing a few concurrent
+        // events at most
+        if ((second != now) && this.bucketSeconds.compareAndSet(index, second, now)) {
+            this.buckets.set(index, 0);
+        }
+
+        this.buckets.addAndGet(index, events);
+        this.count.addAndGet(events);
+    }
+
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Scheduled executor service that runs each immediate task on a new thread,
+ * typically a virtual thread, while delegating the delayed and periodic tasks
+ * to the wrapped scheduled executor service. This allows a large number of
+ * blocking tasks to run concurrently without being capped by the core pool
+ * size of the wrapped service.
+ */
+public class VirtualScheduledExecutorService extends
+        WrapperScheduledExecutorService {
+
+    /** The executor service creating one thread per task. */
+    private final ExecutorService executor;
+
+    /**
+     * Constructor.
+     * 
+     * @param wrapped
+     *            The wrapped scheduled executor service.
+     * @param threadFactory
+     *            The factory of threads, typically virtual ones, running the
+     *            immediate tasks.
+     */
+    public VirtualScheduledExecutorService(ScheduledExecutorService wrapped,
+            ThreadFactory threadFactory) {
+        super(wrapped);
+        this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0L,
+                TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(),
+                threadFactory);
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return getWrapped().awaitTermination(timeout, unit)
+                && getExecutor().awaitTermination(
+                        deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        getExecutor().execute(command);
+    }
+
+    /**
+     * Returns the executor service creating one thread per task.
+     * 
+     * @return The executor service creating one thread per task.
+     */
+    protected ExecutorService getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks)
+            throws InterruptedException {
+        return getExecutor().invokeAll(tasks);
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(
+            Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return getExecutor().invokeAll(tasks, timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks)
+            throws InterruptedException, ExecutionException {
+        return getExecutor().invokeAny(tasks);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks,
+            long timeout, TimeUnit unit) throws InterruptedException,
+            ExecutionException, TimeoutException {
+        return getExecutor().invokeAny(tasks, timeout, unit);
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return getWrapped().isShutdown() && getExecutor().isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return getWrapped().isTerminated() && getExecutor().isTerminated();
+    }
+
+    @Override
+    public void shutdown() {
+        getWrapped().shutdown();
+        getExecutor().shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> result = new ArrayList<Runnable>(getWrapped()
+                .shutdownNow());
+        result.addAll(getExecutor().shutdownNow());
+        return result;
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return getExecutor().submit(task);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return getExecutor().submit(task);
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return getExecutor().submit(task, result);
+    }
+
+}
@@ -105,7 +105,7 @@ public class BufferingRepresentation extends WrapperRepresentation {
      * 
      * @return The buffered content as an array of bytes.
      */
-    protected byte[] getBuffer() {
+    public byte[] getBuffer() {
         return buffer;
     }
 
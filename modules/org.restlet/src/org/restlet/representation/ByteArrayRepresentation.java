@@ -44,6 +44,15 @@ import org.restlet.data.MediaType;
  */
 public class ByteArrayRepresentation extends InputRepresentation {
 
+    /** The wrapped byte array. */
+    private final byte[] byteArray;
+
+    /** The length to expose inside the byte array. */
+    private final int length;
+
+    /** The offset inside the byte array. */
+    private final int offset;
+
     /**
      * Constructor.
      * 
@@ -51,7 +60,7 @@ public class ByteArrayRepresentation extends InputRepresentation {
      *            The byte array to wrap.
      */
     public ByteArrayRepresentation(byte[] byteArray) {
-        super(new ByteArrayInputStream(byteArray));
+        this(byteArray, 0, byteArray.length);
     }
 
     /**
@@ -64,10 +73,11 @@ public class ByteArrayRepresentation extends InputRepresentation {
      *            The length to expose inside the byte array.
      */
     public ByteArrayRepresentation(byte[] byteArray, int offSet, int length) {
-        super(new ByteArrayInputStream(byteArray, offSet, length));
+        this(byteArray, offSet, length, null);
     }
 
     /**
+     * Constructor. The expected size is the exposed length.
      * 
      * @param byteArray
      *            The byte array to wrap.
@@ -76,10 +86,11 @@ public class ByteArrayRepresentation extends InputRepresentation {
      * @param length
      *            The length to expose inside the byte array.
      * @param mediaType
+     *            The media type.
      */
     public ByteArrayRepresentation(byte[] byteArray, int offSet, int length,
             MediaType mediaType) {
-        super(new ByteArrayInputStream(byteArray, offSet, length), mediaType);
+        this(byteArray, offSet, length, mediaType, length);
     }
 
     /**
@@ -98,6 +109,9 @@ public class ByteArrayRepresentation extends InputRepresentation {
             MediaType mediaType, long expectedSize) {
         super(new ByteArrayInputStream(byteArray, offSet, length), mediaType,
                 expectedSize);
+        this.byteArray = byteArray;
+        this.offset = offSet;
+        this.length = length;
     }
 
     /**
@@ -109,7 +123,7 @@ public class ByteArrayRepresentation extends InputRepresentation {
      *            The media type.
      */
     public ByteArrayRepresentation(byte[] byteArray, MediaType mediaType) {
-        super(new ByteArrayInputStream(byteArray), mediaType);
+        this(byteArray, 0, byteArray.length, mediaType);
     }
 
     /**
@@ -122,7 +136,37 @@ public class ByteArrayRepresentation extends InputRepresentation {
      */
     public ByteArrayRepresentation(byte[] byteArray, MediaType mediaType,
             long expectedSize) {
-        super(new ByteArrayInputStream(byteArray), mediaType, expectedSize);
+        this(byteArray, 0, byteArray.length, mediaType, expectedSize);
+    }
+
+    /**
+     * Returns the wrapped byte array. Note that the exposed bytes are delimited
+     * by {@link #getOffset()} and {@link #getLength()} and that the array
+     * content should only be used while the representation is still
+     * available.
+     * 
+     * @return The wrapped byte array.
+     */
+    public byte[] getByteArray() {
+        return byteArray;
+    }
+
+    /**
+     * Returns the length to expose inside the byte array.
+     * 
+     * @return The length to expose inside the byte array.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the offset inside the byte array.
+     * 
+     * @return The offset inside the byte array.
+     */
+    public int getOffset() {
+        return offset;
     }
 
 }
@@ -0,0 +1,388 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.representation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
+import org.restlet.util.WritingListener;
+
+/**
+ * Server-Sent Events stream ("text/event-stream" media type). Events can be
+ * sent from any thread at any time until the stream is closed. With the NIO
+ * connectors, a stream waiting for new events holds no worker thread and its
+ * connection isn't closed for inactivity, so many long-lived streams can stay
+ * open. Other connectors read the events via a blocking stream.<br>
+ * <br>
+ * A typical resource returns a new instance, keeps a reference to it and
+ * stops sending events once {@link #isClosed()} returns true, because the
+ * client disconnected. Sending a comment periodically is a cheap way to
+ * detect disconnected clients. For long-polling, disable auto-commit on the
+ * response instead and commit it once the awaited content is ready.<br>
+ * <br>
+ * The number of events waiting to be sent is bounded by
+ * {@link #getMaxQueuedEvents()}, so a slow client can't exhaust the memory.
+ * Once reached, new events are refused until the client catches up.
+ *
+ * @see <a href="http://www.w3.org/TR/eventsource/">Server-Sent Events</a>
+ */
+public class EventStreamRepresentation extends SelectableRepresentation {
+
+    /**
+     * Writing listener producing the queued events.
+     */
+    private static class EventListener extends WritingListener {
+
+        /** Indicates if the stream must end once the queue is empty. */
+        private volatile boolean closing;
+
+        /**
+         * The queue of encoded events, with the next one being partly sent.
+         * Also guards the addition of events against the closing of the
+         * stream.
+         */
+        private final Queue<ByteBuffer> events;
+
+        /** The number of queued events. */
+        private final AtomicInteger queued;
+
+        /**
+         * Constructor.
+         *
+         * @param bufferSize
+         *            The size of the byte buffer to use.
+         */
+        public EventListener(int bufferSize) {
+            super(bufferSize);
+            this.closing = false;
+            this.events = new ConcurrentLinkedQueue<ByteBuffer>();
+            this.queued = new AtomicInteger();
+        }
+
+        @Override
+        protected void onWritable(ByteBuffer byteBuffer) throws IOException {
+            boolean closing = this.closing;
+            ByteBuffer event = this.events.peek();
+
+            while ((event != null) && byteBuffer.hasRemaining()) {
+                if (event.remaining() <= byteBuffer.remaining()) {
+                    byteBuffer.put(event);
+
+                    if (this.events.poll() != null) {
+                        this.queued.decrementAndGet();
+                    }
+
+                    event = this.events.peek();
+                } else {
+                    int limit = event.limit();
+                    event.limit(event.position() + byteBuffer.remaining());
+                    byteBuffer.put(event);
+                    event.limit(limit);
+                }
+            }
+
+            if (closing && this.events.isEmpty()) {
+                end();
+            }
+        }
+    }
+
+    /** The default size of the byte buffer, kept small for many streams. */
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    /** The default maximum number of events waiting to be sent. */
+    public static final int DEFAULT_MAX_QUEUED_EVENTS = 1000;
+
+    /**
+     * Checks that an event field value fits on a single line.
+     *
+     * @param name
+     *            The field name.
+     * @param value
+     *            The field value.
+     * @throws IllegalArgumentException
+     *             If the value contains a line break.
+     */
+    private static void checkField(String name, String value) {
+        if ((value.indexOf('\r') != -1) || (value.indexOf('\n') != -1)) {
+            throw new IllegalArgumentException("The event " + name
+                    + " can't contain line breaks");
+        }
+    }
+
+    /** Indicates if the stream has been closed or released. */
+    private volatile boolean closed;
+
+    /** The listener producing the queued events. */
+    private final EventListener eventListener;
+
+    /** The maximum number of events waiting to be sent. */
+    private volatile int maxQueuedEvents;
+
+    /**
+     * Default constructor.
+     */
+    public EventStreamRepresentation() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bufferSize
+     *            The size of the byte buffer used to send events.
+     */
+    public EventStreamRepresentation(int bufferSize) {
+        this(new EventListener(bufferSize));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param eventListener
+     *            The listener producing the queued events.
+     */
+    private EventStreamRepresentation(EventListener eventListener) {
+        super(MediaType.TEXT_EVENT_STREAM, eventListener);
+        setCharacterSet(CharacterSet.UTF_8);
+        this.closed = false;
+        this.eventListener = eventListener;
+        this.maxQueuedEvents = DEFAULT_MAX_QUEUED_EVENTS;
+    }
+
+    /**
+     * Closes the stream once the events already sent are consumed.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        boolean closing;
+
+        synchronized (this.eventListener.events) {
+            closing = !this.closed;
+            this.closed = true;
+            this.eventListener.closing = true;
+        }
+
+        if (closing) {
+            this.eventListener.resume();
+        }
+    }
+
+    /**
+     * Returns the maximum number of events waiting to be sent. Defaults to
+     * {@link #DEFAULT_MAX_QUEUED_EVENTS}.
+     *
+     * @return The maximum number of events waiting to be sent.
+     */
+    public int getMaxQueuedEvents() {
+        return this.maxQueuedEvents;
+    }
+
+    /**
+     * Indicates if the stream has been closed, either by the application or
+     * because the consumer released it.
+     *
+     * @return True if the stream has been closed.
+     */
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Queues an encoded event and notifies the consumer.
+     *
+     * @param text
+     *            The encoded event.
+     * @return True if the event was queued, false if the stream is closed or
+     *         if too many events are waiting to be sent.
+     * @throws IOException
+     */
+    private boolean queue(CharSequence text) throws IOException {
+        ByteBuffer event = ByteBuffer.wrap(text.toString().getBytes(
+                CharacterSet.UTF_8.getName()));
+        AtomicInteger queued = this.eventListener.queued;
+        boolean result;
+
+        // Atomic against the closing of the stream
+        synchronized (this.eventListener.events) {
+            result = !isClosed() && (queued.get() < getMaxQueuedEvents());
+
+            if (result) {
+                queued.incrementAndGet();
+                this.eventListener.events.add(event);
+            }
+        }
+
+        if (result) {
+            this.eventListener.resume();
+        }
+
+        return result;
+    }
+
+    /**
+     * Releases the stream. Events sent afterwards are ignored.
+     */
+    @Override
+    public void release() {
+        synchronized (this.eventListener.events) {
+            this.closed = true;
+
+            while (this.eventListener.events.poll() != null) {
+                this.eventListener.queued.decrementAndGet();
+            }
+        }
+
+        super.release();
+    }
+
+    /**
+     * Sends an unnamed event.
+     *
+     * @param data
+     *            The event data, possibly on several lines.
+     * @return True if the event was queued, false if the stream is closed or
+     *         if too many events are waiting to be sent.
+     * @throws IOException
+     */
+    public boolean send(String data) throws IOException {
+        return send(null, null, data);
+    }
+
+    /**
+     * Sends a named event.
+     *
+     * @param event
+     *            The event name or null.
+     * @param data
+     *            The event data, possibly on several lines.
+     * @return True if the event was queued, false if the stream is closed or
+     *         if too many events are waiting to be sent.
+     * @throws IOException
+     */
+    public boolean send(String event, String data) throws IOException {
+        return send(null, event, data);
+    }
+
+    /**
+     * Sends an event with an identifier that the client will send back in the
+     * "Last-Event-ID" header when reconnecting.
+     *
+     * @param id
+     *            The event identifier or null.
+     * @param event
+     *            The event name or null.
+     * @param data
+     *            The event data, possibly on several lines.
+     * @return True if the event was queued, false if the stream is closed or
+     *         if too many events are waiting to be sent.
+     * @throws IOException
+     * @throws IllegalArgumentException
+     *             If the identifier or the name contains a line break.
+     */
+    public boolean send(String id, String event, String data)
+            throws IOException {
+        StringBuilder sb = new StringBuilder();
+
+        if (id != null) {
+            checkField("identifier", id);
+            sb.append("id: ").append(id).append('\n');
+        }
+
+        if (event != null) {
+            checkField("name", event);
+            sb.append("event: ").append(event).append('\n');
+        }
+
+        for (String line : ((data == null) ? "" : data).split("\r\n|\r|\n",
+                -1)) {
+            sb.append("data: ").append(line).append('\n');
+        }
+
+        return queue(sb.append('\n'));
+    }
+
+    /**
+     * Sends a comment, ignored by clients. Useful to keep intermediaries from
+     * closing the connection and to detect disconnected clients.
+     *
+     * @param comment
+     *            The comment.
+     * @return True if the comment was queued, false if the stream is closed
+     *         or if too many events are waiting to be sent.
+     * @throws IOException
+     */
+    public boolean sendComment(String comment) throws IOException {
+        StringBuilder sb = new StringBuilder();
+
+        for (String line : ((comment == null) ? "" : comment).split(
+                "\r\n|\r|\n", -1)) {
+            sb.append(": ").append(line).append('\n');
+        }
+
+        return queue(sb.append('\n'));
+    }
+
+    /**
+     * Sends the reconnection time that clients should use if the connection is
+     * lost.
+     *
+     * @param retryMs
+     *            The reconnection time in milliseconds.
+     * @return True if the value was queued, false if the stream is closed or
+     *         if too many events are waiting to be sent.
+     * @throws IOException
+     */
+    public boolean sendRetry(long retryMs) throws IOException {
+        return queue(new StringBuilder("retry: ").append(retryMs)
+                .append("\n\n"));
+    }
+
+    /**
+     * Sets the maximum number of events waiting to be sent.
+     *
+     * @param maxQueuedEvents
+     *            The maximum number of events waiting to be sent.
+     */
+    public void setMaxQueuedEvents(int maxQueuedEvents) {
+        this.maxQueuedEvents = maxQueuedEvents;
+    }
+
+}
@@ -571,7 +571,9 @@ public abstract class Representation extends RepresentationInfo {
     // [ifndef gae,gwt] method
     /**
      * Sets a listener for NIO read events. If the listener is null, it clear
-     * any existing listener.
+     * any existing listener. This allows the content to be consumed as it
+     * arrives without blocking a thread, for example after setting the
+     * response's auto-commit flag to false.
      * 
      * @param readingListener
      *            The listener for NIO read events.
@@ -587,6 +589,12 @@ public abstract class Representation extends RepresentationInfo {
             }
 
             sr.setSelectionListener(readingListener);
+
+            // The listener may be set after the call was handled, so let the
+            // connector update its NIO interest right away
+            if (sr.getWakeupListener() != null) {
+                sr.getWakeupListener().onWokeup(sr);
+            }
         } catch (IOException ioe) {
             Context.getCurrentLogger().log(Level.WARNING,
                     "Unable to register the reading listener", ioe);
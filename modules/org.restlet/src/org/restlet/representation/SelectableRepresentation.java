@@ -0,0 +1,119 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.representation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.restlet.data.MediaType;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.io.NbChannelInputStream;
+import org.restlet.util.WritingListener;
+
+/**
+ * Transient representation whose content is produced without blocking by a
+ * {@link WritingListener}. NIO connectors are called back when new content is
+ * ready instead of parking a thread, so that slow producers or slow clients
+ * don't consume worker threads. Other connectors read the content via a
+ * blocking stream.
+ */
+public class SelectableRepresentation extends ChannelRepresentation {
+
+    /** The listener producing the content. */
+    private final WritingListener writingListener;
+
+    /**
+     * Constructor.
+     *
+     * @param mediaType
+     *            The representation's media type.
+     * @param writingListener
+     *            The listener producing the content.
+     */
+    public SelectableRepresentation(MediaType mediaType,
+            WritingListener writingListener) {
+        this(mediaType, writingListener, UNKNOWN_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param mediaType
+     *            The representation's media type.
+     * @param writingListener
+     *            The listener producing the content.
+     * @param expectedSize
+     *            The expected content size.
+     */
+    public SelectableRepresentation(MediaType mediaType,
+            WritingListener writingListener, long expectedSize) {
+        super(mediaType);
+        setSize(expectedSize);
+        setTransient(true);
+        this.writingListener = writingListener;
+    }
+
+    @Override
+    public ReadableByteChannel getChannel() throws IOException {
+        return getWritingListener().getChannel();
+    }
+
+    /**
+     * Returns a stream blocking the calling thread until new content is
+     * produced.
+     * 
+     * @return A stream blocking until new content is produced.
+     */
+    @Override
+    public InputStream getStream() throws IOException {
+        return new NbChannelInputStream(getChannel());
+    }
+
+    /**
+     * Returns the listener producing the content.
+     *
+     * @return The listener producing the content.
+     */
+    public WritingListener getWritingListener() {
+        return writingListener;
+    }
+
+    @Override
+    public void write(WritableByteChannel writableChannel) throws IOException {
+        IoUtils.copy(getStream(), IoUtils.getStream(writableChannel));
+    }
+
+}
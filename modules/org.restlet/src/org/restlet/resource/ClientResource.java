@@ -60,6 +60,7 @@ import org.restlet.data.Status;
 import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
 import org.restlet.representation.Variant;
+import org.restlet.util.RetryPolicy;
 import org.restlet.util.Series;
 
 /**
@@ -83,6 +84,12 @@ import org.restlet.util.Series;
  */
 public class ClientResource extends Resource {
 
+    /**
+     * The name of the request attribute holding the time when a call was first
+     * attempted, used to enforce the deadline of the retry policy.
+     */
+    private static final String RETRY_START_TIME = "org.restlet.retryStartTime";
+
     // [ifndef gwt] method
     /**
      * Creates a client resource that proxy calls to the given Java interface
@@ -167,19 +174,21 @@ public class ClientResource extends Resource {
      */
     private volatile boolean responseEntityBuffering;
 
-    /** Number of retry attempts before reporting an error. */
-    private volatile int retryAttempts;
-
-    /** Delay in milliseconds between two retry attempts. */
-    private volatile long retryDelay;
-
     /** Indicates if idempotent requests should be retried on error. */
     private volatile boolean retryOnError;
 
+    /** The policy deciding if and when failed calls are retried. */
+    private volatile RetryPolicy retryPolicy;
+
+    // [ifndef gwt] member
+    /** The scheduler of the retries, created when the context has none. */
+    private volatile java.util.concurrent.ScheduledThreadPoolExecutor retryScheduler;
+
     /**
      * Empty constructor.
      */
     protected ClientResource() {
+        this.retryPolicy = new RetryPolicy();
     }
 
     /**
@@ -194,8 +203,7 @@ public class ClientResource extends Resource {
         this.next = resource.getNext();
         this.maxRedirects = resource.getMaxRedirects();
         this.retryOnError = resource.isRetryOnError();
-        this.retryDelay = resource.getRetryDelay();
-        this.retryAttempts = resource.getRetryAttempts();
+        this.retryPolicy = new RetryPolicy(resource.getRetryPolicy());
 
         // [ifndef gwt]
         this.followingRedirects = resource.isFollowingRedirects();
@@ -307,8 +315,7 @@ public class ClientResource extends Resource {
 
         this.maxRedirects = 10;
         this.retryOnError = true;
-        this.retryDelay = 2000L;
-        this.retryAttempts = 2;
+        this.retryPolicy = new RetryPolicy();
         // [ifndef gwt]
         this.followingRedirects = true;
         this.requestEntityBuffering = false;
@@ -572,6 +579,40 @@ public class ClientResource extends Resource {
         return new Response(request);
     }
 
+    // [ifndef gwt] method
+    /**
+     * Defers the decision to retry an asynchronous call until its response is
+     * received, by temporarily replacing the callback of the request. The
+     * original callback is restored before being invoked with the final
+     * response.
+     * 
+     * @param request
+     *            The request to send.
+     * @param references
+     *            The references that caused a redirection to prevent infinite
+     *            loops.
+     * @param retryAttempt
+     *            The number of retries already done.
+     * @param next
+     *            The next handler handling the call.
+     */
+    private void deferRetry(final Request request,
+            final List<Reference> references, final int retryAttempt,
+            final Uniform next) {
+        final Uniform onResponse = request.getOnResponse();
+        request.setOnResponse(new Uniform() {
+            public void handle(Request req, Response resp) {
+                req.setOnResponse(onResponse);
+
+                if (getRetryPolicy().isRetryable(req, resp, retryAttempt)) {
+                    retry(req, resp, references, retryAttempt, next);
+                } else {
+                    onResponse.handle(req, resp);
+                }
+            }
+        });
+    }
+
     /**
      * Deletes the target resource and all its representations. If a success
      * status is not returned, then a resource exception is thrown.
@@ -630,10 +671,21 @@ public class ClientResource extends Resource {
 
     /**
      * Releases the resource by stopping any connector automatically created and
-     * associated to the "next" property (see {@link #getNext()} method.
+     * associated to the "next" property (see {@link #getNext()} method. The
+     * retry scheduler created by default is shut down, after running the
+     * retries already scheduled.
      */
     @Override
     protected void doRelease() throws ResourceException {
+        // [ifndef gwt]
+        synchronized (this) {
+            if (this.retryScheduler != null) {
+                this.retryScheduler.shutdown();
+                this.retryScheduler = null;
+            }
+        }
+        // [enddef]
+
         if ((getNext() != null) && this.nextCreated) {
             if (getNext() instanceof Restlet) {
                 try {
@@ -929,17 +981,62 @@ public class ClientResource extends Resource {
      * @return The number of retry attempts before reporting an error.
      */
     public int getRetryAttempts() {
-        return retryAttempts;
+        return getRetryPolicy().getMaxRetries();
     }
 
     /**
-     * Returns the delay in milliseconds between two retry attempts. Default
-     * value is 2 seconds.
+     * Returns the delay in milliseconds before the first retry attempt. The
+     * next delays grow according to the retry policy. Default value is 2
+     * seconds.
      * 
-     * @return The delay in milliseconds between two retry attempts.
+     * @return The delay in milliseconds before the first retry attempt.
+     * @see RetryPolicy#getInitialDelay()
      */
     public long getRetryDelay() {
-        return retryDelay;
+        return getRetryPolicy().getInitialDelay();
+    }
+
+    /**
+     * Returns the policy deciding if and when failed calls are retried. The
+     * client resources copied from this one get a copy of this policy sharing
+     * the same retry budget.
+     * 
+     * @return The policy deciding if and when failed calls are retried.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    // [ifndef gwt] method
+    /**
+     * Returns the executor service used to schedule the retries of
+     * asynchronous calls. By default, it returns the context's executor
+     * service or, if not available, a single daemon thread scheduler created
+     * on first use. Its thread stops when idle and the scheduler is shut down
+     * when this resource is released.
+     * 
+     * @return The executor service used to schedule the retries.
+     */
+    protected java.util.concurrent.ScheduledExecutorService getRetryScheduler() {
+        java.util.concurrent.ScheduledExecutorService result = (getContext() == null) ? null
+                : getContext().getExecutorService();
+
+        if (result == null) {
+            synchronized (this) {
+                if (this.retryScheduler == null) {
+                    this.retryScheduler = new java.util.concurrent.ScheduledThreadPoolExecutor(
+                            1, new org.restlet.engine.log.LoggingThreadFactory(
+                                    getLogger(), true));
+                    this.retryScheduler.setKeepAliveTime(60,
+                            java.util.concurrent.TimeUnit.SECONDS);
+                    this.retryScheduler.allowCoreThreadTimeOut(true);
+                }
+
+                result = this.retryScheduler;
+            }
+        }
+
+        return result;
     }
 
     /**
@@ -1130,22 +1227,38 @@ public class ClientResource extends Resource {
     protected void handle(Request request, Response response,
             List<Reference> references, int retryAttempt, Uniform next) {
         if (next != null) {
+            boolean retryDeferred = false;
+
+            if (retryAttempt == 0) {
+                getRetryPolicy().recordCall();
+
+                if (!request.getAttributes().containsKey(RETRY_START_TIME)) {
+                    request.getAttributes().put(RETRY_START_TIME,
+                            System.currentTimeMillis());
+                }
+            }
+
             // [ifndef gwt]
             // Check if request entity buffering must be done
             if (isRequestEntityBuffering()) {
                 request.bufferEntity();
             }
+
+            // Asynchronous calls are retried once their response is received
+            if (request.isAsynchronous() && isRetryOnError()
+                    && (retryAttempt < getRetryPolicy().getMaxRetries())) {
+                deferRetry(request, references, retryAttempt, next);
+                retryDeferred = true;
+            }
             // [enddef]
 
             // Actually handle the call
             next.handle(request, response);
 
-            if (isRetryOnError()
-                    && response.getStatus().isRecoverableError()
-                    && request.getMethod().isIdempotent()
-                    && (retryAttempt < getRetryAttempts())
-                    && ((request.getEntity() == null) || request.getEntity()
-                            .isAvailable())) {
+            if (!retryDeferred
+                    && isRetryOnError()
+                    && getRetryPolicy().isRetryable(request, response,
+                            retryAttempt)) {
                 retry(request, response, references, retryAttempt, next);
             }
             // [ifndef gwt]
@@ -1671,8 +1784,12 @@ public class ClientResource extends Resource {
     }
 
     /**
-     * Effectively retries a failed client call. By default, it sleeps before
-     * the retry attempt and increments the number of retries.
+     * Effectively retries a failed client call. By default, it asks the retry
+     * policy for the delay before the retry attempt and checks the retry
+     * budget and the deadline of the call. Synchronous calls sleep during the
+     * delay while asynchronous calls are scheduled with the executor service
+     * returned by {@link #getRetryScheduler()}, without blocking any thread.
+     * The number of retries is then incremented.
      * 
      * @param request
      *            The request to send.
@@ -1686,35 +1803,69 @@ public class ClientResource extends Resource {
      * @param next
      *            The next handler handling the call.
      */
-    protected void retry(Request request, Response response,
-            List<Reference> references, int retryAttempt, Uniform next) {
-        getLogger().log(
-                Level.INFO,
-                "A recoverable error was detected ("
-                        + response.getStatus().getCode()
-                        + "), attempting again in " + getRetryDelay() + " ms.");
-
-        // Wait before attempting again
-        if (getRetryDelay() > 0) {
+    protected void retry(final Request request, final Response response,
+            final List<Reference> references, final int retryAttempt,
+            final Uniform next) {
+        long delay = getRetryPolicy().getDelay(response, retryAttempt);
+        Long startTime = (Long) request.getAttributes().get(RETRY_START_TIME);
+
+        if (getRetryPolicy().acquire(delay,
+                (startTime == null) ? System.currentTimeMillis() : startTime)) {
+            getLogger().log(
+                    Level.INFO,
+                    "A recoverable error was detected ("
+                            + response.getStatus().getCode()
+                            + "), attempting again in " + delay + " ms.");
+            boolean scheduled = false;
+
             // [ifndef gwt]
-            try {
-                Thread.sleep(getRetryDelay());
-            } catch (InterruptedException e) {
-                getLogger().log(Level.FINE,
-                        "Retry delay sleep was interrupted", e);
+            if (request.isAsynchronous()) {
+                // Don't block the thread delivering the response
+                getRetryScheduler().schedule(new Runnable() {
+                    public void run() {
+                        handle(request, response, references,
+                                retryAttempt + 1, next);
+                    }
+                }, delay, java.util.concurrent.TimeUnit.MILLISECONDS);
+                scheduled = true;
             }
             // [enddef]
-            // [ifdef gwt] uncomment
-            // com.google.gwt.user.client.Timer timer = new
-            // com.google.gwt.user.client.Timer() {
-            // public void run() {}
-            // };
-            // timer.schedule((int) getRetryDelay());
-            // [enddef]
-        }
 
-        // Retry the call
-        handle(request, response, references, ++retryAttempt, next);
+            if (!scheduled) {
+                // Wait before attempting again
+                if (delay > 0) {
+                    // [ifndef gwt]
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        getLogger().log(Level.FINE,
+                                "Retry delay sleep was interrupted", e);
+                    }
+                    // [enddef]
+                    // [ifdef gwt] uncomment
+                    // com.google.gwt.user.client.Timer timer = new
+                    // com.google.gwt.user.client.Timer() {
+                    // public void run() {}
+                    // };
+                    // timer.schedule((int) delay);
+                    // [enddef]
+                }
+
+                // Retry the call
+                handle(request, response, references, retryAttempt + 1, next);
+            }
+        } else {
+            getLogger().log(
+                    Level.FINE,
+                    "A recoverable error was detected ("
+                            + response.getStatus().getCode()
+                            + ") but the retry budget or the deadline of the call was exhausted.");
+
+            if (request.getOnResponse() != null) {
+                // Deliver the failed response
+                request.getOnResponse().handle(request, response);
+            }
+        }
     }
 
     /**
@@ -2065,18 +2216,20 @@ public class ClientResource extends Resource {
      *            The number of retry attempts before reporting an error.
      */
     public void setRetryAttempts(int retryAttempts) {
-        this.retryAttempts = retryAttempts;
+        getRetryPolicy().setMaxRetries(retryAttempts);
     }
 
     /**
-     * Sets the delay in milliseconds between two retry attempts. The default
-     * value is two seconds.
+     * Sets the delay in milliseconds before the first retry attempt. The
+     * default value is two seconds. The maximum delay of the retry policy, 30
+     * seconds by default, is raised to this delay if it is shorter.
      * 
      * @param retryDelay
-     *            The delay in milliseconds between two retry attempts.
+     *            The delay in milliseconds before the first retry attempt.
+     * @see RetryPolicy#setInitialDelay(long)
      */
     public void setRetryDelay(long retryDelay) {
-        this.retryDelay = retryDelay;
+        getRetryPolicy().setInitialDelay(retryDelay);
     }
 
     /**
@@ -2089,6 +2242,16 @@ public class ClientResource extends Resource {
         this.retryOnError = retryOnError;
     }
 
+    /**
+     * Sets the policy deciding if and when failed calls are retried.
+     * 
+     * @param retryPolicy
+     *            The policy deciding if and when failed calls are retried.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
     // [ifndef gwt] method
     /**
      * Wraps the client resource to proxy calls to the given Java interface into
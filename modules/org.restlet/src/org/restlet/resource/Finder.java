@@ -37,11 +37,14 @@ import java.lang.reflect.Constructor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.restlet.Application;
 import org.restlet.Context;
 import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Restlet;
 import org.restlet.data.Status;
+import org.restlet.engine.application.CallMetrics;
+import org.restlet.service.MetricsService;
 
 /**
  * Restlet that can find the target server resource that will effectively handle
@@ -214,7 +217,8 @@ public class Finder extends Restlet {
     }
 
     /**
-     * Handles a call.
+     * Handles a call. When the metrics service of the current application is
+     * started, the call is recorded under the class of the target resource.
      * 
      * @param request
      *            The request to handle.
@@ -240,17 +244,35 @@ public class Finder extends Restlet {
 
                 response.setStatus(Status.CLIENT_ERROR_NOT_FOUND);
             } else {
-                targetResource.init(getContext(), request, response);
+                Application application = getApplication();
+                MetricsService metricsService = (application == null) ? null
+                        : application.getMetricsService();
+                CallMetrics metrics = ((metricsService != null) && metricsService
+                        .isStarted()) ? metricsService.getResourceMetrics(
+                        targetResource.getClass(), request.getMethod()) : null;
+                long startTime = (metrics == null) ? 0L : metrics
+                        .onCallStarted();
 
-                if ((response == null) || response.getStatus().isSuccess()) {
-                    targetResource.handle();
-                } else {
-                    // Probably during the instantiation of the target
-                    // server resource, or earlier the status was
-                    // changed from the default one. Don't go further.
-                }
+                try {
+                    targetResource.init(getContext(), request, response);
+
+                    if ((response == null)
+                            || response.getStatus().isSuccess()) {
+                        targetResource.handle();
+                    } else {
+                        // Probably during the instantiation of the target
+                        // server resource, or earlier the status was
+                        // changed from the default one. Don't go further.
+                    }
 
-                targetResource.release();
+                    targetResource.release();
+                } finally {
+                    if (metrics != null) {
+                        metrics.onCallCompleted(startTime,
+                                (response == null) ? null : response
+                                        .getStatus());
+                    }
+                }
             }
         }
     }
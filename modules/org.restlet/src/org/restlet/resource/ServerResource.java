@@ -60,6 +60,7 @@ import org.restlet.engine.resource.AnnotationInfo;
 import org.restlet.engine.resource.MethodAnnotationInfo;
 import org.restlet.engine.resource.AnnotationUtils;
 import org.restlet.engine.resource.VariantInfo;
+import org.restlet.engine.util.CallTimings;
 import org.restlet.representation.Representation;
 import org.restlet.representation.RepresentationInfo;
 import org.restlet.representation.Variant;
@@ -477,7 +478,9 @@ public abstract class ServerResource extends Resource {
 
     /**
      * Effectively handles a call with content negotiation of the response
-     * entity using an annotated method.
+     * entity using an annotated method. The time taken by the method and by
+     * the conversions of its parameters and result are added to the request's
+     * timings, if any.
      * 
      * @param annotationInfo
      *            The annotation descriptor.
@@ -490,6 +493,8 @@ public abstract class ServerResource extends Resource {
             Variant variant) throws ResourceException {
         Representation result = null;
         Class<?>[] parameterTypes = annotationInfo.getJavaInputTypes();
+        CallTimings timings = getRequest().getTimings();
+        long stageTime = (timings == null) ? 0L : System.nanoTime();
 
         // Invoke the annotated method and get the resulting object.
         Object resultObject = null;
@@ -524,14 +529,28 @@ public abstract class ServerResource extends Resource {
                     }
                 }
 
+                if (timings != null) {
+                    stageTime = timings.addElapsed(
+                            CallTimings.STAGE_CONVERSION, stageTime);
+                }
+
                 resultObject = annotationInfo.getJavaMethod().invoke(this,
                         parameters.toArray());
             } else {
                 resultObject = annotationInfo.getJavaMethod().invoke(this);
             }
 
+            if (timings != null) {
+                stageTime = timings.addElapsed(CallTimings.STAGE_RESOURCE,
+                        stageTime);
+            }
+
             if (resultObject != null) {
                 result = toRepresentation(resultObject, variant);
+
+                if (timings != null) {
+                    timings.addElapsed(CallTimings.STAGE_CONVERSION, stageTime);
+                }
             }
 
         } catch (IllegalArgumentException e) {
@@ -0,0 +1,317 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.resource;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.restlet.data.Header;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.engine.util.Base64;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+import org.restlet.util.WebSocket;
+import org.restlet.util.WebSocketListener;
+
+/**
+ * Server resource accepting WebSocket connections. It is attached to a router
+ * like any other resource, and a new instance handles each WebSocket for its
+ * whole life. When a WebSocket handshake request is received, the resource
+ * answers with a 101 (Switching Protocols) response and the server connector
+ * switches the connection to the WebSocket protocol, then calls back the
+ * {@link WebSocketListener} methods. Other requests are handled as usual by
+ * the parent {@link ServerResource}.<br>
+ * <br>
+ * The WebSocket protocol requires a server connector supporting it, such as
+ * the NIO HTTP server connector.
+ *
+ * @see <a href="http://tools.ietf.org/html/rfc6455">RFC 6455</a>
+ */
+public class WebSocketResource extends ServerResource implements
+        WebSocketListener {
+
+    /** The GUID concatenated to the handshake key. */
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    /** The supported version of the WebSocket protocol. */
+    public static final String VERSION = "13";
+
+    /**
+     * Returns the value of the "Sec-WebSocket-Accept" header for a given
+     * handshake key.
+     *
+     * @param key
+     *            The value of the "Sec-WebSocket-Key" header.
+     * @return The value of the "Sec-WebSocket-Accept" header.
+     */
+    public static String getAcceptKey(String key) {
+        String result = null;
+
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            result = Base64.encode(md.digest((key.trim() + ACCEPT_GUID)
+                    .getBytes("US-ASCII")), false);
+        } catch (Exception e) {
+            throw new IllegalStateException(
+                    "Unable to compute the WebSocket accept key", e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if a header value contains a given token, ignoring case.
+     *
+     * @param value
+     *            The header value, a comma-separated list of tokens.
+     * @param token
+     *            The token to look for.
+     * @return True if the header value contains the token.
+     */
+    private static boolean hasToken(String value, String token) {
+        boolean result = false;
+
+        if (value != null) {
+            for (String part : value.split(",")) {
+                result = result || part.trim().equalsIgnoreCase(token);
+            }
+        }
+
+        return result;
+    }
+
+    /** The WebSocket once opened. */
+    private volatile WebSocket webSocket;
+
+    /**
+     * Starts the closing handshake of the WebSocket.
+     *
+     * @param statusCode
+     *            The close status code.
+     * @param reason
+     *            The optional reason or null.
+     * @throws IOException
+     */
+    public void close(int statusCode, String reason) throws IOException {
+        if (getWebSocket() != null) {
+            getWebSocket().close(statusCode, reason);
+        }
+    }
+
+    /**
+     * Returns the WebSocket once opened, or null.
+     *
+     * @return The WebSocket once opened, or null.
+     */
+    public WebSocket getWebSocket() {
+        return webSocket;
+    }
+
+    /**
+     * Accepts WebSocket handshake requests, otherwise handles the call as a
+     * regular server resource.
+     */
+    @Override
+    public Representation handle() {
+        Representation result = null;
+
+        if (isWebSocketRequest()) {
+            upgrade();
+        } else {
+            result = super.handle();
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if the current request is a WebSocket handshake request, that
+     * is a GET request with an "Upgrade: websocket" header.
+     *
+     * @return True if the current request is a WebSocket handshake request.
+     */
+    public boolean isWebSocketRequest() {
+        Series<Header> headers = getRequest().getHeaders();
+        return Method.GET.equals(getMethod())
+                && (headers != null)
+                && hasToken(headers.getValues(HeaderConstants.HEADER_UPGRADE),
+                        "websocket")
+                && hasToken(headers
+                        .getValues(HeaderConstants.HEADER_CONNECTION),
+                        "upgrade");
+    }
+
+    /**
+     * Does nothing by default.
+     */
+    public void onBinary(WebSocket webSocket, byte[] data) {
+    }
+
+    /**
+     * Does nothing by default.
+     */
+    public void onClose(WebSocket webSocket, int statusCode, String reason) {
+    }
+
+    /**
+     * Logs the error and closes the WebSocket by default.
+     */
+    public void onError(WebSocket webSocket, Throwable throwable) {
+        getLogger().log(Level.WARNING, "WebSocket error", throwable);
+
+        try {
+            webSocket.close(WebSocket.CLOSE_INTERNAL_ERROR, null);
+        } catch (IOException e) {
+            getLogger().log(Level.FINE, "Unable to close the WebSocket", e);
+        }
+    }
+
+    /**
+     * Keeps a reference to the WebSocket. Overriding methods must invoke this
+     * one.
+     */
+    public void onOpen(WebSocket webSocket) {
+        this.webSocket = webSocket;
+    }
+
+    /**
+     * Does nothing by default.
+     */
+    public void onText(WebSocket webSocket, String text) {
+    }
+
+    /**
+     * Selects the subprotocol to use among the ones proposed by the client.
+     * Returns null by default.
+     *
+     * @param subprotocols
+     *            The subprotocols proposed by the client, in order of
+     *            preference.
+     * @return The selected subprotocol or null.
+     */
+    protected String selectSubprotocol(List<String> subprotocols) {
+        return null;
+    }
+
+    /**
+     * Sends a binary message.
+     *
+     * @param data
+     *            The message data.
+     * @throws IOException
+     *             If the WebSocket isn't open.
+     */
+    public void send(byte[] data) throws IOException {
+        if (getWebSocket() == null) {
+            throw new IOException("The WebSocket isn't open");
+        }
+
+        getWebSocket().send(data);
+    }
+
+    /**
+     * Sends a text message.
+     *
+     * @param text
+     *            The message text.
+     * @throws IOException
+     *             If the WebSocket isn't open.
+     */
+    public void send(String text) throws IOException {
+        if (getWebSocket() == null) {
+            throw new IOException("The WebSocket isn't open");
+        }
+
+        getWebSocket().send(text);
+    }
+
+    /**
+     * Answers a WebSocket handshake request. Sets a 101 (Switching Protocols)
+     * status and registers this resource as the listener of the WebSocket to
+     * be opened by the connector. Invalid handshakes are rejected with a 400
+     * (Bad Request) or 426 (Upgrade Required) status.
+     */
+    protected void upgrade() {
+        Series<Header> requestHeaders = getRequest().getHeaders();
+        Series<Header> responseHeaders = new Series<Header>(Header.class);
+        String key = requestHeaders
+                .getFirstValue(HeaderConstants.HEADER_SEC_WEBSOCKET_KEY);
+
+        if (!VERSION.equals(requestHeaders
+                .getFirstValue(HeaderConstants.HEADER_SEC_WEBSOCKET_VERSION))) {
+            setStatus(new Status(426, "Upgrade Required",
+                    "Unsupported WebSocket version", null));
+            responseHeaders.add(HeaderConstants.HEADER_SEC_WEBSOCKET_VERSION,
+                    VERSION);
+        } else if ((key == null) || (key.trim().length() == 0)) {
+            setStatus(Status.CLIENT_ERROR_BAD_REQUEST,
+                    "Missing WebSocket key");
+        } else {
+            List<String> subprotocols = new ArrayList<String>();
+            String values = requestHeaders
+                    .getValues(HeaderConstants.HEADER_SEC_WEBSOCKET_PROTOCOL);
+
+            if (values != null) {
+                for (String value : values.split(",")) {
+                    if (value.trim().length() > 0) {
+                        subprotocols.add(value.trim());
+                    }
+                }
+            }
+
+            String subprotocol = selectSubprotocol(subprotocols);
+            setStatus(Status.INFO_SWITCHING_PROTOCOL);
+            responseHeaders.add(HeaderConstants.HEADER_SEC_WEBSOCKET_ACCEPT,
+                    getAcceptKey(key));
+
+            if (subprotocol != null) {
+                responseHeaders.add(
+                        HeaderConstants.HEADER_SEC_WEBSOCKET_PROTOCOL,
+                        subprotocol);
+            }
+
+            getResponse().getAttributes().put(
+                    HeaderConstants.ATTRIBUTE_WEBSOCKET_LISTENER, this);
+        }
+
+        HeaderUtils.copyExtensionHeaders(responseHeaders, getResponse());
+    }
+
+}
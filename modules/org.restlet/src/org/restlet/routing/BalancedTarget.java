@@ -0,0 +1,229 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.routing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.restlet.data.Reference;
+
+/**
+ * Target of a {@link LoadBalancer}, keeping the statistics used to select it:
+ * the number of outstanding calls, the moving average of the latency and the
+ * number of consecutive failures. A target is ejected for a while after too
+ * many consecutive failures.<br>
+ * <br>
+ * Concurrency note: instances of this class can be shared by several threads
+ * at the same time.
+ */
+public class BalancedTarget {
+
+    /** The total number of calls. */
+    private final AtomicLong calls;
+
+    /** The number of consecutive failed calls. */
+    private final AtomicInteger consecutiveFailures;
+
+    /** The time in milliseconds until which the target is ejected. */
+    private volatile long ejectedUntil;
+
+    /** The total number of failed calls. */
+    private final AtomicLong failures;
+
+    /** The exponentially weighted moving average of the latency in ms. */
+    private volatile double latency;
+
+    /** The number of calls in progress. */
+    private final AtomicInteger outstanding;
+
+    /** The base reference of the target. */
+    private final Reference reference;
+
+    /**
+     * Constructor.
+     *
+     * @param reference
+     *            The base reference of the target.
+     */
+    public BalancedTarget(Reference reference) {
+        this.calls = new AtomicLong();
+        this.consecutiveFailures = new AtomicInteger();
+        this.ejectedUntil = 0L;
+        this.failures = new AtomicLong();
+        this.latency = 0D;
+        this.outstanding = new AtomicInteger();
+        this.reference = reference;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param uri
+     *            The base URI of the target.
+     */
+    public BalancedTarget(String uri) {
+        this(new Reference(uri));
+    }
+
+    /**
+     * Records the end of a call.
+     *
+     * @param duration
+     *            The duration of the call in milliseconds.
+     * @param failed
+     *            True if the call failed.
+     * @param decay
+     *            The weight of the new latency in the moving average.
+     * @return The number of consecutive failed calls.
+     */
+    int completeCall(double duration, boolean failed, double decay) {
+        int result = 0;
+        this.outstanding.decrementAndGet();
+
+        if (failed) {
+            this.failures.incrementAndGet();
+            result = this.consecutiveFailures.incrementAndGet();
+        } else {
+            this.consecutiveFailures.set(0);
+
+            synchronized (this) {
+                // The first latency measured initializes the average
+                this.latency = (this.latency == 0D) ? duration : this.latency
+                        + decay * (duration - this.latency);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Ejects the target until a given time.
+     *
+     * @param until
+     *            The time in milliseconds until which the target is ejected.
+     */
+    void eject(long until) {
+        this.ejectedUntil = until;
+    }
+
+    /**
+     * Returns the total number of calls.
+     *
+     * @return The total number of calls.
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * Returns the number of consecutive failed calls.
+     *
+     * @return The number of consecutive failed calls.
+     */
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * Returns the time in milliseconds until which the target is ejected.
+     *
+     * @return The time in milliseconds until which the target is ejected.
+     */
+    public long getEjectedUntil() {
+        return ejectedUntil;
+    }
+
+    /**
+     * Returns the total number of failed calls.
+     *
+     * @return The total number of failed calls.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Returns the exponentially weighted moving average of the latency of the
+     * successful calls, in milliseconds. Returns 0 if no call succeeded yet.
+     *
+     * @return The moving average of the latency in milliseconds.
+     */
+    public double getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the number of calls in progress.
+     *
+     * @return The number of calls in progress.
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * Returns the base reference of the target.
+     *
+     * @return The base reference of the target.
+     */
+    public Reference getReference() {
+        return reference;
+    }
+
+    /**
+     * Indicates if the target is ejected at a given time.
+     *
+     * @param now
+     *            The current time in milliseconds.
+     * @return True if the target is ejected.
+     */
+    public boolean isEjected(long now) {
+        return now < this.ejectedUntil;
+    }
+
+    /**
+     * Records the start of a call.
+     */
+    void startCall() {
+        this.calls.incrementAndGet();
+        this.outstanding.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return getReference() + " (outstanding: " + getOutstanding()
+                + ", latency: " + getLatency() + " ms)";
+    }
+
+}
@@ -0,0 +1,559 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Uniform;
+import org.restlet.data.Reference;
+import org.restlet.data.Status;
+
+/**
+ * Filter spreading client calls across a pool of replicated targets. For each
+ * call, a target is selected and the scheme and authority of the request's
+ * resource reference are replaced by the ones of the target, before the call
+ * is passed to the next Restlet, usually a client connector or the client
+ * dispatcher. It can for example be set as the next Restlet of a
+ * {@link org.restlet.resource.ClientResource}.<br>
+ * <br>
+ * There are two selection modes: {@link #MODE_LEAST_OUTSTANDING} selects the
+ * target with the fewest calls in progress, while
+ * {@link #MODE_POWER_OF_TWO_CHOICES} compares two random targets, weighting
+ * their calls in progress by their latency. The latency of each target is
+ * measured as an exponentially weighted moving average. A target not measured
+ * yet is assumed as fast as the one it is compared to, and no latency is
+ * considered lower than {@link #getMinLatency()}, so that the calls in
+ * progress are always weighted.<br>
+ * <br>
+ * Targets failing too many consecutive calls, with a server or connector error
+ * status, are ejected for a while then re-admitted. A re-admitted target
+ * failing again is immediately ejected, until a call succeeds. When all the
+ * targets are ejected, they are all used again rather than failing every
+ * call.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe.
+ *
+ * @see BalancedTarget
+ */
+public class LoadBalancer extends Filter {
+
+    /**
+     * Each call is sent to the target with the fewest calls in progress. Ties
+     * are broken by the latency of the targets.
+     */
+    public static final int MODE_LEAST_OUTSTANDING = 1;
+
+    /**
+     * Each call is sent to the best of two random targets, whose number of
+     * calls in progress is weighted by their latency. This avoids scanning all
+     * the targets and herding calls on the same target.
+     */
+    public static final int MODE_POWER_OF_TWO_CHOICES = 2;
+
+    /**
+     * Each call is sent to the target returned by the
+     * {@link #getCustom(Request, Response, List)} method.
+     */
+    public static final int MODE_CUSTOM = 3;
+
+    /** The weight of a new latency in the moving average, between 0 and 1. */
+    private volatile double decay;
+
+    /** The time in milliseconds during which a failing target is ejected. */
+    private volatile long ejectionTime;
+
+    /** The number of consecutive failed calls ejecting a target. */
+    private volatile int maxFailures;
+
+    /** The minimum latency in milliseconds considered for a target. */
+    private volatile double minLatency;
+
+    /** The selection mode. */
+    private volatile int mode;
+
+    /** The random generator. */
+    private final Random random;
+
+    /** The targets. */
+    private final List<BalancedTarget> targets;
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     *            The context.
+     */
+    public LoadBalancer(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     *            The context.
+     * @param next
+     *            The next Restlet.
+     */
+    public LoadBalancer(Context context, Restlet next) {
+        super(context, next);
+        this.decay = 0.3D;
+        this.ejectionTime = 30000L;
+        this.maxFailures = 5;
+        this.minLatency = 1D;
+        this.mode = MODE_LEAST_OUTSTANDING;
+        this.random = new Random();
+        this.targets = new CopyOnWriteArrayList<BalancedTarget>();
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     *            The context.
+     * @param next
+     *            The next Restlet.
+     * @param targetRefs
+     *            The base references of the targets.
+     */
+    public LoadBalancer(Context context, Restlet next,
+            List<Reference> targetRefs) {
+        this(context, next);
+
+        for (Reference targetRef : targetRefs) {
+            addTarget(targetRef);
+        }
+    }
+
+    /**
+     * Adds a target.
+     *
+     * @param targetRef
+     *            The base reference of the target.
+     * @return The created target.
+     */
+    public BalancedTarget addTarget(Reference targetRef) {
+        BalancedTarget result = new BalancedTarget(targetRef);
+        getTargets().add(result);
+        return result;
+    }
+
+    /**
+     * Adds a target.
+     *
+     * @param targetUri
+     *            The base URI of the target.
+     * @return The created target.
+     */
+    public BalancedTarget addTarget(String targetUri) {
+        return addTarget(new Reference(targetUri));
+    }
+
+    /**
+     * Records the end of a call, ejecting its target if it failed too many
+     * times in a row.
+     *
+     * @param target
+     *            The target of the call.
+     * @param response
+     *            The response or null if the call failed with an exception.
+     * @param startTime
+     *            The start time of the call in nanoseconds.
+     */
+    private void complete(BalancedTarget target, Response response,
+            long startTime) {
+        boolean failed = (response == null) || isFailure(response);
+        int failures = target.completeCall(
+                (System.nanoTime() - startTime) / 1000000D, failed, getDecay());
+
+        if ((getMaxFailures() > 0) && (failures >= getMaxFailures())) {
+            long now = System.currentTimeMillis();
+
+            if (!target.isEjected(now)) {
+                target.eject(now + getEjectionTime());
+                getLogger().log(
+                        Level.INFO,
+                        "Ejecting " + target.getReference() + " for "
+                                + getEjectionTime() + " ms after " + failures
+                                + " consecutive failures");
+            }
+        }
+    }
+
+    /**
+     * Sends the call to the selected target. The statistics of the target are
+     * updated when the response is received, including for asynchronous calls.
+     *
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     * @return The continuation status.
+     */
+    @Override
+    protected int doHandle(Request request, Response response) {
+        int result = CONTINUE;
+        final BalancedTarget target = getTarget(request, response);
+
+        if (target == null) {
+            response.setStatus(Status.CONNECTOR_ERROR_CONNECTION,
+                    "No target available");
+        } else {
+            request.setResourceRef(getTargetRef(target,
+                    request.getResourceRef()));
+            final long startTime = System.nanoTime();
+            boolean sent = false;
+            target.startCall();
+
+            try {
+                if (request.isAsynchronous()) {
+                    final Uniform onResponse = request.getOnResponse();
+                    request.setOnResponse(new Uniform() {
+                        public void handle(Request req, Response resp) {
+                            req.setOnResponse(onResponse);
+                            complete(target, resp, startTime);
+                            onResponse.handle(req, resp);
+                        }
+                    });
+                    result = super.doHandle(request, response);
+                } else {
+                    result = super.doHandle(request, response);
+                    complete(target, response, startTime);
+                }
+
+                sent = true;
+            } finally {
+                if (!sent) {
+                    complete(target, null, startTime);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the target selected by a custom logic. Used in the
+     * {@link #MODE_CUSTOM} mode. By default, it returns null and should be
+     * overridden.
+     *
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     * @param candidates
+     *            The targets that aren't ejected, never empty.
+     * @return The selected target.
+     */
+    protected BalancedTarget getCustom(Request request, Response response,
+            List<BalancedTarget> candidates) {
+        return null;
+    }
+
+    /**
+     * Returns the weight of a new latency in the moving average, between 0
+     * and 1. A higher value makes the average react faster. Default value is
+     * 0.3.
+     *
+     * @return The weight of a new latency in the moving average.
+     */
+    public double getDecay() {
+        return decay;
+    }
+
+    /**
+     * Returns the time in milliseconds during which a failing target is
+     * ejected. Default value is 30000.
+     *
+     * @return The time in milliseconds during which a failing target is
+     *         ejected.
+     */
+    public long getEjectionTime() {
+        return ejectionTime;
+    }
+
+    /**
+     * Returns the target with the fewest calls in progress, starting from a
+     * random one so that ties are spread across the targets.
+     *
+     * @param candidates
+     *            The candidate targets.
+     * @return The selected target.
+     */
+    private BalancedTarget getLeastOutstanding(
+            List<BalancedTarget> candidates) {
+        int size = candidates.size();
+        int start = this.random.nextInt(size);
+        BalancedTarget result = candidates.get(start);
+
+        for (int i = 1; i < size; i++) {
+            BalancedTarget candidate = candidates.get((start + i) % size);
+            int outstanding = candidate.getOutstanding();
+
+            if ((outstanding < result.getOutstanding())
+                    || ((outstanding == result.getOutstanding()) && (candidate
+                            .getLatency() < result.getLatency()))) {
+                result = candidate;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of consecutive failed calls ejecting a target. Zero
+     * or a negative value disables ejection. Default value is 5.
+     *
+     * @return The number of consecutive failed calls ejecting a target.
+     */
+    public int getMaxFailures() {
+        return maxFailures;
+    }
+
+    /**
+     * Returns the minimum latency in milliseconds considered for a target
+     * when weighting its calls in progress. Default value is 1.
+     *
+     * @return The minimum latency in milliseconds considered for a target.
+     */
+    public double getMinLatency() {
+        return minLatency;
+    }
+
+    /**
+     * Returns the selection mode. Default value is
+     * {@link #MODE_LEAST_OUTSTANDING}.
+     *
+     * @return The selection mode.
+     */
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the best of two random targets. The calls in progress of each
+     * target, including the new one, are weighted by its latency. A target not
+     * measured yet takes the latency of the other one, and both latencies are
+     * raised to the minimum latency. Ties are broken by the number of calls in
+     * progress.
+     *
+     * @param candidates
+     *            The candidate targets.
+     * @return The selected target.
+     */
+    private BalancedTarget getPowerOfTwoChoices(
+            List<BalancedTarget> candidates) {
+        int size = candidates.size();
+        BalancedTarget result = candidates.get(this.random.nextInt(size));
+
+        if (size > 1) {
+            int index = this.random.nextInt(size - 1);
+            BalancedTarget other = candidates.get(index);
+
+            if (other == result) {
+                other = candidates.get(size - 1);
+            }
+
+            double latency = result.getLatency();
+            double otherLatency = other.getLatency();
+
+            if (latency == 0D) {
+                latency = otherLatency;
+            } else if (otherLatency == 0D) {
+                otherLatency = latency;
+            }
+
+            double cost = (result.getOutstanding() + 1)
+                    * Math.max(latency, getMinLatency());
+            double otherCost = (other.getOutstanding() + 1)
+                    * Math.max(otherLatency, getMinLatency());
+
+            if ((otherCost < cost)
+                    || ((otherCost == cost) && (other.getOutstanding() < result
+                            .getOutstanding()))) {
+                result = other;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Selects the target of a call according to the selection mode, among the
+     * targets that aren't ejected. If all the targets are ejected, they are
+     * all considered.
+     *
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     * @return The selected target or null if there is no target.
+     */
+    protected BalancedTarget getTarget(Request request, Response response) {
+        BalancedTarget result = null;
+        List<BalancedTarget> candidates = new ArrayList<BalancedTarget>(
+                getTargets());
+        long now = System.currentTimeMillis();
+
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            if (candidates.get(i).isEjected(now)) {
+                candidates.remove(i);
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            candidates.addAll(getTargets());
+        }
+
+        if (!candidates.isEmpty()) {
+            switch (getMode()) {
+            case MODE_LEAST_OUTSTANDING:
+                result = getLeastOutstanding(candidates);
+                break;
+            case MODE_POWER_OF_TWO_CHOICES:
+                result = getPowerOfTwoChoices(candidates);
+                break;
+            case MODE_CUSTOM:
+                result = getCustom(request, response, candidates);
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the reference of a call sent to a target. The scheme and
+     * authority of the resource reference are replaced by the ones of the
+     * target, leaving the path and query unchanged.
+     *
+     * @param target
+     *            The selected target.
+     * @param resourceRef
+     *            The original resource reference.
+     * @return The reference sent to the target.
+     */
+    protected Reference getTargetRef(BalancedTarget target,
+            Reference resourceRef) {
+        Reference result = new Reference(resourceRef.getTargetRef());
+        result.setScheme(target.getReference().getScheme());
+        result.setAuthority(target.getReference().getAuthority());
+        return result;
+    }
+
+    /**
+     * Returns the modifiable list of targets.
+     *
+     * @return The modifiable list of targets.
+     */
+    public List<BalancedTarget> getTargets() {
+        return targets;
+    }
+
+    /**
+     * Indicates if a call failed and counts towards the ejection of its
+     * target. By default, server errors and connector errors are failures.
+     *
+     * @param response
+     *            The response.
+     * @return True if the call failed.
+     */
+    protected boolean isFailure(Response response) {
+        return response.getStatus().isServerError()
+                || response.getStatus().isConnectorError();
+    }
+
+    /**
+     * Sets the weight of a new latency in the moving average, between 0 and 1.
+     *
+     * @param decay
+     *            The weight of a new latency in the moving average.
+     */
+    public void setDecay(double decay) {
+        this.decay = Math.max(0D, Math.min(1D, decay));
+    }
+
+    /**
+     * Sets the time in milliseconds during which a failing target is ejected.
+     *
+     * @param ejectionTime
+     *            The time in milliseconds during which a failing target is
+     *            ejected.
+     */
+    public void setEjectionTime(long ejectionTime) {
+        this.ejectionTime = ejectionTime;
+    }
+
+    /**
+     * Sets the number of consecutive failed calls ejecting a target. Zero or a
+     * negative value disables ejection.
+     *
+     * @param maxFailures
+     *            The number of consecutive failed calls ejecting a target.
+     */
+    public void setMaxFailures(int maxFailures) {
+        this.maxFailures = maxFailures;
+    }
+
+    /**
+     * Sets the minimum latency in milliseconds considered for a target when
+     * weighting its calls in progress.
+     *
+     * @param minLatency
+     *            The minimum latency in milliseconds considered for a target.
+     */
+    public void setMinLatency(double minLatency) {
+        this.minLatency = minLatency;
+    }
+
+    /**
+     * Sets the selection mode.
+     *
+     * @param mode
+     *            The selection mode.
+     */
+    public void setMode(int mode) {
+        this.mode = mode;
+    }
+
+}
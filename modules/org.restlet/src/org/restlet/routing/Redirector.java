@@ -158,6 +158,9 @@ public class Redirector extends Restlet {
     /** The target URI pattern. */
     protected volatile String targetTemplate;
 
+    /** The template parsed from the target URI pattern. */
+    private volatile Template template;
+
     /** The redirection mode. */
     protected volatile int mode;
 
@@ -212,9 +215,8 @@ public class Redirector extends Restlet {
      * @return The target reference to redirect to.
      */
     protected Reference getTargetRef(Request request, Response response) {
-        // Create the template
-        Template rt = new Template(this.targetTemplate);
-        rt.setLogger(getLogger());
+        // Reuse the parsed template
+        Template rt = getTemplate();
 
         // Return the formatted target URI
         if (new Reference(this.targetTemplate).isRelative()) {
@@ -226,6 +228,25 @@ public class Redirector extends Restlet {
         return new Reference(rt.format(request, response));
     }
 
+    /**
+     * Returns the template parsed from the target URI pattern. It is parsed
+     * once and parsed again only if the pattern changes.
+     * 
+     * @return The template parsed from the target URI pattern.
+     */
+    private Template getTemplate() {
+        Template result = this.template;
+
+        if ((result == null)
+                || !result.getPattern().equals(this.targetTemplate)) {
+            result = new Template(this.targetTemplate);
+            result.setLogger(getLogger());
+            this.template = result;
+        }
+
+        return result;
+    }
+
     /**
      * Returns the target URI pattern.
      * 
@@ -399,23 +420,24 @@ public class Redirector extends Restlet {
             Reference resourceRef = request.getResourceRef();
             Reference baseRef = resourceRef.getBaseRef();
 
+            // Update the headers while the request is still unchanged
+            updateRequestHeaders(request);
+
             // Reset the protocol and let the dispatcher handle the protocol
             request.setProtocol(null);
 
             // Update the request to cleanly go to the target URI
             request.setResourceRef(targetRef);
-            request.getAttributes().remove(HeaderConstants.ATTRIBUTE_HEADERS);
             next.handle(request, response);
 
             // Allow for response rewriting and clean the headers
             response.setEntity(rewrite(response.getEntity()));
-            response.getAttributes().remove(HeaderConstants.ATTRIBUTE_HEADERS);
+            updateResponseHeaders(request, response);
             request.setResourceRef(resourceRef);
 
             // In case of redirection, we may have to rewrite the redirect URI
             if (response.getLocationRef() != null) {
-                Template rt = new Template(this.targetTemplate);
-                rt.setLogger(getLogger());
+                Template rt = getTemplate();
                 int matched = rt.parse(response.getLocationRef().toString(),
                         request);
 
@@ -452,4 +474,30 @@ public class Redirector extends Restlet {
         this.targetTemplate = targetTemplate;
     }
 
+    /**
+     * Updates the HTTP headers of a request before its server-side
+     * redirection. By default, the headers stored in the request's attributes
+     * are removed.
+     * 
+     * @param request
+     *            The request to update, not redirected yet.
+     */
+    protected void updateRequestHeaders(Request request) {
+        request.getAttributes().remove(HeaderConstants.ATTRIBUTE_HEADERS);
+    }
+
+    /**
+     * Updates the HTTP headers of a response after its server-side
+     * redirection. By default, the headers stored in the response's
+     * attributes are removed to prevent conflicts with the main call.
+     * 
+     * @param request
+     *            The redirected request.
+     * @param response
+     *            The response to update.
+     */
+    protected void updateResponseHeaders(Request request, Response response) {
+        response.getAttributes().remove(HeaderConstants.ATTRIBUTE_HEADERS);
+    }
+
 }
@@ -0,0 +1,608 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.routing;
+
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Header;
+import org.restlet.data.RecipientInfo;
+import org.restlet.data.Reference;
+import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+import org.restlet.util.WrapperRepresentation;
+
+/**
+ * Redirector acting as a reverse proxy, forwarding calls to upstream servers
+ * via the client dispatcher in the {@link #MODE_SERVER_OUTBOUND} mode. The
+ * request and response entities are passed as is between the server and
+ * client connectors, so they are streamed end-to-end without being buffered.
+ * <br>
+ * <br>
+ * Unlike the plain {@link Redirector}, the extension headers are forwarded in
+ * both directions, except the hop-by-hop headers and the ones listed in the
+ * "Connection" header. The standard headers are conveyed by the properties of
+ * the Restlet API. The proxy adds itself to the "Via" header of the request
+ * and of the response, and sets the "X-Forwarded-For", "X-Forwarded-Host" and
+ * "X-Forwarded-Proto" headers of the request.<br>
+ * <br>
+ * The number of concurrent calls to each upstream server, identified by its
+ * scheme, host and port, can be limited. Calls exceeding the limit wait for a
+ * while then fail with a 503 status, protecting both the upstream servers and
+ * the connection pool of the client connector, which should be sized
+ * accordingly, for example with its "maxConnectionsPerHost" parameter. A call
+ * keeps its slot until the response entity is fully read or released.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe.
+ */
+public class ReverseProxy extends Redirector {
+
+    /**
+     * Response entity giving back the call slot once fully read, written or
+     * released.
+     */
+    private static class SlotEntity extends WrapperRepresentation {
+
+        /** Indicates if the call slot was given back. */
+        private final AtomicBoolean released;
+
+        /** The call slots of the upstream server. */
+        private final Semaphore slots;
+
+        /**
+         * Constructor.
+         *
+         * @param wrappedRepresentation
+         *            The upstream response entity.
+         * @param slots
+         *            The call slots of the upstream server.
+         */
+        public SlotEntity(Representation wrappedRepresentation,
+                Semaphore slots) {
+            super(wrappedRepresentation);
+            this.released = new AtomicBoolean(false);
+            this.slots = slots;
+        }
+
+        @Override
+        public long exhaust() throws IOException {
+            try {
+                return super.exhaust();
+            } finally {
+                releaseSlot();
+            }
+        }
+
+        @Override
+        public ReadableByteChannel getChannel() throws IOException {
+            final ReadableByteChannel channel = super.getChannel();
+            return (channel == null) ? null : new ReadableByteChannel() {
+                public void close() throws IOException {
+                    try {
+                        channel.close();
+                    } finally {
+                        releaseSlot();
+                    }
+                }
+
+                public boolean isOpen() {
+                    return channel.isOpen();
+                }
+
+                public int read(ByteBuffer dst) throws IOException {
+                    int result = channel.read(dst);
+
+                    if (result == -1) {
+                        releaseSlot();
+                    }
+
+                    return result;
+                }
+            };
+        }
+
+        @Override
+        public Reader getReader() throws IOException {
+            Reader reader = super.getReader();
+            return (reader == null) ? null : new FilterReader(reader) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        releaseSlot();
+                    }
+                }
+
+                @Override
+                public int read() throws IOException {
+                    int result = super.read();
+
+                    if (result == -1) {
+                        releaseSlot();
+                    }
+
+                    return result;
+                }
+
+                @Override
+                public int read(char[] cbuf, int off, int len)
+                        throws IOException {
+                    int result = super.read(cbuf, off, len);
+
+                    if (result == -1) {
+                        releaseSlot();
+                    }
+
+                    return result;
+                }
+            };
+        }
+
+        @Override
+        public InputStream getStream() throws IOException {
+            InputStream stream = super.getStream();
+            return (stream == null) ? null : new FilterInputStream(stream) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        releaseSlot();
+                    }
+                }
+
+                @Override
+                public int read() throws IOException {
+                    int result = super.read();
+
+                    if (result == -1) {
+                        releaseSlot();
+                    }
+
+                    return result;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len)
+                        throws IOException {
+                    int result = super.read(b, off, len);
+
+                    if (result == -1) {
+                        releaseSlot();
+                    }
+
+                    return result;
+                }
+            };
+        }
+
+        @Override
+        public String getText() throws IOException {
+            try {
+                return super.getText();
+            } finally {
+                releaseSlot();
+            }
+        }
+
+        @Override
+        public void release() {
+            try {
+                super.release();
+            } finally {
+                releaseSlot();
+            }
+        }
+
+        /**
+         * Gives back the call slot, only once.
+         */
+        private void releaseSlot() {
+            if (this.released.compareAndSet(false, true)) {
+                this.slots.release();
+            }
+        }
+
+        @Override
+        public void write(OutputStream outputStream) throws IOException {
+            try {
+                super.write(outputStream);
+            } finally {
+                releaseSlot();
+            }
+        }
+
+        @Override
+        public void write(WritableByteChannel writableChannel)
+                throws IOException {
+            try {
+                super.write(writableChannel);
+            } finally {
+                releaseSlot();
+            }
+        }
+
+        @Override
+        public void write(Writer writer) throws IOException {
+            try {
+                super.write(writer);
+            } finally {
+                releaseSlot();
+            }
+        }
+    }
+
+    /** The time in milliseconds to wait for a call slot. */
+    private volatile long acquireTimeout;
+
+    /** The maximum number of concurrent calls per upstream server. */
+    private volatile int maxCallsPerUpstream;
+
+    /** The maximum number of concurrent calls of specific upstream servers. */
+    private final Map<String, Integer> maxCalls;
+
+    /** The call slots available, per upstream server. */
+    private final ConcurrentMap<String, Semaphore> slots;
+
+    /** The name of the proxy added to the "Via" headers. */
+    private volatile String pseudonym;
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     *            The context.
+     * @param targetTemplate
+     *            The template to build the upstream URI, for example
+     *            "http://upstream:8080/root{rr}".
+     */
+    public ReverseProxy(Context context, String targetTemplate) {
+        super(context, targetTemplate, MODE_SERVER_OUTBOUND);
+        this.acquireTimeout = 1000L;
+        this.maxCallsPerUpstream = 0;
+        this.maxCalls = new ConcurrentHashMap<String, Integer>();
+        this.slots = new ConcurrentHashMap<String, Semaphore>();
+        this.pseudonym = "restlet";
+    }
+
+    /**
+     * Returns the time in milliseconds to wait for a call slot when the
+     * maximum number of concurrent calls to an upstream server is reached.
+     * Default value is 1000.
+     *
+     * @return The time in milliseconds to wait for a call slot.
+     */
+    public long getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    /**
+     * Returns the forwarded headers of a message.
+     *
+     * @param headers
+     *            All the headers of the message or null.
+     * @return The forwarded headers.
+     */
+    private Series<Header> getForwardedHeaders(Series<Header> headers) {
+        Series<Header> result = new Series<Header>(Header.class);
+
+        if (headers != null) {
+            for (Header header : headers) {
+                if (isForwarded(header, headers)) {
+                    result.add(header);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of concurrent calls to a given upstream
+     * server.
+     *
+     * @param upstreamRef
+     *            The reference of the upstream server.
+     * @return The maximum number of concurrent calls, zero or a negative value
+     *         meaning no limit.
+     */
+    public int getMaxCalls(Reference upstreamRef) {
+        Integer result = this.maxCalls.get(upstreamRef.getHostIdentifier());
+        return (result == null) ? getMaxCallsPerUpstream() : result;
+    }
+
+    /**
+     * Returns the default maximum number of concurrent calls per upstream
+     * server. Zero or a negative value means no limit, which is the default.
+     *
+     * @return The default maximum number of concurrent calls per upstream
+     *         server.
+     */
+    public int getMaxCallsPerUpstream() {
+        return maxCallsPerUpstream;
+    }
+
+    /**
+     * Returns the name of the proxy added to the "Via" headers. Default value
+     * is "restlet".
+     *
+     * @return The name of the proxy added to the "Via" headers.
+     */
+    public String getPseudonym() {
+        return pseudonym;
+    }
+
+    /**
+     * Returns the call slots of an upstream server, or null if the calls
+     * aren't limited.
+     *
+     * @param upstreamRef
+     *            The reference of the upstream server.
+     * @return The call slots or null.
+     */
+    private Semaphore getSlots(Reference upstreamRef) {
+        Semaphore result = null;
+        int max = getMaxCalls(upstreamRef);
+
+        if (max > 0) {
+            String key = upstreamRef.getHostIdentifier();
+            result = this.slots.get(key);
+
+            if (result == null) {
+                result = new Semaphore(max, true);
+                Semaphore current = this.slots.putIfAbsent(key, result);
+
+                if (current != null) {
+                    result = current;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if a header must be forwarded. By default, only the extension
+     * headers that aren't hop-by-hop headers are forwarded, the
+     * "X-Forwarded-*" headers being set by the proxy.
+     *
+     * @param header
+     *            The header.
+     * @param headers
+     *            All the headers of the message.
+     * @return True if the header must be forwarded.
+     */
+    protected boolean isForwarded(Header header, Series<Header> headers) {
+        String name = header.getName();
+        return HeaderUtils.isExtensionHeader(name)
+                && !HeaderUtils.isHopByHop(name, headers)
+                && !HeaderConstants.HEADER_X_FORWARDED_FOR
+                        .equalsIgnoreCase(name)
+                && !HeaderConstants.HEADER_X_FORWARDED_HOST
+                        .equalsIgnoreCase(name)
+                && !HeaderConstants.HEADER_X_FORWARDED_PROTO
+                        .equalsIgnoreCase(name);
+    }
+
+    /**
+     * Forwards the call to the upstream server, once a call slot is
+     * available. If the response has an entity, the slot is given back once
+     * the entity is fully read or released, otherwise when the call returns.
+     *
+     * @param targetRef
+     *            The target reference with URI variables resolved.
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     */
+    @Override
+    protected void outboundServerRedirect(Reference targetRef,
+            Request request, Response response) {
+        Semaphore slots = getSlots(targetRef);
+        boolean acquired = (slots == null);
+
+        if (!acquired) {
+            try {
+                acquired = slots.tryAcquire(getAcquireTimeout(),
+                        TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (acquired) {
+            boolean streaming = false;
+
+            try {
+                super.outboundServerRedirect(targetRef, request, response);
+
+                if ((slots != null) && response.isEntityAvailable()) {
+                    // Keep the slot while the entity is streamed
+                    response.setEntity(new SlotEntity(response.getEntity(),
+                            slots));
+                    streaming = true;
+                }
+            } finally {
+                if ((slots != null) && !streaming) {
+                    slots.release();
+                }
+            }
+        } else {
+            response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE,
+                    "Too many concurrent calls to the upstream server");
+        }
+    }
+
+    /**
+     * Sets the time in milliseconds to wait for a call slot.
+     *
+     * @param acquireTimeout
+     *            The time in milliseconds to wait for a call slot.
+     */
+    public void setAcquireTimeout(long acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    /**
+     * Sets the maximum number of concurrent calls to a given upstream server,
+     * overriding the default maximum. The new limit applies to the calls
+     * started after this change.
+     *
+     * @param upstreamRef
+     *            The reference of the upstream server.
+     * @param maxCalls
+     *            The maximum number of concurrent calls, zero or a negative
+     *            value meaning no limit.
+     */
+    public void setMaxCalls(Reference upstreamRef, int maxCalls) {
+        this.maxCalls.put(upstreamRef.getHostIdentifier(), maxCalls);
+        this.slots.remove(upstreamRef.getHostIdentifier());
+    }
+
+    /**
+     * Sets the default maximum number of concurrent calls per upstream server.
+     * The new limit applies to the calls started after this change.
+     *
+     * @param maxCallsPerUpstream
+     *            The default maximum number of concurrent calls per upstream
+     *            server.
+     */
+    public void setMaxCallsPerUpstream(int maxCallsPerUpstream) {
+        this.maxCallsPerUpstream = maxCallsPerUpstream;
+        this.slots.clear();
+    }
+
+    /**
+     * Sets the name of the proxy added to the "Via" headers.
+     *
+     * @param pseudonym
+     *            The name of the proxy added to the "Via" headers.
+     */
+    public void setPseudonym(String pseudonym) {
+        this.pseudonym = pseudonym;
+    }
+
+    /**
+     * Keeps the forwarded headers of the request, adds the proxy to its "Via"
+     * header and sets its "X-Forwarded-*" headers.
+     *
+     * @param request
+     *            The request to update, not redirected yet.
+     */
+    @Override
+    protected void updateRequestHeaders(Request request) {
+        Series<Header> headers = request.getHeaders();
+        Series<Header> forwarded = getForwardedHeaders(headers);
+        String forwardedFor = (headers == null) ? null : headers.getValues(
+                HeaderConstants.HEADER_X_FORWARDED_FOR, ", ", true);
+        String address = request.getClientInfo().getAddress();
+
+        if (address != null) {
+            forwardedFor = (forwardedFor == null) ? address : forwardedFor
+                    + ", " + address;
+        }
+
+        if (forwardedFor != null) {
+            forwarded.add(HeaderConstants.HEADER_X_FORWARDED_FOR,
+                    forwardedFor);
+        }
+
+        Reference hostRef = (request.getHostRef() != null) ? request
+                .getHostRef() : request.getResourceRef();
+
+        if ((hostRef != null) && (hostRef.getAuthority() != null)) {
+            forwarded.add(HeaderConstants.HEADER_X_FORWARDED_HOST,
+                    hostRef.getAuthority());
+        }
+
+        if (request.getResourceRef().getScheme() != null) {
+            forwarded.add(HeaderConstants.HEADER_X_FORWARDED_PROTO, request
+                    .getResourceRef().getSchemeProtocol().getSchemeName());
+        }
+
+        request.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS,
+                forwarded);
+
+        if (request.getProtocol() != null) {
+            request.getRecipientsInfo().add(
+                    new RecipientInfo(request.getProtocol(), getPseudonym(),
+                            null));
+        }
+    }
+
+    /**
+     * Keeps the forwarded headers of the response and adds the proxy to its
+     * "Via" header.
+     *
+     * @param request
+     *            The redirected request.
+     * @param response
+     *            The response to update.
+     */
+    @Override
+    protected void updateResponseHeaders(Request request, Response response) {
+        response.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS,
+                getForwardedHeaders(response.getHeaders()));
+
+        if (request.getProtocol() != null) {
+            response.getRecipientsInfo().add(
+                    new RecipientInfo(request.getProtocol(), getPseudonym(),
+                            null));
+        }
+    }
+
+}
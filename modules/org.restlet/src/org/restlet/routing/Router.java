@@ -40,9 +40,11 @@ import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Restlet;
 import org.restlet.data.Status;
+import org.restlet.engine.util.CallTimings;
 import org.restlet.resource.Directory;
 import org.restlet.resource.Finder;
 import org.restlet.resource.ServerResource;
+import org.restlet.util.RetryPolicy;
 import org.restlet.util.RouteList;
 
 /**
@@ -157,6 +159,9 @@ public class Router extends Restlet {
     /** The delay (in milliseconds) before a new attempt. */
     private volatile long retryDelay;
 
+    /** The optional policy deciding when a new attempt is made. */
+    private volatile RetryPolicy retryPolicy;
+
     /** The modifiable list of routes. */
     private volatile RouteList routes;
 
@@ -189,6 +194,7 @@ public class Router extends Restlet {
         this.requiredScore = 0.5F;
         this.maxAttempts = 1;
         this.retryDelay = 500L;
+        this.retryPolicy = null;
     }
 
     /**
@@ -526,18 +532,36 @@ public class Router extends Restlet {
      */
     public Restlet getNext(Request request, Response response) {
         Route result = null;
+        RetryPolicy policy = getRetryPolicy();
+        int attempts = (policy == null) ? getMaxAttempts() : policy
+                .getMaxRetries() + 1;
+        long startTime = System.currentTimeMillis();
+        boolean attempting = true;
+
+        if (policy != null) {
+            policy.recordCall();
+        }
 
-        for (int i = 0; (result == null) && (i < getMaxAttempts()); i++) {
+        for (int i = 0; attempting && (result == null) && (i < attempts); i++) {
             if (i > 0) {
-                // Before attempting another time, let's
-                // sleep during the "retryDelay" set.
-                try {
-                    Thread.sleep(getRetryDelay());
-                } catch (InterruptedException e) {
+                long delay = (policy == null) ? getRetryDelay() : policy
+                        .getDelay(null, i - 1);
+                attempting = (policy == null)
+                        || policy.acquire(delay, startTime);
+
+                if (attempting) {
+                    // Before attempting another time, let's
+                    // sleep during the retry delay.
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        attempting = false;
+                    }
                 }
             }
 
-            if (this.routes != null) {
+            if (attempting && (this.routes != null)) {
                 // Select the routing mode
                 switch (getRoutingMode()) {
                 case MODE_BEST_MATCH:
@@ -611,6 +635,21 @@ public class Router extends Restlet {
         return this.retryDelay;
     }
 
+    /**
+     * Returns the optional policy deciding when a new attempt is made if no
+     * attachment could be matched. When set, it replaces the
+     * {@link #getMaxAttempts()} and {@link #getRetryDelay()} properties,
+     * adding exponential backoff with jitter, a retry budget shared by all
+     * calls and a total timeout per call. Note that the calling thread still
+     * waits between attempts as the routing is synchronous. By default, it
+     * returns null.
+     * 
+     * @return The optional policy deciding when a new attempt is made.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return this.retryPolicy;
+    }
+
     /**
      * Returns the modifiable list of routes. Creates a new instance if no one
      * has been set.
@@ -632,7 +671,9 @@ public class Router extends Restlet {
     }
 
     /**
-     * Handles a call by invoking the next Restlet if it is available.
+     * Handles a call by invoking the next Restlet if it is available. The time
+     * taken to select it is added to the routing stage of the request's
+     * timings, if any.
      * 
      * @param request
      *            The request to handle.
@@ -642,8 +683,14 @@ public class Router extends Restlet {
     @Override
     public void handle(Request request, Response response) {
         super.handle(request, response);
+        CallTimings timings = request.getTimings();
+        long startTime = (timings == null) ? 0L : System.nanoTime();
         Restlet next = getNext(request, response);
 
+        if (timings != null) {
+            timings.addElapsed(CallTimings.STAGE_ROUTING, startTime);
+        }
+
         if (next != null) {
             doHandle(next, request, response);
         } else {
@@ -792,6 +839,17 @@ public class Router extends Restlet {
         this.retryDelay = retryDelay;
     }
 
+    /**
+     * Sets the optional policy deciding when a new attempt is made if no
+     * attachment could be matched.
+     * 
+     * @param retryPolicy
+     *            The optional policy deciding when a new attempt is made.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
     /**
      * Sets the modifiable list of routes.
      * 
@@ -246,6 +246,9 @@ public class Template {
     /** True if the variables must be encoded when formatting the template. */
     private volatile boolean encodingVariables;
 
+    /** The pattern split for formatting. */
+    private volatile String[] formatSegments;
+
     /** The logger to use. */
     private volatile Logger logger;
 
@@ -340,6 +343,7 @@ public class Template {
                 defaultRequired, defaultFixed);
         this.matchingMode = matchingMode;
         this.variables = new ConcurrentHashMap<String, Variable>();
+        this.formatSegments = null;
         this.regexPattern = null;
         this.encodingVariables = encodingVariables;
     }
@@ -378,81 +382,49 @@ public class Template {
      * @return The formatted string.
      */
     public String format(Resolver<?> resolver) {
-        final StringBuilder result = new StringBuilder();
-        StringBuilder varBuffer = null;
-        char next;
-        boolean inVariable = false;
-        final int patternLength = getPattern().length();
-        for (int i = 0; i < patternLength; i++) {
-            next = getPattern().charAt(i);
-
-            if (inVariable) {
-                if (Reference.isUnreserved(next)) {
-                    // Append to the variable name
-                    varBuffer.append(next);
-                } else if (next == '}') {
-                    // End of variable detected
-                    if (varBuffer.length() == 0) {
-                        getLogger().warning(
-                                "Empty pattern variables are not allowed : "
-                                        + this.regexPattern);
-                    } else {
-                        final String varName = varBuffer.toString();
-                        Object varValue = resolver.resolve(varName);
+        String[] segments = getFormatSegments();
+        StringBuilder result = new StringBuilder(getPattern().length() + 32);
 
-                        Variable var = getVariables().get(varName);
+        for (int i = 0; i < segments.length; i++) {
+            if ((i % 2) == 0) {
+                result.append(segments[i]);
+            } else {
+                final String varName = segments[i];
+                Object varValue = resolver.resolve(varName);
 
-                        // Use the default values instead
-                        if (varValue == null) {
-                            if (var == null) {
-                                var = getDefaultVariable();
-                            }
+                Variable var = getVariables().get(varName);
 
-                            if (var != null) {
-                                varValue = var.getDefaultValue();
-                            }
-                        }
+                // Use the default values instead
+                if (varValue == null) {
+                    if (var == null) {
+                        var = getDefaultVariable();
+                    }
 
-                        String varValueString = (varValue == null) ? null
-                                : varValue.toString();
+                    if (var != null) {
+                        varValue = var.getDefaultValue();
+                    }
+                }
 
-                        if (this.encodingVariables) {
-                            // In case the values must be encoded.
-                            if (var != null) {
-                                result.append(var.encode(varValueString));
-                            } else {
-                                result.append(Reference.encode(varValueString));
-                            }
-                        } else {
-                            if ((var != null) && var.isEncodingOnFormat()) {
-                                result.append(Reference.encode(varValueString));
-                            } else {
-                                result.append(varValueString);
-                            }
-                        }
+                String varValueString = (varValue == null) ? null : varValue
+                        .toString();
 
-                        // Reset the variable name buffer
-                        varBuffer = new StringBuilder();
+                if (this.encodingVariables) {
+                    // In case the values must be encoded.
+                    if (var != null) {
+                        result.append(var.encode(varValueString));
+                    } else {
+                        result.append(Reference.encode(varValueString));
                     }
-                    inVariable = false;
-                } else {
-                    getLogger().warning(
-                            "An invalid character was detected inside a pattern variable : "
-                                    + this.regexPattern);
-                }
-            } else {
-                if (next == '{') {
-                    inVariable = true;
-                    varBuffer = new StringBuilder();
-                } else if (next == '}') {
-                    getLogger().warning(
-                            "An invalid character was detected inside a pattern variable : "
-                                    + this.regexPattern);
                 } else {
-                    result.append(next);
+                    if ((var != null) && var.isEncodingOnFormat()) {
+                        result.append(Reference.encode(varValueString));
+                    } else {
+                        result.append(varValueString);
+                    }
                 }
             }
         }
+
         return result.toString();
     }
 
@@ -465,6 +437,75 @@ public class Template {
         return this.defaultVariable;
     }
 
+    /**
+     * Returns the pattern split for formatting, parsed once and then reused
+     * until the pattern changes. The even indexes hold the literal parts and
+     * the odd ones the variable names.
+     * 
+     * @return The pattern split for formatting.
+     */
+    private String[] getFormatSegments() {
+        String[] result = this.formatSegments;
+
+        if (result == null) {
+            List<String> segments = new ArrayList<String>();
+            StringBuilder buffer = new StringBuilder();
+            boolean inVariable = false;
+            char next;
+
+            for (int i = 0; i < getPattern().length(); i++) {
+                next = getPattern().charAt(i);
+
+                if (inVariable) {
+                    if (Reference.isUnreserved(next)) {
+                        // Append to the variable name
+                        buffer.append(next);
+                    } else if (next == '}') {
+                        // End of variable detected
+                        if (buffer.length() == 0) {
+                            getLogger().warning(
+                                    "Empty pattern variables are not allowed : "
+                                            + this.regexPattern);
+
+                            // Keep the previous literal part going
+                            buffer.append(segments.remove(segments.size() - 1));
+                        } else {
+                            segments.add(buffer.toString());
+                            buffer = new StringBuilder();
+                        }
+
+                        inVariable = false;
+                    } else {
+                        getLogger().warning(
+                                "An invalid character was detected inside a pattern variable : "
+                                        + this.regexPattern);
+                    }
+                } else {
+                    if (next == '{') {
+                        inVariable = true;
+                        segments.add(buffer.toString());
+                        buffer = new StringBuilder();
+                    } else if (next == '}') {
+                        getLogger().warning(
+                                "An invalid character was detected inside a pattern variable : "
+                                        + this.regexPattern);
+                    } else {
+                        buffer.append(next);
+                    }
+                }
+            }
+
+            if (!inVariable) {
+                segments.add(buffer.toString());
+            }
+
+            result = segments.toArray(new String[segments.size()]);
+            this.formatSegments = result;
+        }
+
+        return result;
+    }
+
     /**
      * Returns the logger to use.
      * 
@@ -900,6 +941,7 @@ public class Template {
      */
     public void setPattern(String pattern) {
         this.pattern = pattern;
+        this.formatSegments = null;
         this.regexPattern = null;
     }
 
@@ -35,11 +35,14 @@ package org.restlet.routing;
 
 import java.util.logging.Level;
 
+import org.restlet.Application;
 import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Restlet;
 import org.restlet.data.Reference;
 import org.restlet.data.Status;
+import org.restlet.engine.application.CallMetrics;
+import org.restlet.service.MetricsService;
 
 /**
  * Filter scoring the affinity of calls with the attached Restlet. The score is
@@ -191,6 +194,43 @@ public class TemplateRoute extends Route {
         return CONTINUE;
     }
 
+    /**
+     * Handles the call by distributing it to the next Restlet. When the
+     * metrics service of the current application is started, the call is
+     * recorded under the pattern of the template.
+     * 
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     * @return The continuation status.
+     * @see MetricsService#getRouteMetrics(String, org.restlet.data.Method)
+     */
+    @Override
+    protected int doHandle(Request request, Response response) {
+        int result;
+        Application application = getApplication();
+        MetricsService metricsService = (application == null) ? null
+                : application.getMetricsService();
+
+        if ((metricsService != null) && metricsService.isStarted()
+                && (getTemplate() != null)) {
+            CallMetrics metrics = metricsService.getRouteMetrics(getTemplate()
+                    .getPattern(), request.getMethod());
+            long startTime = metrics.onCallStarted();
+
+            try {
+                result = super.doHandle(request, response);
+            } finally {
+                metrics.onCallCompleted(startTime, response.getStatus());
+            }
+        } else {
+            result = super.doHandle(request, response);
+        }
+
+        return result;
+    }
+
     /**
      * Returns the matching mode to use on the template when parsing a formatted
      * reference.
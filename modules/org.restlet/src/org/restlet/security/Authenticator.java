@@ -40,6 +40,7 @@ import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.data.ClientInfo;
 import org.restlet.data.Status;
+import org.restlet.engine.util.CallTimings;
 import org.restlet.routing.Filter;
 
 /**
@@ -193,13 +194,24 @@ public abstract class Authenticator extends Filter {
      * invoked and returns true, the {@link #authenticated(Request, Response)}
      * is called. Otherwise, if {@link #isOptional()} returns true it continues
      * to the next Restlet or if it returns false it calls the
-     * {@link #unauthenticated(Request, Response)} method.
+     * {@link #unauthenticated(Request, Response)} method. The time taken by
+     * the authentication is added to the authentication stage of the
+     * request's timings, if any.
      */
     @Override
     protected int beforeHandle(Request request, Response response) {
         if (isMultiAuthenticating()
                 || !request.getClientInfo().isAuthenticated()) {
-            if (authenticate(request, response)) {
+            CallTimings timings = request.getTimings();
+            long startTime = (timings == null) ? 0L : System.nanoTime();
+            boolean authenticated = authenticate(request, response);
+
+            if (timings != null) {
+                timings.addElapsed(CallTimings.STAGE_AUTHENTICATION,
+                        startTime);
+            }
+
+            if (authenticated) {
                 return authenticated(request, response);
             } else if (isOptional()) {
                 response.setStatus(Status.SUCCESS_OK);
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.service;
+
+import org.restlet.Context;
+import org.restlet.engine.cache.CacheStore;
+import org.restlet.engine.cache.ServerCacheFilter;
+import org.restlet.routing.Filter;
+
+/**
+ * Application service caching the responses of the application, as a shared
+ * HTTP cache would do. Responses allowing it via their cache directives, for
+ * example by setting "s-maxage" or "max-age" in
+ * {@link org.restlet.Response#getCacheDirectives()}, are stored and returned
+ * to the following requests without invoking the resources, until they expire
+ * or are revalidated. Concurrent identical requests that can't be answered
+ * from the cache are collapsed into a single call.<br>
+ * <br>
+ * The store is shared by the filters created by this service. It evicts the
+ * least recently used responses when its maximum memory size is reached and
+ * can spill them to a disk tier, keeping the heap bounded.
+ * 
+ * @see ServerCacheFilter
+ */
+public class CacheService extends Service {
+
+    /** Indicates if concurrent identical requests are collapsed. */
+    private volatile boolean collapsing;
+
+    /** The maximum size of a stored entity in bytes. */
+    private volatile long maxEntrySize;
+
+    /** The store of cache entries. */
+    private volatile CacheStore store;
+
+    /**
+     * Constructor.
+     */
+    public CacheService() {
+        this(true);
+    }
+
+    /**
+     * Constructor storing up to 64 MB of responses in memory.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public CacheService(boolean enabled) {
+        this(enabled, new CacheStore(64L * 1024 * 1024));
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     * @param store
+     *            The store of cache entries.
+     */
+    public CacheService(boolean enabled, CacheStore store) {
+        super(enabled);
+        this.collapsing = true;
+        this.maxEntrySize = 1024L * 1024;
+        this.store = store;
+    }
+
+    @Override
+    public Filter createInboundFilter(Context context) {
+        ServerCacheFilter result = new ServerCacheFilter(context, null,
+                getStore());
+        result.setCollapsing(isCollapsing());
+        result.setMaxEntrySize(getMaxEntrySize());
+        return result;
+    }
+
+    /**
+     * Returns the maximum size of a stored entity in bytes. Larger responses
+     * are not stored. Default value is 1 MB.
+     * 
+     * @return The maximum size of a stored entity in bytes.
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Returns the store of cache entries.
+     * 
+     * @return The store of cache entries.
+     */
+    public CacheStore getStore() {
+        return store;
+    }
+
+    /**
+     * Indicates if concurrent identical requests that can't be answered from
+     * the cache are collapsed into a single call. Default value is true.
+     * 
+     * @return True if concurrent identical requests are collapsed.
+     */
+    public boolean isCollapsing() {
+        return collapsing;
+    }
+
+    /**
+     * Indicates if concurrent identical requests that can't be answered from
+     * the cache are collapsed into a single call.
+     * 
+     * @param collapsing
+     *            True if concurrent identical requests are collapsed.
+     */
+    public void setCollapsing(boolean collapsing) {
+        this.collapsing = collapsing;
+    }
+
+    /**
+     * Sets the maximum size of a stored entity in bytes.
+     * 
+     * @param maxEntrySize
+     *            The maximum size of a stored entity in bytes.
+     */
+    public void setMaxEntrySize(long maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Sets the store of cache entries, for example to add a disk tier. It
+     * applies to the filters created after this change.
+     * 
+     * @param store
+     *            The store of cache entries.
+     */
+    public void setStore(CacheStore store) {
+        this.store = store;
+    }
+
+}
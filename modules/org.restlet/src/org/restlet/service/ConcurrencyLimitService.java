@@ -0,0 +1,290 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.service;
+
+import org.restlet.Context;
+import org.restlet.engine.application.ConcurrencyLimitFilter;
+import org.restlet.routing.Filter;
+
+/**
+ * Application service limiting the number of calls concurrently handled by
+ * the application, with a limit adapting itself to the latency of the calls.
+ * As the applications of a component share the worker threads of the server
+ * connectors, this prevents a slow application from using all of them and
+ * starving the other ones, without having to size a thread pool per
+ * application.<br>
+ * <br>
+ * The latency of the calls is measured over short windows, and the limit is
+ * adjusted at the end of each window according to the mode:
+ * <ul>
+ * <li>{@link #MODE_GRADIENT} compares the average latency of the window to the
+ * long term average latency. The limit shrinks when the latency grows, as
+ * calls are queuing somewhere, and grows slowly otherwise.</li>
+ * <li>{@link #MODE_AIMD} decreases the limit multiplicatively when the average
+ * latency exceeds a threshold or when calls fail with a "503 Service
+ * Unavailable" status, and increases it additively otherwise.</li>
+ * </ul>
+ * The limit only grows when at least half of it is used. The calls exceeding
+ * the limit wait for a free slot, up to a maximum time and a maximum number of
+ * waiting calls, then are rejected with a "503 Service Unavailable" status.<br>
+ * <br>
+ * The service can also limit a single route, by creating its filter with
+ * {@link #createInboundFilter(Context)} and attaching it in front of the
+ * route target. Each filter has its own limit.
+ * 
+ * @see ConcurrencyLimitFilter
+ */
+public class ConcurrencyLimitService extends Service {
+
+    /** Additive increase and multiplicative decrease of the limit. */
+    public static final int MODE_AIMD = 1;
+
+    /** Limit following the gradient of the latency. */
+    public static final int MODE_GRADIENT = 2;
+
+    /** The initial limit. */
+    private volatile int initialLimit;
+
+    /** The latency threshold in milliseconds of the AIMD mode. */
+    private volatile long latencyThreshold;
+
+    /** The maximum limit. */
+    private volatile int maxLimit;
+
+    /** The maximum number of calls waiting for a slot. */
+    private volatile int maxQueued;
+
+    /** The maximum time in milliseconds to wait for a slot. */
+    private volatile long maxWait;
+
+    /** The minimum limit. */
+    private volatile int minLimit;
+
+    /** The limit adjustment mode. */
+    private volatile int mode;
+
+    /** The duration in milliseconds of a latency measurement window. */
+    private volatile long window;
+
+    /**
+     * Constructor.
+     */
+    public ConcurrencyLimitService() {
+        this(true);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public ConcurrencyLimitService(boolean enabled) {
+        super(enabled);
+        this.initialLimit = 20;
+        this.latencyThreshold = 1000L;
+        this.maxLimit = 1000;
+        this.maxQueued = 100;
+        this.maxWait = 100L;
+        this.minLimit = 1;
+        this.mode = MODE_GRADIENT;
+        this.window = 100L;
+    }
+
+    @Override
+    public Filter createInboundFilter(Context context) {
+        return new ConcurrencyLimitFilter(context, this);
+    }
+
+    /**
+     * Returns the initial limit. Default value is 20.
+     * 
+     * @return The initial limit.
+     */
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    /**
+     * Returns the average latency in milliseconds above which the limit is
+     * decreased, in the {@link #MODE_AIMD} mode. Default value is 1000.
+     * 
+     * @return The latency threshold in milliseconds.
+     */
+    public long getLatencyThreshold() {
+        return latencyThreshold;
+    }
+
+    /**
+     * Returns the maximum limit. Default value is 1000.
+     * 
+     * @return The maximum limit.
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Returns the maximum number of calls waiting for a slot. Calls exceeding
+     * it are rejected immediately. Default value is 100.
+     * 
+     * @return The maximum number of calls waiting for a slot.
+     */
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds to wait for a slot. Zero means
+     * that calls exceeding the limit are rejected immediately. Default value
+     * is 100.
+     * 
+     * @return The maximum time in milliseconds to wait for a slot.
+     */
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Returns the minimum limit. Default value is 1.
+     * 
+     * @return The minimum limit.
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * Returns the limit adjustment mode. Default value is
+     * {@link #MODE_GRADIENT}.
+     * 
+     * @return The limit adjustment mode.
+     */
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the duration in milliseconds of a latency measurement window, at
+     * the end of which the limit is adjusted. Default value is 100.
+     * 
+     * @return The duration in milliseconds of a measurement window.
+     */
+    public long getWindow() {
+        return window;
+    }
+
+    /**
+     * Sets the initial limit.
+     * 
+     * @param initialLimit
+     *            The initial limit.
+     */
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    /**
+     * Sets the latency threshold in milliseconds of the {@link #MODE_AIMD}
+     * mode.
+     * 
+     * @param latencyThreshold
+     *            The latency threshold in milliseconds.
+     */
+    public void setLatencyThreshold(long latencyThreshold) {
+        this.latencyThreshold = latencyThreshold;
+    }
+
+    /**
+     * Sets the maximum limit.
+     * 
+     * @param maxLimit
+     *            The maximum limit.
+     */
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Sets the maximum number of calls waiting for a slot.
+     * 
+     * @param maxQueued
+     *            The maximum number of calls waiting for a slot.
+     */
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds to wait for a slot.
+     * 
+     * @param maxWait
+     *            The maximum time in milliseconds to wait for a slot.
+     */
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Sets the minimum limit.
+     * 
+     * @param minLimit
+     *            The minimum limit.
+     */
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    /**
+     * Sets the limit adjustment mode.
+     * 
+     * @param mode
+     *            The limit adjustment mode, {@link #MODE_AIMD} or
+     *            {@link #MODE_GRADIENT}.
+     */
+    public void setMode(int mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Sets the duration in milliseconds of a latency measurement window.
+     * 
+     * @param window
+     *            The duration in milliseconds of a measurement window.
+     */
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+}
@@ -71,6 +71,8 @@ import org.restlet.routing.Template;
  * <li>Host reference</li>
  * <li>Client agent name</li>
  * <li>Referrer reference</li>
+ * <li>Durations of the processing stages, only when the server connector times
+ * the calls (see {@link org.restlet.engine.util.CallTimings})</li>
  * </ol>
  * <br>
  * If you use <a href="http://www.analog.cx">Analog</a> to generate your log
@@ -80,6 +82,14 @@ import org.restlet.routing.Template;
  * <br>
  * For custom access log format, see the syntax to use and the list of available
  * variable names in {@link org.restlet.routing.Template}. <br>
+ * <br>
+ * By default, the entries are logged by the threads handling the calls. In the
+ * asynchronous mode, they are handed over to a single writer thread via a
+ * bounded ring buffer, and optionally logged in batches. When the buffer is
+ * full, the entries are either dropped or the calls wait for some room,
+ * depending on the blocking policy. In this mode, the identity check, when
+ * enabled, is also done in the background and cached, so the first calls of a
+ * connection are logged without the user identifier.<br>
  * 
  * @see <a href="http://wiki.restlet.org/docs_2.2/201-restlet.html">User Guide -
  *      Access logging</a>
@@ -89,9 +99,50 @@ import org.restlet.routing.Template;
  */
 public class LogService extends Service {
 
+    /** Date and time fields of the entries logged during a given second. */
+    private static class DateTime {
+
+        /** The date field. */
+        private final String date;
+
+        /** The second, since the epoch. */
+        private final long second;
+
+        /** The time field. */
+        private final String time;
+
+        /**
+         * Constructor.
+         * 
+         * @param currentTime
+         *            The current time in milliseconds.
+         */
+        public DateTime(long currentTime) {
+            this.date = String.format("%tF", currentTime);
+            this.second = currentTime / 1000L;
+            this.time = String.format("%tT", currentTime);
+        }
+    }
+
+    /** Indicates if the entries are logged by a background thread. */
+    private volatile boolean asynchronous;
+
+    /** The maximum number of entries logged in a single record. */
+    private volatile int batchSize;
+
+    /** Indicates if the calls wait when the asynchronous buffer is full. */
+    private volatile boolean blocking;
+
+    /** The date and time fields of the current second. */
+    private volatile DateTime dateTime;
+
     /** Indicates if the debugging mode is enabled. */
     private volatile boolean debugging;
 
+    // [ifndef gae] member
+    /** The asynchronous and cached IDENT resolver. */
+    private volatile org.restlet.engine.log.IdentResolver identResolver;
+
     /** Indicates if the identity check (as specified by RFC1413) is enabled. */
     private volatile boolean identityCheck;
 
@@ -104,6 +155,9 @@ public class LogService extends Service {
     /** The URI reference of the log properties. */
     private volatile Reference logPropertiesRef;
 
+    /** The capacity of the asynchronous buffer. */
+    private volatile int queueCapacity;
+
     /** The response log entry format. */
     private volatile String responseLogFormat;
 
@@ -130,6 +184,10 @@ public class LogService extends Service {
         this.responseLogFormat = null;
         this.logPropertiesRef = null;
         this.identityCheck = false;
+        this.asynchronous = false;
+        this.batchSize = 1;
+        this.blocking = false;
+        this.queueCapacity = 8192;
     }
 
     @Override
@@ -137,6 +195,36 @@ public class LogService extends Service {
         return new LogFilter(context, this);
     }
 
+    /**
+     * Returns the maximum number of entries logged in a single record in the
+     * asynchronous mode. The entries are joined, one per line. Default value
+     * is 1, meaning that each entry is logged in its own record.
+     * 
+     * @return The maximum number of entries logged in a single record.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the date and time fields of the current second, formatted once
+     * per second.
+     * 
+     * @param currentTime
+     *            The current time in milliseconds.
+     * @return The date and time fields.
+     */
+    private DateTime getDateTime(long currentTime) {
+        DateTime result = this.dateTime;
+
+        if ((result == null) || (result.second != currentTime / 1000L)) {
+            result = new DateTime(currentTime);
+            this.dateTime = result;
+        }
+
+        return result;
+    }
+
     /**
      * Format a log entry using the default IIS log format.
      * 
@@ -148,20 +236,20 @@ public class LogService extends Service {
      */
     protected String getDefaultResponseLogMessage(Response response,
             int duration) {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = new StringBuilder(256);
         Request request = response.getRequest();
 
         if (isDebugging()) {
 
         } else {
-            long currentTime = System.currentTimeMillis();
+            DateTime currentDateTime = getDateTime(System.currentTimeMillis());
 
             // Append the date of the request
-            sb.append(String.format("%tF", currentTime));
+            sb.append(currentDateTime.date);
             sb.append('\t');
 
             // Append the time of the request
-            sb.append(String.format("%tT", currentTime));
+            sb.append(currentDateTime.time);
             sb.append('\t');
 
             // Append the client IP address
@@ -172,12 +260,22 @@ public class LogService extends Service {
             // Append the user name (via IDENT protocol)
             if (isIdentityCheck()) {
                 // [ifndef gae]
-                org.restlet.engine.log.IdentClient ic = new org.restlet.engine.log.IdentClient(
-                        request.getClientInfo().getUpstreamAddress(), request
-                                .getClientInfo().getPort(), response
-                                .getServerInfo().getPort());
-                sb.append((ic.getUserIdentifier() == null) ? "-" : ic
-                        .getUserIdentifier());
+                String identifier;
+
+                if (isAsynchronous()) {
+                    identifier = getIdentResolver().resolve(
+                            request.getClientInfo().getUpstreamAddress(),
+                            request.getClientInfo().getPort(),
+                            response.getServerInfo().getPort());
+                } else {
+                    identifier = new org.restlet.engine.log.IdentClient(
+                            request.getClientInfo().getUpstreamAddress(),
+                            request.getClientInfo().getPort(), response
+                                    .getServerInfo().getPort())
+                            .getUserIdentifier();
+                }
+
+                sb.append((identifier == null) ? "-" : identifier);
             } else if ((request.getChallengeResponse() != null)
                     && (request.getChallengeResponse().getIdentifier() != null)) {
                 sb.append(request.getChallengeResponse().getIdentifier());
@@ -262,11 +360,42 @@ public class LogService extends Service {
             sb.append('\t');
             sb.append((request.getReferrerRef() == null) ? "-" : request
                     .getReferrerRef().getIdentifier());
+
+            // Append the timings
+            if (request.getTimings() != null) {
+                sb.append('\t');
+                sb.append(request.getTimings());
+            }
         }
 
         return sb.toString();
     }
 
+    // [ifndef gae] method
+    /**
+     * Returns the asynchronous and cached IDENT resolver, created on first
+     * use.
+     * 
+     * @return The IDENT resolver.
+     */
+    private org.restlet.engine.log.IdentResolver getIdentResolver() {
+        org.restlet.engine.log.IdentResolver result = this.identResolver;
+
+        if (result == null) {
+            synchronized (this) {
+                result = this.identResolver;
+
+                if (result == null) {
+                    result = new org.restlet.engine.log.IdentResolver(4,
+                            10000, 60000L);
+                    this.identResolver = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns the URI template of loggable resource references. Returns null by
      * default, meaning the all requests are loggable, independant of their
@@ -301,6 +430,16 @@ public class LogService extends Service {
         return logPropertiesRef;
     }
 
+    /**
+     * Returns the capacity of the buffer of entries waiting to be logged in
+     * the asynchronous mode. Default value is 8192.
+     * 
+     * @return The capacity of the asynchronous buffer.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
     /**
      * Returns the format used when logging responses.
      * 
@@ -335,6 +474,27 @@ public class LogService extends Service {
         return result;
     }
 
+    /**
+     * Indicates if the entries are logged by a background thread, instead of
+     * the threads handling the calls. Default value is false.
+     * 
+     * @return True if the entries are logged by a background thread.
+     */
+    public boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    /**
+     * Indicates if the calls wait for some room when the asynchronous buffer
+     * is full. Otherwise, their entries are dropped and a warning reports how
+     * many were. Default value is false.
+     * 
+     * @return True if the calls wait when the asynchronous buffer is full.
+     */
+    public boolean isBlocking() {
+        return blocking;
+    }
+
     /**
      * Indicates if the debugging mode is enabled. False by default.
      * 
@@ -368,6 +528,39 @@ public class LogService extends Service {
                 .match(request.getResourceRef().getTargetRef().toString()) > 0;
     }
 
+    /**
+     * Indicates if the entries are logged by a background thread. Must be set
+     * before the log filter is started.
+     * 
+     * @param asynchronous
+     *            True if the entries are logged by a background thread.
+     */
+    public void setAsynchronous(boolean asynchronous) {
+        this.asynchronous = asynchronous;
+    }
+
+    /**
+     * Sets the maximum number of entries logged in a single record in the
+     * asynchronous mode.
+     * 
+     * @param batchSize
+     *            The maximum number of entries logged in a single record.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Indicates if the calls wait for some room when the asynchronous buffer
+     * is full.
+     * 
+     * @param blocking
+     *            True if the calls wait when the asynchronous buffer is full.
+     */
+    public void setBlocking(boolean blocking) {
+        this.blocking = blocking;
+    }
+
     /**
      * Indicates if the debugging mode is enabled.
      * 
@@ -443,6 +636,17 @@ public class LogService extends Service {
         setLogPropertiesRef(new Reference(logPropertiesUri));
     }
 
+    /**
+     * Sets the capacity of the buffer of entries waiting to be logged in the
+     * asynchronous mode.
+     * 
+     * @param queueCapacity
+     *            The capacity of the asynchronous buffer.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
     /**
      * Sets the format to use when logging responses. The default format matches
      * the one of IIS 6.
@@ -476,4 +680,19 @@ public class LogService extends Service {
             }
         }
     }
+
+    /**
+     * Stops the log service and the background IDENT lookups.
+     */
+    @Override
+    public synchronized void stop() throws Exception {
+        // [ifndef gae]
+        if (this.identResolver != null) {
+            this.identResolver.stop();
+            this.identResolver = null;
+        }
+        // [enddef]
+
+        super.stop();
+    }
 }
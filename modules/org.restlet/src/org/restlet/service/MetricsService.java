@@ -0,0 +1,305 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.restlet.data.Method;
+import org.restlet.engine.application.CallMetrics;
+import org.restlet.engine.application.MetricsRestlet;
+
+/**
+ * Application service recording runtime metrics per route and per resource.
+ * When started, each {@link org.restlet.routing.TemplateRoute} records the
+ * calls it handles under its URI template pattern, and each
+ * {@link org.restlet.resource.Finder} records them under the class of the
+ * target resource. For each pattern or class and each method, it keeps a
+ * latency histogram, the count of responses per status class and the number
+ * of calls in flight.<br>
+ * <br>
+ * Once the metrics of a route or resource exist, recording a call looks them
+ * up in concurrent maps keyed by existing objects and updates atomic counters,
+ * without allocating any object. The latency measured is the time taken to
+ * handle the call synchronously. The number of distinct methods recorded per
+ * route or resource is bounded, the others being recorded under the "OTHER"
+ * method.<br>
+ * <br>
+ * The metrics are published as MBeans of the platform MBean server, with
+ * object names like
+ * "org.restlet:type=Metrics,service=1b6d3586,kind=route,name="/users/{id}",method=GET".
+ * They can also be exposed as JSON by attaching a {@link MetricsRestlet}.
+ * 
+ * @see CallMetrics
+ */
+public class MetricsService extends Service {
+
+    /** The maximum number of methods recorded per route or resource. */
+    private static final int MAX_METHODS = 16;
+
+    /** The method under which the methods beyond the maximum are recorded. */
+    private static final Method OTHER_METHOD = new Method("OTHER");
+
+    /** Indicates if the metrics are published via JMX. */
+    private volatile boolean jmxEnabled;
+
+    /** The metrics per resource class and method. */
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, CallMetrics>> resourceMetrics;
+
+    /** The metrics per route pattern and method. */
+    private final ConcurrentMap<String, ConcurrentMap<Method, CallMetrics>> routeMetrics;
+
+    /**
+     * Constructor.
+     */
+    public MetricsService() {
+        this(true);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public MetricsService(boolean enabled) {
+        super(enabled);
+        this.jmxEnabled = true;
+        this.resourceMetrics = new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, CallMetrics>>();
+        this.routeMetrics = new ConcurrentHashMap<String, ConcurrentMap<Method, CallMetrics>>();
+    }
+
+    /**
+     * Returns the metrics of a key and method, creating them if needed.
+     * 
+     * @param metrics
+     *            The metrics per key and method.
+     * @param key
+     *            The key.
+     * @param method
+     *            The method.
+     * @param kind
+     *            The kind of key, "route" or "resource".
+     * @param name
+     *            The name of the key.
+     * @return The metrics of the key and method.
+     */
+    private <K> CallMetrics getMetrics(
+            ConcurrentMap<K, ConcurrentMap<Method, CallMetrics>> metrics,
+            K key, Method method, String kind, String name) {
+        ConcurrentMap<Method, CallMetrics> methods = metrics.get(key);
+
+        if (methods == null) {
+            methods = new ConcurrentHashMap<Method, CallMetrics>();
+            ConcurrentMap<Method, CallMetrics> current = metrics.putIfAbsent(
+                    key, methods);
+
+            if (current != null) {
+                methods = current;
+            }
+        }
+
+        CallMetrics result = methods.get(method);
+
+        if (result == null) {
+            if (methods.size() >= MAX_METHODS) {
+                method = OTHER_METHOD;
+            }
+
+            result = new CallMetrics();
+            CallMetrics current = methods.putIfAbsent(method, result);
+
+            if (current == null) {
+                if (isJmxEnabled() && isStarted()) {
+                    // [ifndef android,gae] instruction
+                    org.restlet.engine.application.MetricsJmx.register(this,
+                            kind, name, method.getName(), result);
+                }
+            } else {
+                result = current;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a snapshot of the metrics of all the resources, keyed by class
+     * name then by method name.
+     * 
+     * @return The metrics of all the resources.
+     */
+    public Map<String, Map<String, CallMetrics>> getResourceMetrics() {
+        Map<String, Map<String, CallMetrics>> result = new TreeMap<String, Map<String, CallMetrics>>();
+
+        for (Map.Entry<Class<?>, ConcurrentMap<Method, CallMetrics>> entry : this.resourceMetrics
+                .entrySet()) {
+            result.put(entry.getKey().getName(), getSnapshot(entry.getValue()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the metrics of a resource class and method, creating them if
+     * needed.
+     * 
+     * @param resourceClass
+     *            The resource class.
+     * @param method
+     *            The method.
+     * @return The metrics of the resource class and method.
+     */
+    public CallMetrics getResourceMetrics(Class<?> resourceClass, Method method) {
+        return getMetrics(this.resourceMetrics, resourceClass, method,
+                "resource", resourceClass.getName());
+    }
+
+    /**
+     * Returns a snapshot of the metrics of all the routes, keyed by URI
+     * template pattern then by method name.
+     * 
+     * @return The metrics of all the routes.
+     */
+    public Map<String, Map<String, CallMetrics>> getRouteMetrics() {
+        Map<String, Map<String, CallMetrics>> result = new TreeMap<String, Map<String, CallMetrics>>();
+
+        for (Map.Entry<String, ConcurrentMap<Method, CallMetrics>> entry : this.routeMetrics
+                .entrySet()) {
+            result.put(entry.getKey(), getSnapshot(entry.getValue()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the metrics of a route pattern and method, creating them if
+     * needed.
+     * 
+     * @param pattern
+     *            The URI template pattern of the route.
+     * @param method
+     *            The method.
+     * @return The metrics of the route pattern and method.
+     */
+    public CallMetrics getRouteMetrics(String pattern, Method method) {
+        return getMetrics(this.routeMetrics, pattern, method, "route",
+                pattern);
+    }
+
+    /**
+     * Returns a snapshot of the metrics of a key, sorted by method name.
+     * 
+     * @param methods
+     *            The metrics of the key per method.
+     * @return The metrics of the key, keyed by method name.
+     */
+    private Map<String, CallMetrics> getSnapshot(
+            Map<Method, CallMetrics> methods) {
+        Map<String, CallMetrics> result = new TreeMap<String, CallMetrics>();
+
+        for (Map.Entry<Method, CallMetrics> entry : methods.entrySet()) {
+            result.put(entry.getKey().getName(), entry.getValue());
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if the metrics are published via JMX as they are created.
+     * Default value is true.
+     * 
+     * @return True if the metrics are published via JMX.
+     */
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    /**
+     * Removes all the metrics recorded.
+     */
+    public void reset() {
+        if (isJmxEnabled()) {
+            // [ifndef android,gae] instruction
+            org.restlet.engine.application.MetricsJmx.unregister(this);
+        }
+
+        this.resourceMetrics.clear();
+        this.routeMetrics.clear();
+    }
+
+    /**
+     * Indicates if the metrics are published via JMX as they are created.
+     * 
+     * @param jmxEnabled
+     *            True if the metrics are published via JMX.
+     */
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    /**
+     * Starts the service and publishes the metrics already recorded via JMX
+     * if enabled.
+     */
+    @Override
+    public synchronized void start() throws Exception {
+        super.start();
+
+        if (isJmxEnabled() && isStarted()) {
+            // [ifndef android,gae]
+            org.restlet.engine.application.MetricsJmx.register(this,
+                    "route", getRouteMetrics());
+            org.restlet.engine.application.MetricsJmx.register(this,
+                    "resource", getResourceMetrics());
+            // [enddef]
+        }
+    }
+
+    /**
+     * Stops the service and unpublishes its metrics from JMX if enabled. The
+     * metrics are kept.
+     */
+    @Override
+    public synchronized void stop() throws Exception {
+        if (isJmxEnabled()) {
+            // [ifndef android,gae] instruction
+            org.restlet.engine.application.MetricsJmx.unregister(this);
+        }
+
+        super.stop();
+    }
+
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.service;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.engine.application.RateLimitFilter;
+import org.restlet.routing.Filter;
+
+/**
+ * Application service limiting the rate of the requests of each client. Each
+ * client, identified by a key, has a token bucket holding up to
+ * {@link #getLimit()} tokens and refilled in {@link #getPeriod()}
+ * milliseconds. Each request consumes a token, and is answered with a
+ * "429 Too Many Requests" status and a "Retry-After" header when none is
+ * left.<br>
+ * <br>
+ * By default, clients are identified by their IP address. They can instead be
+ * identified by the identifier of their challenge response, or by any other
+ * key by overriding the {@link #getKey(Request)} method. Note that the
+ * challenge response isn't authenticated yet when the service filters the
+ * request, so clients can present any identifier they want.<br>
+ * <br>
+ * The buckets are kept in a concurrent map and updated without lock. The full
+ * buckets are evicted lazily, by a sweep made at most once per period.
+ * 
+ * @see RateLimitFilter
+ */
+public class RateLimitService extends Service {
+
+    /** Identifies the clients by their IP address. */
+    public static final int KEY_ADDRESS = 1;
+
+    /**
+     * Identifies the clients by the identifier of their challenge response,
+     * or by their IP address if they didn't send one.
+     */
+    public static final int KEY_IDENTIFIER = 2;
+
+    /** Indicates if the "RateLimit-*" headers are added to all responses. */
+    private volatile boolean headersAdded;
+
+    /** The key mode. */
+    private volatile int keyMode;
+
+    /** The maximum number of requests per period. */
+    private volatile int limit;
+
+    /** The period in milliseconds. */
+    private volatile long period;
+
+    /**
+     * Constructor.
+     */
+    public RateLimitService() {
+        this(true);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public RateLimitService(boolean enabled) {
+        super(enabled);
+        this.headersAdded = true;
+        this.keyMode = KEY_ADDRESS;
+        this.limit = 100;
+        this.period = 1000L;
+    }
+
+    @Override
+    public Filter createInboundFilter(Context context) {
+        return new RateLimitFilter(context, this);
+    }
+
+    /**
+     * Returns the key identifying the client of a request, depending on the
+     * key mode. Returns null if the request must not be limited.
+     * 
+     * @param request
+     *            The request.
+     * @return The key identifying the client or null.
+     */
+    public String getKey(Request request) {
+        String result = null;
+
+        if ((getKeyMode() == KEY_IDENTIFIER)
+                && (request.getChallengeResponse() != null)) {
+            result = request.getChallengeResponse().getIdentifier();
+        }
+
+        if (result == null) {
+            result = request.getClientInfo().getAddress();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the key mode. Default value is {@link #KEY_ADDRESS}.
+     * 
+     * @return The key mode.
+     */
+    public int getKeyMode() {
+        return keyMode;
+    }
+
+    /**
+     * Returns the maximum number of requests per period, which is also the
+     * maximum size of a burst of requests. Default value is 100.
+     * 
+     * @return The maximum number of requests per period.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the period in milliseconds, during which an empty bucket is
+     * refilled. Default value is 1000.
+     * 
+     * @return The period in milliseconds.
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Indicates if the "RateLimit-Limit", "RateLimit-Remaining" and
+     * "RateLimit-Reset" headers are added to all responses, and not only to
+     * the rejected ones. Default value is true.
+     * 
+     * @return True if the "RateLimit-*" headers are added to all responses.
+     */
+    public boolean isHeadersAdded() {
+        return headersAdded;
+    }
+
+    /**
+     * Indicates if the "RateLimit-*" headers are added to all responses.
+     * 
+     * @param headersAdded
+     *            True if the "RateLimit-*" headers are added to all
+     *            responses.
+     */
+    public void setHeadersAdded(boolean headersAdded) {
+        this.headersAdded = headersAdded;
+    }
+
+    /**
+     * Sets the key mode.
+     * 
+     * @param keyMode
+     *            The key mode, {@link #KEY_ADDRESS} or {@link #KEY_IDENTIFIER}.
+     */
+    public void setKeyMode(int keyMode) {
+        this.keyMode = keyMode;
+    }
+
+    /**
+     * Sets the maximum number of requests per period.
+     * 
+     * @param limit
+     *            The maximum number of requests per period, at least 1.
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Sets the period in milliseconds.
+     * 
+     * @param period
+     *            The period in milliseconds.
+     */
+    public void setPeriod(long period) {
+        this.period = period;
+    }
+
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.service;
+
+import org.restlet.Context;
+import org.restlet.data.Digest;
+import org.restlet.engine.application.TagFilter;
+import org.restlet.engine.cache.CacheStore;
+import org.restlet.routing.Filter;
+
+/**
+ * Application service automatically computing strong entity tags for the
+ * successful responses to GET and HEAD requests that don't have one. The
+ * entity is buffered through a
+ * {@link org.restlet.representation.DigesterRepresentation} and its digest
+ * becomes the tag, so that resources return "304 Not Modified" to conditional
+ * requests without having to compute tags themselves.<br>
+ * <br>
+ * The tags computed are also remembered per resource URI and variant, for a
+ * limited time. A conditional request whose tag matches a remembered one is
+ * then answered with "304 Not Modified" without invoking the resource, saving
+ * both the serialization and the transfer of the entity. The remembered tags
+ * of a resource are forgotten when it is successfully updated via an unsafe
+ * method, so the tag lifetime should be short enough for the changes made
+ * outside of the application.
+ * 
+ * @see TagFilter
+ */
+public class TagService extends Service {
+
+    /** The digest algorithm. */
+    private volatile String algorithm;
+
+    /** The maximum size of a buffered entity in bytes. */
+    private volatile long maxEntrySize;
+
+    /** The store of remembered tags. */
+    private final CacheStore store;
+
+    /** The time in milliseconds during which a computed tag is trusted. */
+    private volatile long tagLifetime;
+
+    /**
+     * Constructor.
+     */
+    public TagService() {
+        this(true);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public TagService(boolean enabled) {
+        super(enabled);
+        this.algorithm = Digest.ALGORITHM_SHA_1;
+        this.maxEntrySize = 1024L * 1024;
+        this.store = new CacheStore(1024L * 1024);
+        this.tagLifetime = 60000L;
+    }
+
+    @Override
+    public Filter createInboundFilter(Context context) {
+        return new TagFilter(context, this);
+    }
+
+    /**
+     * Returns the digest algorithm. Default value is "SHA-1".
+     * 
+     * @return The digest algorithm.
+     * @see Digest
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Returns the maximum size of a buffered entity in bytes. Larger entities
+     * are streamed without tag. Default value is 1 MB.
+     * 
+     * @return The maximum size of a buffered entity in bytes.
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Returns the store of remembered tags, keyed by resource URI and
+     * variant.
+     * 
+     * @return The store of remembered tags.
+     */
+    public CacheStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns the time in milliseconds during which a computed tag is trusted
+     * to answer conditional requests without invoking the resource. Zero
+     * disables this short-circuit, the tags being then only compared once the
+     * resource has been invoked. Default value is 60000.
+     * 
+     * @return The time in milliseconds during which a computed tag is trusted.
+     */
+    public long getTagLifetime() {
+        return tagLifetime;
+    }
+
+    /**
+     * Sets the digest algorithm.
+     * 
+     * @param algorithm
+     *            The digest algorithm.
+     * @see Digest
+     */
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Sets the maximum size of a buffered entity in bytes.
+     * 
+     * @param maxEntrySize
+     *            The maximum size of a buffered entity in bytes.
+     */
+    public void setMaxEntrySize(long maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Sets the time in milliseconds during which a computed tag is trusted to
+     * answer conditional requests without invoking the resource.
+     * 
+     * @param tagLifetime
+     *            The time in milliseconds during which a computed tag is
+     *            trusted.
+     */
+    public void setTagLifetime(long tagLifetime) {
+        this.tagLifetime = tagLifetime;
+    }
+
+}
@@ -53,7 +53,9 @@ import org.restlet.Application;
 import org.restlet.Context;
 import org.restlet.Response;
 import org.restlet.engine.Engine;
+import org.restlet.engine.log.LoggingThreadFactory;
 import org.restlet.engine.util.ContextualRunnable;
+import org.restlet.engine.util.VirtualScheduledExecutorService;
 import org.restlet.routing.VirtualHost;
 
 /**
@@ -70,7 +72,12 @@ import org.restlet.routing.VirtualHost;
  * Resources that are part of your context. In general this context corresponds
  * to a parent Application's context. If you want to have your own service
  * instance, you can use the {@link TaskService#wrap(ScheduledExecutorService)}
- * method to ensure that thread local variables are correctly set.
+ * method to ensure that thread local variables are correctly set.<br>
+ * <br>
+ * When the Java runtime supports virtual threads (Java SE 21 and above), the
+ * {@link #setVirtualThreads(boolean)} method lets each task run on its own
+ * virtual thread, so that blocking tasks such as JDBC queries or outbound
+ * client calls aren't limited by the core pool size anymore.
  * 
  * @author Jerome Louvel
  * @author Doug Lea (docs of ExecutorService in public domain)
@@ -245,6 +252,9 @@ public class TaskService extends Service implements ScheduledExecutorService {
     /** The core pool size defining the maximum number of threads. */
     private volatile int corePoolSize;
 
+    /** Indicates if tasks should run on virtual threads when supported. */
+    private volatile boolean virtualThreads;
+
     /**
      * Constructor. Enables the service and set the core pool size to 4 by
      * default.
@@ -275,6 +285,7 @@ public class TaskService extends Service implements ScheduledExecutorService {
         super(enabled);
         this.corePoolSize = corePoolSize;
         this.shutdownAllowed = false;
+        this.virtualThreads = false;
     }
 
     /**
@@ -307,16 +318,37 @@ public class TaskService extends Service implements ScheduledExecutorService {
 
     /**
      * Creates a new JDK executor service that will be wrapped. By default it
-     * calls {@link Executors#newCachedThreadPool(ThreadFactory)}, passing the
-     * result of {@link #createThreadFactory()} as a parameter.
+     * calls {@link Executors#newScheduledThreadPool(int, ThreadFactory)},
+     * passing the result of {@link #createThreadFactory()} as a parameter.<br>
+     * <br>
+     * If {@link #isVirtualThreads()} returns true and virtual threads are
+     * supported, a {@link VirtualScheduledExecutorService} is returned
+     * instead, running each immediate task on a new virtual thread.
      * 
      * @param corePoolSize
      *            The core pool size defining the maximum number of threads.
      * @return A new JDK executor service.
      */
     protected ScheduledExecutorService createExecutorService(int corePoolSize) {
-        return Executors.newScheduledThreadPool(corePoolSize,
-                createThreadFactory());
+        ScheduledExecutorService result = null;
+
+        if (isVirtualThreads()) {
+            LoggingThreadFactory factory = new LoggingThreadFactory(
+                    Context.getCurrentLogger(), true, true);
+
+            if (factory.isVirtual()) {
+                result = new VirtualScheduledExecutorService(
+                        Executors.newScheduledThreadPool(corePoolSize, factory),
+                        factory);
+            }
+        }
+
+        if (result == null) {
+            result = Executors.newScheduledThreadPool(corePoolSize,
+                    createThreadFactory());
+        }
+
+        return result;
     }
 
     /**
@@ -487,6 +519,16 @@ public class TaskService extends Service implements ScheduledExecutorService {
         return (getWrapped() == null) || getWrapped().isTerminated();
     }
 
+    /**
+     * Indicates if tasks should run on virtual threads when supported by the
+     * Java runtime. Returns false by default.
+     * 
+     * @return True if tasks should run on virtual threads when supported.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
     /**
      * Creates and executes a ScheduledFuture that becomes enabled after the
      * given delay.
@@ -619,6 +661,17 @@ public class TaskService extends Service implements ScheduledExecutorService {
         this.shutdownAllowed = allowShutdown;
     }
 
+    /**
+     * Indicates if tasks should run on virtual threads when supported by the
+     * Java runtime. Must be set before the service is started.
+     * 
+     * @param virtualThreads
+     *            True if tasks should run on virtual threads when supported.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
     /**
      * Sets the wrapped JDK executor service.
      * 
@@ -198,6 +198,11 @@ import org.restlet.engine.util.MapResolver;
  * <td>Reference (see table below variable name sub-parts)</td>
  * </tr>
  * <tr>
+ * <td>request.timings</td>
+ * <td>t</td>
+ * <td>String</td>
+ * </tr>
+ * <tr>
  * <td>response.redirectRef</td>
  * <td>R*</td>
  * <td>Reference (see table below variable name sub-parts)</td>
@@ -0,0 +1,464 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.util;
+
+import java.util.Date;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Status;
+
+/**
+ * Policy deciding if and when a failed call should be attempted again. The
+ * delay between two attempts grows exponentially from the initial delay up to
+ * the maximum delay, and is randomly shortened by the jitter factor so that
+ * clients failing at the same time don't retry at the same time. A
+ * "Retry-After" value sent by the server is honored when it is longer.<br>
+ * <br>
+ * Only recoverable errors are retried (see {@link Status#isRecoverableError()}
+ * ). Calls using a non idempotent method are only retried when the connection
+ * couldn't be established, meaning that the request was never sent, unless
+ * {@link #isRetryingNonIdempotent()} returns true.<br>
+ * <br>
+ * The retries are limited by a retry budget shared by all the calls using the
+ * same policy: each call deposits a fraction of a retry, and each retry
+ * withdraws a full one. This prevents retries from multiplying the load on a
+ * server that is already failing. Policies copied from another one share its
+ * budget. A total timeout can also be set so that no
+ * attempt is started after the deadline of the call.<br>
+ * <br>
+ * Concurrency note: instances of this class can be shared by several threads
+ * at the same time.
+ */
+public class RetryPolicy {
+
+    /** Retry budget, possibly shared by several policies. */
+    private static class Budget {
+
+        /** The number of retries currently available. */
+        private double tokens;
+
+        /**
+         * Constructor.
+         *
+         * @param tokens
+         *            The number of retries initially available.
+         */
+        public Budget(double tokens) {
+            this.tokens = tokens;
+        }
+    }
+
+    /** The retry budget, shared with the copies of this policy. */
+    private final Budget budget;
+
+    /** The fraction of a retry deposited in the budget by each call. */
+    private volatile double budgetRatio;
+
+    /** The maximum number of retries stored in the budget. */
+    private volatile int budgetSize;
+
+    /** The delay in milliseconds before the first retry. */
+    private volatile long initialDelay;
+
+    /** The randomization factor of the delays, between 0 and 1. */
+    private volatile double jitter;
+
+    /** The maximum delay in milliseconds between two attempts. */
+    private volatile long maxDelay;
+
+    /** The maximum number of retries of a call. */
+    private volatile int maxRetries;
+
+    /** The factor applied to the delay after each retry. */
+    private volatile double multiplier;
+
+    /** Indicates if calls with a non idempotent method can be retried. */
+    private volatile boolean retryingNonIdempotent;
+
+    /** The total time in milliseconds allowed for a call and its retries. */
+    private volatile long timeout;
+
+    /**
+     * Constructor. Allows 2 retries, starting after 2 seconds and doubling the
+     * delay each time, up to 30 seconds, with a jitter of 20%. The retry budget
+     * allows one retry every five calls, with a reserve of 10 retries.
+     */
+    public RetryPolicy() {
+        this(2, 2000L);
+    }
+
+    /**
+     * Constructor. The maximum delay is 30 seconds, or the initial delay if it
+     * is longer.
+     *
+     * @param maxRetries
+     *            The maximum number of retries of a call.
+     * @param initialDelay
+     *            The delay in milliseconds before the first retry.
+     */
+    public RetryPolicy(int maxRetries, long initialDelay) {
+        this.budget = new Budget(10);
+        this.budgetRatio = 0.2D;
+        this.budgetSize = 10;
+        this.initialDelay = initialDelay;
+        this.jitter = 0.2D;
+        this.maxDelay = Math.max(30000L, initialDelay);
+        this.maxRetries = maxRetries;
+        this.multiplier = 2D;
+        this.retryingNonIdempotent = false;
+        this.timeout = 0L;
+    }
+
+    /**
+     * Copy constructor. The settings of the given policy are copied, so that
+     * both policies can then be changed independently, while the retry budget
+     * is shared so that their calls draw from the same retries.
+     *
+     * @param policy
+     *            The policy to copy.
+     */
+    public RetryPolicy(RetryPolicy policy) {
+        this.budget = policy.budget;
+        this.budgetRatio = policy.getBudgetRatio();
+        this.budgetSize = policy.getBudgetSize();
+        this.initialDelay = policy.getInitialDelay();
+        this.jitter = policy.getJitter();
+        this.maxDelay = policy.getMaxDelay();
+        this.maxRetries = policy.getMaxRetries();
+        this.multiplier = policy.getMultiplier();
+        this.retryingNonIdempotent = policy.isRetryingNonIdempotent();
+        this.timeout = policy.getTimeout();
+    }
+
+    /**
+     * Attempts to withdraw a retry from the budget, after checking that the
+     * given delay is acceptable. The delay must not exceed the maximum delay,
+     * and waiting for it must not exceed the deadline of the call if a total
+     * timeout is set.
+     *
+     * @param delay
+     *            The delay in milliseconds before the retry.
+     * @param startTime
+     *            The time in milliseconds when the call was first attempted.
+     * @return True if the retry can be attempted.
+     */
+    public boolean acquire(long delay, long startTime) {
+        boolean result = (delay >= 0) && (delay <= getMaxDelay());
+
+        if (result && (getTimeout() > 0)) {
+            result = (System.currentTimeMillis() + delay) < (startTime + getTimeout());
+        }
+
+        if (result && (getBudgetRatio() > 0)) {
+            synchronized (this.budget) {
+                result = (this.budget.tokens >= 1D);
+
+                if (result) {
+                    this.budget.tokens -= 1D;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the fraction of a retry deposited in the budget by each call.
+     * Zero or a negative value disables the retry budget. Default value is
+     * 0.2, meaning that there can be one retry every five calls.
+     *
+     * @return The fraction of a retry deposited in the budget by each call.
+     */
+    public double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    /**
+     * Returns the maximum number of retries stored in the budget, which is
+     * also the number of retries available initially. Default value is 10.
+     *
+     * @return The maximum number of retries stored in the budget.
+     */
+    public int getBudgetSize() {
+        return budgetSize;
+    }
+
+    /**
+     * Returns the delay in milliseconds before a given retry. It grows
+     * exponentially with the retry attempt and is randomly shortened by up to
+     * the jitter factor. If the response has a "Retry-After" date further in
+     * the future, the delay until this date is returned instead.
+     *
+     * @param response
+     *            The failed response or null.
+     * @param retryAttempt
+     *            The number of retries already done.
+     * @return The delay in milliseconds before the retry.
+     */
+    public long getDelay(Response response, int retryAttempt) {
+        double delay = getInitialDelay();
+
+        for (int i = 0; (i < retryAttempt) && (delay < getMaxDelay()); i++) {
+            delay *= getMultiplier();
+        }
+
+        delay = Math.min(delay, getMaxDelay());
+        delay -= delay * getJitter() * Math.random();
+        long result = (long) delay;
+
+        if ((response != null) && (response.getRetryAfter() != null)) {
+            Date retryAfter = response.getRetryAfter();
+            result = Math.max(result,
+                    retryAfter.getTime() - System.currentTimeMillis());
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the delay in milliseconds before the first retry. Default value
+     * is 2000.
+     *
+     * @return The delay in milliseconds before the first retry.
+     */
+    public long getInitialDelay() {
+        return initialDelay;
+    }
+
+    /**
+     * Returns the randomization factor of the delays, between 0 and 1. Default
+     * value is 0.2.
+     *
+     * @return The randomization factor of the delays.
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Returns the maximum delay in milliseconds between two attempts. The
+     * growing delays are capped to this value, and a call whose server asks to
+     * wait longer isn't retried. Default value is 30000.
+     *
+     * @return The maximum delay in milliseconds between two attempts.
+     */
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * Returns the maximum number of retries of a call. Default value is 2.
+     *
+     * @return The maximum number of retries of a call.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Returns the factor applied to the delay after each retry. Default value
+     * is 2.
+     *
+     * @return The factor applied to the delay after each retry.
+     */
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Returns the total time in milliseconds allowed for a call and its
+     * retries. No retry is started if it would begin after this deadline. Zero
+     * means no timeout, which is the default value.
+     *
+     * @return The total time in milliseconds allowed for a call and its
+     *         retries.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Indicates if a failed call can be retried, based on its status, its
+     * method and its entity, and on the number of retries already done.
+     *
+     * @param request
+     *            The request sent.
+     * @param response
+     *            The failed response.
+     * @param retryAttempt
+     *            The number of retries already done.
+     * @return True if the call can be retried.
+     */
+    public boolean isRetryable(Request request, Response response,
+            int retryAttempt) {
+        Status status = response.getStatus();
+        return (retryAttempt < getMaxRetries())
+                && status.isRecoverableError()
+                && (request.getMethod().isIdempotent()
+                        || isRetryingNonIdempotent() || Status.CONNECTOR_ERROR_CONNECTION
+                            .equals(status))
+                && ((request.getEntity() == null) || request.getEntity()
+                        .isAvailable());
+    }
+
+    /**
+     * Indicates if calls with a non idempotent method, such as POST, can be
+     * retried even if the request might have been received by the server.
+     * Default value is false.
+     *
+     * @return True if calls with a non idempotent method can be retried.
+     */
+    public boolean isRetryingNonIdempotent() {
+        return retryingNonIdempotent;
+    }
+
+    /**
+     * Records a new call, depositing a fraction of a retry in the budget.
+     */
+    public void recordCall() {
+        if (getBudgetRatio() > 0) {
+            synchronized (this.budget) {
+                this.budget.tokens = Math.min(getBudgetSize(),
+                        this.budget.tokens + getBudgetRatio());
+            }
+        }
+    }
+
+    /**
+     * Sets the fraction of a retry deposited in the budget by each call. Zero
+     * or a negative value disables the retry budget.
+     *
+     * @param budgetRatio
+     *            The fraction of a retry deposited in the budget by each call.
+     */
+    public void setBudgetRatio(double budgetRatio) {
+        this.budgetRatio = budgetRatio;
+    }
+
+    /**
+     * Sets the maximum number of retries stored in the budget.
+     *
+     * @param budgetSize
+     *            The maximum number of retries stored in the budget.
+     */
+    public void setBudgetSize(int budgetSize) {
+        this.budgetSize = budgetSize;
+
+        synchronized (this.budget) {
+            this.budget.tokens = Math.min(this.budget.tokens, budgetSize);
+        }
+    }
+
+    /**
+     * Sets the delay in milliseconds before the first retry. The maximum delay
+     * is raised to this delay if it is shorter, so that the delay isn't capped.
+     *
+     * @param initialDelay
+     *            The delay in milliseconds before the first retry.
+     */
+    public void setInitialDelay(long initialDelay) {
+        this.initialDelay = initialDelay;
+
+        if (getMaxDelay() < initialDelay) {
+            setMaxDelay(initialDelay);
+        }
+    }
+
+    /**
+     * Sets the randomization factor of the delays, between 0 and 1.
+     *
+     * @param jitter
+     *            The randomization factor of the delays.
+     */
+    public void setJitter(double jitter) {
+        this.jitter = Math.max(0D, Math.min(1D, jitter));
+    }
+
+    /**
+     * Sets the maximum delay in milliseconds between two attempts. The delays
+     * computed by {@link #getDelay(Response, int)}, including the initial one,
+     * are capped to this value.
+     *
+     * @param maxDelay
+     *            The maximum delay in milliseconds between two attempts.
+     */
+    public void setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Sets the maximum number of retries of a call.
+     *
+     * @param maxRetries
+     *            The maximum number of retries of a call.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Sets the factor applied to the delay after each retry.
+     *
+     * @param multiplier
+     *            The factor applied to the delay after each retry.
+     */
+    public void setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * Indicates if calls with a non idempotent method, such as POST, can be
+     * retried even if the request might have been received by the server.
+     *
+     * @param retryingNonIdempotent
+     *            True if calls with a non idempotent method can be retried.
+     */
+    public void setRetryingNonIdempotent(boolean retryingNonIdempotent) {
+        this.retryingNonIdempotent = retryingNonIdempotent;
+    }
+
+    /**
+     * Sets the total time in milliseconds allowed for a call and its retries.
+     * Zero means no timeout.
+     *
+     * @param timeout
+     *            The total time in milliseconds allowed for a call and its
+     *            retries.
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+}
@@ -39,9 +39,9 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
-import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 
 import org.restlet.Context;
@@ -94,8 +94,8 @@ public class SelectionRegistration {
         return result.toString();
     }
 
-    /** The barrier used for blocking/unblocking support. */
-    private final CyclicBarrier barrier;
+    /** The thread currently blocked, waiting to be unblocked. */
+    private volatile Thread blockedThread;
 
     /** Indicates if that registration has been canceled. */
     private volatile boolean canceling;
@@ -118,6 +118,9 @@ public class SelectionRegistration {
     /** The active selection key. */
     private volatile SelectionKey selectionKey;
 
+    /** Indicates if an unblocking signal is pending. */
+    private final AtomicBoolean unblocked;
+
     /** The wakeup listener that will be notified. */
     private volatile WakeupListener wakeupListener;
 
@@ -153,7 +156,8 @@ public class SelectionRegistration {
             WakeupListener wakeupListener) {
         this.canceling = false;
         this.selectableChannel = selectableChannel;
-        this.barrier = new CyclicBarrier(2);
+        this.blockedThread = null;
+        this.unblocked = new AtomicBoolean(false);
         this.selectionListener = selectionListener;
         this.wakeupListener = wakeupListener;
         this.setInterestOperations(interestOperations);
@@ -169,42 +173,49 @@ public class SelectionRegistration {
     }
 
     /**
-     * Blocks the calling thread.
+     * Blocks the calling thread until {@link #unblock()} is called or a timeout
+     * occurs. The thread is parked via {@link LockSupport} so that a virtual
+     * thread doesn't pin its carrier thread while waiting.
      * 
      * @throws IOException
      * 
-     * @see #block()
+     * @see #unblock()
      */
     public void block() throws IOException {
-        try {
-            if (Context.getCurrentLogger().isLoggable(Level.FINEST)) {
-                Context.getCurrentLogger().log(
-                        Level.FINEST,
-                        "Calling thread about to block on the NIO selection registration. Timeout: "
-                                + TimeUnit.MILLISECONDS
-                                        .toMillis(IoUtils.TIMEOUT_MS)
-                                + " ms. Waiting: "
-                                + this.barrier.getNumberWaiting());
-            }
+        if (Context.getCurrentLogger().isLoggable(Level.FINEST)) {
+            Context.getCurrentLogger().log(
+                    Level.FINEST,
+                    "Calling thread about to block on the NIO selection registration. Timeout: "
+                            + TimeUnit.MILLISECONDS
+                                    .toMillis(IoUtils.TIMEOUT_MS)
+                            + " ms. Unblocked: " + this.unblocked.get());
+        }
+
+        this.blockedThread = Thread.currentThread();
 
+        try {
             getWakeupListener().onWokeup(this);
-            this.barrier.await(IoUtils.TIMEOUT_MS, TimeUnit.MILLISECONDS);
-        } catch (TimeoutException e) {
-            Context.getCurrentLogger()
-                    .log(Level.WARNING,
-                            "The thread blocked at the cyclic barrier has timed out",
-                            e);
-            IOException ioe = new IOException(
-                    "The thread blocked at the cyclic barrier has timed out.");
-            ioe.initCause(e);
-            throw ioe;
-        } catch (Exception e) {
-            Context.getCurrentLogger().log(Level.WARNING,
-                    "Unable to block the thread at the cyclic barrier", e);
-            IOException ioe = new IOException(
-                    "Unable to block the thread at the cyclic barrier.");
-            ioe.initCause(e);
-            throw ioe;
+            long deadline = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(IoUtils.TIMEOUT_MS);
+            long remaining = deadline - System.nanoTime();
+
+            while (!this.unblocked.compareAndSet(true, false)) {
+                if (remaining <= 0) {
+                    Context.getCurrentLogger()
+                            .log(Level.WARNING,
+                                    "The thread blocked on the NIO selection registration has timed out");
+                    throw new IOException(
+                            "The thread blocked on the NIO selection registration has timed out.");
+                } else if (Thread.interrupted()) {
+                    throw new IOException(
+                            "The thread blocked on the NIO selection registration has been interrupted.");
+                }
+
+                LockSupport.parkNanos(this, remaining);
+                remaining = deadline - System.nanoTime();
+            }
+        } finally {
+            this.blockedThread = null;
         }
     }
 
@@ -212,7 +223,8 @@ public class SelectionRegistration {
      * Clears the registration.
      */
     public void clear() {
-        this.barrier.reset();
+        this.blockedThread = null;
+        this.unblocked.set(false);
         this.canceling = false;
         this.interestOperations = 0;
         this.previousInterest = 0;
@@ -457,34 +469,28 @@ public class SelectionRegistration {
     }
 
     /**
-     * Unblocks the optionally blocked thread.
+     * Unblocks the optionally blocked thread. If no thread is blocked yet, the
+     * next call to {@link #block()} will return immediately. The calling
+     * thread, typically the NIO selector thread, never waits.
      * 
      * @throws IOException
      * 
      * @see #block()
      */
     public void unblock() throws IOException {
+        // Signal before looking up the blocked thread to never miss it
+        this.unblocked.set(true);
+        Thread thread = this.blockedThread;
+
         if (Context.getCurrentLogger().isLoggable(Level.FINEST)) {
             Context.getCurrentLogger().log(
                     Level.FINEST,
-                    "Calling thread about to unblock the NIO selection registration. Timeout: "
-                            + TimeUnit.MILLISECONDS
-                                    .toMillis(IoUtils.TIMEOUT_MS)
-                            + " ms. Waiting: "
-                            + this.barrier.getNumberWaiting());
+                    "Calling thread about to unblock the NIO selection registration. Blocked thread: "
+                            + thread);
         }
 
-        try {
-            this.barrier.await(IoUtils.TIMEOUT_MS, TimeUnit.MILLISECONDS);
-        } catch (Exception e) {
-            Context.getCurrentLogger()
-                    .log(Level.WARNING,
-                            "Unable to unblock the waiting thread at the cyclic barrier",
-                            e);
-            IOException ioe = new IOException(
-                    "Unable to unblock the waiting thread at the cyclic barrier.");
-            ioe.initCause(e);
-            throw ioe;
+        if (thread != null) {
+            LockSupport.unpark(thread);
         }
     }
 
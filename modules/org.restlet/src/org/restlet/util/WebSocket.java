@@ -0,0 +1,136 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.util;
+
+import java.io.IOException;
+
+/**
+ * WebSocket connection established by a server connector after a successful
+ * upgrade handshake. Messages can be sent from any thread, they are queued and
+ * written by the connector without blocking the caller.
+ *
+ * @see <a href="http://tools.ietf.org/html/rfc6455">RFC 6455</a>
+ * @see WebSocketListener
+ */
+public interface WebSocket {
+
+    /** Normal closure. */
+    public static final int CLOSE_NORMAL = 1000;
+
+    /** Endpoint going away, such as a server shutting down. */
+    public static final int CLOSE_GOING_AWAY = 1001;
+
+    /** Protocol error. */
+    public static final int CLOSE_PROTOCOL_ERROR = 1002;
+
+    /** Type of data that can't be accepted. */
+    public static final int CLOSE_UNSUPPORTED_DATA = 1003;
+
+    /** No status code was present in the close frame. */
+    public static final int CLOSE_NO_STATUS = 1005;
+
+    /** Connection closed without a close frame. */
+    public static final int CLOSE_ABNORMAL = 1006;
+
+    /** Data inconsistent with the message type, such as invalid UTF-8. */
+    public static final int CLOSE_INVALID_DATA = 1007;
+
+    /** Message violating the endpoint's policy. */
+    public static final int CLOSE_POLICY_VIOLATION = 1008;
+
+    /** Message too big to process. */
+    public static final int CLOSE_TOO_BIG = 1009;
+
+    /** Unexpected condition preventing the endpoint to fulfill a request. */
+    public static final int CLOSE_INTERNAL_ERROR = 1011;
+
+    /**
+     * Starts the closing handshake. The connection is closed once the remote
+     * endpoint answers with its own close frame.
+     *
+     * @param statusCode
+     *            The close status code.
+     * @param reason
+     *            The optional reason or null.
+     * @throws IOException
+     */
+    public void close(int statusCode, String reason) throws IOException;
+
+    /**
+     * Returns the subprotocol selected during the handshake, or null.
+     *
+     * @return The subprotocol selected during the handshake, or null.
+     */
+    public String getSubprotocol();
+
+    /**
+     * Indicates if messages can still be sent, meaning that no close frame was
+     * sent or received.
+     *
+     * @return True if messages can still be sent.
+     */
+    public boolean isOpen();
+
+    /**
+     * Sends a binary message.
+     *
+     * @param data
+     *            The message data.
+     * @throws IOException
+     *             If the WebSocket isn't open.
+     */
+    public void send(byte[] data) throws IOException;
+
+    /**
+     * Sends a text message.
+     *
+     * @param text
+     *            The message text.
+     * @throws IOException
+     *             If the WebSocket isn't open.
+     */
+    public void send(String text) throws IOException;
+
+    /**
+     * Sends a ping frame. The remote endpoint answers with a pong frame, which
+     * is also a way to detect dead connections.
+     *
+     * @param data
+     *            The application data, up to 125 bytes, or null.
+     * @throws IOException
+     *             If the WebSocket isn't open.
+     */
+    public void sendPing(byte[] data) throws IOException;
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.util;
+
+/**
+ * Callback interface receiving the events of a {@link WebSocket}. The
+ * callbacks of a given WebSocket are invoked one at a time, in order, by a
+ * worker thread of the connector, so they can block without holding the IO
+ * thread but they delay the next events.
+ *
+ * @see org.restlet.resource.WebSocketResource
+ */
+public interface WebSocketListener {
+
+    /**
+     * Callback invoked when a binary message has been received.
+     *
+     * @param webSocket
+     *            The source WebSocket.
+     * @param data
+     *            The message data.
+     */
+    public void onBinary(WebSocket webSocket, byte[] data);
+
+    /**
+     * Callback invoked once when the WebSocket is closed, either cleanly or
+     * not.
+     *
+     * @param webSocket
+     *            The closed WebSocket.
+     * @param statusCode
+     *            The close status code, {@link WebSocket#CLOSE_ABNORMAL} if
+     *            the connection was lost.
+     * @param reason
+     *            The close reason, possibly empty.
+     */
+    public void onClose(WebSocket webSocket, int statusCode, String reason);
+
+    /**
+     * Callback invoked when an error occurred, including a runtime exception
+     * thrown by another callback.
+     *
+     * @param webSocket
+     *            The source WebSocket.
+     * @param throwable
+     *            The error.
+     */
+    public void onError(WebSocket webSocket, Throwable throwable);
+
+    /**
+     * Callback invoked once the handshake response has been sent.
+     *
+     * @param webSocket
+     *            The opened WebSocket.
+     */
+    public void onOpen(WebSocket webSocket);
+
+    /**
+     * Callback invoked when a text message has been received.
+     *
+     * @param webSocket
+     *            The source WebSocket.
+     * @param text
+     *            The message text.
+     */
+    public void onText(WebSocket webSocket, String text);
+
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.io.ReadableSelectionChannel;
+import org.restlet.representation.SelectableRepresentation;
+
+/**
+ * Selection listener producing new content into a {@link ByteBuffer} when the
+ * consumer, typically a NIO connector sending a response entity, is ready to
+ * accept it. No thread is blocked while the content isn't ready: the
+ * {@link #onWritable(ByteBuffer)} callback can simply return without writing
+ * anything, then the {@link #resume()} method must be called once new content
+ * becomes available.<br>
+ * <br>
+ * The produced content is exposed as a non-blocking channel via the
+ * {@link #getChannel()} method, typically wrapped by a
+ * {@link SelectableRepresentation}.<br>
+ * <br>
+ * The {@link #onWritable(ByteBuffer)} callback is invoked by the thread
+ * reading the channel, usually the IO controller thread of the NIO connector
+ * sending the entity, while holding a lock that is used instead of an object
+ * monitor so that virtual threads don't pin their carrier thread.
+ *
+ * @see ReadingListener
+ */
+public abstract class WritingListener implements SelectionListener {
+
+    /**
+     * Non-blocking channel reading the content produced by the parent
+     * listener.
+     */
+    private class ListenerChannel implements ReadableSelectionChannel {
+
+        /** Indicates if the channel is open. */
+        private volatile boolean open;
+
+        /** The NIO registration notifying consumers of new content. */
+        private final SelectionRegistration registration;
+
+        /**
+         * Constructor.
+         */
+        public ListenerChannel() {
+            this.open = true;
+            this.registration = new SelectionRegistration(0, null, null);
+        }
+
+        public void close() throws IOException {
+            this.open = false;
+        }
+
+        public SelectionRegistration getRegistration() {
+            return this.registration;
+        }
+
+        public boolean isBlocking() {
+            return false;
+        }
+
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        public int read(ByteBuffer dst) throws IOException {
+            int result = 0;
+            lock.lock();
+
+            try {
+                if (!byteBuffer.hasRemaining() && !isEndReached()) {
+                    // Ask the producer for new content
+                    onSelected(getRegistration());
+                }
+
+                if (byteBuffer.hasRemaining()) {
+                    result = Math.min(byteBuffer.remaining(), dst.remaining());
+                    int limit = byteBuffer.limit();
+                    byteBuffer.limit(byteBuffer.position() + result);
+                    dst.put(byteBuffer);
+                    byteBuffer.limit(limit);
+                } else if (isEndReached()) {
+                    result = -1;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            return result;
+        }
+    }
+
+    /** The internal byte buffer. */
+    private final ByteBuffer byteBuffer;
+
+    /** The channel exposing the produced content. */
+    private final ListenerChannel channel;
+
+    /** Indicates if the end of the content has been reached. */
+    private volatile boolean endReached;
+
+    /** The lock guarding the access to the byte buffer. */
+    private final Lock lock;
+
+    /**
+     * Default constructor. Uses a byte buffer of {@link IoUtils#BUFFER_SIZE}
+     * length.
+     */
+    public WritingListener() {
+        this(IoUtils.BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor. Uses a byte buffer of a given size.
+     *
+     * @param bufferSize
+     *            The size of the byte buffer to use.
+     */
+    public WritingListener(int bufferSize) {
+        this.byteBuffer = ByteBuffer.allocate(bufferSize);
+        this.byteBuffer.flip();
+        this.channel = new ListenerChannel();
+        this.endReached = false;
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Indicates that all the content has been produced. The bytes already
+     * written in the buffer are still sent. Consumers are notified via
+     * {@link #resume()}.
+     *
+     * @throws IOException
+     */
+    public void end() throws IOException {
+        this.endReached = true;
+        resume();
+    }
+
+    /**
+     * Returns the non-blocking channel exposing the produced content. A read
+     * returning zero byte means that the content isn't ready yet; the
+     * consumer is then notified via the channel's registration.
+     *
+     * @return The non-blocking channel exposing the produced content.
+     */
+    public ReadableSelectionChannel getChannel() {
+        return this.channel;
+    }
+
+    /**
+     * Indicates if the end of the content has been reached.
+     *
+     * @return True if the end of the content has been reached.
+     */
+    public boolean isEndReached() {
+        return this.endReached;
+    }
+
+    /**
+     * Callback invoked when the internal buffer has been fully consumed. The
+     * listener should write the content ready in the buffer without blocking,
+     * possibly nothing, and call {@link #end()} once the whole content has
+     * been produced. It is invoked by the thread reading the channel, often
+     * the connector's IO controller thread, while holding the buffer lock.
+     *
+     * @param byteBuffer
+     *            The byte buffer to fill with new content.
+     * @throws IOException
+     */
+    protected abstract void onWritable(ByteBuffer byteBuffer)
+            throws IOException;
+
+    /**
+     * Callback invoked when the consumer is ready to accept new content. It
+     * clears the internal buffer, calls the {@link #onWritable(ByteBuffer)}
+     * method then flips the buffer so that the new content can be read from
+     * the channel.
+     */
+    public final void onSelected(SelectionRegistration selectionRegistration)
+            throws IOException {
+        this.lock.lock();
+
+        try {
+            if (!this.byteBuffer.hasRemaining()) {
+                this.byteBuffer.clear();
+
+                try {
+                    onWritable(this.byteBuffer);
+                } finally {
+                    this.byteBuffer.flip();
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Notifies the consumer that new content can be read from the channel.
+     * Should be called when the content wasn't ready during the last
+     * {@link #onWritable(ByteBuffer)} callback.
+     *
+     * @throws IOException
+     */
+    public void resume() throws IOException {
+        if (Context.getCurrentLogger().isLoggable(Level.FINER)) {
+            Context.getCurrentLogger().finer(
+                    "New content available from the writing listener");
+        }
+
+        this.channel.getRegistration().onSelected(SelectionKey.OP_READ);
+    }
+
+}